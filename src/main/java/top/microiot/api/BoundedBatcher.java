@@ -0,0 +1,263 @@
+package top.microiot.api;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.TaskScheduler;
+
+import top.microiot.exception.StatusException;
+
+/**
+ * 有界批量处理抽象类，放入的元素先进入有界队列，达到批量大小或者等待时间后在调度线程中一起处理，
+ * 同一时间只处理一个批次，放入的线程不等待处理。
+ * @param <E> 队列元素类。
+ */
+public abstract class BoundedBatcher<E> implements AutoCloseable {
+	private static final long CLOSE_TIMEOUT = 10000;
+
+	private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	private final TaskScheduler taskScheduler;
+	private final int batchSize;
+	private final long lingerMillis;
+	private final OverflowPolicy overflowPolicy;
+	private final long blockTimeoutMillis;
+	private final BlockingQueue<E> queue;
+
+	private boolean flushing = false;
+	private volatile boolean closed = false;
+	private ScheduledFuture<?> lingerTask;
+
+	private final AtomicLong droppedCount = new AtomicLong();
+	private final AtomicLong batchCount = new AtomicLong();
+	private final AtomicInteger maxQueueSize = new AtomicInteger();
+
+	/**
+	 * 有界批量处理构造函数。
+	 * @param taskScheduler 执行处理的调度。
+	 * @param batchSize 一次处理的最大元素数量。
+	 * @param lingerMillis 第一个元素放入队列后等待处理的最长时间，单位为毫秒。
+	 * @param capacity 队列容量。
+	 * @param overflowPolicy 队列已满时的处理策略。
+	 * @param blockTimeoutMillis BLOCK策略时等待队列空间的最长时间，单位为毫秒，超时后丢弃新放入的元素。
+	 */
+	protected BoundedBatcher(TaskScheduler taskScheduler, int batchSize, long lingerMillis, int capacity,
+			OverflowPolicy overflowPolicy, long blockTimeoutMillis) {
+		super();
+		this.taskScheduler = taskScheduler;
+		this.batchSize = Math.max(batchSize, 1);
+		this.lingerMillis = lingerMillis;
+		this.overflowPolicy = overflowPolicy;
+		this.blockTimeoutMillis = blockTimeoutMillis;
+		this.queue = new ArrayBlockingQueue<E>(Math.max(capacity, 1));
+	}
+
+	/**
+	 * 放入元素，队列已满时按策略处理，被丢弃的元素调用dropped。
+	 * @param element 元素。
+	 * @return 已经关闭时返回false，元素没有放入队列也没有调用dropped。
+	 * @throws StatusException REJECT策略队列已满时抛出。
+	 */
+	protected boolean enqueue(E element) {
+		if (closed)
+			return false;
+		if (!queue.offer(element)) {
+			switch (overflowPolicy) {
+			case DROP_OLDEST:
+				while (!queue.offer(element)) {
+					E oldest = queue.poll();
+					if (oldest != null)
+						drop(oldest);
+				}
+				break;
+			case DROP_NEWEST:
+				drop(element);
+				return true;
+			case REJECT:
+				drop(element);
+				throw new StatusException("queue is full");
+			case BLOCK:
+				try {
+					if (!queue.offer(element, blockTimeoutMillis, TimeUnit.MILLISECONDS)) {
+						drop(element);
+						return true;
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					drop(element);
+					return true;
+				}
+				break;
+			}
+		}
+		// 检查之后关闭的，元素没有被关闭时的处理取走则移出队列，不会留在队列中
+		if (closed && queue.remove(element))
+			return false;
+		maxQueueSize.accumulateAndGet(queue.size(), Math::max);
+		schedule();
+		return true;
+	}
+
+	private void drop(E element) {
+		droppedCount.incrementAndGet();
+		dropped(element);
+	}
+
+	/**
+	 * 元素因队列已满被丢弃。
+	 * @param element 被丢弃的元素。
+	 */
+	protected abstract void dropped(E element);
+
+	/**
+	 * 处理一个批次，处理完成后必须调用done，之后才会处理下一个批次，可以在其它线程中完成。
+	 * @param batch 批次中的元素，按放入的顺序。
+	 * @param done 处理完成后调用。
+	 */
+	protected abstract void process(List<E> batch, Runnable done);
+
+	private synchronized void schedule() {
+		if (flushing)
+			return;
+		if (queue.size() >= batchSize || lingerMillis <= 0 || closed) {
+			cancelLinger();
+			flushing = true;
+			taskScheduler.schedule(this::flush, new Date());
+		} else if (lingerTask == null) {
+			lingerTask = taskScheduler.schedule(() -> {
+				synchronized (this) {
+					lingerTask = null;
+					if (flushing || queue.isEmpty())
+						return;
+					flushing = true;
+				}
+				flush();
+			}, new Date(System.currentTimeMillis() + lingerMillis));
+		}
+	}
+
+	private void cancelLinger() {
+		if (lingerTask != null) {
+			lingerTask.cancel(false);
+			lingerTask = null;
+		}
+	}
+
+	private void flush() {
+		List<E> batch = new ArrayList<E>(batchSize);
+		queue.drainTo(batch, batchSize);
+		if (batch.isEmpty()) {
+			finishFlush();
+			return;
+		}
+
+		batchCount.incrementAndGet();
+		AtomicBoolean finished = new AtomicBoolean();
+		Runnable done = () -> {
+			if (finished.compareAndSet(false, true))
+				finishFlush();
+		};
+		try {
+			process(batch, done);
+		} catch (Throwable e) {
+			logger.error("batch process error: " + e.getMessage());
+			done.run();
+		}
+	}
+
+	private synchronized void finishFlush() {
+		flushing = false;
+		if (!queue.isEmpty()) {
+			if (queue.size() >= batchSize || closed) {
+				flushing = true;
+				taskScheduler.schedule(this::flush, new Date());
+			} else
+				schedule();
+		}
+		notifyAll();
+	}
+
+	/**
+	 * 停止接受新的元素，处理队列中所有的元素，最多等待10秒。
+	 */
+	@Override
+	public void close() {
+		close(CLOSE_TIMEOUT);
+	}
+
+	/**
+	 * 停止接受新的元素，处理队列中所有的元素。
+	 * @param timeoutMillis 等待处理完成的最长时间，单位为毫秒。
+	 * @return 队列中的元素全部处理完成时返回true。
+	 */
+	public synchronized boolean close(long timeoutMillis) {
+		if (!closed) {
+			closed = true;
+			cancelLinger();
+			if (!flushing && !queue.isEmpty()) {
+				flushing = true;
+				taskScheduler.schedule(this::flush, new Date());
+			}
+		}
+
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		try {
+			long remaining;
+			while ((flushing || !queue.isEmpty()) && (remaining = deadline - System.currentTimeMillis()) > 0)
+				wait(remaining);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return !flushing && queue.isEmpty();
+	}
+
+	/**
+	 * 是否已经关闭。
+	 * @return 关闭后返回true。
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * 获取队列中等待处理的元素数量。
+	 * @return 返回元素数量。
+	 */
+	public int getQueueSize() {
+		return queue.size();
+	}
+
+	/**
+	 * 获取队列中等待处理的元素数量的最大值。
+	 * @return 返回元素数量。
+	 */
+	public int getMaxQueueSize() {
+		return maxQueueSize.get();
+	}
+
+	/**
+	 * 获取因队列已满被丢弃或拒绝的元素数量。
+	 * @return 返回元素数量。
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * 获取处理的批次数量。
+	 * @return 返回批次数量。
+	 */
+	public long getBatchCount() {
+		return batchCount.get();
+	}
+}
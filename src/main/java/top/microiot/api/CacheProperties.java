@@ -0,0 +1,114 @@
+package top.microiot.api;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 缓存配置属性类
+ */
+@ConfigurationProperties(prefix = "microiot.cache")
+public class CacheProperties {
+	/**
+	 * 是否缓存设备和设备类型元数据，缓存按平台地址、域和用户区分
+	 */
+	private boolean metadataEnabled = false;
+	/**
+	 * 元数据缓存的生存时间，单位为秒
+	 */
+	private long metadataTtl = 300;
+	/**
+	 * 每类元数据的最大缓存数量
+	 */
+	private int metadataMaxSize = 10000;
+	/**
+	 * 是否缓存websocket客户端获取的属性值
+	 */
+	private boolean attributeEnabled = false;
+	/**
+	 * 没有单独设置的属性值缓存的生存时间，单位为秒，0表示不缓存
+	 */
+	private long attributeTtl = 0;
+	/**
+	 * 单独设置的属性值缓存的生存时间，键为“设备类型名称.属性名称”或者“属性名称”，单位为秒
+	 */
+	private Map<String, Long> attributeTtls = new HashMap<String, Long>();
+	/**
+	 * 每个会话属性值缓存的最大数量
+	 */
+	private int attributeMaxSize = 10000;
+	/**
+	 * 是否对设备、设备类型、场地等元数据使用ETag/Last-Modified条件获取，缓存按平台地址、域和用户区分
+	 */
+	private boolean validatorEnabled = false;
+	/**
+	 * 条件获取缓存的生存时间，单位为秒
+	 */
+	private long validatorTtl = 3600;
+	/**
+	 * 条件获取缓存的最大数量
+	 */
+	private int validatorMaxSize = 10000;
+	
+	public boolean isMetadataEnabled() {
+		return metadataEnabled;
+	}
+	public void setMetadataEnabled(boolean metadataEnabled) {
+		this.metadataEnabled = metadataEnabled;
+	}
+	public long getMetadataTtl() {
+		return metadataTtl;
+	}
+	public void setMetadataTtl(long metadataTtl) {
+		this.metadataTtl = metadataTtl;
+	}
+	public int getMetadataMaxSize() {
+		return metadataMaxSize;
+	}
+	public void setMetadataMaxSize(int metadataMaxSize) {
+		this.metadataMaxSize = metadataMaxSize;
+	}
+	public boolean isAttributeEnabled() {
+		return attributeEnabled;
+	}
+	public void setAttributeEnabled(boolean attributeEnabled) {
+		this.attributeEnabled = attributeEnabled;
+	}
+	public long getAttributeTtl() {
+		return attributeTtl;
+	}
+	public void setAttributeTtl(long attributeTtl) {
+		this.attributeTtl = attributeTtl;
+	}
+	public Map<String, Long> getAttributeTtls() {
+		return attributeTtls;
+	}
+	public void setAttributeTtls(Map<String, Long> attributeTtls) {
+		this.attributeTtls = attributeTtls;
+	}
+	public int getAttributeMaxSize() {
+		return attributeMaxSize;
+	}
+	public void setAttributeMaxSize(int attributeMaxSize) {
+		this.attributeMaxSize = attributeMaxSize;
+	}
+	public boolean isValidatorEnabled() {
+		return validatorEnabled;
+	}
+	public void setValidatorEnabled(boolean validatorEnabled) {
+		this.validatorEnabled = validatorEnabled;
+	}
+	public long getValidatorTtl() {
+		return validatorTtl;
+	}
+	public void setValidatorTtl(long validatorTtl) {
+		this.validatorTtl = validatorTtl;
+	}
+	public int getValidatorMaxSize() {
+		return validatorMaxSize;
+	}
+	public void setValidatorMaxSize(int validatorMaxSize) {
+		this.validatorMaxSize = validatorMaxSize;
+	}
+}
@@ -0,0 +1,240 @@
+package top.microiot.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.AsyncClientHttpRequestExecution;
+import org.springframework.http.client.AsyncClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureAdapter;
+
+/**
+ * http压缩拦截类，请求体超过阈值时用gzip压缩，统计请求和响应在压缩前后的字节数。
+ * 响应的压缩在这里协商和解压，同步、异步和http/2传输的行为和统计相同，http client本身不再解压。
+ */
+public class CompressionInterceptor implements ClientHttpRequestInterceptor, AsyncClientHttpRequestInterceptor {
+	private static final String GZIP = "gzip";
+
+	private static final String IDENTITY = "identity";
+
+	private final boolean requestCompression;
+	private final int threshold;
+	private final boolean responseCompression;
+
+	private final AtomicLong requestBytes = new AtomicLong();
+	private final AtomicLong requestWireBytes = new AtomicLong();
+	private final AtomicLong responseBytes = new AtomicLong();
+	private final AtomicLong responseWireBytes = new AtomicLong();
+
+	/**
+	 * http压缩拦截构造函数。
+	 * @param requestCompression 是否压缩请求体。
+	 * @param threshold 压缩请求体的最小字节数。
+	 * @param responseCompression 是否接受gzip压缩的响应并解压。
+	 */
+	public CompressionInterceptor(boolean requestCompression, int threshold, boolean responseCompression) {
+		super();
+		this.requestCompression = requestCompression;
+		this.threshold = threshold;
+		this.responseCompression = responseCompression;
+	}
+
+	@Override
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+		byte[] wire = compress(request, body);
+		boolean decode = acceptEncoding(request);
+		return new CountingResponse(execution.execute(request, wire), decode);
+	}
+
+	@Override
+	public ListenableFuture<ClientHttpResponse> intercept(HttpRequest request, byte[] body, AsyncClientHttpRequestExecution execution) throws IOException {
+		byte[] wire = compress(request, body);
+		boolean decode = acceptEncoding(request);
+		return new ListenableFutureAdapter<ClientHttpResponse, ClientHttpResponse>(execution.executeAsync(request, wire)) {
+			@Override
+			protected ClientHttpResponse adapt(ClientHttpResponse response) {
+				return new CountingResponse(response, decode);
+			}
+		};
+	}
+
+	/**
+	 * 调用者没有设置Accept-Encoding时按配置设置，关闭响应压缩时设置为identity，避免okhttp自行协商和透明解压。
+	 * @return 返回是否由这里解压响应。
+	 */
+	private boolean acceptEncoding(HttpRequest request) {
+		HttpHeaders headers = request.getHeaders();
+		if (headers.containsKey(HttpHeaders.ACCEPT_ENCODING))
+			return false;
+		headers.set(HttpHeaders.ACCEPT_ENCODING, responseCompression ? GZIP : IDENTITY);
+		return responseCompression;
+	}
+
+	private byte[] compress(HttpRequest request, byte[] body) throws IOException {
+		requestBytes.addAndGet(body.length);
+		HttpHeaders headers = request.getHeaders();
+		if (requestCompression && body.length >= threshold && !headers.containsKey(HttpHeaders.CONTENT_ENCODING)) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+			try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+				gzip.write(body);
+			}
+			body = out.toByteArray();
+			headers.set(HttpHeaders.CONTENT_ENCODING, GZIP);
+			headers.setContentLength(body.length);
+		}
+		requestWireBytes.addAndGet(body.length);
+		return body;
+	}
+
+	/**
+	 * 获取压缩前的请求字节数。
+	 * @return 返回字节数。
+	 */
+	public long getRequestBytes() {
+		return requestBytes.get();
+	}
+
+	/**
+	 * 获取实际发送的请求字节数。
+	 * @return 返回字节数。
+	 */
+	public long getRequestWireBytes() {
+		return requestWireBytes.get();
+	}
+
+	/**
+	 * 获取解压后的响应字节数。
+	 * @return 返回字节数。
+	 */
+	public long getResponseBytes() {
+		return responseBytes.get();
+	}
+
+	/**
+	 * 获取实际接收的响应字节数。
+	 * @return 返回字节数。
+	 */
+	public long getResponseWireBytes() {
+		return responseWireBytes.get();
+	}
+
+	private static boolean isGzip(String encoding) {
+		return GZIP.equalsIgnoreCase(encoding) || "x-gzip".equalsIgnoreCase(encoding);
+	}
+
+	/**
+	 * 统计响应字节数的响应，需要时解压gzip响应体，并从头中去掉Content-Encoding和Content-Length。
+	 */
+	private class CountingResponse implements ClientHttpResponse {
+		private final ClientHttpResponse response;
+		private final boolean decode;
+		private HttpHeaders headers;
+		private InputStream body;
+
+		private CountingResponse(ClientHttpResponse response, boolean decode) {
+			this.response = response;
+			this.decode = decode && isGzip(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+		}
+
+		@Override
+		public InputStream getBody() throws IOException {
+			if (body == null) {
+				InputStream in = response.getBody();
+				if (in == null)
+					return null;
+				in = new CountingInputStream(in, responseWireBytes);
+				if (decode) {
+					PushbackInputStream pushback = new PushbackInputStream(in, 1);
+					int b = pushback.read();
+					if (b >= 0) {
+						pushback.unread(b);
+						in = new GZIPInputStream(pushback);
+					} else
+						in = pushback;
+				}
+				body = new CountingInputStream(in, responseBytes);
+			}
+			return body;
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			if (headers == null) {
+				if (decode) {
+					HttpHeaders decoded = new HttpHeaders();
+					decoded.putAll(response.getHeaders());
+					decoded.remove(HttpHeaders.CONTENT_ENCODING);
+					decoded.remove(HttpHeaders.CONTENT_LENGTH);
+					headers = decoded;
+				} else
+					headers = response.getHeaders();
+			}
+			return headers;
+		}
+
+		@Override
+		public HttpStatus getStatusCode() throws IOException {
+			return response.getStatusCode();
+		}
+
+		@Override
+		public int getRawStatusCode() throws IOException {
+			return response.getRawStatusCode();
+		}
+
+		@Override
+		public String getStatusText() throws IOException {
+			return response.getStatusText();
+		}
+
+		@Override
+		public void close() {
+			response.close();
+		}
+	}
+
+	private static class CountingInputStream extends FilterInputStream {
+		private final AtomicLong counter;
+
+		private CountingInputStream(InputStream in, AtomicLong counter) {
+			super(in);
+			this.counter = counter;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0)
+				counter.incrementAndGet();
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0)
+				counter.addAndGet(n);
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			if (skipped > 0)
+				counter.addAndGet(skipped);
+			return skipped;
+		}
+	}
+}
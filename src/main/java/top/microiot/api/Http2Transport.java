@@ -0,0 +1,57 @@
+package top.microiot.api;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.client.AsyncClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.OkHttp3ClientHttpRequestFactory;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+/**
+ * http/2 传输，所有请求共享一个OkHttpClient，同一主机的并发请求复用少量连接。
+ * 只在transport=http2时加载，okhttp是可选依赖，使用http/2时需要应用自己引入。
+ * 响应压缩由CompressionInterceptor设置Accept-Encoding并解压，okhttp看到请求已有Accept-Encoding时不会透明解压。
+ */
+class Http2Transport {
+    private final OkHttpClient client;
+
+    Http2Transport(HttpClientProperties clientProperties) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(clientProperties.getMaxTotalConnections());
+        dispatcher.setMaxRequestsPerHost(clientProperties.getDefaultMaxPerRoute());
+
+        List<Protocol> protocols = clientProperties.isHttp2PriorKnowledge()
+                ? Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE)
+                : Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1);
+
+        client = new OkHttpClient.Builder()
+                .connectTimeout(clientProperties.getConnectTimeout(), TimeUnit.MILLISECONDS)
+                .readTimeout(clientProperties.getSocketTimeout(), TimeUnit.MILLISECONDS)
+                .writeTimeout(clientProperties.getSocketTimeout(), TimeUnit.MILLISECONDS)
+                .protocols(protocols)
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(clientProperties.getHttp2MaxIdleConnections(), 
+                        clientProperties.getDefaultKeepAliveTimeMillis(), TimeUnit.MILLISECONDS))
+                .build();
+    }
+
+    ClientHttpRequestFactory requestFactory() {
+        return new OkHttp3ClientHttpRequestFactory(client);
+    }
+
+    AsyncClientHttpRequestFactory asyncRequestFactory() {
+        return new OkHttp3ClientHttpRequestFactory(client);
+    }
+
+    void close() {
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+    }
+}
@@ -9,6 +9,13 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
  */
 @ConfigurationProperties(prefix = "microiot.httpclient")
 public class HttpClientProperties {
+    /**
+     * REST请求的传输协议
+     */
+    public enum Transport {
+        HTTP1, HTTP2
+    }
+
 	/**
      * 建立连接的超时时间
      */
@@ -37,6 +44,30 @@ public class HttpClientProperties {
      * 空闲连接生存的时间
      */
     private int closeIdleConnectionWaitTimeSecs = 30;
+    /**
+     * 是否接受gzip压缩的响应并自动解压，对同步、异步和http/2传输都有效
+     */
+    private boolean responseCompression = true;
+    /**
+     * 是否压缩请求体，需要服务器支持gzip编码的请求
+     */
+    private boolean requestCompression = false;
+    /**
+     * 压缩请求体的最小字节数
+     */
+    private int requestCompressionThreshold = 1024;
+    /**
+     * 传输协议，HTTP2时同一主机的并发请求复用少量连接，需要应用引入com.squareup.okhttp3:okhttp依赖
+     */
+    private Transport transport = Transport.HTTP1;
+    /**
+     * 是否不经协商直接使用http/2，只能用于非加密的http连接
+     */
+    private boolean http2PriorKnowledge = false;
+    /**
+     * http/2 传输保持的最大空闲连接数
+     */
+    private int http2MaxIdleConnections = 4;
 
 	public int getConnectTimeout() {
         return connectTimeout;
@@ -93,4 +124,52 @@ public class HttpClientProperties {
     public void setCloseIdleConnectionWaitTimeSecs(int closeIdleConnectionWaitTimeSecs) {
         this.closeIdleConnectionWaitTimeSecs = closeIdleConnectionWaitTimeSecs;
     }
+
+    public boolean isResponseCompression() {
+        return responseCompression;
+    }
+
+    public void setResponseCompression(boolean responseCompression) {
+        this.responseCompression = responseCompression;
+    }
+
+    public boolean isRequestCompression() {
+        return requestCompression;
+    }
+
+    public void setRequestCompression(boolean requestCompression) {
+        this.requestCompression = requestCompression;
+    }
+
+    public int getRequestCompressionThreshold() {
+        return requestCompressionThreshold;
+    }
+
+    public void setRequestCompressionThreshold(int requestCompressionThreshold) {
+        this.requestCompressionThreshold = requestCompressionThreshold;
+    }
+
+    public Transport getTransport() {
+        return transport;
+    }
+
+    public void setTransport(Transport transport) {
+        this.transport = transport;
+    }
+
+    public boolean isHttp2PriorKnowledge() {
+        return http2PriorKnowledge;
+    }
+
+    public void setHttp2PriorKnowledge(boolean http2PriorKnowledge) {
+        this.http2PriorKnowledge = http2PriorKnowledge;
+    }
+
+    public int getHttp2MaxIdleConnections() {
+        return http2MaxIdleConnections;
+    }
+
+    public void setHttp2MaxIdleConnections(int http2MaxIdleConnections) {
+        this.http2MaxIdleConnections = http2MaxIdleConnections;
+    }
 }
@@ -1,10 +1,22 @@
 package top.microiot.api;
 
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.data.domain.Page;
@@ -14,8 +26,14 @@ import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Component;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.web.client.AsyncRestTemplate;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.HttpStatusCodeException;
@@ -23,7 +41,12 @@ import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.client.UnknownHttpStatusCodeException;
 import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
 
+import top.microiot.api.cache.MetadataCache;
+import top.microiot.api.cache.ValidatorCache;
 import top.microiot.api.client.HttpClientSession;
 import top.microiot.api.dto.RestGeoResults;
 import top.microiot.api.dto.RestPage;
@@ -34,6 +57,7 @@ import top.microiot.domain.Token;
 import top.microiot.domain.User;
 import top.microiot.dto.DistinctInfo;
 import top.microiot.dto.LoginInfo;
+import top.microiot.dto.PageInfo;
 import top.microiot.dto.QueryInfo;
 import top.microiot.dto.QueryNearPageInfo;
 import top.microiot.dto.QueryPageInfo;
@@ -51,6 +75,7 @@ public abstract class HttpSession {
 	private static final String AUTH = "Authorization";
 	private static final String BEARER_TOKEN = "Bearer ";
 	private static final String WS_IOT = "/ws_iot";
+	private static final String PAGE_CONTENT = "content";
 	private static final String IOTP = "iotp";
 	private static final String IOTPS = "iotps";
 	private static final String HTTP = "http";
@@ -60,45 +85,129 @@ public abstract class HttpSession {
 	private static final String regex = "^(" + IOTP + "|" + IOTPS
 			+ ")://[-a-zA-Z0-9+&@#/%?=~_|!:,.;]*[-a-zA-Z0-9+&@#/%=~_|]";
 
-	protected Token token;
-	protected boolean logined = false;
+	/**
+	 * 当前的token，与getToken()相同，token由TokenManager发布，每次登录、刷新和setToken后同步更新该字段。
+	 * 
+	 * @deprecated 使用getToken()读取，对该字段赋值不会生效，使用setToken(Token)发布新的token。
+	 */
+	@Deprecated
+	protected volatile Token token;
+	protected volatile boolean logined = false;
 
 	protected HttpSessionProperties httpSessionProperties;
 
 	private RestTemplate restTemplate;
+	private ObjectProvider<AsyncRestTemplate> asyncRestTemplate;
+	private MetadataCache sharedMetadataCache;
+	private volatile MetadataCache metadataCache;
+	private ValidatorCache sharedValidatorCache;
+	private volatile ValidatorCache validatorCache;
+	private TaskScheduler taskScheduler;
+	private final TokenManager tokenManager;
+
+	private volatile String restUri;
+	private volatile String encodedRestUri;
+	private volatile AuthHeaders authHeaders;
+	private volatile ObjectMapper objectMapper;
+	private final Map<String, URI> fixedUris = new ConcurrentHashMap<String, URI>();
+	private static final Map<String, String> encodedNames = new ConcurrentHashMap<String, String>();
 
 	@Autowired
 	public void setRestTemplate(RestTemplate restTemplate) {
 		this.restTemplate = restTemplate;
 	}
 
+	@Autowired
+	public void setAsyncRestTemplate(ObjectProvider<AsyncRestTemplate> asyncRestTemplate) {
+		this.asyncRestTemplate = asyncRestTemplate;
+	}
+
+	public HttpSessionProperties getHttpSessionProperties() {
+		return httpSessionProperties;
+	}
+
+	@Autowired(required = false)
+	public void setMetadataCache(MetadataCache metadataCache) {
+		this.sharedMetadataCache = metadataCache;
+	}
+
+	/**
+	 * 获取本会话使用的元数据缓存视图，登录后才可用，只包含同一平台、域和用户的会话缓存的条目。
+	 * 
+	 * @return 返回元数据缓存，没有开启或者没有登录时返回null。
+	 */
+	public MetadataCache getMetadataCache() {
+		return metadataCache;
+	}
+
+	private String getCacheScope() {
+		return getUri() + "|" + httpSessionProperties.getDomain() + "|" + httpSessionProperties.getUsername();
+	}
+
+	@Autowired(required = false)
+	public void setValidatorCache(ValidatorCache validatorCache) {
+		this.sharedValidatorCache = validatorCache;
+	}
+
+	/**
+	 * 获取本会话使用的条件获取缓存视图，登录后才可用，只包含同一平台、域和用户的会话缓存的条目。
+	 * 
+	 * @return 返回条件获取缓存，没有开启或者没有登录时返回null。
+	 */
+	public ValidatorCache getValidatorCache() {
+		return validatorCache;
+	}
+
+	protected TaskScheduler getTaskScheduler() {
+		return taskScheduler;
+	}
+
+	@Autowired(required = false)
+	public void setTaskScheduler(TaskScheduler taskScheduler) {
+		this.taskScheduler = taskScheduler;
+		tokenManager.setScheduler(taskScheduler, () -> {
+			Token current = tokenManager.getToken();
+			if (logined && current != null)
+				refreshToken(current);
+		});
+	}
+
 	public abstract User getCurrentUser();
 
 	public HttpSession(HttpSessionProperties httpSessionProperties) {
 		super();
 		this.httpSessionProperties = httpSessionProperties;
+		this.tokenManager = new TokenManager(httpSessionProperties.getTokenRefreshAhead() * 1000L);
+		this.tokenManager.setListener(this::mirrorToken);
+	}
+
+	@SuppressWarnings("deprecation")
+	private void mirrorToken(Token token) {
+		this.token = token;
 	}
 	
 	/**
 	 * 建立http会话。
 	 */
-	public void start() {
+	public synchronized void start() {
 		if (!logined) {
 			if (!getUri().matches(regex))
 				throw new ValueException(httpSessionProperties.getUri());
 
 			try {
 				HttpEntity<?> requestEntity = getRequest(getLoginInfo());
-				String url = getRestUri() + "/login";
+				URI url = buildUri("/login", null);
 
 				ResponseEntity<Token> rssResponse = restTemplate.exchange(url, HttpMethod.POST, requestEntity, Token.class);
-				this.token = rssResponse.getBody();
+				tokenManager.setToken(rssResponse.getBody());
 			} catch (ResourceAccessException e) {
-				throw new StatusException(e.getMessage());
+				throw new UnavailableException(e.getMessage());
 			} catch (HttpClientErrorException | HttpServerErrorException | UnknownHttpStatusCodeException e) {
 				throw new StatusException(e.getResponseBodyAsString());
 			}
 			
+			this.metadataCache = sharedMetadataCache == null ? null : sharedMetadataCache.forSession(getCacheScope());
+			this.validatorCache = sharedValidatorCache == null ? null : sharedValidatorCache.forSession(getCacheScope());
 			this.logined = true;
 		}
 	}
@@ -106,26 +215,65 @@ public abstract class HttpSession {
 	/**
 	 * 停止http会话。
 	 */
-	public void stop() {
+	public synchronized void stop() {
 		if (logined) {
 			this.logined = false;
-			this.token = null;
+			this.metadataCache = null;
+			this.validatorCache = null;
+			tokenManager.clear();
 		}
 	}
 
+	/**
+	 * 获取当前的token。
+	 * 
+	 * @return 返回当前的token。
+	 */
+	public Token getToken() {
+		return tokenManager.getToken();
+	}
+
+	/**
+	 * 发布新的token，重新安排提前刷新。
+	 * 
+	 * @param token 新的token。
+	 */
+	protected void setToken(Token token) {
+		tokenManager.setToken(token);
+	}
+
+	/**
+	 * 当前token是否仍然有效，不能从token中得到过期时间时返回false。
+	 * 
+	 * @return 距离token过期超过提前刷新的时间时返回true。
+	 */
+	public boolean isTokenValid() {
+		return tokenManager.isValid();
+	}
+
+	/**
+	 * 刷新token，同时发生的多次刷新只发出一次刷新请求。
+	 */
 	public void refreshToken() {
+		refreshToken(tokenManager.getToken());
+	}
+
+	private void refreshToken(Token stale) {
+		tokenManager.refresh(stale, this::requestToken);
+	}
+
+	private Token requestToken(Token current) {
 		HttpHeaders requestHeaders = new HttpHeaders();
-		requestHeaders.set(AUTH, BEARER_TOKEN + token.getRefreshToken());
+		requestHeaders.set(AUTH, BEARER_TOKEN + current.getRefreshToken());
 
 		HttpEntity<HttpHeaders> requestEntity = new HttpEntity<HttpHeaders>(null, requestHeaders);
-		UriComponentsBuilder builder = getUrl("/token", null);
-		URI uri = builder.build().encode().toUri();
+		URI uri = buildUri("/token", null);
 
 		ResponseEntity<Token> rssResponse = null;
 
 		try {
 			rssResponse = restTemplate.exchange(uri, HttpMethod.GET, requestEntity, Token.class);
-			token = rssResponse.getBody();
+			return rssResponse.getBody();
 		} catch (HttpClientErrorException | HttpServerErrorException e) {
 			if (e.getStatusCode() == HttpStatus.UNAUTHORIZED)
 				throw new StatusException(AuthenticationException.TOKEN_EXPIRED);
@@ -133,6 +281,38 @@ public abstract class HttpSession {
 		}
 	}
 
+	/**
+	 * 异步刷新token，和同步刷新共享同一个进行中的刷新请求。
+	 * 
+	 * @return 返回刷新的future。
+	 */
+	public CompletableFuture<Void> refreshTokenAsync() {
+		return refreshTokenAsync(tokenManager.getToken());
+	}
+
+	private CompletableFuture<Void> refreshTokenAsync(Token stale) {
+		return tokenManager.refreshAsync(stale, this::requestTokenAsync).thenApply(token -> null);
+	}
+
+	@SuppressWarnings("deprecation")
+	private CompletableFuture<Token> requestTokenAsync(Token current) {
+		CompletableFuture<Token> future = new CompletableFuture<Token>();
+		HttpHeaders requestHeaders = new HttpHeaders();
+		requestHeaders.set(AUTH, BEARER_TOKEN + current.getRefreshToken());
+		HttpEntity<HttpHeaders> requestEntity = new HttpEntity<HttpHeaders>(null, requestHeaders);
+		URI uri = buildUri("/token", null);
+
+		getAsyncRestTemplate().exchange(uri, HttpMethod.GET, requestEntity, Token.class).addCallback(
+				response -> future.complete(response.getBody()), 
+				e -> {
+					if (e instanceof HttpStatusCodeException && ((HttpStatusCodeException) e).getStatusCode() == HttpStatus.UNAUTHORIZED)
+						future.completeExceptionally(new StatusException(AuthenticationException.TOKEN_EXPIRED));
+					else
+						future.completeExceptionally(e);
+				});
+		return future;
+	}
+
 	protected LoginInfo getLoginInfo() {
 		LoginInfo info = new LoginInfo();
 		info.setUsername(httpSessionProperties.getUsername());
@@ -148,29 +328,53 @@ public abstract class HttpSession {
 	public HttpHeaders getHttpAuth() {
 		assert logined : "login first";
 		HttpHeaders requestHeaders = new HttpHeaders();
-		requestHeaders.set(AUTH, BEARER_TOKEN + token.getToken());
+		requestHeaders.set(AUTH, getAuthHeaders().authorization);
 		return requestHeaders;
 	}
 
 	public StompHeaders getStompAuth() {
 		assert logined : "login first";
 		StompHeaders header = new StompHeaders();
-		header.set(AUTH, BEARER_TOKEN + token.getToken());
+		header.set(AUTH, getAuthHeaders().authorization);
 		return header;
 	}
 
+	private AuthHeaders getAuthHeaders() {
+		Token current = tokenManager.getToken();
+		AuthHeaders auth = authHeaders;
+		if (auth == null || auth.token != current) {
+			auth = new AuthHeaders(current);
+			authHeaders = auth;
+		}
+		return auth;
+	}
+
 	/**
 	 * 获得http会话调用REST的uri。
 	 * 
 	 * @return 返回调用REST的uri。
 	 */
 	public String getRestUri() {
-		if (getUri().startsWith(IOTP))
-			return getUri().replaceFirst(IOTP, HTTP);
-		else if (getUri().startsWith(IOTPS))
-			return getUri().replaceFirst(IOTPS, HTTPS);
-		else
-			throw new ValueException(getUri());
+		String rest = restUri;
+		if (rest == null) {
+			if (getUri().startsWith(IOTP))
+				rest = getUri().replaceFirst(IOTP, HTTP);
+			else if (getUri().startsWith(IOTPS))
+				rest = getUri().replaceFirst(IOTPS, HTTPS);
+			else
+				throw new ValueException(getUri());
+			restUri = rest;
+		}
+		return rest;
+	}
+
+	private String getEncodedRestUri() {
+		String encoded = encodedRestUri;
+		if (encoded == null) {
+			encoded = UriComponentsBuilder.fromHttpUrl(getRestUri()).build().encode().toUriString();
+			encodedRestUri = encoded;
+		}
+		return encoded;
 	}
 
 	/**
@@ -193,18 +397,111 @@ public abstract class HttpSession {
 	}
 
 	/**
-	 * 获取指定设备的信息。
+	 * 获取指定设备的信息，开启元数据缓存时优先从缓存获取。
 	 * 
 	 * @param id 设备标识符。
 	 * @return 返回指定设备。
 	 */
 	public Device getDevice(String id) {
 		if (id != null && !id.isEmpty()) {
-			return getEntity(HttpClientSession.deviceUrl + "/" + id, null, HttpClientSession.deviceType);
+			MetadataCache cache = metadataCache;
+			if (cache == null)
+				return loadDevice(id);
+			return cache.getDevice(id, key -> loadDevice(key));
 		} else
 			throw new ValueException("id can't be empty");
 	}
 
+	private Device loadDevice(String id) {
+		return getValidatedEntity(HttpClientSession.deviceUrl + "/" + id, HttpClientSession.deviceType);
+	}
+
+	/**
+	 * 批量获取设备的信息，开启元数据缓存时优先从缓存获取，缓存中没有的设备按批量大小分批查询。
+	 * 
+	 * @param ids 设备标识符。
+	 * @return 返回设备标识符到设备的映射，不存在的设备不在映射中。
+	 */
+	public Map<String, Device> getDevices(Collection<String> ids) {
+		MetadataCache cache = metadataCache;
+		Map<String, Device> devices = new LinkedHashMap<String, Device>();
+		List<String> missing = new ArrayList<String>();
+		for (String id : ids) {
+			if (id == null || id.isEmpty())
+				throw new ValueException("id can't be empty");
+			Device device = cache == null ? null : cache.getDevice(id, key -> null);
+			if (device != null)
+				devices.put(id, device);
+			else
+				missing.add(id);
+		}
+
+		int batchSize = Math.max(httpSessionProperties.getQueryBatchSize(), 1);
+		for (int i = 0; i < missing.size(); i += batchSize) {
+			QueryInfo info = new QueryInfo();
+			info.setFilter(buildIdFilter(missing.subList(i, Math.min(i + batchSize, missing.size()))));
+			forEachEntity(Device.class, info, Device.class, device -> {
+				Device d = cache == null ? device : cache.getDevice(device.getId(), key -> device);
+				devices.put(d.getId(), d);
+			});
+		}
+		return devices;
+	}
+
+	private static String buildIdFilter(List<String> ids) {
+		StringBuilder filter = new StringBuilder("{\"_id\": {\"$in\": [");
+		for (int i = 0; i < ids.size(); i++) {
+			if (i > 0)
+				filter.append(", ");
+			String id = ids.get(i);
+			if (id.matches("[0-9a-fA-F]{24}"))
+				filter.append("{\"$oid\": \"").append(id).append("\"}");
+			else
+				filter.append('"').append(id.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+		}
+		return filter.append("]}}").toString();
+	}
+
+	/**
+	 * 异步获取指定设备的信息，开启元数据缓存时优先从缓存获取。
+	 * 
+	 * @param id 设备标识符。
+	 * @return 返回指定设备的future。
+	 */
+	public CompletableFuture<Device> getDeviceAsync(String id) {
+		if (id == null || id.isEmpty())
+			return failed(new ValueException("id can't be empty"));
+		MetadataCache cache = metadataCache;
+		if (cache == null)
+			return getEntityAsync(HttpClientSession.deviceUrl + "/" + id, null, HttpClientSession.deviceType);
+
+		Device device = cache.getDevice(id, key -> null);
+		if (device != null)
+			return CompletableFuture.completedFuture(device);
+		return getEntityAsync(HttpClientSession.deviceUrl + "/" + id, null, HttpClientSession.deviceType)
+				.thenApply(d -> cache.getDevice(id, key -> d));
+	}
+
+	/**
+	 * 使指定设备的元数据缓存失效。
+	 * 
+	 * @param id 设备标识符。
+	 */
+	public void invalidateDevice(String id) {
+		MetadataCache cache = metadataCache;
+		if (cache != null)
+			cache.invalidateDevice(id);
+	}
+
+	/**
+	 * 使设备类型的元数据缓存失效。
+	 */
+	public void invalidateDeviceTypes() {
+		MetadataCache cache = metadataCache;
+		if (cache != null)
+			cache.invalidateDeviceTypes();
+	}
+
 	/**
 	 * 获取指定设备组的信息。
 	 * 
@@ -213,7 +510,7 @@ public abstract class HttpSession {
 	 */
 	public DeviceGroup getDeviceGroup(String id) {
 		if (id != null && !id.isEmpty()) {
-			return getEntity(HttpClientSession.deviceGroupUrl + "/" + id, null, HttpClientSession.deviceGroupType);
+			return getValidatedEntity(HttpClientSession.deviceGroupUrl + "/" + id, HttpClientSession.deviceGroupType);
 		} else
 			throw new ValueException("device group id can't be empty");
 	}
@@ -222,7 +519,7 @@ public abstract class HttpSession {
 	public <T> T getEntityById(Class<? extends IoTObject> object, String id) {
 		assert logined : "login first";
 		String url = "/" + getIoTObjectName(object) + "/query/id/" + id;
-		return (T) getEntity(url, null, object);
+		return (T) getValidatedEntity(url, object);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -242,6 +539,36 @@ public abstract class HttpSession {
 		return getEntity(url, queryParams, responseType);
 	}
 
+	/**
+	 * 获取查询结果列表，逐个解析列表元素交给处理方法，不在内存中保留整个列表。
+	 * 
+	 * @param object 查询的对象类型。
+	 * @param info 查询条件。
+	 * @param elementType 列表元素类型。
+	 * @param consumer 元素的处理方法。
+	 * @return 返回元素数量。
+	 */
+	public <T> long forEachEntity(Class<? extends IoTObject> object, QueryInfo info, Class<T> elementType,
+			Consumer<? super T> consumer) {
+		String url = "/" + getIoTObjectName(object) + "/query/list";
+		return forEachEntity(buildUri(url, buildQueryParams(info)), elementType, null, consumer);
+	}
+
+	/**
+	 * 获取指定页的查询结果，逐个解析页中的元素交给处理方法，不在内存中保留整页。
+	 * 
+	 * @param object 查询的对象类型。
+	 * @param info 查询条件以及页码和每页数量。
+	 * @param elementType 页中元素类型。
+	 * @param consumer 元素的处理方法。
+	 * @return 返回元素数量。
+	 */
+	public <T> long forEachEntityInPage(Class<? extends IoTObject> object, QueryPageInfo info, Class<T> elementType,
+			Consumer<? super T> consumer) {
+		String url = "/" + getIoTObjectName(object) + "/query/page";
+		return forEachEntity(buildUri(url, buildQueryPageParams(info)), elementType, PAGE_CONTENT, consumer);
+	}
+
 	public <T> Page<T> getEntityPage(Class<? extends IoTObject> object, QueryPageInfo info,
 			ParameterizedTypeReference<RestPage<T>> responseType) {
 		assert logined : "login first";
@@ -294,69 +621,295 @@ public abstract class HttpSession {
 		return getEntity(url, queryParams, Boolean.class);
 	}
 
+	/**
+	 * 异步获取指定设备组的信息。
+	 * 
+	 * @param id 指定设备组的标识符
+	 * @return 返回指定设备组信息的future。
+	 */
+	public CompletableFuture<DeviceGroup> getDeviceGroupAsync(String id) {
+		if (id == null || id.isEmpty())
+			return failed(new ValueException("device group id can't be empty"));
+		return getEntityAsync(HttpClientSession.deviceGroupUrl + "/" + id, null, HttpClientSession.deviceGroupType);
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> CompletableFuture<T> getEntityByIdAsync(Class<? extends IoTObject> object, String id) {
+		String url = "/" + getIoTObjectName(object) + "/query/id/" + id;
+		return (CompletableFuture<T>) getEntityAsync(url, null, object);
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> CompletableFuture<T> getOneEntityAsync(Class<? extends IoTObject> object, QueryInfo info) {
+		String url = "/" + getIoTObjectName(object) + "/query/one";
+		return (CompletableFuture<T>) getEntityAsync(url, buildQueryParams(info), object);
+	}
+
+	public <T> CompletableFuture<List<T>> getEntityListAsync(Class<? extends IoTObject> object, QueryInfo info,
+			ParameterizedTypeReference<List<T>> responseType) {
+		String url = "/" + getIoTObjectName(object) + "/query/list";
+		return getEntityAsync(url, buildQueryParams(info), responseType);
+	}
+
+	public <T> CompletableFuture<Page<T>> getEntityPageAsync(Class<? extends IoTObject> object, QueryPageInfo info,
+			ParameterizedTypeReference<RestPage<T>> responseType) {
+		String url = "/" + getIoTObjectName(object) + "/query/page";
+		return getEntityAsync(url, buildQueryPageParams(info), responseType).thenApply(page -> page);
+	}
+
+	/**
+	 * 获取查询结果的流，从指定页开始逐页获取，处理当前页时预先获取之后的页。
+	 * 
+	 * @param object 查询的对象类型。
+	 * @param info 查询条件以及开始的页码和每页数量。
+	 * @param responseType 页的类型。
+	 * @return 返回查询结果的流，使用完毕应关闭。
+	 */
+	public <T> Stream<T> streamEntities(Class<? extends IoTObject> object, QueryPageInfo info,
+			ParameterizedTypeReference<RestPage<T>> responseType) {
+		return new PageIterator<T>(info.getPageNumber(), page -> {
+			int current = info.getPageNumber();
+			info.setPageNumber(page);
+			try {
+				return getEntityPageAsync(object, info, responseType);
+			} finally {
+				info.setPageNumber(current);
+			}
+		}, httpSessionProperties.getPagePrefetch(), httpSessionProperties.getPageParallelism()).stream();
+	}
+
+	/**
+	 * 获取分页查询结果的流，处理当前页时预先获取之后的页。
+	 * 
+	 * @param info 分页查询信息，第一页为当前页。
+	 * @param loader 异步获取页的方法。
+	 * @return 返回查询结果的流，使用完毕应关闭。
+	 */
+	protected <I extends PageInfo, T> Stream<T> streamPages(I info, Function<I, CompletableFuture<Page<T>>> loader) {
+		return new PageIterator<T>(info.getCurrentPage(), page -> {
+			int current = info.getCurrentPage();
+			info.setCurrentPage(page);
+			try {
+				return loader.apply(info);
+			} finally {
+				info.setCurrentPage(current);
+			}
+		}, httpSessionProperties.getPagePrefetch(), httpSessionProperties.getPageParallelism()).stream();
+	}
+
+	public <T> CompletableFuture<RestGeoResults<T>> getEntityGeoAsync(Class<? extends IoTObject> object, QueryNearPageInfo info,
+			ParameterizedTypeReference<RestGeoResults<T>> responseType) {
+		String url = "/" + getIoTObjectName(object) + "/query/geo";
+		return getEntityAsync(url, buildQueryNearParams(info), responseType);
+	}
+
+	public <T> CompletableFuture<List<T>> getEntityAggregateAsync(Class<? extends IoTObject> object, QueryInfo info,
+			ParameterizedTypeReference<List<T>> responseType) {
+		String url = "/" + getIoTObjectName(object) + "/query/aggregate";
+		return getEntityAsync(url, buildQueryParams(info), responseType);
+	}
+
+	public <T> CompletableFuture<List<T>> getEntityDistinctAsync(Class<? extends IoTObject> object, DistinctInfo info,
+			ParameterizedTypeReference<List<T>> responseType) {
+		String url = "/" + getIoTObjectName(object) + "/query/distinct";
+		return getEntityAsync(url, buildQueryDistinctParams(info), responseType);
+	}
+
+	public CompletableFuture<Integer> countAsync(Class<? extends IoTObject> object, QueryInfo info) {
+		String url = "/" + getIoTObjectName(object) + "/query/count";
+		return getEntityAsync(url, buildQueryParams(info), Integer.class);
+	}
+
+	public CompletableFuture<Boolean> existAsync(Class<? extends IoTObject> object, QueryInfo info) {
+		String url = "/" + getIoTObjectName(object) + "/query/exist";
+		return getEntityAsync(url, buildQueryParams(info), Boolean.class);
+	}
+
 	protected static String getIoTObjectName(Class<? extends IoTObject> object) {
 		return object.getSimpleName().toLowerCase() + "s";
 	}
 
 	protected <T> T getEntity(String getUri, Map<String, String> queryParams, Class<T> responseType) {
+		return getEntity(buildUri(getUri, queryParams), responseType);
+	}
+
+	/**
+	 * 获取固定路径的实体，uri由getFixedUri得到时不再重复编码。
+	 * 
+	 * @param uri 编码后的uri。
+	 * @param responseType 实体类型。
+	 * @return 返回实体。
+	 */
+	protected <T> T getEntity(URI uri, Class<T> responseType) {
 		assert logined : "login first";
 
 		ResponseEntity<T> rssResponse = null;
 		while (true) {
-			HttpHeaders header = getHttpAuth();
-
-			HttpEntity<HttpHeaders> requestEntity = new HttpEntity<HttpHeaders>(null, header);
-			UriComponentsBuilder builder = getUrl(getUri, queryParams);
-			URI uri = builder.build().encode().toUri();
+			AuthHeaders auth = getAuthHeaders();
+			Token used = auth.token;
+			HttpEntity<HttpHeaders> requestEntity = new HttpEntity<HttpHeaders>(null, auth.headers);
 
 			try {
 				rssResponse = restTemplate.exchange(uri, HttpMethod.GET, requestEntity, responseType);
 				return rssResponse.getBody();
 			} catch (ResourceAccessException e) {
-				throw new StatusException(e.getMessage());
+				throw new UnavailableException(e.getMessage());
 			} catch (UnknownHttpStatusCodeException e) {
 				throw new StatusException(e.getResponseBodyAsString());
 			} catch (HttpClientErrorException | HttpServerErrorException e) {
-				processException(e);
+				processException(e, used);
 			}
 		}
 	}
 
-	private void processException(HttpStatusCodeException e) {
-		if (e.getStatusCode() == HttpStatus.UNAUTHORIZED) {
-			if (e.getResponseBodyAsString().equals(AuthenticationException.TOKEN_NOT_EXIST))
-				throw new StatusException(e.getResponseBodyAsString());
-			else
-				refreshToken();
-		} else
+	private void processException(HttpStatusCodeException e, Token used) {
+		if (isTokenExpired(e))
+			refreshToken(used);
+		else
 			throw new StatusException(e.getResponseBodyAsString());
 	}
 
+	private boolean isTokenExpired(HttpStatusCodeException e) {
+		return e.getStatusCode() == HttpStatus.UNAUTHORIZED
+				&& !e.getResponseBodyAsString().equals(AuthenticationException.TOKEN_NOT_EXIST);
+	}
+
 	protected <T> T getEntity(String getUri, Map<String, String> queryParams, ParameterizedTypeReference<T> responseType) {
+		return getEntity(buildUri(getUri, queryParams), responseType);
+	}
+
+	/**
+	 * 获取固定路径的实体，uri由getFixedUri得到时不再重复编码。
+	 * 
+	 * @param uri 编码后的uri。
+	 * @param responseType 实体类型。
+	 * @return 返回实体。
+	 */
+	protected <T> T getEntity(URI uri, ParameterizedTypeReference<T> responseType) {
 		assert logined : "login first";
 
 		ResponseEntity<T> rssResponse = null;
 		while (true) {
-			HttpHeaders header = getHttpAuth();
-
-			HttpEntity<HttpHeaders> requestEntity = new HttpEntity<HttpHeaders>(null, header);
-			UriComponentsBuilder builder = getUrl(getUri, queryParams);
-			URI uri = builder.build().encode().toUri();
+			AuthHeaders auth = getAuthHeaders();
+			Token used = auth.token;
+			HttpEntity<HttpHeaders> requestEntity = new HttpEntity<HttpHeaders>(null, auth.headers);
 
 			try {
 				rssResponse = restTemplate.exchange(uri, HttpMethod.GET, requestEntity, responseType);
 				return rssResponse.getBody();
 			} catch (ResourceAccessException e) {
-				throw new StatusException(e.getMessage());
+				throw new UnavailableException(e.getMessage());
 			} catch (UnknownHttpStatusCodeException e) {
 				throw new StatusException(e.getResponseBodyAsString());
 			} catch (HttpClientErrorException | HttpServerErrorException e) {
-				processException(e);
+				processException(e, used);
 			}
 		}
 
 	}
 
+	/**
+	 * 条件获取实体，开启条件获取缓存时发送上次响应的ETag和Last-Modified，服务器返回304时使用缓存的实体，
+	 * 服务器没有返回ETag和Last-Modified时与getEntity相同。
+	 * 
+	 * @param getUri 相对于REST uri的路径。
+	 * @param responseType 实体类型。
+	 * @return 返回实体。
+	 */
+	protected <T> T getValidatedEntity(String getUri, Class<T> responseType) {
+		URI uri = buildUri(getUri, null);
+		ValidatorCache validatorCache = this.validatorCache;
+		if (validatorCache == null)
+			return getEntity(uri, responseType);
+		assert logined : "login first";
+
+		while (true) {
+			AuthHeaders auth = getAuthHeaders();
+			Token used = auth.token;
+			ValidatorCache.Validated validated = validatorCache.get(uri);
+			if (validated != null && !responseType.isInstance(validated.getBody()))
+				validated = null;
+			HttpHeaders header = auth.headers;
+			if (validated != null) {
+				header = new HttpHeaders();
+				header.putAll(auth.headers);
+				if (validated.getEtag() != null)
+					header.setIfNoneMatch(validated.getEtag());
+				if (validated.getLastModified() >= 0)
+					header.setIfModifiedSince(validated.getLastModified());
+			}
+
+			try {
+				ResponseEntity<T> rssResponse = restTemplate.exchange(uri, HttpMethod.GET, new HttpEntity<HttpHeaders>(null, header), responseType);
+				if (rssResponse.getStatusCode() == HttpStatus.NOT_MODIFIED && validated != null)
+					return responseType.cast(validatorCache.notModified(uri, validated));
+				HttpHeaders headers = rssResponse.getHeaders();
+				validatorCache.put(uri, headers.getETag(), headers.getLastModified(), rssResponse.getBody());
+				return rssResponse.getBody();
+			} catch (ResourceAccessException e) {
+				throw new UnavailableException(e.getMessage());
+			} catch (UnknownHttpStatusCodeException e) {
+				throw new StatusException(e.getResponseBodyAsString());
+			} catch (HttpClientErrorException | HttpServerErrorException e) {
+				processException(e, used);
+			}
+		}
+	}
+
+	/**
+	 * 获取json数组，逐个解析数组元素交给处理方法，不在内存中保留整个数组。
+	 * 
+	 * @param uri 编码后的uri。
+	 * @param elementType 数组元素类型。
+	 * @param field 包含数组的字段名称，响应本身是数组时为null。
+	 * @param consumer 元素的处理方法。
+	 * @return 返回元素数量。
+	 */
+	protected <T> long forEachEntity(URI uri, Class<T> elementType, String field, Consumer<? super T> consumer) {
+		assert logined : "login first";
+
+		ObjectMapper mapper = getObjectMapper();
+		JsonArrayExtractor<T> extractor = new JsonArrayExtractor<T>(mapper, mapper.constructType(elementType), field, consumer);
+		while (true) {
+			AuthHeaders auth = getAuthHeaders();
+			Token used = auth.token;
+
+			try {
+				Long count = restTemplate.execute(uri, HttpMethod.GET, request -> {
+					request.getHeaders().putAll(auth.headers);
+					request.getHeaders().setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+				}, extractor);
+				return count == null ? 0 : count;
+			} catch (ResourceAccessException e) {
+				throw new UnavailableException(e.getMessage());
+			} catch (UnknownHttpStatusCodeException e) {
+				throw new StatusException(e.getResponseBodyAsString());
+			} catch (HttpClientErrorException | HttpServerErrorException e) {
+				processException(e, used);
+			}
+		}
+	}
+
+	/**
+	 * 获取RestTemplate使用的ObjectMapper。
+	 * @return 返回ObjectMapper。
+	 */
+	protected ObjectMapper getObjectMapper() {
+		ObjectMapper mapper = objectMapper;
+		if (mapper == null) {
+			for (HttpMessageConverter<?> converter : restTemplate.getMessageConverters()) {
+				if (converter instanceof MappingJackson2HttpMessageConverter) {
+					mapper = ((MappingJackson2HttpMessageConverter) converter).getObjectMapper();
+					break;
+				}
+			}
+			if (mapper == null)
+				mapper = Jackson2ObjectMapperBuilder.json().build();
+			objectMapper = mapper;
+		}
+		return mapper;
+	}
+
 	protected <T> T postEntity(String postUri, Object request, Class<T> responseType) {
 		assert logined : "login first";
 		HttpMethod method = HttpMethod.POST;
@@ -377,29 +930,117 @@ public abstract class HttpSession {
 
 	private <T> T manageEntity(String uri, HttpMethod method, Object request, Class<T> responseType) {
 		ResponseEntity<T> rssResponse = null;
+		URI url = buildUri(uri, null);
 		while (true) {
+			AuthHeaders auth = getAuthHeaders();
+			Token used = auth.token;
 			try {
-				HttpEntity<?> requestEntity = getRequestWithAuth(request);
-				String url = getRestUri() + uri;
+				HttpEntity<?> requestEntity = new HttpEntity<>(request, auth.jsonHeaders);
 
 				rssResponse = restTemplate.exchange(url, method, requestEntity, responseType);
 				return rssResponse.getBody();
 			} catch (ResourceAccessException e) {
-				throw new StatusException(e.getMessage());
+				throw new UnavailableException(e.getMessage());
 			} catch (UnknownHttpStatusCodeException e) {
 				throw new StatusException(e.getResponseBodyAsString());
 			} catch (HttpClientErrorException | HttpServerErrorException e) {
-				processException(e);
+				processException(e, used);
 			}
 		}
 	}
 
-	private HttpEntity<?> getRequestWithAuth(Object request) {
-		HttpHeaders header = getHttpAuth();
-		header.setContentType(MediaType.APPLICATION_JSON_UTF8);
+	protected <T> CompletableFuture<T> getEntityAsync(String getUri, Map<String, String> queryParams, Class<T> responseType) {
+		return getEntityAsync(buildUri(getUri, queryParams), responseType);
+	}
 
-		HttpEntity<?> requestEntity = new HttpEntity<>(request, header);
-		return requestEntity;
+	protected <T> CompletableFuture<T> getEntityAsync(String getUri, Map<String, String> queryParams, ParameterizedTypeReference<T> responseType) {
+		return getEntityAsync(buildUri(getUri, queryParams), responseType);
+	}
+
+	protected <T> CompletableFuture<T> getEntityAsync(URI uri, Class<T> responseType) {
+		return exchangeAsync(() -> getAsyncRestTemplate().exchange(uri, HttpMethod.GET, 
+				new HttpEntity<HttpHeaders>(null, getAuthHeaders().headers), responseType));
+	}
+
+	protected <T> CompletableFuture<T> getEntityAsync(URI uri, ParameterizedTypeReference<T> responseType) {
+		return exchangeAsync(() -> getAsyncRestTemplate().exchange(uri, HttpMethod.GET, 
+				new HttpEntity<HttpHeaders>(null, getAuthHeaders().headers), responseType));
+	}
+
+	protected <T> CompletableFuture<T> postEntityAsync(String postUri, Object request, Class<T> responseType) {
+		return manageEntityAsync(postUri, HttpMethod.POST, request, responseType);
+	}
+
+	protected <T> CompletableFuture<T> patchEntityAsync(String patchUri, Object request, Class<T> responseType) {
+		return manageEntityAsync(patchUri, HttpMethod.PATCH, request, responseType);
+	}
+
+	protected <T> CompletableFuture<T> deleteEntityAsync(String deleteUri, Object request, Class<T> responseType) {
+		return manageEntityAsync(deleteUri, HttpMethod.DELETE, request, responseType);
+	}
+
+	private <T> CompletableFuture<T> manageEntityAsync(String uri, HttpMethod method, Object request, Class<T> responseType) {
+		URI url = buildUri(uri, null);
+		return exchangeAsync(() -> getAsyncRestTemplate().exchange(url, method, getRequestWithAuth(request), responseType));
+	}
+
+	@SuppressWarnings("deprecation")
+	private AsyncRestTemplate getAsyncRestTemplate() {
+		AsyncRestTemplate template = asyncRestTemplate == null ? null : asyncRestTemplate.getIfAvailable();
+		if (template == null)
+			throw new StatusException("async rest template is not available");
+		return template;
+	}
+
+	private <T> CompletableFuture<T> exchangeAsync(Supplier<ListenableFuture<ResponseEntity<T>>> exchange) {
+		assert logined : "login first";
+		CompletableFuture<T> result = new CompletableFuture<T>();
+		exchangeAsync(exchange, result);
+		return result;
+	}
+
+	private <T> void exchangeAsync(Supplier<ListenableFuture<ResponseEntity<T>>> exchange, CompletableFuture<T> result) {
+		Token used = tokenManager.getToken();
+		ListenableFuture<ResponseEntity<T>> future;
+		try {
+			future = exchange.get();
+		} catch (Throwable e) {
+			result.completeExceptionally(e);
+			return;
+		}
+		result.whenComplete((r, e) -> {
+			if (result.isCancelled())
+				future.cancel(true);
+		});
+		future.addCallback(response -> result.complete(response.getBody()), e -> {
+			if (e instanceof ResourceAccessException)
+				result.completeExceptionally(new UnavailableException(e.getMessage()));
+			else if (e instanceof UnknownHttpStatusCodeException)
+				result.completeExceptionally(new StatusException(((UnknownHttpStatusCodeException) e).getResponseBodyAsString()));
+			else if (e instanceof HttpClientErrorException || e instanceof HttpServerErrorException) {
+				HttpStatusCodeException exception = (HttpStatusCodeException) e;
+				if (isTokenExpired(exception))
+					refreshTokenAsync(used).whenComplete((v, t) -> {
+						if (t != null)
+							result.completeExceptionally(t);
+						else if (!result.isDone())
+							exchangeAsync(exchange, result);
+					});
+				else
+					result.completeExceptionally(new StatusException(exception.getResponseBodyAsString()));
+			} else
+				result.completeExceptionally(e);
+		});
+	}
+
+	protected static <T> CompletableFuture<T> failed(Throwable e) {
+		CompletableFuture<T> future = new CompletableFuture<T>();
+		future.completeExceptionally(e);
+		return future;
+	}
+
+	private HttpEntity<?> getRequestWithAuth(Object request) {
+		return new HttpEntity<>(request, getAuthHeaders().jsonHeaders);
 	}
 
 	private HttpEntity<?> getRequest(Object request) {
@@ -448,16 +1089,65 @@ public abstract class HttpSession {
 		return queryParams;
 	}
 
-	private UriComponentsBuilder getUrl(String getUri, Map<String, String> queryParams) {
-		UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(getRestUri() + getUri);
+	/**
+	 * 获取固定路径的uri，编码后的uri被缓存，只能用于不包含变量的路径。
+	 * 
+	 * @param path 相对于REST uri的路径。
+	 * @return 返回编码后的uri。
+	 */
+	protected URI getFixedUri(String path) {
+		URI uri = fixedUris.get(path);
+		if (uri == null)
+			uri = fixedUris.computeIfAbsent(path, p -> buildUri(p, null));
+		return uri;
+	}
+
+	/**
+	 * 生成编码后的uri。
+	 * 
+	 * @param path 相对于REST uri的路径。
+	 * @param queryParams 查询参数。
+	 * @return 返回编码后的uri。
+	 */
+	protected URI buildUri(String path, Map<String, String> queryParams) {
+		StringBuilder url = new StringBuilder(getEncodedRestUri()).append(UriUtils.encodePath(path, StandardCharsets.UTF_8));
 		if (queryParams != null) {
+			char separator = '?';
 			for (Map.Entry<String, String> queryParam : queryParams.entrySet()) {
-				String key = queryParam.getKey();
-				String value = queryParam.getValue();
-
-				builder.queryParam(key, value);
+				url.append(separator).append(encodedNames.computeIfAbsent(queryParam.getKey(), HttpSession::encodeQueryParam));
+				if (queryParam.getValue() != null)
+					url.append('=').append(encodeQueryParam(queryParam.getValue()));
+				separator = '&';
 			}
 		}
-		return builder;
+		return URI.create(url.toString());
+	}
+
+	private static String encodeQueryParam(String value) {
+		return UriUtils.encodeQueryParam(value, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * 根据token生成的认证头，token改变时重新生成。
+	 */
+	private static class AuthHeaders {
+		private final Token token;
+		private final String authorization;
+		private final HttpHeaders headers;
+		private final HttpHeaders jsonHeaders;
+
+		private AuthHeaders(Token token) {
+			this.token = token;
+			this.authorization = BEARER_TOKEN + token.getToken();
+
+			HttpHeaders headers = new HttpHeaders();
+			headers.set(AUTH, authorization);
+			this.headers = HttpHeaders.readOnlyHttpHeaders(headers);
+
+			HttpHeaders jsonHeaders = new HttpHeaders();
+			jsonHeaders.set(AUTH, authorization);
+			jsonHeaders.setContentType(MediaType.APPLICATION_JSON_UTF8);
+			this.jsonHeaders = HttpHeaders.readOnlyHttpHeaders(jsonHeaders);
+		}
 	}
 }
@@ -1,11 +1,15 @@
 package top.microiot.api;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 import org.springframework.context.annotation.Scope;
 
+import top.microiot.api.cache.MetadataCache;
+import top.microiot.api.cache.ValidatorCache;
 import top.microiot.api.client.HttpClientSession;
 import top.microiot.api.device.HttpDeviceSession;
 
@@ -15,6 +19,7 @@ import top.microiot.api.device.HttpDeviceSession;
  * @author 曹新宇
  */
 @Configuration
+@EnableConfigurationProperties(CacheProperties.class)
 public class HttpSessionConfig {
 	@Bean(initMethod = "start")
     @Primary
@@ -37,5 +42,17 @@ public class HttpSessionConfig {
 	    return new HttpSessionProperties();
     }
 
+	@Bean
+	@ConditionalOnProperty(prefix = "microiot.cache", name = "metadata-enabled")
+	public MetadataCache metadataCache(CacheProperties cacheProperties) {
+		return new MetadataCache(cacheProperties.getMetadataTtl() * 1000, cacheProperties.getMetadataMaxSize());
+	}
+
+	@Bean
+	@ConditionalOnProperty(prefix = "microiot.cache", name = "validator-enabled")
+	public ValidatorCache validatorCache(CacheProperties cacheProperties) {
+		return new ValidatorCache(cacheProperties.getValidatorTtl() * 1000, cacheProperties.getValidatorMaxSize());
+	}
+
 
 }
@@ -10,6 +10,24 @@ public class HttpSessionProperties {
 	private String password;
 	private String uri;
 	private String domain;
+	private long tokenRefreshAhead = 60;
+	private int pagePrefetch = 2;
+	private int pageParallelism = 4;
+	private int queryBatchSize = 500;
+	private int reportBatchSize = 100;
+	private long reportLinger = 200;
+	private int reportQueueCapacity = 10000;
+	private OverflowPolicy reportOverflowPolicy = OverflowPolicy.DROP_OLDEST;
+	private int reportMaxInFlight = 8;
+	private boolean spoolEnabled = false;
+	private String spoolDir = "spool";
+	private int spoolSegmentSize = 16 * 1024 * 1024;
+	private long spoolMaxSize = 1024L * 1024 * 1024;
+	private long spoolRetention = 86400;
+	private int spoolBatchSize = 100;
+	private long spoolRetryInterval = 5000;
+	private int spoolMaxAttempts = 5;
+	private long spoolSyncInterval = 1000;
 	
 	public String getUsername() {
 		return username;
@@ -35,4 +53,112 @@ public class HttpSessionProperties {
 	public void setDomain(String domain) {
 		this.domain = domain;
 	}
+	public long getTokenRefreshAhead() {
+		return tokenRefreshAhead;
+	}
+	public void setTokenRefreshAhead(long tokenRefreshAhead) {
+		this.tokenRefreshAhead = tokenRefreshAhead;
+	}
+	public int getPagePrefetch() {
+		return pagePrefetch;
+	}
+	public void setPagePrefetch(int pagePrefetch) {
+		this.pagePrefetch = pagePrefetch;
+	}
+	public int getPageParallelism() {
+		return pageParallelism;
+	}
+	public void setPageParallelism(int pageParallelism) {
+		this.pageParallelism = pageParallelism;
+	}
+	public int getQueryBatchSize() {
+		return queryBatchSize;
+	}
+	public void setQueryBatchSize(int queryBatchSize) {
+		this.queryBatchSize = queryBatchSize;
+	}
+	public int getReportBatchSize() {
+		return reportBatchSize;
+	}
+	public void setReportBatchSize(int reportBatchSize) {
+		this.reportBatchSize = reportBatchSize;
+	}
+	public long getReportLinger() {
+		return reportLinger;
+	}
+	public void setReportLinger(long reportLinger) {
+		this.reportLinger = reportLinger;
+	}
+	public int getReportQueueCapacity() {
+		return reportQueueCapacity;
+	}
+	public void setReportQueueCapacity(int reportQueueCapacity) {
+		this.reportQueueCapacity = reportQueueCapacity;
+	}
+	public OverflowPolicy getReportOverflowPolicy() {
+		return reportOverflowPolicy;
+	}
+	public void setReportOverflowPolicy(OverflowPolicy reportOverflowPolicy) {
+		this.reportOverflowPolicy = reportOverflowPolicy;
+	}
+	public int getReportMaxInFlight() {
+		return reportMaxInFlight;
+	}
+	public void setReportMaxInFlight(int reportMaxInFlight) {
+		this.reportMaxInFlight = reportMaxInFlight;
+	}
+	public boolean isSpoolEnabled() {
+		return spoolEnabled;
+	}
+	public void setSpoolEnabled(boolean spoolEnabled) {
+		this.spoolEnabled = spoolEnabled;
+	}
+	public String getSpoolDir() {
+		return spoolDir;
+	}
+	public void setSpoolDir(String spoolDir) {
+		this.spoolDir = spoolDir;
+	}
+	public int getSpoolSegmentSize() {
+		return spoolSegmentSize;
+	}
+	public void setSpoolSegmentSize(int spoolSegmentSize) {
+		this.spoolSegmentSize = spoolSegmentSize;
+	}
+	public long getSpoolMaxSize() {
+		return spoolMaxSize;
+	}
+	public void setSpoolMaxSize(long spoolMaxSize) {
+		this.spoolMaxSize = spoolMaxSize;
+	}
+	public long getSpoolRetention() {
+		return spoolRetention;
+	}
+	public void setSpoolRetention(long spoolRetention) {
+		this.spoolRetention = spoolRetention;
+	}
+	public int getSpoolBatchSize() {
+		return spoolBatchSize;
+	}
+	public void setSpoolBatchSize(int spoolBatchSize) {
+		this.spoolBatchSize = spoolBatchSize;
+	}
+	public long getSpoolRetryInterval() {
+		return spoolRetryInterval;
+	}
+	public void setSpoolRetryInterval(long spoolRetryInterval) {
+		this.spoolRetryInterval = spoolRetryInterval;
+	}
+	public int getSpoolMaxAttempts() {
+		return spoolMaxAttempts;
+	}
+	public void setSpoolMaxAttempts(int spoolMaxAttempts) {
+		this.spoolMaxAttempts = spoolMaxAttempts;
+	}
+	public long getSpoolSyncInterval() {
+		return spoolSyncInterval;
+	}
+	public void setSpoolSyncInterval(long spoolSyncInterval) {
+		this.spoolSyncInterval = spoolSyncInterval;
+	}
 }
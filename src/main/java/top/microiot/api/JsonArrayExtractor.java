@@ -0,0 +1,89 @@
+package top.microiot.api;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.ResponseExtractor;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import top.microiot.exception.StatusException;
+
+/**
+ * 逐个解析响应中json数组元素的提取器，每解析一个元素交给处理方法，不保留整个数组。
+ * 响应可以是json数组，也可以是在指定字段中包含数组的json对象，例如分页查询结果的content字段。
+ */
+public class JsonArrayExtractor<T> implements ResponseExtractor<Long> {
+	private final ObjectMapper mapper;
+	private final ObjectReader reader;
+	private final String field;
+	private final Consumer<? super T> consumer;
+
+	/**
+	 * json数组提取器构造函数。
+	 * @param mapper json解析使用的ObjectMapper。
+	 * @param elementType 数组元素类型。
+	 * @param field 包含数组的字段名称，响应本身是数组时为null。
+	 * @param consumer 元素的处理方法。
+	 */
+	public JsonArrayExtractor(ObjectMapper mapper, JavaType elementType, String field, Consumer<? super T> consumer) {
+		super();
+		this.mapper = mapper;
+		this.reader = mapper.readerFor(elementType);
+		this.field = field;
+		this.consumer = consumer;
+	}
+
+	@Override
+	public Long extractData(ClientHttpResponse response) throws IOException {
+		InputStream body = response.getBody();
+		if (body == null)
+			return 0L;
+
+		try (JsonParser parser = mapper.getFactory().createParser(body)) {
+			JsonToken token = parser.nextToken();
+			if (token == null || token == JsonToken.VALUE_NULL)
+				return 0L;
+			if (field == null)
+				return readArray(parser);
+
+			if (token != JsonToken.START_OBJECT)
+				throw new StatusException("json object expected: " + token);
+			long count = 0;
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String name = parser.getCurrentName();
+				JsonToken value = parser.nextToken();
+				if (field.equals(name) && value == JsonToken.START_ARRAY)
+					count += readElements(parser);
+				else
+					parser.skipChildren();
+			}
+			return count;
+		}
+	}
+
+	private long readArray(JsonParser parser) throws IOException {
+		if (parser.currentToken() != JsonToken.START_ARRAY)
+			throw new StatusException("json array expected: " + parser.currentToken());
+		return readElements(parser);
+	}
+
+	private long readElements(JsonParser parser) throws IOException {
+		long count = 0;
+		JsonToken token;
+		while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+			if (token == null)
+				throw new StatusException("unexpected end of json array");
+			T element = reader.readValue(parser);
+			consumer.accept(element);
+			count++;
+		}
+		return count;
+	}
+}
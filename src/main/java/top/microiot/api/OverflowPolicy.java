@@ -0,0 +1,24 @@
+package top.microiot.api;
+
+/**
+ * 批量队列已满时的处理策略，用于事件缓冲上报和告警批量交付。
+ */
+public enum OverflowPolicy {
+	/**
+	 * 丢弃队列中最早的元素
+	 */
+	DROP_OLDEST,
+	/**
+	 * 丢弃新放入的元素
+	 */
+	DROP_NEWEST,
+	/**
+	 * 拒绝新放入的元素，放入的线程得到异常
+	 */
+	REJECT,
+	/**
+	 * 阻塞放入的线程直到队列有空间，超过等待时间后丢弃新放入的元素。
+	 * 告警批量交付阻塞期间同一连接上的所有订阅都收不到消息
+	 */
+	BLOCK
+}
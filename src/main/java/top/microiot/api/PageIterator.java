@@ -0,0 +1,132 @@
+package top.microiot.api;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.springframework.data.domain.Page;
+
+import top.microiot.exception.StatusException;
+
+/**
+ * 分页查询迭代器，逐个返回各页的元素，在处理当前页时预先获取之后的页。
+ * 知道总页数之后按指定的并行度获取剩余的页，缓存的页数不超过预取数量和并行度中较大的一个。
+ */
+public class PageIterator<T> implements Iterator<T>, AutoCloseable {
+	private final IntFunction<CompletableFuture<Page<T>>> loader;
+	private final int prefetch;
+	private final int parallelism;
+	private final Deque<PageRequest<T>> pending = new ArrayDeque<PageRequest<T>>();
+
+	private Iterator<T> current = Collections.emptyIterator();
+	private int nextPage;
+	private int lastPage = -1;
+	private boolean finished = false;
+
+	/**
+	 * 分页查询迭代器构造函数。
+	 * @param firstPage 第一页的页码。
+	 * @param loader 按页码异步获取页的方法。
+	 * @param prefetch 不知道总页数时预先获取的页数。
+	 * @param parallelism 知道总页数之后同时获取的最大页数。
+	 */
+	public PageIterator(int firstPage, IntFunction<CompletableFuture<Page<T>>> loader, int prefetch, int parallelism) {
+		super();
+		this.nextPage = firstPage;
+		this.loader = loader;
+		this.prefetch = Math.max(prefetch, 0);
+		this.parallelism = Math.max(parallelism, 1);
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (!current.hasNext()) {
+			if (finished)
+				return false;
+			fill();
+			PageRequest<T> request = pending.poll();
+			Page<T> page = join(request.future);
+			if (lastPage < 0)
+				lastPage = request.number + Math.max(page.getTotalPages() - page.getNumber() - 1, 0);
+			if (!page.hasContent() || !page.hasNext() || request.number >= lastPage)
+				close();
+			current = page.iterator();
+		}
+		return true;
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		return current.next();
+	}
+
+	/**
+	 * 结束迭代，取消正在获取的页。
+	 */
+	@Override
+	public void close() {
+		finished = true;
+		current = Collections.emptyIterator();
+		for (PageRequest<T> request : pending)
+			request.future.cancel(true);
+		pending.clear();
+	}
+
+	/**
+	 * 获取按顺序返回各页元素的流，关闭流时结束迭代。
+	 * @return 返回元素的流。
+	 */
+	public Stream<T> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false).onClose(this::close);
+	}
+
+	private void fill() {
+		int limit = lastPage < 0 ? prefetch + 1 : Math.max(prefetch + 1, parallelism);
+		while (pending.size() < limit && (lastPage < 0 || nextPage <= lastPage)) {
+			CompletableFuture<Page<T>> future;
+			try {
+				future = loader.apply(nextPage);
+			} catch (RuntimeException e) {
+				future = new CompletableFuture<Page<T>>();
+				future.completeExceptionally(e);
+			}
+			pending.add(new PageRequest<T>(nextPage++, future));
+		}
+	}
+
+	private Page<T> join(CompletableFuture<Page<T>> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			close();
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new StatusException(e.getCause().getMessage());
+		} catch (CancellationException e) {
+			close();
+			throw new StatusException("page request cancelled");
+		}
+	}
+
+	private static class PageRequest<T> {
+		private final int number;
+		private final CompletableFuture<Page<T>> future;
+
+		private PageRequest(int number, CompletableFuture<Page<T>> future) {
+			this.number = number;
+			this.future = future;
+		}
+	}
+}
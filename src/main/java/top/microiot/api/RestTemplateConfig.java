@@ -7,8 +7,15 @@ import org.apache.http.client.HttpClient;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.conn.ConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
 import org.apache.http.message.BasicHeaderElementIterator;
 import org.apache.http.protocol.HTTP;
 import org.apache.http.protocol.HttpContext;
@@ -18,21 +25,29 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.context.annotation.Scope;
+import org.springframework.http.client.AsyncClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsAsyncClientHttpRequestFactory;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.client.AsyncRestTemplate;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.concurrent.TimeUnit;
 
+import javax.annotation.PreDestroy;
+
 @Configuration
 @EnableConfigurationProperties({HttpClientProperties.class})
 public class RestTemplateConfig {
     private Logger logger = LoggerFactory.getLogger(this.getClass());
 
     private HttpClientProperties clientProperties;
+    private Http2Transport http2Transport;
 
     @Autowired
     public void setClientProperties(HttpClientProperties clientProperties) {
@@ -42,9 +57,17 @@ public class RestTemplateConfig {
 	@Bean
     @Scope("prototype")
     public RestTemplate restTemplate() {
-        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory();
-        requestFactory.setHttpClient(httpClient());
-        return new RestTemplate(requestFactory);
+        ClientHttpRequestFactory requestFactory;
+        if (clientProperties.getTransport() == HttpClientProperties.Transport.HTTP2) {
+            requestFactory = http2Transport().requestFactory();
+        } else {
+            HttpComponentsClientHttpRequestFactory httpComponents = new HttpComponentsClientHttpRequestFactory();
+            httpComponents.setHttpClient(httpClient());
+            requestFactory = httpComponents;
+        }
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        restTemplate.getInterceptors().add(compressionInterceptor());
+        return restTemplate;
     }
 
     @Bean
@@ -55,12 +78,74 @@ public class RestTemplateConfig {
                 .setConnectTimeout(clientProperties.getConnectTimeout())
                 .setSocketTimeout(clientProperties.getSocketTimeout()).build();
 
-        return HttpClients.custom()
+        HttpClientBuilder builder = HttpClients.custom()
                 .setDefaultRequestConfig(requestConfig)
                 .setConnectionManager(poolingConnectionManager())
                 .setKeepAliveStrategy(connectionKeepAliveStrategy())
                 .setRetryHandler(new DefaultHttpRequestRetryHandler(3, true))
+                .disableContentCompression();
+        return builder.build();
+    }
+
+    @Bean
+    public CompressionInterceptor compressionInterceptor() {
+        return new CompressionInterceptor(clientProperties.isRequestCompression(), clientProperties.getRequestCompressionThreshold(),
+                clientProperties.isResponseCompression());
+    }
+
+    @Bean
+    @Lazy
+    @SuppressWarnings("deprecation")
+    public AsyncRestTemplate asyncRestTemplate() throws IOReactorException {
+        AsyncClientHttpRequestFactory requestFactory;
+        if (clientProperties.getTransport() == HttpClientProperties.Transport.HTTP2)
+            requestFactory = http2Transport().asyncRequestFactory();
+        else
+            requestFactory = new HttpComponentsAsyncClientHttpRequestFactory(httpAsyncClient());
+        AsyncRestTemplate asyncRestTemplate = new AsyncRestTemplate(requestFactory);
+        asyncRestTemplate.getInterceptors().add(compressionInterceptor());
+        return asyncRestTemplate;
+    }
+
+    @Bean(destroyMethod = "close")
+    @Lazy
+    public CloseableHttpAsyncClient httpAsyncClient() throws IOReactorException {
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(clientProperties.getRequestTimeout())
+                .setConnectTimeout(clientProperties.getConnectTimeout())
+                .setSocketTimeout(clientProperties.getSocketTimeout()).build();
+        IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+                .setConnectTimeout(clientProperties.getConnectTimeout())
+                .setSoTimeout(clientProperties.getSocketTimeout()).build();
+
+        PoolingNHttpClientConnectionManager connectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(ioReactorConfig));
+        connectionManager.setMaxTotal(clientProperties.getMaxTotalConnections());
+        connectionManager.setDefaultMaxPerRoute(clientProperties.getDefaultMaxPerRoute());
+
+        CloseableHttpAsyncClient client = HttpAsyncClients.custom()
+                .setDefaultRequestConfig(requestConfig)
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(connectionKeepAliveStrategy())
                 .build();
+        client.start();
+        return client;
+    }
+
+    /**
+     * http/2 传输，第一次使用时建立，没有使用http/2时不加载okhttp
+     */
+    private synchronized Http2Transport http2Transport() {
+        if (http2Transport == null)
+            http2Transport = new Http2Transport(clientProperties);
+        return http2Transport;
+    }
+
+    @PreDestroy
+    public synchronized void closeHttp2Transport() {
+        if (http2Transport != null) {
+            http2Transport.close();
+            http2Transport = null;
+        }
     }
 
     @Bean
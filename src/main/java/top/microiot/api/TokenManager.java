@@ -0,0 +1,212 @@
+package top.microiot.api;
+
+import java.util.Base64;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.TaskScheduler;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import top.microiot.domain.Token;
+import top.microiot.exception.StatusException;
+
+/**
+ * token管理类，原子地发布token，同步和异步的刷新共享同一个进行中的刷新，能够从token中得到过期时间时在过期之前定时刷新。
+ */
+public class TokenManager {
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	private final long refreshAheadMillis;
+	private final Object lock = new Object();
+	private volatile Token token;
+	private volatile long expiresAt;
+	private CompletableFuture<Token> refreshing;
+
+	private TaskScheduler taskScheduler;
+	private Runnable refresher;
+	private ScheduledFuture<?> scheduled;
+	private Consumer<Token> listener;
+
+	/**
+	 * token管理构造函数。
+	 * @param refreshAheadMillis 在token过期之前多长时间刷新，单位为毫秒。
+	 */
+	public TokenManager(long refreshAheadMillis) {
+		super();
+		this.refreshAheadMillis = refreshAheadMillis;
+	}
+
+	/**
+	 * 设置定时刷新。
+	 * @param taskScheduler 执行定时刷新的调度。
+	 * @param refresher 刷新token的操作。
+	 */
+	public void setScheduler(TaskScheduler taskScheduler, Runnable refresher) {
+		this.taskScheduler = taskScheduler;
+		this.refresher = refresher;
+	}
+
+	/**
+	 * 设置token改变时的通知，在发布新的token之后调用。
+	 * @param listener token改变的通知。
+	 */
+	public void setListener(Consumer<Token> listener) {
+		this.listener = listener;
+	}
+
+	public Token getToken() {
+		return token;
+	}
+
+	/**
+	 * 获取token的过期时间。
+	 * @return 返回过期时间，单位为毫秒，不能从token中得到时返回0。
+	 */
+	public long getExpiresAt() {
+		return expiresAt;
+	}
+
+	/**
+	 * 发布新的token，重新安排定时刷新。
+	 * @param token 新的token。
+	 */
+	public void setToken(Token token) {
+		synchronized(lock) {
+			this.expiresAt = token == null ? 0 : getExpiresAt(token);
+			this.token = token;
+			schedule();
+			if(listener != null)
+				listener.accept(token);
+		}
+	}
+
+	/**
+	 * 清除token，取消定时刷新。
+	 */
+	public void clear() {
+		setToken(null);
+	}
+
+	/**
+	 * token是否仍然有效，不能得到过期时间时视为无效。
+	 * @return 距离过期时间超过提前刷新的时间时返回true。
+	 */
+	public boolean isValid() {
+		long exp = expiresAt;
+		return token != null && exp > 0 && System.currentTimeMillis() < exp - refreshAheadMillis;
+	}
+
+	/**
+	 * 刷新token，在调用线程中发出刷新请求，已经有进行中的刷新时等待它完成，失败请求使用的token已经被刷新时直接返回当前token。
+	 * @param stale 失败请求使用的token。
+	 * @param refresh 用当前token获取新token的操作。
+	 * @return 返回当前token。
+	 */
+	public Token refresh(Token stale, UnaryOperator<Token> refresh) {
+		CompletableFuture<Token> future = refreshAsync(stale, current -> CompletableFuture.completedFuture(refresh.apply(current)));
+		try {
+			return future.join();
+		} catch(CompletionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof RuntimeException)
+				throw (RuntimeException)cause;
+			if(cause instanceof Error)
+				throw (Error)cause;
+			throw e;
+		}
+	}
+
+	/**
+	 * 异步刷新token，同时发生的同步和异步刷新只发出一次刷新请求，失败请求使用的token已经被刷新时直接返回当前token。
+	 * @param stale 失败请求使用的token。
+	 * @param refresh 用当前token异步获取新token的操作。
+	 * @return 返回当前token的future。
+	 */
+	public CompletableFuture<Token> refreshAsync(Token stale, Function<Token, CompletableFuture<Token>> refresh) {
+		Token current;
+		CompletableFuture<Token> future;
+		synchronized(lock) {
+			current = token;
+			if(current == null)
+				return failed(new StatusException("login first"));
+			if(current != stale)
+				return CompletableFuture.completedFuture(current);
+			if(refreshing != null)
+				return refreshing;
+			future = new CompletableFuture<Token>();
+			refreshing = future;
+		}
+
+		CompletableFuture<Token> request;
+		try {
+			request = refresh.apply(current);
+		} catch(Throwable e) {
+			request = failed(e);
+		}
+		request.whenComplete((refreshed, e) -> {
+			Token result;
+			synchronized(lock) {
+				refreshing = null;
+				if(e == null && token == current)
+					setToken(refreshed);
+				result = token;
+			}
+			if(result == null)
+				future.completeExceptionally(new StatusException("login first"));
+			else if(e == null || result != current)
+				future.complete(result);
+			else
+				future.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+		});
+		return future;
+	}
+
+	private static <T> CompletableFuture<T> failed(Throwable e) {
+		CompletableFuture<T> future = new CompletableFuture<T>();
+		future.completeExceptionally(e);
+		return future;
+	}
+
+	private void schedule() {
+		if(scheduled != null) {
+			scheduled.cancel(false);
+			scheduled = null;
+		}
+		if(taskScheduler == null || refresher == null || token == null || expiresAt <= 0)
+			return;
+
+		long now = System.currentTimeMillis();
+		long delay = Math.max(expiresAt - refreshAheadMillis - now, (expiresAt - now) / 2);
+		scheduled = taskScheduler.schedule(() -> {
+			try {
+				refresher.run();
+			} catch(Throwable e) {
+				logger.warn("scheduled token refresh error: " + e.getMessage());
+			}
+		}, new Date(now + Math.max(delay, 0)));
+	}
+
+	private static long getExpiresAt(Token token) {
+		try {
+			String[] parts = token.getToken().split("\\.");
+			if(parts.length < 2)
+				return 0;
+			JsonNode claims = MAPPER.readTree(Base64.getUrlDecoder().decode(parts[1]));
+			JsonNode exp = claims.get("exp");
+			return exp != null && exp.canConvertToLong() ? exp.asLong() * 1000 : 0;
+		} catch(Exception e) {
+			return 0;
+		}
+	}
+}
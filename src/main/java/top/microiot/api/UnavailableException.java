@@ -0,0 +1,14 @@
+package top.microiot.api;
+
+import top.microiot.exception.StatusException;
+
+/**
+ * 物联网平台不可访问异常，请求没有得到服务器的响应，例如连接失败或者超时。
+ */
+public class UnavailableException extends StatusException {
+	private static final long serialVersionUID = 3180642512846305631L;
+
+	public UnavailableException(String msg) {
+		super(msg);
+	}
+}
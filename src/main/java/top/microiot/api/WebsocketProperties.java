@@ -9,6 +9,20 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
  */
 @ConfigurationProperties(prefix = "microiot.websocket")
 public class WebsocketProperties {
+	/**
+	 * 超过同时请求数量限制时的策略
+	 */
+	public enum LimitPolicy {
+		/**
+		 * 排队等待
+		 */
+		QUEUE,
+		/**
+		 * 直接拒绝
+		 */
+		REJECT
+	}
+	
     /**
      * 请求响应的超时时间，单位为秒
      */
@@ -21,6 +35,111 @@ public class WebsocketProperties {
      * 文本消息的最大缓存
      */
     private int messageBufferSize = 20 * 1024 * 1024;
+    /**
+     * 是否使用共享的结果订阅，开启后每个设备的每种操作只保持一个长期的结果订阅，按请求标识符匹配响应
+     */
+    private boolean sharedResultSubscription = false;
+    /**
+     * 共享的结果订阅没有等待中的请求时保留的时间，超过后取消订阅，单位为秒，0表示不取消
+     */
+    private long resultIdleTimeout = 300;
+    /**
+     * 批量请求同时发出的最大请求数量
+     */
+    private int batchParallelism = 16;
+    /**
+     * 每个会话同时等待响应的最大请求数量，0表示不限制
+     */
+    private int maxInFlight = 0;
+    /**
+     * 每个设备同时等待响应的最大请求数量，0表示不限制
+     */
+    private int maxInFlightPerDevice = 0;
+    /**
+     * 超过同时请求数量限制时排队等待的最大请求数量，0表示不限制
+     */
+    private int maxQueueSize = 1000;
+    /**
+     * 超过同时请求数量限制时的策略
+     */
+    private LimitPolicy limitPolicy = LimitPolicy.QUEUE;
+    /**
+     * 检查请求超时的间隔时间，单位为毫秒
+     */
+    private long expiryTick = 100;
+    /**
+     * 是否合并同一设备同一属性同时发出的获取请求
+     */
+    private boolean coalesceReads = false;
+    /**
+     * 合并获取请求时成功的响应可以被之后的请求使用的时间窗口，单位为毫秒，0表示只合并同时发出的请求
+     */
+    private long coalesceWindow = 0;
+    /**
+     * 设备端是否通过websocket连接用STOMP SEND帧上报事件和告警，需要平台的消息代理支持
+     */
+    private boolean stompReport = false;
+    /**
+     * websocket上报事件的目的地址，子设备的事件发送到该地址加上/subdevice
+     */
+    private String stompEventDestination = "/app/event";
+    /**
+     * websocket上报告警的目的地址，子设备的告警发送到该地址加上/subdevice
+     */
+    private String stompAlarmDestination = "/app/alarm";
+    /**
+     * 网关的子设备是否使用网关模式处理请求，开启后每种操作只用通配符订阅一次，按设备标识符分发请求
+     */
+    private boolean gatewayDispatch = false;
+    /**
+     * 设备端处理请求的线程数，0表示在接收消息的线程中处理
+     */
+    private int requestThreads = 0;
+    /**
+     * 设备端请求处理线程都忙时排队等待的最大请求数量，超过时直接返回失败响应
+     */
+    private int requestQueueCapacity = 1000;
+    /**
+     * 是否对所有告警处理批量交付告警，也可以对单个告警处理开启
+     */
+    private boolean alarmBatch = false;
+    /**
+     * 一次交付的最大告警数量
+     */
+    private int alarmBatchSize = 100;
+    /**
+     * 第一个告警放入队列后等待交付的最长时间，单位为毫秒
+     */
+    private long alarmLinger = 200;
+    /**
+     * 告警批量交付队列的容量
+     */
+    private int alarmQueueCapacity = 10000;
+    /**
+     * 告警批量交付队列已满时的策略，REJECT与DROP_NEWEST相同，BLOCK最多等待alarm-block-timeout
+     */
+    private OverflowPolicy alarmOverflowPolicy = OverflowPolicy.DROP_OLDEST;
+    /**
+     * BLOCK策略时等待队列空间的最长时间，单位为毫秒
+     */
+    private long alarmBlockTimeout = 1000;
+    /**
+     * 持久订阅的prefetch-count，代理最多投递的未确认消息数量，0表示使用代理的默认值
+     */
+    private int durablePrefetchCount = 0;
+    /**
+     * 持久订阅是否使用client-individual确认模式，消息处理成功后才确认，处理失败或者因告警队列已满被丢弃时发送NACK，
+     * 由代理重新投递一次，再次失败时NACK不再重新入队，由代理转入死信队列或者丢弃，prefetch-count应小于告警队列的容量
+     */
+    private boolean durableClientAck = false;
+    /**
+     * 一次发送的最大确认数量，应小于prefetch-count
+     */
+    private int ackBatchSize = 50;
+    /**
+     * 定时发送确认的间隔时间，单位为毫秒
+     */
+    private long ackInterval = 500;
     
 	public long getTimeout() {
 		return timeout;
@@ -40,4 +159,160 @@ public class WebsocketProperties {
 	public void setMessageBufferSize(int messageBufferSize) {
 		this.messageBufferSize = messageBufferSize;
 	}
+	public boolean isSharedResultSubscription() {
+		return sharedResultSubscription;
+	}
+	public void setSharedResultSubscription(boolean sharedResultSubscription) {
+		this.sharedResultSubscription = sharedResultSubscription;
+	}
+	public long getResultIdleTimeout() {
+		return resultIdleTimeout;
+	}
+	public void setResultIdleTimeout(long resultIdleTimeout) {
+		this.resultIdleTimeout = resultIdleTimeout;
+	}
+	public int getBatchParallelism() {
+		return batchParallelism;
+	}
+	public void setBatchParallelism(int batchParallelism) {
+		this.batchParallelism = batchParallelism;
+	}
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+	public void setMaxInFlight(int maxInFlight) {
+		this.maxInFlight = maxInFlight;
+	}
+	public int getMaxInFlightPerDevice() {
+		return maxInFlightPerDevice;
+	}
+	public void setMaxInFlightPerDevice(int maxInFlightPerDevice) {
+		this.maxInFlightPerDevice = maxInFlightPerDevice;
+	}
+	public int getMaxQueueSize() {
+		return maxQueueSize;
+	}
+	public void setMaxQueueSize(int maxQueueSize) {
+		this.maxQueueSize = maxQueueSize;
+	}
+	public LimitPolicy getLimitPolicy() {
+		return limitPolicy;
+	}
+	public void setLimitPolicy(LimitPolicy limitPolicy) {
+		this.limitPolicy = limitPolicy;
+	}
+	public long getExpiryTick() {
+		return expiryTick;
+	}
+	public void setExpiryTick(long expiryTick) {
+		this.expiryTick = expiryTick;
+	}
+	public boolean isCoalesceReads() {
+		return coalesceReads;
+	}
+	public void setCoalesceReads(boolean coalesceReads) {
+		this.coalesceReads = coalesceReads;
+	}
+	public long getCoalesceWindow() {
+		return coalesceWindow;
+	}
+	public void setCoalesceWindow(long coalesceWindow) {
+		this.coalesceWindow = coalesceWindow;
+	}
+	public boolean isStompReport() {
+		return stompReport;
+	}
+	public void setStompReport(boolean stompReport) {
+		this.stompReport = stompReport;
+	}
+	public String getStompEventDestination() {
+		return stompEventDestination;
+	}
+	public void setStompEventDestination(String stompEventDestination) {
+		this.stompEventDestination = stompEventDestination;
+	}
+	public String getStompAlarmDestination() {
+		return stompAlarmDestination;
+	}
+	public void setStompAlarmDestination(String stompAlarmDestination) {
+		this.stompAlarmDestination = stompAlarmDestination;
+	}
+	public boolean isGatewayDispatch() {
+		return gatewayDispatch;
+	}
+	public void setGatewayDispatch(boolean gatewayDispatch) {
+		this.gatewayDispatch = gatewayDispatch;
+	}
+	public int getRequestThreads() {
+		return requestThreads;
+	}
+	public void setRequestThreads(int requestThreads) {
+		this.requestThreads = requestThreads;
+	}
+	public int getRequestQueueCapacity() {
+		return requestQueueCapacity;
+	}
+	public void setRequestQueueCapacity(int requestQueueCapacity) {
+		this.requestQueueCapacity = requestQueueCapacity;
+	}
+	public boolean isAlarmBatch() {
+		return alarmBatch;
+	}
+	public void setAlarmBatch(boolean alarmBatch) {
+		this.alarmBatch = alarmBatch;
+	}
+	public int getAlarmBatchSize() {
+		return alarmBatchSize;
+	}
+	public void setAlarmBatchSize(int alarmBatchSize) {
+		this.alarmBatchSize = alarmBatchSize;
+	}
+	public long getAlarmLinger() {
+		return alarmLinger;
+	}
+	public void setAlarmLinger(long alarmLinger) {
+		this.alarmLinger = alarmLinger;
+	}
+	public int getAlarmQueueCapacity() {
+		return alarmQueueCapacity;
+	}
+	public void setAlarmQueueCapacity(int alarmQueueCapacity) {
+		this.alarmQueueCapacity = alarmQueueCapacity;
+	}
+	public OverflowPolicy getAlarmOverflowPolicy() {
+		return alarmOverflowPolicy;
+	}
+	public void setAlarmOverflowPolicy(OverflowPolicy alarmOverflowPolicy) {
+		this.alarmOverflowPolicy = alarmOverflowPolicy;
+	}
+	public long getAlarmBlockTimeout() {
+		return alarmBlockTimeout;
+	}
+	public void setAlarmBlockTimeout(long alarmBlockTimeout) {
+		this.alarmBlockTimeout = alarmBlockTimeout;
+	}
+	public int getDurablePrefetchCount() {
+		return durablePrefetchCount;
+	}
+	public void setDurablePrefetchCount(int durablePrefetchCount) {
+		this.durablePrefetchCount = durablePrefetchCount;
+	}
+	public boolean isDurableClientAck() {
+		return durableClientAck;
+	}
+	public void setDurableClientAck(boolean durableClientAck) {
+		this.durableClientAck = durableClientAck;
+	}
+	public int getAckBatchSize() {
+		return ackBatchSize;
+	}
+	public void setAckBatchSize(int ackBatchSize) {
+		this.ackBatchSize = ackBatchSize;
+	}
+	public long getAckInterval() {
+		return ackInterval;
+	}
+	public void setAckInterval(long ackInterval) {
+		this.ackInterval = ackInterval;
+	}
 }
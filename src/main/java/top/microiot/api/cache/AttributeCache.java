@@ -0,0 +1,167 @@
+package top.microiot.api.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import top.microiot.domain.Response;
+import top.microiot.domain.attribute.DataValue;
+
+/**
+ * 设备属性值缓存，缓存获取请求成功的响应，生存时间可以按设备类型和属性分别设置。
+ * 设置属性后缓存失效，失效之前发出、之后返回的获取响应不会放入缓存。
+ */
+public class AttributeCache {
+	private static final int STRIPES = 64;
+
+	private final long defaultTtlMillis;
+	private final Map<String, Long> ttlMillis;
+	private final boolean ttlByDeviceType;
+	private final ExpiringCache<Key, Response> values;
+	private final AtomicLongArray versions = new AtomicLongArray(STRIPES);
+
+	/**
+	 * 设备属性值缓存构造函数。
+	 * @param defaultTtlMillis 没有单独设置的属性的生存时间，单位为毫秒，0表示不缓存。
+	 * @param ttlMillis 单独设置的生存时间，键为“设备类型名称.属性名称”或者“属性名称”，单位为毫秒。
+	 * @param maxSize 最大缓存数量。
+	 */
+	public AttributeCache(long defaultTtlMillis, Map<String, Long> ttlMillis, int maxSize) {
+		super();
+		this.defaultTtlMillis = defaultTtlMillis;
+		this.ttlMillis = new HashMap<String, Long>(ttlMillis);
+		this.ttlByDeviceType = this.ttlMillis.keySet().stream().anyMatch(key -> key.indexOf('.') >= 0);
+		long maxTtl = this.ttlMillis.values().stream().mapToLong(Long::longValue).max().orElse(0);
+		this.values = new ExpiringCache<Key, Response>(Math.max(defaultTtlMillis, maxTtl), maxSize);
+	}
+
+	/**
+	 * 是否有按设备类型设置的生存时间，没有时获取生存时间不需要设备类型名称。
+	 * @return 有“设备类型名称.属性名称”的设置时返回true。
+	 */
+	public boolean isTtlByDeviceType() {
+		return ttlByDeviceType;
+	}
+
+	/**
+	 * 获取属性的生存时间，先查找设备类型和属性的设置，再查找属性的设置。
+	 * @param deviceTypeName 设备类型名称，为null时只查找属性的设置。
+	 * @param attribute 属性名称。
+	 * @return 返回生存时间，单位为毫秒。
+	 */
+	public long getTtl(String deviceTypeName, String attribute) {
+		Long ttl = ttlByDeviceType && deviceTypeName != null ? ttlMillis.get(deviceTypeName + "." + attribute) : null;
+		if(ttl == null)
+			ttl = ttlMillis.get(attribute);
+		return ttl == null ? defaultTtlMillis : ttl;
+	}
+
+	/**
+	 * 获取缓存的响应。
+	 * @param deviceId 设备标识符。
+	 * @param attribute 属性名称。
+	 * @return 返回缓存的响应，不存在或过期返回null。
+	 */
+	public Response get(String deviceId, String attribute) {
+		return values.get(new Key(deviceId, attribute));
+	}
+
+	/**
+	 * 获取属性当前的版本，发出获取请求之前调用，放入缓存时用于判断期间属性是否被设置过。
+	 * @param deviceId 设备标识符。
+	 * @param attribute 属性名称。
+	 * @return 返回版本。
+	 */
+	public long getVersion(String deviceId, String attribute) {
+		return versions.get(stripe(deviceId, attribute));
+	}
+
+	/**
+	 * 放入获取请求的响应，只缓存成功的响应，版本改变时不缓存。
+	 * @param deviceId 设备标识符。
+	 * @param attribute 属性名称。
+	 * @param response 获取请求的响应。
+	 * @param ttlMillis 生存时间，单位为毫秒。
+	 * @param version 发出获取请求之前的版本。
+	 */
+	public void put(String deviceId, String attribute, Response response, long ttlMillis, long version) {
+		if(response == null || !response.isSuccess())
+			return;
+		Key key = new Key(deviceId, attribute);
+		values.put(key, response, ttlMillis);
+		if(versions.get(stripe(deviceId, attribute)) != version)
+			values.invalidate(key);
+	}
+
+	/**
+	 * 用设备上报的属性值更新缓存。
+	 * @param deviceId 设备标识符。
+	 * @param attribute 属性名称。
+	 * @param value 属性值。
+	 * @param ttlMillis 生存时间，单位为毫秒。
+	 */
+	public void update(String deviceId, String attribute, DataValue value, long ttlMillis) {
+		values.put(new Key(deviceId, attribute), new Response(true, null, value), ttlMillis);
+	}
+
+	/**
+	 * 使属性的缓存失效。
+	 * @param deviceId 设备标识符。
+	 * @param attribute 属性名称。
+	 */
+	public void invalidate(String deviceId, String attribute) {
+		versions.incrementAndGet(stripe(deviceId, attribute));
+		values.invalidate(new Key(deviceId, attribute));
+	}
+
+	/**
+	 * 使所有属性的缓存失效。
+	 */
+	public void invalidateAll() {
+		for(int i = 0; i < STRIPES; i++)
+			versions.incrementAndGet(i);
+		values.invalidateAll();
+	}
+
+	public int size() {
+		return values.size();
+	}
+
+	public long getHitCount() {
+		return values.getHitCount();
+	}
+
+	public long getMissCount() {
+		return values.getMissCount();
+	}
+
+	private static int stripe(String deviceId, String attribute) {
+		return (Objects.hash(deviceId, attribute) & 0x7fffffff) % STRIPES;
+	}
+
+	private static class Key {
+		private final String deviceId;
+		private final String attribute;
+
+		public Key(String deviceId, String attribute) {
+			this.deviceId = deviceId;
+			this.attribute = attribute;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(deviceId, attribute);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return Objects.equals(deviceId, other.deviceId) && Objects.equals(attribute, other.attribute);
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package top.microiot.api.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 带过期时间和容量上限的缓存，超过容量时淘汰最久未访问的条目。
+ *
+ * @param <K> 键的类型。
+ * @param <V> 值的类型。
+ */
+public class ExpiringCache<K, V> {
+	private final long ttlMillis;
+	private final int maxSize;
+	private final LinkedHashMap<K, Entry<V>> entries;
+	
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	/**
+	 * 缓存构造函数。
+	 * @param ttlMillis 条目的生存时间，单位为毫秒。
+	 * @param maxSize 最大条目数量。
+	 */
+	public ExpiringCache(long ttlMillis, int maxSize) {
+		super();
+		this.ttlMillis = ttlMillis;
+		this.maxSize = maxSize;
+		this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+	}
+
+	/**
+	 * 获取缓存的值，过期的值视为不存在。
+	 * @param key 键。
+	 * @return 返回缓存的值，不存在返回null。
+	 */
+	public V get(K key) {
+		long now = System.currentTimeMillis();
+		synchronized (entries) {
+			Entry<V> entry = entries.get(key);
+			if (entry != null) {
+				if (entry.expireAt > now) {
+					hitCount.incrementAndGet();
+					return entry.value;
+				}
+				entries.remove(key);
+				evictionCount.incrementAndGet();
+			}
+		}
+		missCount.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * 获取缓存的值，不存在时调用loader加载并放入缓存。
+	 * @param key 键。
+	 * @param loader 加载函数。
+	 * @return 返回缓存的值或加载的值。
+	 */
+	public V get(K key, Function<? super K, ? extends V> loader) {
+		V value = get(key);
+		if (value == null) {
+			value = loader.apply(key);
+			put(key, value);
+		}
+		return value;
+	}
+
+	/**
+	 * 放入缓存，值为null时不缓存。
+	 * @param key 键。
+	 * @param value 值。
+	 */
+	public void put(K key, V value) {
+		put(key, value, ttlMillis);
+	}
+
+	/**
+	 * 按指定的生存时间放入缓存，值为null或生存时间不大于0时不缓存。
+	 * @param key 键。
+	 * @param value 值。
+	 * @param ttlMillis 条目的生存时间，单位为毫秒。
+	 */
+	public void put(K key, V value, long ttlMillis) {
+		if (key == null || value == null || ttlMillis <= 0 || maxSize <= 0)
+			return;
+		long expireAt = System.currentTimeMillis() + ttlMillis;
+		synchronized (entries) {
+			entries.put(key, new Entry<V>(value, expireAt));
+			if (entries.size() > maxSize) {
+				Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+				while (entries.size() > maxSize && it.hasNext()) {
+					it.next();
+					it.remove();
+					evictionCount.incrementAndGet();
+				}
+			}
+		}
+	}
+
+	/**
+	 * 使指定条目失效。
+	 * @param key 键。
+	 */
+	public void invalidate(K key) {
+		if (key == null)
+			return;
+		synchronized (entries) {
+			entries.remove(key);
+		}
+	}
+
+	/**
+	 * 使所有条目失效。
+	 */
+	public void invalidateAll() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	private static class Entry<V> {
+		private final V value;
+		private final long expireAt;
+
+		public Entry(V value, long expireAt) {
+			this.value = value;
+			this.expireAt = expireAt;
+		}
+	}
+}
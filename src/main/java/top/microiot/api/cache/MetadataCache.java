@@ -0,0 +1,108 @@
+package top.microiot.api.cache;
+
+import java.util.function.Function;
+
+import top.microiot.domain.Device;
+import top.microiot.domain.DeviceType;
+
+/**
+ * 设备和设备类型元数据缓存。
+ * 应用中只有一个缓存，每个http会话通过forSession使用按平台地址和用户区分的视图，不同用户或平台的会话看不到彼此的条目。
+ * 返回的对象在同一用户的会话间共享，调用者不应修改。
+ */
+public class MetadataCache {
+	private final String scope;
+	private final ExpiringCache<String, Device> devices;
+	private final ExpiringCache<String, DeviceType> deviceTypes;
+	private final ExpiringCache<String, DeviceType> deviceTypeNames;
+
+	/**
+	 * 元数据缓存构造函数。
+	 * @param ttlMillis 缓存条目的生存时间，单位为毫秒。
+	 * @param maxSize 每类元数据的最大缓存数量。
+	 */
+	public MetadataCache(long ttlMillis, int maxSize) {
+		super();
+		this.scope = null;
+		this.devices = new ExpiringCache<String, Device>(ttlMillis, maxSize);
+		this.deviceTypes = new ExpiringCache<String, DeviceType>(ttlMillis, maxSize);
+		this.deviceTypeNames = new ExpiringCache<String, DeviceType>(ttlMillis, maxSize);
+	}
+
+	private MetadataCache(MetadataCache shared, String scope) {
+		super();
+		this.scope = scope;
+		this.devices = shared.devices;
+		this.deviceTypes = shared.deviceTypes;
+		this.deviceTypeNames = shared.deviceTypeNames;
+	}
+
+	/**
+	 * 获取会话使用的缓存视图，条目和容量与其它视图共享，但键中包含会话身份。
+	 * @param scope 会话身份，例如平台地址、域和用户名的组合。
+	 * @return 返回缓存视图。
+	 */
+	public MetadataCache forSession(String scope) {
+		return new MetadataCache(this, scope);
+	}
+
+	private String key(String id) {
+		return scope == null ? id : scope + '\u0000' + id;
+	}
+
+	public Device getDevice(String id, Function<String, Device> loader) {
+		return devices.get(key(id), key -> loader.apply(id));
+	}
+
+	public DeviceType getDeviceType(String id, Function<String, DeviceType> loader) {
+		return deviceTypes.get(key(id), key -> loader.apply(id));
+	}
+
+	public DeviceType getDeviceTypeByName(String name, Function<String, DeviceType> loader) {
+		return deviceTypeNames.get(key(name), key -> loader.apply(name));
+	}
+
+	/**
+	 * 使指定设备的缓存失效。
+	 * @param id 设备标识符。
+	 */
+	public void invalidateDevice(String id) {
+		devices.invalidate(key(id));
+	}
+
+	/**
+	 * 使所有设备类型的缓存失效，设备中包含设备类型，所以设备的缓存同时失效，所有会话的条目都失效。
+	 */
+	public void invalidateDeviceTypes() {
+		deviceTypes.invalidateAll();
+		deviceTypeNames.invalidateAll();
+		devices.invalidateAll();
+	}
+
+	/**
+	 * 使所有缓存失效。
+	 */
+	public void invalidateAll() {
+		invalidateDeviceTypes();
+	}
+
+	public long getHitCount() {
+		return devices.getHitCount() + deviceTypes.getHitCount() + deviceTypeNames.getHitCount();
+	}
+
+	public long getMissCount() {
+		return devices.getMissCount() + deviceTypes.getMissCount() + deviceTypeNames.getMissCount();
+	}
+
+	public long getEvictionCount() {
+		return devices.getEvictionCount() + deviceTypes.getEvictionCount() + deviceTypeNames.getEvictionCount();
+	}
+
+	public int getDeviceCount() {
+		return devices.size();
+	}
+
+	public int getDeviceTypeCount() {
+		return deviceTypes.size();
+	}
+}
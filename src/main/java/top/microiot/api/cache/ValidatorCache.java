@@ -0,0 +1,148 @@
+package top.microiot.api.cache;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 条件获取缓存，保存获取响应的ETag和Last-Modified以及解析后的实体，
+ * 再次获取时发送If-None-Match和If-Modified-Since，服务器返回304时使用缓存的实体。
+ * 应用中只有一个缓存，每个http会话通过forSession使用按平台地址和用户区分的视图，不同用户或平台的会话看不到彼此的条目。
+ */
+public class ValidatorCache {
+	private final String scope;
+	private final ExpiringCache<String, Validated> entries;
+	private final AtomicLong notModifiedCount;
+	private final AtomicLong modifiedCount;
+
+	/**
+	 * 条件获取缓存构造函数。
+	 * @param ttlMillis 条目的生存时间，单位为毫秒。
+	 * @param maxSize 最大缓存数量。
+	 */
+	public ValidatorCache(long ttlMillis, int maxSize) {
+		super();
+		this.scope = null;
+		this.entries = new ExpiringCache<String, Validated>(ttlMillis, maxSize);
+		this.notModifiedCount = new AtomicLong();
+		this.modifiedCount = new AtomicLong();
+	}
+
+	private ValidatorCache(ValidatorCache shared, String scope) {
+		super();
+		this.scope = scope;
+		this.entries = shared.entries;
+		this.notModifiedCount = shared.notModifiedCount;
+		this.modifiedCount = shared.modifiedCount;
+	}
+
+	/**
+	 * 获取会话使用的缓存视图，条目和容量与其它视图共享，但键中包含会话身份。
+	 * @param scope 会话身份，例如平台地址、域和用户名的组合。
+	 * @return 返回缓存视图。
+	 */
+	public ValidatorCache forSession(String scope) {
+		return new ValidatorCache(this, scope);
+	}
+
+	private String key(URI uri) {
+		return scope == null ? uri.toString() : scope + '\u0000' + uri;
+	}
+
+	/**
+	 * 获取uri缓存的验证信息和实体。
+	 * @param uri 获取的uri。
+	 * @return 返回缓存的条目，不存在或过期返回null。
+	 */
+	public Validated get(URI uri) {
+		return entries.get(key(uri));
+	}
+
+	/**
+	 * 放入获取响应的验证信息和实体，响应中没有ETag和Last-Modified时移除该uri的条目。
+	 * @param uri 获取的uri。
+	 * @param etag 响应的ETag，没有时为null。
+	 * @param lastModified 响应的Last-Modified，没有时为-1。
+	 * @param body 解析后的实体。
+	 */
+	public void put(URI uri, String etag, long lastModified, Object body) {
+		modifiedCount.incrementAndGet();
+		if (body == null || (etag == null && lastModified < 0))
+			entries.invalidate(key(uri));
+		else
+			entries.put(key(uri), new Validated(etag, lastModified, body));
+	}
+
+	/**
+	 * 服务器返回304时调用，刷新条目的生存时间。
+	 * @param uri 获取的uri。
+	 * @param validated 发送条件获取时使用的条目。
+	 * @return 返回缓存的实体。
+	 */
+	public Object notModified(URI uri, Validated validated) {
+		notModifiedCount.incrementAndGet();
+		entries.put(key(uri), validated);
+		return validated.body;
+	}
+
+	/**
+	 * 使uri的条目失效。
+	 * @param uri 获取的uri。
+	 */
+	public void invalidate(URI uri) {
+		entries.invalidate(key(uri));
+	}
+
+	/**
+	 * 使所有缓存失效，所有会话的条目都失效。
+	 */
+	public void invalidateAll() {
+		entries.invalidateAll();
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * 获取服务器返回304的次数。
+	 * @return 返回次数。
+	 */
+	public long getNotModifiedCount() {
+		return notModifiedCount.get();
+	}
+
+	/**
+	 * 获取服务器返回完整实体的次数。
+	 * @return 返回次数。
+	 */
+	public long getModifiedCount() {
+		return modifiedCount.get();
+	}
+
+	/**
+	 * 缓存的验证信息和实体。
+	 */
+	public static class Validated {
+		private final String etag;
+		private final long lastModified;
+		private final Object body;
+
+		private Validated(String etag, long lastModified, Object body) {
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.body = body;
+		}
+
+		public String getEtag() {
+			return etag;
+		}
+
+		public long getLastModified() {
+			return lastModified;
+		}
+
+		public Object getBody() {
+			return body;
+		}
+	}
+}
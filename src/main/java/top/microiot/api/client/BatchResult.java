@@ -0,0 +1,56 @@
+package top.microiot.api.client;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 批量请求结果类，包括成功返回的值和失败的错误，部分请求超时不影响其他请求的结果。
+ *
+ * @param <K> 请求的键，例如设备标识符或属性名称。
+ * @param <T> 返回值的类型。
+ */
+public class BatchResult<K, T> {
+	private final Map<K, T> values = Collections.synchronizedMap(new LinkedHashMap<K, T>());
+	private final Map<K, Throwable> errors = Collections.synchronizedMap(new LinkedHashMap<K, Throwable>());
+
+	public void addValue(K key, T value) {
+		values.put(key, value);
+	}
+
+	public void addError(K key, Throwable error) {
+		errors.put(key, error);
+	}
+
+	/**
+	 * 获取成功返回的值。
+	 * @return 返回键和值的映射。
+	 */
+	public Map<K, T> getValues() {
+		synchronized (values) {
+			return Collections.unmodifiableMap(new LinkedHashMap<K, T>(values));
+		}
+	}
+
+	/**
+	 * 获取失败的错误，包括超时。
+	 * @return 返回键和错误的映射。
+	 */
+	public Map<K, Throwable> getErrors() {
+		synchronized (errors) {
+			return Collections.unmodifiableMap(new LinkedHashMap<K, Throwable>(errors));
+		}
+	}
+
+	public T get(K key) {
+		return values.get(key);
+	}
+
+	public boolean isSuccess(K key) {
+		return values.containsKey(key);
+	}
+
+	public boolean hasErrors() {
+		return !errors.isEmpty();
+	}
+}
@@ -0,0 +1,169 @@
+package top.microiot.api.client;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.TaskScheduler;
+
+/**
+ * 请求超时时间轮，按到期时间将超时任务放入固定数量的槽中，由一个定时任务按刻度检查到期的槽，
+ * 没有等待中的超时任务时停止检查。
+ */
+public class ExpiryWheel {
+	private static final int WHEEL_SIZE = 512;
+
+	private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	private final TaskScheduler taskScheduler;
+	private final long tickMillis;
+	private final LongSupplier clock;
+	private final Queue<Expiry>[] buckets;
+	private final AtomicInteger pendingCount = new AtomicInteger();
+	private final AtomicLong expiredCount = new AtomicLong();
+
+	private long processedTick;
+	private ScheduledFuture<?> ticker;
+
+	/**
+	 * 请求超时时间轮构造函数。
+	 * @param taskScheduler 执行检查的定时任务调度。
+	 * @param tickMillis 检查的间隔时间，单位为毫秒，也是超时的精度。
+	 */
+	public ExpiryWheel(TaskScheduler taskScheduler, long tickMillis) {
+		this(taskScheduler, tickMillis, System::currentTimeMillis);
+	}
+
+	@SuppressWarnings("unchecked")
+	ExpiryWheel(TaskScheduler taskScheduler, long tickMillis, LongSupplier clock) {
+		super();
+		this.taskScheduler = taskScheduler;
+		this.tickMillis = tickMillis;
+		this.clock = clock;
+		this.buckets = new Queue[WHEEL_SIZE];
+		for(int i = 0; i < WHEEL_SIZE; i++)
+			buckets[i] = new ConcurrentLinkedQueue<Expiry>();
+		this.processedTick = clock.getAsLong() / tickMillis;
+	}
+
+	/**
+	 * 添加超时任务。
+	 * @param task 超时后执行的任务。
+	 * @param timeout 超时时间。
+	 * @param unit 超时时间单位。
+	 * @return 返回超时，请求完成后应取消。
+	 */
+	public Expiry schedule(Runnable task, long timeout, TimeUnit unit) {
+		long deadline = clock.getAsLong() + unit.toMillis(timeout);
+		pendingCount.incrementAndGet();
+		Expiry expiry;
+		synchronized(this) {
+			// 放入到期时间之后的第一个刻度，检查到该刻度时一定已经到期
+			long tick = Math.max((deadline + tickMillis - 1) / tickMillis, processedTick + 1);
+			expiry = new Expiry(task, tick);
+			buckets[(int)(tick % WHEEL_SIZE)].add(expiry);
+			if(ticker == null)
+				ticker = taskScheduler.scheduleAtFixedRate(this::tick, tickMillis);
+		}
+		return expiry;
+	}
+
+	void tick() {
+		long from, to;
+		synchronized(this) {
+			from = processedTick + 1;
+			to = clock.getAsLong() / tickMillis;
+			if(to < from)
+				return;
+			processedTick = to;
+		}
+
+		for(long tick = Math.max(from, to - WHEEL_SIZE + 1); tick <= to; tick++) {
+			Iterator<Expiry> it = buckets[(int)(tick % WHEEL_SIZE)].iterator();
+			while(it.hasNext()) {
+				Expiry expiry = it.next();
+				if(expiry.isCancelled()) {
+					it.remove();
+				}
+				else if(expiry.tick <= to) {
+					it.remove();
+					expiry.expire();
+				}
+			}
+		}
+
+		synchronized(this) {
+			if(pendingCount.get() == 0 && ticker != null) {
+				ticker.cancel(false);
+				ticker = null;
+			}
+		}
+	}
+
+	/**
+	 * 获取等待中的超时任务数量。
+	 * @return 返回超时任务数量。
+	 */
+	public int getPendingCount() {
+		return pendingCount.get();
+	}
+
+	/**
+	 * 获取已经超时的任务数量。
+	 * @return 返回超时任务数量。
+	 */
+	public long getExpiredCount() {
+		return expiredCount.get();
+	}
+
+	/**
+	 * 时间轮中的超时任务。
+	 */
+	public class Expiry {
+		private final Runnable task;
+		private final long tick;
+		private final AtomicBoolean finished = new AtomicBoolean(false);
+		private volatile boolean cancelled = false;
+
+		private Expiry(Runnable task, long tick) {
+			this.task = task;
+			this.tick = tick;
+		}
+
+		/**
+		 * 取消超时任务。
+		 * @return 超时任务还没有执行时返回true。
+		 */
+		public boolean cancel() {
+			if(!finished.compareAndSet(false, true))
+				return false;
+			cancelled = true;
+			pendingCount.decrementAndGet();
+			return true;
+		}
+
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		private void expire() {
+			if(!finished.compareAndSet(false, true))
+				return;
+			pendingCount.decrementAndGet();
+			expiredCount.incrementAndGet();
+			try {
+				task.run();
+			} catch(Throwable e) {
+				logger.error("expiry task error: " + e.getMessage(), e);
+			}
+		}
+	}
+}
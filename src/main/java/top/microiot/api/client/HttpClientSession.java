@@ -1,9 +1,13 @@
 package top.microiot.api.client;
 
-import java.text.SimpleDateFormat;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.data.domain.Page;
@@ -11,6 +15,7 @@ import org.springframework.stereotype.Component;
 
 import top.microiot.api.HttpSession;
 import top.microiot.api.HttpSessionProperties;
+import top.microiot.api.cache.MetadataCache;
 import top.microiot.api.dto.RestPage;
 import top.microiot.domain.Alarm;
 import top.microiot.domain.Device;
@@ -57,6 +62,9 @@ import top.microiot.exception.ValueException;
 
 /**
  * 客户端与物联网平台的http会话类
+ * <p>
+ * 用户、场地、设备、设备组的查询和修改，以及告警、事件的查询有异步方法，返回future，不阻塞调用线程。
+ * 领域、设备类型、场地类型的管理只有同步方法，这些操作一般只在部署时执行，不会大量并发。
  *
  * @author 曹新宇
  */
@@ -84,6 +92,16 @@ public class HttpClientSession extends HttpSession {
 		return getEntity("/devices/list", queryParams, new ParameterizedTypeReference<List<Device>>() {});
 	}
 	
+	/**
+	 * 查询设备列表，逐个解析设备交给处理方法，不在内存中保留整个列表。
+	 * @param queryParams 查询条件。
+	 * @param consumer 设备的处理方法。
+	 * @return 返回设备数量。
+	 */
+	public long queryDeviceList(Map<String, String> queryParams, Consumer<? super Device> consumer){
+		return forEachEntity(buildUri("/devices/list", queryParams), deviceType, null, consumer);
+	}
+	
 	public static Class<Domain> domainType = Domain.class;
 	public static String domainUrl = "/domains";
 	
@@ -101,7 +119,7 @@ public class HttpClientSession extends HttpSession {
 	 * @return 返回当前登录的领域信息。
 	 */
 	public Domain getCurrentDomain() {
-		return getEntity(domainUrl, null, domainType);
+		return getEntity(getFixedUri(domainUrl), domainType);
 	}
 	
 	/**
@@ -153,7 +171,7 @@ public class HttpClientSession extends HttpSession {
 	 * @return 返回可以访问的领域列表。
 	 */
 	public List<Domain> getMyDomains() {
-		return getEntity(domainUrl  +"/me", null, new ParameterizedTypeReference<List<Domain>>() {});
+		return getEntity(getFixedUri(domainUrl + "/me"), new ParameterizedTypeReference<List<Domain>>() {});
 	}
 	
 	/**
@@ -161,7 +179,7 @@ public class HttpClientSession extends HttpSession {
 	 * @param domain 领域的名称
 	 */
 	public void chooseDomains(String domain) {
-		this.token = patchEntity(domainUrl  +"/" + domain, null, Token.class);
+		setToken(patchEntity(domainUrl  +"/" + domain, null, Token.class));
 	}
 	
 	public static Class<User> userType = User.class;
@@ -177,12 +195,21 @@ public class HttpClientSession extends HttpSession {
 		return postEntity(userUrl, info, userType);
 	}
 	
+	/**
+	 * 异步添加平台用户。
+	 * @param info 被添加的用户信息。
+	 * @return 返回添加成功的用户的future。
+	 */
+	public CompletableFuture<User> addUserAsync(UserInfo info) {
+		return postEntityAsync(userUrl, info, userType);
+	}
+	
 	/**
 	 * 获取当前登录用户的信息。
 	 * @return 返回当前用户信息。
 	 */
 	public User getCurrentUser() {
-		return getEntity(userUrl + "/me", null, userType);
+		return getEntity(getFixedUri(userUrl + "/me"), userType);
 	}
 	
 	/**
@@ -208,19 +235,52 @@ public class HttpClientSession extends HttpSession {
 			throw new ValueException("userid can't be empty");
 	}
 	
+	/**
+	 * 异步删除指定用户。
+	 * @param userId 指定用户的标识符
+	 * @return 返回删除完成的future。
+	 */
+	public CompletableFuture<Void> deleteUserAsync(String userId) {
+		if(userId == null || userId.isEmpty())
+			return failed(new ValueException("userid can't be empty"));
+		return deleteEntityAsync(userUrl + "/" + userId, null, Void.class);
+	}
+	
 	/**
 	 * 获取系统用户列表页。
 	 * @param info 指定页查询信息
 	 * @return 返回指定页的用户。
 	 */
 	public Page<User> getUserPage(PageInfo info) {
+		return getEntity(userUrl , buildPageParams(info), new ParameterizedTypeReference<RestPage<User>>() {});
+	}
+	
+	/**
+	 * 异步获取用户列表页。
+	 * @param info 页信息。
+	 * @return 返回指定页的用户的future。
+	 */
+	public CompletableFuture<Page<User>> getUserPageAsync(PageInfo info) {
+		return getEntityAsync(userUrl , buildPageParams(info), new ParameterizedTypeReference<RestPage<User>>() {}).thenApply(page -> page);
+	}
+	
+	/**
+	 * 获取用户的流，从指定页开始逐页获取，处理当前页时预先获取之后的页。
+	 * @param info 页信息。
+	 * @return 返回用户的流，使用完毕应关闭。
+	 */
+	public Stream<User> streamUsers(PageInfo info) {
+		return streamPages(info == null ? new PageInfo() : info, this::getUserPageAsync);
+	}
+	
+	private Map<String, String> buildPageParams(PageInfo info) {
 		if(info == null)
 			info = new PageInfo();
 		Map<String, String> queryParams= new HashMap<String, String>();
 		queryParams.put("currentPage", Integer.toString(info.getCurrentPage()));
 		queryParams.put("numPerPage", Integer.toString(info.getNumPerPage()));
 		
-		return getEntity(userUrl , queryParams, new ParameterizedTypeReference<RestPage<User>>() {});
+		return queryParams;
 	}
 	
 	/**
@@ -232,6 +292,15 @@ public class HttpClientSession extends HttpSession {
 		return patchEntity(userUrl, info, userType);
 	}
 	
+	/**
+	 * 异步修改区域管理员用户负责的区域。
+	 * @param info 用户负责的区域的信息，包括用户标识符和区域标识符列表。
+	 * @return 返回用户信息的future。
+	 */
+	public CompletableFuture<User> updateUserAreaAsync(UserUpdateInfo info) {
+		return patchEntityAsync(userUrl, info, userType);
+	}
+	
 	public static Class<DeviceType> deviceTypeType = DeviceType.class;
 	public static String deviceTypeUrl = "/" +getIoTObjectName(deviceTypeType);
 	
@@ -251,26 +320,82 @@ public class HttpClientSession extends HttpSession {
 	 */
 	public DeviceType getDeviceType(String id) {
 		if(id != null && !id.isEmpty()) {
-			return getEntity(deviceTypeUrl + "/" + id, null, deviceTypeType);
+			MetadataCache cache = getMetadataCache();
+			if(cache == null)
+				return loadDeviceType(id);
+			return cache.getDeviceType(id, key -> loadDeviceType(key));
 		} else
 			throw new ValueException("id can't be empty");
 	}
 	
+	private DeviceType loadDeviceType(String id) {
+		return getValidatedEntity(deviceTypeUrl + "/" + id, deviceTypeType);
+	}
+	
+	/**
+	 * 异步获取指定设备类型的信息。
+	 * @param id 设备类型标识符。
+	 * @return 返回指定设备类型的future。
+	 */
+	public CompletableFuture<DeviceType> getDeviceTypeAsync(String id) {
+		if(id == null || id.isEmpty())
+			return failed(new ValueException("id can't be empty"));
+		MetadataCache cache = getMetadataCache();
+		if(cache == null)
+			return getEntityAsync(deviceTypeUrl + "/" + id, null, deviceTypeType);
+		
+		DeviceType type = cache.getDeviceType(id, key -> null);
+		if(type != null)
+			return CompletableFuture.completedFuture(type);
+		return getEntityAsync(deviceTypeUrl + "/" + id, null, deviceTypeType)
+				.thenApply(t -> cache.getDeviceType(id, key -> t));
+	}
+	
 	/**
 	 * 获取指定设备类型的信息。
 	 * @param name 设备类型名称。
 	 * @return 返回指定设备类型。
 	 */
 	public DeviceType getDevicetypeByName(String name) {
-		QueryInfo q = new QueryInfo();
-		String filter = String.format("{\"name\": \"%s\"}", name);
-		q.setFilter(filter);
-		DeviceType dt = this.getOneEntity(DeviceType.class, q);
+		MetadataCache cache = getMetadataCache();
+		if(cache == null)
+			return loadDevicetypeByName(name);
+		return cache.getDeviceTypeByName(name, key -> loadDevicetypeByName(key));
+	}
+	
+	private DeviceType loadDevicetypeByName(String name) {
+		DeviceType dt = this.getOneEntity(DeviceType.class, nameQuery(name));
 		if(dt == null)
 			throw new NotFoundException("device type");
 		return dt;
 	}
 	
+	/**
+	 * 异步获取指定设备类型的信息。
+	 * @param name 设备类型名称。
+	 * @return 返回指定设备类型的future。
+	 */
+	public CompletableFuture<DeviceType> getDevicetypeByNameAsync(String name) {
+		MetadataCache cache = getMetadataCache();
+		if(cache != null) {
+			DeviceType type = cache.getDeviceTypeByName(name, key -> null);
+			if(type != null)
+				return CompletableFuture.completedFuture(type);
+		}
+		return this.<DeviceType>getOneEntityAsync(DeviceType.class, nameQuery(name)).thenApply(dt -> {
+			if(dt == null)
+				throw new NotFoundException("device type");
+			return cache == null ? dt : cache.getDeviceTypeByName(name, key -> dt);
+		});
+	}
+	
+	private QueryInfo nameQuery(String name) {
+		QueryInfo q = new QueryInfo();
+		String filter = String.format("{\"name\": \"%s\"}", name);
+		q.setFilter(filter);
+		return q;
+	}
+	
 	/**
 	 * 获取设备类型列表页。
 	 * @param info 指定页查询信息
@@ -291,7 +416,7 @@ public class HttpClientSession extends HttpSession {
 	 * @return 返回设备类型列表。
 	 */
 	public List<DeviceType> getDeviceTypeList() {
-		return getEntity(deviceTypeUrl + "/list", null, new ParameterizedTypeReference<List<DeviceType>>() {});
+		return getEntity(getFixedUri(deviceTypeUrl + "/list"), new ParameterizedTypeReference<List<DeviceType>>() {});
 	}
 	
 	/**
@@ -300,7 +425,9 @@ public class HttpClientSession extends HttpSession {
 	 * @return 返回设备类型。
 	 */
 	public DeviceType renameDeviceType(DeviceTypeRenameInfo info) {
-		return patchEntity(deviceTypeUrl + "/name", info, deviceTypeType);
+		DeviceType dt = patchEntity(deviceTypeUrl + "/name", info, deviceTypeType);
+		invalidateDeviceTypes();
+		return dt;
 	}
 	
 	/**
@@ -308,9 +435,10 @@ public class HttpClientSession extends HttpSession {
 	 * @param id 设备类型标识符
 	 */
 	public void deleteDeviceType(String id) {
-		if(id != null && !id.isEmpty())
+		if(id != null && !id.isEmpty()) {
 			deleteEntity(deviceTypeUrl + "/" + id, null, null);
-		else
+			invalidateDeviceTypes();
+		} else
 			throw new ValueException("id can't be empty");
 	}
 	
@@ -321,7 +449,9 @@ public class HttpClientSession extends HttpSession {
 	 * @return 返回修改成功的设备类型。
 	 */
 	public DeviceType addDevicetypeAttribute(String id, IDeviceAttTypeInfo info) {
-		return postEntity(deviceTypeUrl + "/" + id + "/attribute", info, deviceTypeType);
+		DeviceType dt = postEntity(deviceTypeUrl + "/" + id + "/attribute", info, deviceTypeType);
+		invalidateDeviceTypes();
+		return dt;
 	}
 	
 	/**
@@ -330,9 +460,10 @@ public class HttpClientSession extends HttpSession {
 	 * @param attribute 要删除的动态属性名称
 	 */
 	public void deleteDeviceTypeAttribute(String id, String attribute) {
-		if(id != null && !id.isEmpty() && attribute != null && !attribute.isEmpty())
+		if(id != null && !id.isEmpty() && attribute != null && !attribute.isEmpty()) {
 			deleteEntity(deviceTypeUrl + "/" + id + "/attribute/" + attribute, null, deviceTypeType);
-		else
+			invalidateDeviceTypes();
+		} else
 			throw new ValueException("id and attribute can't be empty");
 	}
 	
@@ -343,7 +474,9 @@ public class HttpClientSession extends HttpSession {
 	 * @return 返回修改成功的设备类型。
 	 */
 	public DeviceType addDevicetypeActiontype(String id, ActionTypeInfo info) {
-		return postEntity(deviceTypeUrl + "/" + id + "/actiontype", info, deviceTypeType);
+		DeviceType dt = postEntity(deviceTypeUrl + "/" + id + "/actiontype", info, deviceTypeType);
+		invalidateDeviceTypes();
+		return dt;
 	}
 	
 	/**
@@ -352,9 +485,10 @@ public class HttpClientSession extends HttpSession {
 	 * @param actiontype 要删除的操作类型名称。
 	 */
 	public void deleteDeviceTypeActiontype(String id, String actiontype) {
-		if(id != null && !id.isEmpty() && actiontype != null && !actiontype.isEmpty())
+		if(id != null && !id.isEmpty() && actiontype != null && !actiontype.isEmpty()) {
 			deleteEntity(deviceTypeUrl + "/" + id + "/actiontype/" + actiontype, null, null);
-		else
+			invalidateDeviceTypes();
+		} else
 			throw new ValueException("id and actiontype can't be empty");
 	}
 	
@@ -365,7 +499,9 @@ public class HttpClientSession extends HttpSession {
 	 * @return 返回修改成功的设备类型。
 	 */
 	public DeviceType addDevicetypeAlarmtype(String id, AttTypeInfo info) {
-		return postEntity(deviceTypeUrl + "/" + id + "/alarmtype", info, deviceTypeType);
+		DeviceType dt = postEntity(deviceTypeUrl + "/" + id + "/alarmtype", info, deviceTypeType);
+		invalidateDeviceTypes();
+		return dt;
 	}
 	
 	/**
@@ -374,9 +510,10 @@ public class HttpClientSession extends HttpSession {
 	 * @param alarmtype 要删除的告警类型名称。
 	 */
 	public void deleteDeviceTypeAlarmtype(String id, String alarmtype) {
-		if(id != null && !id.isEmpty() && alarmtype != null && !alarmtype.isEmpty())
+		if(id != null && !id.isEmpty() && alarmtype != null && !alarmtype.isEmpty()) {
 			deleteEntity(deviceTypeUrl + "/" + id + "/alarmtype/" + alarmtype, null, null);
-		else
+			invalidateDeviceTypes();
+		} else
 			throw new ValueException("id and alarmtype can't be empty");
 	}
 	
@@ -410,14 +547,24 @@ public class HttpClientSession extends HttpSession {
 	 * @return 返回指定场地类型。
 	 */
 	public SiteType getSitetypeByName(String name) {
-		QueryInfo q = new QueryInfo();
-		String filter = String.format("{\"name\": \"%s\"}", name);
-		q.setFilter(filter);
-		SiteType st = this.getOneEntity(SiteType.class, q);
+		SiteType st = this.getOneEntity(SiteType.class, nameQuery(name));
 		if(st == null)
 			throw new NotFoundException("site type");
 		return st;
 	}
+	
+	/**
+	 * 异步获取指定场地类型的信息。
+	 * @param name 场地类型名称。
+	 * @return 返回指定场地类型的future。
+	 */
+	public CompletableFuture<SiteType> getSitetypeByNameAsync(String name) {
+		return this.<SiteType>getOneEntityAsync(SiteType.class, nameQuery(name)).thenApply(st -> {
+			if(st == null)
+				throw new NotFoundException("site type");
+			return st;
+		});
+	}
 
 	/**
 	 * 获取场地类型列表页。
@@ -439,7 +586,7 @@ public class HttpClientSession extends HttpSession {
 	 * @return 返回场地类型列表。
 	 */
 	public List<SiteType> getSiteTypeList() {
-		return getEntity(siteTypeUrl + "/list", null, new ParameterizedTypeReference<List<SiteType>>() {});
+		return getEntity(getFixedUri(siteTypeUrl + "/list"), new ParameterizedTypeReference<List<SiteType>>() {});
 	}
 	
 	/**
@@ -472,7 +619,20 @@ public class HttpClientSession extends HttpSession {
 	 */
 	public Site addSite(SiteInfo<Object> info) {
 		SiteType st = getSitetypeByName(info.getSiteType());
-		
+		return postEntity(siteUrl, buildSiteInfo(info, st), siteType);
+	}
+	
+	/**
+	 * 异步添加场地。
+	 * @param info 场地信息，包括场地名称，场地类型，所属场地，属性值等。
+	 * @return 返回添加成功的场地的future。
+	 */
+	public CompletableFuture<Site> addSiteAsync(SiteInfo<Object> info) {
+		return getSitetypeByNameAsync(info.getSiteType())
+				.thenCompose(st -> postEntityAsync(siteUrl, buildSiteInfo(info, st), siteType));
+	}
+	
+	private SiteInfo<AttValueInfo> buildSiteInfo(SiteInfo<Object> info, SiteType st) {
 		SiteInfo<AttValueInfo> siteValue = new SiteInfo<AttValueInfo>();
 		siteValue.setName(info.getName());
 		siteValue.setLocationId(info.getLocationId());
@@ -483,7 +643,7 @@ public class HttpClientSession extends HttpSession {
 		Map<String, AttValueInfo> attValues = getAttInfos(attInfos, attDefinition);
 		siteValue.setAttInfos(attValues);
 		
-		return postEntity(siteUrl, siteValue, siteType);
+		return siteValue;
 	}
 
 	private Map<String, AttValueInfo> getAttInfos(Map<String, Object> attInfos,
@@ -511,17 +671,37 @@ public class HttpClientSession extends HttpSession {
 	 */
 	public Site getSite(String id) {
 		if(id != null && !id.isEmpty()) {
-			return getEntity(siteUrl + "/" + id, null, siteType);
+			return getValidatedEntity(siteUrl + "/" + id, siteType);
 		} else
 			throw new ValueException("id can't be empty");
 	}
 	
+	/**
+	 * 异步获取指定场地的信息。
+	 * @param id 场地标识符。
+	 * @return 返回指定场地的future。
+	 */
+	public CompletableFuture<Site> getSiteAsync(String id) {
+		if(id == null || id.isEmpty())
+			return failed(new ValueException("id can't be empty"));
+		return getEntityAsync(siteUrl + "/" + id, null, siteType);
+	}
+	
 	/**
 	 * 获取当前登录用户（区域管理员）负责的所有场地的信息。
 	 * @return 返回场地列表。
 	 */
 	public List<Site> getMySites() {
-		return getEntity(siteUrl + "/me", null, new ParameterizedTypeReference<List<Site>>() {});
+		return getEntity(getFixedUri(siteUrl + "/me"), new ParameterizedTypeReference<List<Site>>() {});
+	}
+	
+	/**
+	 * 获取当前登录用户（区域管理员）负责的所有场地，逐个解析场地交给处理方法，不在内存中保留整个列表。
+	 * @param consumer 场地的处理方法。
+	 * @return 返回场地数量。
+	 */
+	public long forEachMySite(Consumer<? super Site> consumer) {
+		return forEachEntity(getFixedUri(siteUrl + "/me"), siteType, null, consumer);
 	}
 	
 	/**
@@ -535,6 +715,17 @@ public class HttpClientSession extends HttpSession {
 			throw new ValueException("id can't be empty");
 	}
 	
+	/**
+	 * 异步删除指定场地。
+	 * @param id 场地标识符
+	 * @return 返回删除完成的future。
+	 */
+	public CompletableFuture<Void> deleteSiteAsync(String id) {
+		if(id == null || id.isEmpty())
+			return failed(new ValueException("id can't be empty"));
+		return deleteEntityAsync(siteUrl + "/" + id, null, Void.class);
+	}
+	
 	/**
 	 * 修改场地名称。
 	 * @param info 场地修改信息，包括场地标识符和新的名称。
@@ -544,6 +735,15 @@ public class HttpClientSession extends HttpSession {
 		return patchEntity(siteUrl + "/name", info, siteType);
 	}
 	
+	/**
+	 * 异步修改场地名称。
+	 * @param info 场地修改信息，包括场地标识符和新的名称。
+	 * @return 返回场地的future。
+	 */
+	public CompletableFuture<Site> renameSiteAsync(SiteRenameInfo info) {
+		return patchEntityAsync(siteUrl + "/name", info, siteType);
+	}
+	
 	/**
 	 * 修改场地属性。
 	 * @param info 场地修改信息，包括场地标识符，场地属性信息。
@@ -551,7 +751,20 @@ public class HttpClientSession extends HttpSession {
 	 */
 	public Site updateSite(SiteUpdateInfo<Object> info) {
 		SiteType st = getSite(info.getId()).getSiteType();
-		
+		return patchEntity(siteUrl, buildSiteUpdate(info, st), siteType);
+	}
+	
+	/**
+	 * 异步修改场地属性。
+	 * @param info 场地修改信息，包括场地标识符，场地属性信息。
+	 * @return 返回修改成功的场地的future。
+	 */
+	public CompletableFuture<Site> updateSiteAsync(SiteUpdateInfo<Object> info) {
+		return getSiteAsync(info.getId())
+				.thenCompose(site -> patchEntityAsync(siteUrl, buildSiteUpdate(info, site.getSiteType()), siteType));
+	}
+	
+	private SiteUpdateInfo<AttValueInfo> buildSiteUpdate(SiteUpdateInfo<Object> info, SiteType st) {
 		SiteUpdateInfo<AttValueInfo> siteValue = new SiteUpdateInfo<AttValueInfo>();
 		siteValue.setId(info.getId());
 		Map<String, Object> attInfos = info.getAttInfos();
@@ -560,7 +773,7 @@ public class HttpClientSession extends HttpSession {
 		Map<String, AttValueInfo> attValues = getAttInfos(attInfos, attDefinition);
 		siteValue.setAttInfos(attValues);
 		
-		return patchEntity(siteUrl, siteValue, siteType);
+		return siteValue;
 	}
 	
 	/**
@@ -569,6 +782,28 @@ public class HttpClientSession extends HttpSession {
 	 * @return 返回指定页的场地。
 	 */
 	public Page<Site> getSitePage(SitePageInfo info) {
+		return getEntity(siteUrl , buildSitePageParams(info), new ParameterizedTypeReference<RestPage<Site>>() {});
+	}
+	
+	/**
+	 * 异步获取场地列表页。
+	 * @param info 指定页查询信息以及查询条件，包括父场地，场地类型，场地名称。
+	 * @return 返回指定页的场地的future。
+	 */
+	public CompletableFuture<Page<Site>> getSitePageAsync(SitePageInfo info) {
+		return getEntityAsync(siteUrl , buildSitePageParams(info), new ParameterizedTypeReference<RestPage<Site>>() {}).thenApply(page -> page);
+	}
+	
+	/**
+	 * 获取场地的流，从指定页开始逐页获取，处理当前页时预先获取之后的页。
+	 * @param info 指定页查询信息以及查询条件，包括父场地，场地类型，场地名称。
+	 * @return 返回场地的流，使用完毕应关闭。
+	 */
+	public Stream<Site> streamSites(SitePageInfo info) {
+		return streamPages(info == null ? new SitePageInfo() : info, this::getSitePageAsync);
+	}
+	
+	private Map<String, String> buildSitePageParams(SitePageInfo info) {
 		if(info == null)
 			info = new SitePageInfo();
 		Map<String, String> queryParams= new HashMap<String, String>();
@@ -581,7 +816,7 @@ public class HttpClientSession extends HttpSession {
 		if(info.getSiteTypeId() != null)
 			queryParams.put("siteTypeId", info.getSiteTypeId());
 		
-		return getEntity(siteUrl , queryParams, new ParameterizedTypeReference<RestPage<Site>>() {});
+		return queryParams;
 	}
 	
 	/**
@@ -613,7 +848,20 @@ public class HttpClientSession extends HttpSession {
 	 */
 	public Device addDevice(DeviceInfo<Object> info) {
 		DeviceType dt = getDevicetypeByName(info.getDeviceType());
-		
+		return postEntity(deviceUrl, buildDeviceInfo(info, dt), deviceType);
+	}
+	
+	/**
+	 * 异步添加设备。
+	 * @param info 设备信息，包括设备名称，设备类型，设备标识符，设备所属场地标识符，属性值等。
+	 * @return 返回添加成功的设备的future。
+	 */
+	public CompletableFuture<Device> addDeviceAsync(DeviceInfo<Object> info) {
+		return getDevicetypeByNameAsync(info.getDeviceType())
+				.thenCompose(dt -> postEntityAsync(deviceUrl, buildDeviceInfo(info, dt), deviceType));
+	}
+	
+	private DeviceInfo<AttValueInfo> buildDeviceInfo(DeviceInfo<Object> info, DeviceType dt) {
 		DeviceInfo<AttValueInfo> deviceValue = new DeviceInfo<AttValueInfo>();
 		deviceValue.setDeviceType(info.getDeviceType());
 		deviceValue.setName(info.getName());
@@ -624,27 +872,32 @@ public class HttpClientSession extends HttpSession {
 		Map<String, AttValueInfo> attValues = getAttInfos(attInfos, attDefinition);
 		deviceValue.setAttInfos(attValues);
 		
-		return postEntity(deviceUrl, deviceValue, deviceType);
+		return deviceValue;
 	}
 	
 	/**
-	 * 获取指定设备的信息。
-	 * @param id 设备标识符。
-	 * @return 返回指定设备。
+	 * 获取当前登录用户（区域管理员）负责的所有设备的信息。
+	 * @return 返回设备列表。
 	 */
-	public Device getDevice(String id) {
-		if(id != null && !id.isEmpty()) {
-			return getEntity(deviceUrl + "/" + id, null, deviceType);
-		} else
-			throw new ValueException("id can't be empty");
+	public List<Device> getMyDevices() {
+		return getEntity(getFixedUri(deviceUrl + "/area"), new ParameterizedTypeReference<List<Device>>() {});
 	}
 	
 	/**
-	 * 获取当前登录用户（区域管理员）负责的所有设备的信息。
-	 * @return 返回设备列表。
+	 * 获取当前登录用户（区域管理员）负责的所有设备，逐个解析设备交给处理方法，不在内存中保留整个列表。
+	 * @param consumer 设备的处理方法。
+	 * @return 返回设备数量。
 	 */
-	public List<Device> getMyDevices() {
-		return getEntity(deviceUrl + "/area", null, new ParameterizedTypeReference<List<Device>>() {});
+	public long forEachMyDevice(Consumer<? super Device> consumer) {
+		return forEachEntity(getFixedUri(deviceUrl + "/area"), deviceType, null, consumer);
+	}
+	
+	/**
+	 * 异步获取当前登录用户（区域管理员）负责的所有设备的信息。
+	 * @return 返回设备列表的future。
+	 */
+	public CompletableFuture<List<Device>> getMyDevicesAsync() {
+		return getEntityAsync(getFixedUri(deviceUrl + "/area"), new ParameterizedTypeReference<List<Device>>() {});
 	}
 	
 	/**
@@ -653,7 +906,25 @@ public class HttpClientSession extends HttpSession {
 	 * @return 返回设备。
 	 */
 	public Device renameDevice(DeviceRenameInfo info) {
-		return patchEntity(deviceUrl + "/name", info, deviceType);
+		Device device = patchEntity(deviceUrl + "/name", info, deviceType);
+		if(device != null)
+			invalidateDevice(device.getId());
+		return device;
+	}
+	
+	/**
+	 * 异步修改设备名称。
+	 * @param info 设备修改信息，包括设备标识符和新的名称。
+	 * @return 返回设备的future。
+	 */
+	public CompletableFuture<Device> renameDeviceAsync(DeviceRenameInfo info) {
+		return patchEntityAsync(deviceUrl + "/name", info, deviceType).thenApply(this::invalidated);
+	}
+	
+	private Device invalidated(Device device) {
+		if(device != null)
+			invalidateDevice(device.getId());
+		return device;
 	}
 	
 	/**
@@ -663,7 +934,26 @@ public class HttpClientSession extends HttpSession {
 	 */
 	public Device updateDevice(DeviceUpdateInfo<Object> info) {
 		DeviceType st = getDevice(info.getId()).getDeviceType();
-		
+		Device device = patchEntity(deviceUrl, buildDeviceUpdate(info, st), deviceType);
+		invalidateDevice(info.getId());
+		return device;
+	}
+	
+	/**
+	 * 异步修改设备静态属性。
+	 * @param info 设备修改信息，包括设备标识符，设备静态属性信息。
+	 * @return 返回修改成功的设备的future。
+	 */
+	public CompletableFuture<Device> updateDeviceAsync(DeviceUpdateInfo<Object> info) {
+		return getDeviceAsync(info.getId())
+				.thenCompose(d -> patchEntityAsync(deviceUrl, buildDeviceUpdate(info, d.getDeviceType()), deviceType))
+				.thenApply(device -> {
+					invalidateDevice(info.getId());
+					return device;
+				});
+	}
+	
+	private DeviceUpdateInfo<AttValueInfo> buildDeviceUpdate(DeviceUpdateInfo<Object> info, DeviceType st) {
 		DeviceUpdateInfo<AttValueInfo> deviceValue = new DeviceUpdateInfo<AttValueInfo>();
 		deviceValue.setId(info.getId());
 		Map<String, Object> attInfos = info.getAttInfos();
@@ -672,7 +962,7 @@ public class HttpClientSession extends HttpSession {
 		Map<String, AttValueInfo> attValues = getAttInfos(attInfos, attDefinition);
 		deviceValue.setAttInfos(attValues);
 		
-		return patchEntity(deviceUrl, deviceValue, deviceType);
+		return deviceValue;
 	}
 	
 	/**
@@ -681,7 +971,19 @@ public class HttpClientSession extends HttpSession {
 	 * @return 返回修改成功的设备。
 	 */
 	public Device moveDevice(DeviceMoveInfo info) {
-		return patchEntity(deviceUrl + "/site", info, deviceType);
+		Device device = patchEntity(deviceUrl + "/site", info, deviceType);
+		if(device != null)
+			invalidateDevice(device.getId());
+		return device;
+	}
+	
+	/**
+	 * 异步修改设备的场地。
+	 * @param info 设备修改信息，包括设备标识符，新场地标识符。
+	 * @return 返回修改成功的设备的future。
+	 */
+	public CompletableFuture<Device> moveDeviceAsync(DeviceMoveInfo info) {
+		return patchEntityAsync(deviceUrl + "/site", info, deviceType).thenApply(this::invalidated);
 	}
 	
 	/**
@@ -689,18 +991,52 @@ public class HttpClientSession extends HttpSession {
 	 * @param id 设备标识符
 	 */
 	public void deleteDevice(String id) {
-		if(id != null && !id.isEmpty())
+		if(id != null && !id.isEmpty()) {
 			deleteEntity(deviceUrl + "/" + id, null, null);
-		else
+			invalidateDevice(id);
+		} else
 			throw new ValueException("id can't be empty");
 	}
 	
+	/**
+	 * 异步删除指定设备。
+	 * @param id 设备标识符
+	 * @return 返回删除完成的future。
+	 */
+	public CompletableFuture<Void> deleteDeviceAsync(String id) {
+		if(id == null || id.isEmpty())
+			return failed(new ValueException("id can't be empty"));
+		return deleteEntityAsync(deviceUrl + "/" + id, null, Void.class).thenRun(() -> invalidateDevice(id));
+	}
+	
 	/**
 	 * 获取设备列表页。
 	 * @param info 指定页查询信息以及查询条件，包括场地标识符，设备类型，设备名称。
 	 * @return 返回指定页的设备。
 	 */
 	public Page<Device> getDevicePage(DevicePageInfo info) {
+		return getEntity(deviceUrl , buildDevicePageParams(info), new ParameterizedTypeReference<RestPage<Device>>() {});
+	}
+	
+	/**
+	 * 异步获取设备列表页。
+	 * @param info 指定页查询信息以及查询条件，包括场地标识符，设备类型，设备名称。
+	 * @return 返回指定页的设备的future。
+	 */
+	public CompletableFuture<Page<Device>> getDevicePageAsync(DevicePageInfo info) {
+		return getEntityAsync(deviceUrl , buildDevicePageParams(info), new ParameterizedTypeReference<RestPage<Device>>() {}).thenApply(page -> page);
+	}
+	
+	/**
+	 * 获取设备的流，从指定页开始逐页获取，处理当前页时预先获取之后的页。
+	 * @param info 指定页查询信息以及查询条件，包括场地标识符，设备类型，设备名称。
+	 * @return 返回设备的流，使用完毕应关闭。
+	 */
+	public Stream<Device> streamDevices(DevicePageInfo info) {
+		return streamPages(info == null ? new DevicePageInfo() : info, this::getDevicePageAsync);
+	}
+	
+	private Map<String, String> buildDevicePageParams(DevicePageInfo info) {
 		if(info == null)
 			info = new DevicePageInfo();
 		Map<String, String> queryParams= new HashMap<String, String>();
@@ -713,7 +1049,7 @@ public class HttpClientSession extends HttpSession {
 		if(info.getDeviceTypeId() != null)
 			queryParams.put("deviceTypeId", info.getDeviceTypeId());
 		
-		return getEntity(deviceUrl , queryParams, new ParameterizedTypeReference<RestPage<Device>>() {});
+		return queryParams;
 	}
 	
 	/**
@@ -747,6 +1083,15 @@ public class HttpClientSession extends HttpSession {
 		return postEntity(deviceGroupUrl, info, deviceGroupType);
 	}
 	
+	/**
+	 * 异步添加设备组。
+	 * @param info 被添加的设备组信息。
+	 * @return 返回添加成功的设备组的future。
+	 */
+	public CompletableFuture<DeviceGroup> addDeviceGroupAsync(DeviceGroupInfo info) {
+		return postEntityAsync(deviceGroupUrl, info, deviceGroupType);
+	}
+	
 	/**
 	 * 获取设备组列表页。
 	 * @param info 指定页查询信息
@@ -767,7 +1112,7 @@ public class HttpClientSession extends HttpSession {
 	 * @return 返回设备组列表。
 	 */
 	public List<DeviceGroup> getDeviceGroupList() {
-		return getEntity(deviceGroupUrl + "/list", null, new ParameterizedTypeReference<List<DeviceGroup>>() {});
+		return getEntity(getFixedUri(deviceGroupUrl + "/list"), new ParameterizedTypeReference<List<DeviceGroup>>() {});
 	}
 	
 	/**
@@ -779,6 +1124,15 @@ public class HttpClientSession extends HttpSession {
 		return patchEntity(deviceGroupUrl + "/name", info, deviceGroupType);
 	}
 	
+	/**
+	 * 异步修改设备组名称。
+	 * @param info 设备组修改信息，包括设备组标识符和新的名称。
+	 * @return 返回设备组的future。
+	 */
+	public CompletableFuture<DeviceGroup> renameDeviceGroupAsync(DeviceGroupRenameInfo info) {
+		return patchEntityAsync(deviceGroupUrl + "/name", info, deviceGroupType);
+	}
+	
 	/**
 	 *删除指定设备组。
 	 * @param groupId 设备组标识符
@@ -790,6 +1144,17 @@ public class HttpClientSession extends HttpSession {
 			throw new ValueException("group id can't be empty");
 	}
 	
+	/**
+	 * 异步删除指定设备组。
+	 * @param groupId 设备组标识符
+	 * @return 返回删除完成的future。
+	 */
+	public CompletableFuture<Void> deleteDeviceGroupAsync(String groupId) {
+		if(groupId == null || groupId.isEmpty())
+			return failed(new ValueException("group id can't be empty"));
+		return deleteEntityAsync(deviceGroupUrl + "/" + groupId, null, Void.class);
+	}
+	
 	/**
 	 *添加设备到设备组中。
 	 * @param groupId 设备组标识符
@@ -803,6 +1168,18 @@ public class HttpClientSession extends HttpSession {
 			throw new ValueException("group id and device id can't be empty");
 	}
 	
+	/**
+	 * 异步添加设备到设备组中。
+	 * @param groupId 设备组标识符
+	 * @param deviceId 设备标识符
+	 * @return 返回添加成功的设备组信息的future。
+	 */
+	public CompletableFuture<DeviceGroup> addGroupAsync(String groupId, String deviceId) {
+		if(groupId == null || groupId.isEmpty() || deviceId == null || deviceId.isEmpty())
+			return failed(new ValueException("group id and device id can't be empty"));
+		return postEntityAsync(deviceGroupUrl + "/group/" + groupId + "/device/" + deviceId, null, deviceGroupType);
+	}
+	
 	/**
 	 * 从设备组中移除设备。
 	 * @param groupId 设备组标识符
@@ -813,6 +1190,18 @@ public class HttpClientSession extends HttpSession {
 		return deleteEntity(deviceGroupUrl + "/group/" + groupId + "/device/" + deviceId, null, deviceGroupType);
 	}
 	
+	/**
+	 * 异步从设备组中移除设备。
+	 * @param groupId 设备组标识符
+	 * @param deviceId 设备标识符
+	 * @return 返回移除成功的设备组信息的future。
+	 */
+	public CompletableFuture<DeviceGroup> removeGroupAsync(String groupId, String deviceId) {
+		return deleteEntityAsync(deviceGroupUrl + "/group/" + groupId + "/device/" + deviceId, null, deviceGroupType);
+	}
+	
+	private static final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern(NotificationPageInfo.FORMAT).withZone(ZoneId.systemDefault());
+	
 	public static Class<Alarm> alarmType = Alarm.class;
 	public static String alarmUrl = "/" + getIoTObjectName(alarmType);
 	
@@ -828,13 +1217,46 @@ public class HttpClientSession extends HttpSession {
 			throw new ValueException("id can't be empty");
 	}
 	
+	/**
+	 * 异步获取指定告警信息。
+	 * @param id 告警标识符。
+	 * @return 返回指定告警的future。
+	 */
+	public CompletableFuture<Alarm> getAlarmAsync(String id) {
+		if(id == null || id.isEmpty())
+			return failed(new ValueException("id can't be empty"));
+		return getEntityAsync(alarmUrl + "/" + id, null, alarmType);
+	}
+	
 	/**
 	 * 获取告警列表页。
 	 * @param info 指定页查询信息以及查询条件，包括告警接收时间，告警上报时间，告警类型，上报对象标识符。
 	 * @return 返回指定页的告警。
 	 */
 	public Page<Alarm> getAlarmPage(AlarmPageInfo info) {
-		SimpleDateFormat format = new SimpleDateFormat(NotificationPageInfo.FORMAT);
+		return getEntity(alarmUrl, buildAlarmPageParams(info), new ParameterizedTypeReference<RestPage<Alarm>>() {});
+	}
+	
+	/**
+	 * 异步获取告警列表页。
+	 * @param info 指定页查询信息以及查询条件，包括告警接收时间，告警上报时间，告警类型，上报对象标识符。
+	 * @return 返回指定页的告警的future。
+	 */
+	public CompletableFuture<Page<Alarm>> getAlarmPageAsync(AlarmPageInfo info) {
+		return getEntityAsync(alarmUrl, buildAlarmPageParams(info), new ParameterizedTypeReference<RestPage<Alarm>>() {}).thenApply(page -> page);
+	}
+	
+	/**
+	 * 获取告警的流，从指定页开始逐页获取，处理当前页时预先获取之后的页。
+	 * @param info 指定页查询信息以及查询条件，包括告警接收时间，告警上报时间，告警类型，上报对象标识符。
+	 * @return 返回告警的流，使用完毕应关闭。
+	 */
+	public Stream<Alarm> streamAlarms(AlarmPageInfo info) {
+		return streamPages(info == null ? new AlarmPageInfo() : info, this::getAlarmPageAsync);
+	}
+	
+	private Map<String, String> buildAlarmPageParams(AlarmPageInfo info) {
+		DateTimeFormatter format = dateFormatter;
 		if(info == null)
 			info = new AlarmPageInfo();
 		Map<String, String> queryParams= new HashMap<String, String>();
@@ -843,17 +1265,17 @@ public class HttpClientSession extends HttpSession {
 		if(info.getNotifyObjectId() != null)
 			queryParams.put("notifyObjectId", info.getNotifyObjectId());
 		if(info.getReportFrom() != null)
-			queryParams.put("reportFrom", format.format(info.getReportFrom()));
+			queryParams.put("reportFrom", format.format(info.getReportFrom().toInstant()));
 		if(info.getReportTo() != null)
-			queryParams.put("reportTo", format.format(info.getReportTo()));
+			queryParams.put("reportTo", format.format(info.getReportTo().toInstant()));
 		if(info.getReceiveFrom() != null)
-			queryParams.put("receiveFrom", format.format(info.getReceiveFrom()));
+			queryParams.put("receiveFrom", format.format(info.getReceiveFrom().toInstant()));
 		if(info.getReceiveTo() != null)
-			queryParams.put("receiveTo", format.format(info.getReceiveTo()));
+			queryParams.put("receiveTo", format.format(info.getReceiveTo().toInstant()));
 		if(info.getAlarmType() != null)
 			queryParams.put("alarmType", info.getAlarmType());
 		
-		return getEntity(alarmUrl, queryParams, new ParameterizedTypeReference<RestPage<Alarm>>() {});
+		return queryParams;
 	}
 	
 	public static Class<Event> eventType = Event.class;
@@ -871,13 +1293,46 @@ public class HttpClientSession extends HttpSession {
 			throw new ValueException("id can't be empty");
 	}
 	
+	/**
+	 * 异步获取指定事件信息。
+	 * @param id 事件标识符。
+	 * @return 返回指定事件的future。
+	 */
+	public CompletableFuture<Event> getEventAsync(String id) {
+		if(id == null || id.isEmpty())
+			return failed(new ValueException("id can't be empty"));
+		return getEntityAsync(eventUrl + "/" + id, null, eventType);
+	}
+	
 	/**
 	 * 获取事件列表页。
 	 * @param info 指定页查询信息以及查询条件，包括事件接收时间，事件上报时间，属性名称，设备标识符。
 	 * @return 返回指定页的事件。
 	 */
 	public Page<Event> getEventPage(EventPageInfo info) {
-		SimpleDateFormat format = new SimpleDateFormat(NotificationPageInfo.FORMAT);
+		return getEntity(eventUrl , buildEventPageParams(info), new ParameterizedTypeReference<RestPage<Event>>() {});
+	}
+	
+	/**
+	 * 异步获取事件列表页。
+	 * @param info 指定页查询信息以及查询条件，包括事件接收时间，事件上报时间，属性名称，设备标识符。
+	 * @return 返回指定页的事件的future。
+	 */
+	public CompletableFuture<Page<Event>> getEventPageAsync(EventPageInfo info) {
+		return getEntityAsync(eventUrl , buildEventPageParams(info), new ParameterizedTypeReference<RestPage<Event>>() {}).thenApply(page -> page);
+	}
+	
+	/**
+	 * 获取事件的流，从指定页开始逐页获取，处理当前页时预先获取之后的页。
+	 * @param info 指定页查询信息以及查询条件，包括事件接收时间，事件上报时间，属性名称，设备标识符。
+	 * @return 返回事件的流，使用完毕应关闭。
+	 */
+	public Stream<Event> streamEvents(EventPageInfo info) {
+		return streamPages(info == null ? new EventPageInfo() : info, this::getEventPageAsync);
+	}
+	
+	private Map<String, String> buildEventPageParams(EventPageInfo info) {
+		DateTimeFormatter format = dateFormatter;
 		if(info == null)
 			info = new EventPageInfo();
 		Map<String, String> queryParams= new HashMap<String, String>();
@@ -888,14 +1343,14 @@ public class HttpClientSession extends HttpSession {
 		if(info.getAttribute() != null)
 			queryParams.put("attribute", info.getAttribute());
 		if(info.getReportFrom() != null)
-			queryParams.put("reportFrom", format.format(info.getReportFrom()));
+			queryParams.put("reportFrom", format.format(info.getReportFrom().toInstant()));
 		if(info.getReportTo() != null)
-			queryParams.put("reportTo", format.format(info.getReportTo()));
+			queryParams.put("reportTo", format.format(info.getReportTo().toInstant()));
 		if(info.getReceiveFrom() != null)
-			queryParams.put("receiveFrom", format.format(info.getReceiveFrom()));
+			queryParams.put("receiveFrom", format.format(info.getReceiveFrom().toInstant()));
 		if(info.getReceiveTo() != null)
-			queryParams.put("receiveTo", format.format(info.getReceiveTo()));
+			queryParams.put("receiveTo", format.format(info.getReceiveTo().toInstant()));
 		
-		return getEntity(eventUrl , queryParams, new ParameterizedTypeReference<RestPage<Event>>() {});
+		return queryParams;
 	}
 }
@@ -0,0 +1,146 @@
+package top.microiot.api.client;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import top.microiot.domain.Response;
+
+/**
+ * 属性读取合并类，同一设备同一属性同时发出的获取请求共享一个正在等待响应的请求，
+ * 成功的响应在很短的时间窗口内还可以被之后的获取请求使用。
+ */
+public class ReadCoalescer {
+	private final long windowMillis;
+	private final Map<Key, Entry> entries = new ConcurrentHashMap<Key, Entry>();
+	private final AtomicLong requestCount = new AtomicLong();
+	private final AtomicLong coalescedCount = new AtomicLong();
+
+	/**
+	 * 属性读取合并构造函数。
+	 * @param windowMillis 成功的响应可以被使用的时间窗口，单位为毫秒，0表示只合并同时发出的请求。
+	 */
+	public ReadCoalescer(long windowMillis) {
+		super();
+		this.windowMillis = windowMillis;
+	}
+
+	/**
+	 * 获取属性的响应，有正在等待响应或者仍然新鲜的请求时共享该请求，否则发出新的请求。
+	 * @param deviceId 设备标识符。
+	 * @param attribute 属性名称。
+	 * @param loader 发出请求的方法。
+	 * @return 返回响应的future，每次调用返回不同的future，取消时不影响共享的请求。
+	 */
+	public CompletableFuture<Response> get(String deviceId, String attribute, Supplier<CompletableFuture<Response>> loader) {
+		Key key = new Key(deviceId, attribute);
+		while(true) {
+			Entry entry = entries.get(key);
+			if(entry != null && entry.isUsable()) {
+				coalescedCount.incrementAndGet();
+				return copy(entry.future);
+			}
+
+			Entry created = new Entry();
+			boolean added = entry == null ? entries.putIfAbsent(key, created) == null : entries.replace(key, entry, created);
+			if(!added)
+				continue;
+
+			requestCount.incrementAndGet();
+			created.future.whenComplete((response, e) -> {
+				created.completedAt = System.currentTimeMillis();
+				if(e != null || !response.isSuccess() || windowMillis <= 0)
+					entries.remove(key, created);
+			});
+			try {
+				loader.get().whenComplete((response, e) -> {
+					if(e != null)
+						created.future.completeExceptionally(e);
+					else
+						created.future.complete(response);
+				});
+			} catch(Throwable e) {
+				created.future.completeExceptionally(e);
+			}
+			return copy(created.future);
+		}
+	}
+
+	/**
+	 * 使属性的共享请求失效，之后的获取请求发出新的请求，不再使用之前的请求或者时间窗口内的响应。
+	 * 已经加入之前请求的获取请求仍然得到之前请求的响应。
+	 * @param deviceId 设备标识符。
+	 * @param attribute 属性名称。
+	 */
+	public void invalidate(String deviceId, String attribute) {
+		entries.remove(new Key(deviceId, attribute));
+	}
+
+	private CompletableFuture<Response> copy(CompletableFuture<Response> future) {
+		CompletableFuture<Response> copy = new CompletableFuture<Response>();
+		future.whenComplete((response, e) -> {
+			if(e != null)
+				copy.completeExceptionally(e);
+			else
+				copy.complete(response);
+		});
+		return copy;
+	}
+
+	/**
+	 * 获取实际发出的请求数量。
+	 * @return 返回请求数量。
+	 */
+	public long getRequestCount() {
+		return requestCount.get();
+	}
+
+	/**
+	 * 获取被合并的请求数量。
+	 * @return 返回请求数量。
+	 */
+	public long getCoalescedCount() {
+		return coalescedCount.get();
+	}
+
+	private class Entry {
+		private final CompletableFuture<Response> future = new CompletableFuture<Response>();
+		private volatile long completedAt = 0;
+
+		private boolean isUsable() {
+			if(!future.isDone())
+				return true;
+			if(future.isCompletedExceptionally() || completedAt == 0 || !future.join().isSuccess())
+				return false;
+			return System.currentTimeMillis() - completedAt <= windowMillis;
+		}
+	}
+
+	private static class Key {
+		private final String deviceId;
+		private final String attribute;
+
+		public Key(String deviceId, String attribute) {
+			this.deviceId = deviceId;
+			this.attribute = attribute;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(deviceId, attribute);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return Objects.equals(deviceId, other.deviceId) && Objects.equals(attribute, other.attribute);
+		}
+	}
+}
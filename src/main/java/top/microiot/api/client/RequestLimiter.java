@@ -0,0 +1,171 @@
+package top.microiot.api.client;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import top.microiot.api.WebsocketProperties.LimitPolicy;
+import top.microiot.exception.StatusException;
+
+/**
+ * 客户端请求限流类，限制一个会话和每个设备同时等待响应的请求数量，超过限制的请求按策略排队或拒绝。
+ */
+public class RequestLimiter {
+	private final int maxInFlight;
+	private final int maxInFlightPerDevice;
+	private final int maxQueueSize;
+	private final LimitPolicy policy;
+
+	private int inFlight = 0;
+	private final Map<String, Integer> deviceInFlight = new HashMap<String, Integer>();
+	private final LinkedList<Waiter> queue = new LinkedList<Waiter>();
+
+	private final AtomicLong rejectedCount = new AtomicLong();
+	private final AtomicLong queuedCount = new AtomicLong();
+
+	/**
+	 * 客户端请求限流构造函数。
+	 * @param maxInFlight 会话同时等待响应的最大请求数量，0表示不限制。
+	 * @param maxInFlightPerDevice 每个设备同时等待响应的最大请求数量，0表示不限制。
+	 * @param maxQueueSize 排队等待的最大请求数量，0表示不限制。
+	 * @param policy 超过限制时的策略。
+	 */
+	public RequestLimiter(int maxInFlight, int maxInFlightPerDevice, int maxQueueSize, LimitPolicy policy) {
+		super();
+		this.maxInFlight = maxInFlight;
+		this.maxInFlightPerDevice = maxInFlightPerDevice;
+		this.maxQueueSize = maxQueueSize;
+		this.policy = policy;
+	}
+
+	/**
+	 * 是否限制请求数量。
+	 * @return 设置了会话或设备的限制时返回true。
+	 */
+	public boolean isEnabled() {
+		return maxInFlight > 0 || maxInFlightPerDevice > 0;
+	}
+
+	/**
+	 * 申请发出请求，申请成功后必须调用release释放。
+	 * @param deviceId 被请求的设备。
+	 * @return 返回申请的future，有空闲时立即完成，否则排队等待，取消后不再等待。
+	 * @throws StatusException 超过限制且策略为拒绝，或者排队已满时抛出。
+	 */
+	public synchronized CompletableFuture<Void> acquire(String deviceId) {
+		CompletableFuture<Void> permit = new CompletableFuture<Void>();
+		if(isAvailable(deviceId)) {
+			take(deviceId);
+			permit.complete(null);
+			return permit;
+		}
+		if(policy == LimitPolicy.REJECT || isQueueFull()) {
+			rejectedCount.incrementAndGet();
+			throw new StatusException("too many requests to device: " + deviceId);
+		}
+		queue.add(new Waiter(deviceId, permit));
+		queuedCount.incrementAndGet();
+		return permit;
+	}
+
+	/**
+	 * 释放申请，唤醒可以发出的排队请求。
+	 * @param deviceId 被请求的设备。
+	 */
+	public void release(String deviceId) {
+		List<Waiter> granted = new ArrayList<Waiter>();
+		synchronized(this) {
+			give(deviceId);
+			Iterator<Waiter> it = queue.iterator();
+			while(it.hasNext() && (maxInFlight <= 0 || inFlight < maxInFlight)) {
+				Waiter waiter = it.next();
+				if(waiter.permit.isDone())
+					it.remove();
+				else if(isAvailable(waiter.deviceId)) {
+					it.remove();
+					take(waiter.deviceId);
+					granted.add(waiter);
+				}
+			}
+		}
+		for(Waiter waiter : granted) {
+			if(!waiter.permit.complete(null))
+				release(waiter.deviceId);
+		}
+	}
+
+	private boolean isQueueFull() {
+		if(maxQueueSize <= 0)
+			return false;
+		if(queue.size() >= maxQueueSize)
+			queue.removeIf(waiter -> waiter.permit.isDone());
+		return queue.size() >= maxQueueSize;
+	}
+
+	private boolean isAvailable(String deviceId) {
+		if(maxInFlight > 0 && inFlight >= maxInFlight)
+			return false;
+		if(maxInFlightPerDevice > 0 && deviceInFlight.getOrDefault(deviceId, 0) >= maxInFlightPerDevice)
+			return false;
+		return true;
+	}
+
+	private void take(String deviceId) {
+		inFlight++;
+		deviceInFlight.merge(deviceId, 1, Integer::sum);
+	}
+
+	private void give(String deviceId) {
+		inFlight--;
+		deviceInFlight.computeIfPresent(deviceId, (id, count) -> count > 1 ? count - 1 : null);
+	}
+
+	/**
+	 * 获取正在等待响应的请求数量。
+	 * @return 返回请求数量。
+	 */
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+
+	/**
+	 * 获取设备正在等待响应的请求数量。
+	 * @param deviceId 设备标识符。
+	 * @return 返回请求数量。
+	 */
+	public synchronized int getInFlight(String deviceId) {
+		return deviceInFlight.getOrDefault(deviceId, 0);
+	}
+
+	/**
+	 * 获取排队等待的请求数量。
+	 * @return 返回排队的请求数量。
+	 */
+	public synchronized int getQueueDepth() {
+		queue.removeIf(waiter -> waiter.permit.isDone());
+		return queue.size();
+	}
+
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+	public long getQueuedCount() {
+		return queuedCount.get();
+	}
+
+	private static class Waiter {
+		private final String deviceId;
+		private final CompletableFuture<Void> permit;
+
+		public Waiter(String deviceId, CompletableFuture<Void> permit) {
+			this.deviceId = deviceId;
+			this.permit = permit;
+		}
+	}
+}
@@ -1,36 +1,71 @@
 package top.microiot.api.client;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.web.socket.messaging.WebSocketStompClient;
 
+import top.microiot.api.CacheProperties;
 import top.microiot.api.HttpSession;
 import top.microiot.api.WebsocketProperties;
+import top.microiot.api.client.ExpiryWheel.Expiry;
+import top.microiot.api.cache.AttributeCache;
 import top.microiot.api.client.stomp.ActionAsyncHandler;
 import top.microiot.api.client.stomp.ActionRequestPublisher;
 import top.microiot.api.client.stomp.ActionResponseSubscriber;
+import top.microiot.api.client.stomp.AlarmBatcher;
+import top.microiot.api.client.stomp.AlarmBulkSubscribeHandler;
 import top.microiot.api.client.stomp.AlarmSubscribeHandler;
 import top.microiot.api.client.stomp.AlarmSubscriber;
 import top.microiot.api.client.stomp.GetAsyncHandler;
 import top.microiot.api.client.stomp.GetRequestPublisher;
 import top.microiot.api.client.stomp.GetResponseSubscriber;
+import top.microiot.api.client.stomp.RequestPublishAsyncHandler;
+import top.microiot.api.client.stomp.RequestPublishFutureHandler;
 import top.microiot.api.client.stomp.RequestPublishSyncHandler;
+import top.microiot.api.client.stomp.RequestPublisher;
+import top.microiot.api.client.stomp.ResponseSubscriber;
+import top.microiot.api.client.stomp.ResultCorrelator;
 import top.microiot.api.client.stomp.SetAsyncHandler;
 import top.microiot.api.client.stomp.SetRequestPublisher;
 import top.microiot.api.client.stomp.SetResponseSubscriber;
+import top.microiot.api.stomp.AckBatcher;
+import top.microiot.api.stomp.DataConverter;
 import top.microiot.api.stomp.SessionManager;
 import top.microiot.domain.ActionType;
 import top.microiot.domain.Device;
+import top.microiot.domain.DeviceGroup;
 import top.microiot.domain.Response;
 import top.microiot.domain.attribute.AttValueInfo;
 import top.microiot.domain.attribute.AttributeType;
 import top.microiot.domain.attribute.DataType;
+import top.microiot.domain.attribute.DataValue;
+import top.microiot.dto.DevicePageInfo;
 import top.microiot.exception.NotFoundException;
 import top.microiot.exception.StatusException;
 import top.microiot.exception.ValueException;
@@ -44,10 +79,138 @@ public class WebsocketClientSession  extends SessionManager {
 	private Logger logger = LoggerFactory.getLogger(this.getClass());
 	private HttpSession session;
 	private WebsocketProperties websocketProperties;
+	private TaskScheduler taskScheduler;
+	private ResultCorrelator correlator;
+	private RequestLimiter limiter;
+	private ExpiryWheel expiryWheel;
+	private ReadCoalescer coalescer;
+	private AttributeCache attributeCache;
+	private final AtomicLong syncExpiredCount = new AtomicLong();
+	private final List<AlarmBatcher> alarmBatchers = new CopyOnWriteArrayList<AlarmBatcher>();
+	private AckBatcher ackBatcher;
+	private boolean stopping = false;
 	
 	@Autowired
 	public void setWebsocketProperties(WebsocketProperties websocketProperties) {
 		this.websocketProperties = websocketProperties;
+		this.limiter = new RequestLimiter(websocketProperties.getMaxInFlight(), websocketProperties.getMaxInFlightPerDevice(), 
+				websocketProperties.getMaxQueueSize(), websocketProperties.getLimitPolicy());
+		this.coalescer = websocketProperties.isCoalesceReads() ? new ReadCoalescer(websocketProperties.getCoalesceWindow()) : null;
+	}
+
+	@Override
+	public WebsocketProperties getWebsocketProperties() {
+		return websocketProperties;
+	}
+
+	/**
+	 * 获取消息确认批量发送，持久订阅使用client-individual确认模式时第一次调用时建立，正在停止时不再建立。
+	 * @return 返回消息确认批量发送，没有开启或者正在停止时返回null。
+	 */
+	@Override
+	public synchronized AckBatcher getAckBatcher() {
+		if(ackBatcher == null && !stopping && websocketProperties.isDurableClientAck())
+			ackBatcher = new AckBatcher(taskScheduler, websocketProperties.getAckBatchSize(), websocketProperties.getAckInterval());
+		return ackBatcher;
+	}
+
+	@Autowired(required = false)
+	public void setCacheProperties(CacheProperties cacheProperties) {
+		if(!cacheProperties.isAttributeEnabled())
+			return;
+		Map<String, Long> ttls = new HashMap<String, Long>();
+		cacheProperties.getAttributeTtls().forEach((key, ttl) -> ttls.put(key, ttl * 1000));
+		this.attributeCache = new AttributeCache(cacheProperties.getAttributeTtl() * 1000, ttls, cacheProperties.getAttributeMaxSize());
+	}
+
+	@Autowired
+	public void setTaskScheduler(TaskScheduler taskScheduler) {
+		this.taskScheduler = taskScheduler;
+	}
+
+	/**
+	 * 获取请求限流，用于查看正在等待响应和排队的请求数量。
+	 * @return 返回请求限流。
+	 */
+	public RequestLimiter getRequestLimiter() {
+		return limiter;
+	}
+
+	/**
+	 * 获取属性值缓存，没有开启属性值缓存时返回null。
+	 * @return 返回属性值缓存。
+	 */
+	public AttributeCache getAttributeCache() {
+		return attributeCache;
+	}
+
+	/**
+	 * 用设备上报的属性值更新缓存，客户端收到设备上报的事件后调用，没有开启属性值缓存时不做处理。
+	 * 只有按设备类型设置了生存时间时才需要获取设备，开启元数据缓存时从缓存中获取，否则每次都请求平台，
+	 * 这时应使用传入设备的updateAttribute。
+	 * @param deviceId 设备标识符。
+	 * @param attribute 属性名称。
+	 * @param value 属性值。
+	 */
+	public void updateAttribute(String deviceId, String attribute, DataValue value) {
+		if(attributeCache == null)
+			return;
+		String deviceTypeName = null;
+		if(attributeCache.isTtlByDeviceType()) {
+			Device device = session.getDevice(deviceId);
+			if(device == null)
+				throw new NotFoundException("device: " + deviceId);
+			deviceTypeName = device.getDeviceType().getName();
+		}
+		attributeCache.update(deviceId, attribute, value, attributeCache.getTtl(deviceTypeName, attribute));
+	}
+
+	/**
+	 * 用设备上报的属性值更新缓存，客户端收到设备上报的事件后调用，使用事件中的设备，不请求平台。
+	 * @param device 上报事件的设备，包含设备类型。
+	 * @param attribute 属性名称。
+	 * @param value 属性值。
+	 */
+	public void updateAttribute(Device device, String attribute, DataValue value) {
+		if(attributeCache == null)
+			return;
+		attributeCache.update(device.getId(), attribute, value, attributeCache.getTtl(device.getDeviceType().getName(), attribute));
+	}
+
+	/**
+	 * 使属性值缓存和读取合并中共享的请求失效，之后的获取请求重新向设备获取。
+	 * @param deviceId 设备标识符。
+	 * @param attribute 属性名称。
+	 */
+	public void invalidateAttribute(String deviceId, String attribute) {
+		if(attributeCache != null)
+			attributeCache.invalidate(deviceId, attribute);
+		if(coalescer != null)
+			coalescer.invalidate(deviceId, attribute);
+	}
+
+	/**
+	 * 获取属性读取合并，没有开启读取合并时返回null。
+	 * @return 返回属性读取合并。
+	 */
+	public ReadCoalescer getReadCoalescer() {
+		return coalescer;
+	}
+
+	/**
+	 * 获取超时的请求数量，包括同步请求和异步请求。
+	 * @return 返回超时的请求数量。
+	 */
+	public long getExpiredCount() {
+		return syncExpiredCount.get() + getExpiryWheel().getExpiredCount();
+	}
+
+	/**
+	 * 获取等待响应并且设置了超时的异步请求数量。
+	 * @return 返回异步请求数量。
+	 */
+	public int getPendingCount() {
+		return getExpiryWheel().getPendingCount();
 	}
 
 	public HttpSession getSession() {
@@ -77,12 +240,121 @@ public class WebsocketClientSession  extends SessionManager {
 		
 		subscriber.init();
 		subscriber.setWebsocketClientSession(this);
+		initBatcher(subscriber);
 		AlarmSubscribeHandler sessionHandler = new AlarmSubscribeHandler(deviceId, subscriber);
         connect(sessionHandler);
         handlers.add(sessionHandler);
         return sessionHandler;
 	}
 	
+	/**
+	 * 客户端设置收到多个设备告警后的告警处理，设备按批量查询校验，所有设备共用一个告警处理。
+	 * @param deviceIds 被监控告警的设备。
+	 * @param subscriber 收到告警后的处理。
+	 * @return 返回批量告警处理。
+	 */
+	public AlarmBulkSubscribeHandler subscribe(Collection<String> deviceIds, AlarmSubscriber subscriber) {
+		Map<String, Device> devices = session.getDevices(deviceIds);
+		for(String deviceId : deviceIds) {
+			if(!devices.containsKey(deviceId))
+				throw new NotFoundException("device: " + deviceId);
+		}
+		return subscribeAlarms(devices.keySet(), subscriber);
+	}
+	
+	/**
+	 * 客户端设置收到设备组中所有设备告警后的告警处理。
+	 * @param groupId 设备组标识符。
+	 * @param subscriber 收到告警后的处理。
+	 * @return 返回批量告警处理。
+	 */
+	public AlarmBulkSubscribeHandler subscribeGroup(String groupId, AlarmSubscriber subscriber) {
+		DeviceGroup group = session.getDeviceGroup(groupId);
+		if(group == null)
+			throw new NotFoundException("device group: " + groupId);
+		List<String> deviceIds = new ArrayList<String>();
+		if(group.getDevices() != null) {
+			for(Device device : group.getDevices())
+				deviceIds.add(device.getId());
+		}
+		return subscribeAlarms(deviceIds, subscriber);
+	}
+	
+	/**
+	 * 客户端设置收到场地中所有设备告警后的告警处理，场地中的设备分页查询。
+	 * @param siteId 场地标识符。
+	 * @param subscriber 收到告警后的处理。
+	 * @return 返回批量告警处理。
+	 */
+	public AlarmBulkSubscribeHandler subscribeSite(String siteId, AlarmSubscriber subscriber) {
+		if(!(session instanceof HttpClientSession))
+			throw new StatusException("site subscription needs client session");
+		DevicePageInfo info = new DevicePageInfo();
+		info.setLocationId(siteId);
+		info.setNumPerPage(session.getHttpSessionProperties().getQueryBatchSize());
+		List<String> deviceIds = new ArrayList<String>();
+		try(Stream<Device> devices = ((HttpClientSession)session).streamDevices(info)) {
+			devices.forEach(device -> deviceIds.add(device.getId()));
+		}
+		return subscribeAlarms(deviceIds, subscriber);
+	}
+	
+	private AlarmBulkSubscribeHandler subscribeAlarms(Collection<String> deviceIds, AlarmSubscriber subscriber) {
+		subscriber.init();
+		subscriber.setWebsocketClientSession(this);
+		initBatcher(subscriber);
+		AlarmBulkSubscribeHandler sessionHandler = new AlarmBulkSubscribeHandler(deviceIds, subscriber);
+		connect(sessionHandler);
+		handlers.add(sessionHandler);
+		return sessionHandler;
+	}
+	
+	/**
+	 * 开启批量交付时为告警处理建立告警批量交付，同一个告警处理只建立一次。
+	 */
+	private void initBatcher(AlarmSubscriber subscriber) {
+		synchronized(subscriber) {
+			if(subscriber.getBatcher() != null || !(subscriber.isBatch() || websocketProperties.isAlarmBatch()))
+				return;
+			AlarmBatcher batcher = new AlarmBatcher(subscriber, taskScheduler, websocketProperties.getAlarmBatchSize(), 
+					websocketProperties.getAlarmLinger(), websocketProperties.getAlarmQueueCapacity(), websocketProperties.getAlarmOverflowPolicy(), 
+					websocketProperties.getAlarmBlockTimeout());
+			subscriber.setBatcher(batcher);
+			alarmBatchers.add(batcher);
+		}
+	}
+	
+	/**
+	 * 停止websocket会话，交付告警批量交付队列中的告警，在断开连接前发送消息确认，
+	 * 断开连接后关闭消息确认批量发送，停止过程中不会再建立新的消息确认批量发送。
+	 */
+	@Override
+	public void stop() {
+		for(AlarmBatcher batcher : alarmBatchers) {
+			batcher.close();
+			batcher.getSubscriber().setBatcher(null);
+		}
+		alarmBatchers.clear();
+		AckBatcher acks;
+		synchronized(this) {
+			stopping = true;
+			acks = ackBatcher;
+		}
+		try {
+			if(acks != null)
+				acks.flush();
+			super.stop();
+		} finally {
+			synchronized(this) {
+				acks = ackBatcher;
+				ackBatcher = null;
+				stopping = false;
+			}
+			if(acks != null)
+				acks.close();
+		}
+	}
+	
 	/**
 	 * 客户端同步读取设备属性值。
 	 * @param deviceId 读取属性值的设备。
@@ -237,6 +509,469 @@ public class WebsocketClientSession  extends SessionManager {
 		handler.actionAsync();
 	}
 
+	/**
+	 * 客户端异步读取设备属性值，超时时间为websocket配置的超时时间。
+	 * @param deviceId 读取属性值的设备。
+	 * @param attribute 属性名称。
+	 * @param <T> 返回属性值类。
+	 * @param responseType 返回属性值的类型。
+	 * @return 返回属性值的future，取消future将取消等待响应。
+	 */
+	public <T> CompletableFuture<T> getAsync(String deviceId, String attribute, Class<T> responseType) {
+		return getAsync(deviceId, attribute, responseType, websocketProperties.getTimeout(), TimeUnit.SECONDS);
+	}
+	
+	/**
+	 * 客户端异步读取设备属性值。
+	 * @param deviceId 读取属性值的设备。
+	 * @param attribute 属性名称。
+	 * @param <T> 返回属性值类。
+	 * @param responseType 返回属性值的类型。
+	 * @param timeout 等待响应的超时时间。
+	 * @param unit 超时时间的单位。
+	 * @return 返回属性值的future，取消future将取消等待响应。
+	 */
+	public <T> CompletableFuture<T> getAsync(String deviceId, String attribute, Class<T> responseType, long timeout, TimeUnit unit) {
+		GetHandler<T> handler = new GetHandler<T>(session, deviceId, attribute, responseType);
+		return handler.getFuture(timeout, unit);
+	}
+	
+	/**
+	 * 客户端异步读取设备属性值，超时时间为websocket配置的超时时间。
+	 * @param deviceId 读取属性值的设备。
+	 * @param attribute 属性名称。
+	 * @param <T> 返回属性值参数化类。
+	 * @param responseType 返回属性值的参数化类型。
+	 * @return 返回属性值的future，取消future将取消等待响应。
+	 */
+	public <T> CompletableFuture<T> getAsync(String deviceId, String attribute, ParameterizedTypeReference<T> responseType) {
+		return getAsync(deviceId, attribute, responseType, websocketProperties.getTimeout(), TimeUnit.SECONDS);
+	}
+	
+	/**
+	 * 客户端异步读取设备属性值。
+	 * @param deviceId 读取属性值的设备。
+	 * @param attribute 属性名称。
+	 * @param <T> 返回属性值参数化类。
+	 * @param responseType 返回属性值的参数化类型。
+	 * @param timeout 等待响应的超时时间。
+	 * @param unit 超时时间的单位。
+	 * @return 返回属性值的future，取消future将取消等待响应。
+	 */
+	public <T> CompletableFuture<T> getAsync(String deviceId, String attribute, ParameterizedTypeReference<T> responseType, long timeout, TimeUnit unit) {
+		GetHandler<T> handler = new GetHandler<T>(session, deviceId, attribute, responseType);
+		return handler.getFuture(timeout, unit);
+	}
+	
+	/**
+	 * 客户端异步设置设备属性值，超时时间为websocket配置的超时时间。
+	 * @param deviceId 设置属性值的设备。
+	 * @param attribute 属性名称。
+	 * @param value 属性值。
+	 * @return 返回设置完成的future，取消future将取消等待响应。
+	 */
+	public CompletableFuture<Void> setAsync(String deviceId, String attribute, Object value) {
+		return setAsync(deviceId, attribute, value, websocketProperties.getTimeout(), TimeUnit.SECONDS);
+	}
+	
+	/**
+	 * 客户端异步设置设备属性值。
+	 * @param deviceId 设置属性值的设备。
+	 * @param attribute 属性名称。
+	 * @param value 属性值。
+	 * @param timeout 等待响应的超时时间。
+	 * @param unit 超时时间的单位。
+	 * @return 返回设置完成的future，取消future将取消等待响应。
+	 */
+	public CompletableFuture<Void> setAsync(String deviceId, String attribute, Object value, long timeout, TimeUnit unit) {
+		SetHandler handler = new SetHandler(session, deviceId, attribute, value);
+		return handler.setFuture(timeout, unit);
+	}
+	
+	/**
+	 * 客户端异步调用设备操作，超时时间为websocket配置的超时时间。
+	 * @param deviceId 被调用的设备。
+	 * @param action 操作名称。
+	 * @param request 操作请求值。
+	 * @param <T> 返回响应值类。
+	 * @param responseType 返回响应值的类型。
+	 * @return 返回操作响应的future，取消future将取消等待响应。
+	 */
+	public <T> CompletableFuture<T> actionAsync(String deviceId, String action, Object request, Class<T> responseType) {
+		return actionAsync(deviceId, action, request, responseType, websocketProperties.getTimeout(), TimeUnit.SECONDS);
+	}
+	
+	/**
+	 * 客户端异步调用设备操作。
+	 * @param deviceId 被调用的设备。
+	 * @param action 操作名称。
+	 * @param request 操作请求值。
+	 * @param <T> 返回响应值类。
+	 * @param responseType 返回响应值的类型。
+	 * @param timeout 等待响应的超时时间。
+	 * @param unit 超时时间的单位。
+	 * @return 返回操作响应的future，取消future将取消等待响应。
+	 */
+	public <T> CompletableFuture<T> actionAsync(String deviceId, String action, Object request, Class<T> responseType, long timeout, TimeUnit unit) {
+		ActionHandler<T> handler = new ActionHandler<T>(session, deviceId, action, request, responseType);
+		return handler.actionFuture(timeout, unit);
+	}
+	
+	/**
+	 * 客户端异步调用设备操作，超时时间为websocket配置的超时时间。
+	 * @param deviceId 被调用的设备。
+	 * @param action 操作名称。
+	 * @param request 操作请求值。
+	 * @param <T> 返回响应值参数化类。
+	 * @param responseType 返回响应值的参数化类型。
+	 * @return 返回操作响应的future，取消future将取消等待响应。
+	 */
+	public <T> CompletableFuture<T> actionAsync(String deviceId, String action, Object request, ParameterizedTypeReference<T> responseType) {
+		return actionAsync(deviceId, action, request, responseType, websocketProperties.getTimeout(), TimeUnit.SECONDS);
+	}
+	
+	/**
+	 * 客户端异步调用设备操作。
+	 * @param deviceId 被调用的设备。
+	 * @param action 操作名称。
+	 * @param request 操作请求值。
+	 * @param <T> 返回响应值参数化类。
+	 * @param responseType 返回响应值的参数化类型。
+	 * @param timeout 等待响应的超时时间。
+	 * @param unit 超时时间的单位。
+	 * @return 返回操作响应的future，取消future将取消等待响应。
+	 */
+	public <T> CompletableFuture<T> actionAsync(String deviceId, String action, Object request, ParameterizedTypeReference<T> responseType, long timeout, TimeUnit unit) {
+		ActionHandler<T> handler = new ActionHandler<T>(session, deviceId, action, request, responseType);
+		return handler.actionFuture(timeout, unit);
+	}
+	
+	/**
+	 * 客户端异步调用无响应值的设备操作，超时时间为websocket配置的超时时间。
+	 * @param deviceId 被调用的设备。
+	 * @param action 操作名称。
+	 * @param request 操作请求值。
+	 * @return 返回操作完成的future，取消future将取消等待响应。
+	 */
+	public CompletableFuture<Void> actionAsync(String deviceId, String action, Object request) {
+		return actionAsync(deviceId, action, request, websocketProperties.getTimeout(), TimeUnit.SECONDS);
+	}
+	
+	/**
+	 * 客户端异步调用无响应值的设备操作。
+	 * @param deviceId 被调用的设备。
+	 * @param action 操作名称。
+	 * @param request 操作请求值。
+	 * @param timeout 等待响应的超时时间。
+	 * @param unit 超时时间的单位。
+	 * @return 返回操作完成的future，取消future将取消等待响应。
+	 */
+	public CompletableFuture<Void> actionAsync(String deviceId, String action, Object request, long timeout, TimeUnit unit) {
+		ActionHandler<Void> handler = new ActionHandler<Void>(session, deviceId, action, request);
+		return handler.actionFuture(timeout, unit);
+	}
+
+	/**
+	 * 客户端批量读取多个设备的同一属性值，超时时间为websocket配置的超时时间。
+	 * @param deviceIds 读取属性值的设备列表。
+	 * @param attribute 属性名称。
+	 * @param <T> 返回属性值类。
+	 * @param responseType 返回属性值的类型。
+	 * @return 返回以设备标识符为键的属性值和错误。
+	 */
+	public <T> BatchResult<String, T> getAll(Collection<String> deviceIds, String attribute, Class<T> responseType) {
+		return getAll(deviceIds, attribute, responseType, websocketProperties.getTimeout(), TimeUnit.SECONDS);
+	}
+	
+	/**
+	 * 客户端批量读取多个设备的同一属性值，所有请求共用一个截止时间，截止时间到达时返回已收到的结果。
+	 * @param deviceIds 读取属性值的设备列表。
+	 * @param attribute 属性名称。
+	 * @param <T> 返回属性值类。
+	 * @param responseType 返回属性值的类型。
+	 * @param timeout 所有请求的总超时时间。
+	 * @param unit 超时时间的单位。
+	 * @return 返回以设备标识符为键的属性值和错误。
+	 */
+	public <T> BatchResult<String, T> getAll(Collection<String> deviceIds, String attribute, Class<T> responseType, long timeout, TimeUnit unit) {
+		Map<String, GetHandler<T>> handlers = new LinkedHashMap<String, GetHandler<T>>();
+		for (String deviceId : deviceIds) {
+			handlers.put(deviceId, new GetHandler<T>(session, deviceId, attribute, responseType));
+		}
+		return new BatchHandler<String, T>(handlers, timeout, unit).execute();
+	}
+	
+	/**
+	 * 客户端批量读取一个设备的多个属性值，超时时间为websocket配置的超时时间。
+	 * @param deviceId 读取属性值的设备。
+	 * @param attributes 属性名称列表。
+	 * @param <T> 返回属性值类。
+	 * @param responseType 返回属性值的类型。
+	 * @return 返回以属性名称为键的属性值和错误。
+	 */
+	public <T> BatchResult<String, T> getMany(String deviceId, Collection<String> attributes, Class<T> responseType) {
+		return getMany(deviceId, attributes, responseType, websocketProperties.getTimeout(), TimeUnit.SECONDS);
+	}
+	
+	/**
+	 * 客户端批量读取一个设备的多个属性值，所有请求共用一个截止时间，截止时间到达时返回已收到的结果。
+	 * @param deviceId 读取属性值的设备。
+	 * @param attributes 属性名称列表。
+	 * @param <T> 返回属性值类。
+	 * @param responseType 返回属性值的类型。
+	 * @param timeout 所有请求的总超时时间。
+	 * @param unit 超时时间的单位。
+	 * @return 返回以属性名称为键的属性值和错误。
+	 */
+	public <T> BatchResult<String, T> getMany(String deviceId, Collection<String> attributes, Class<T> responseType, long timeout, TimeUnit unit) {
+		Map<String, GetHandler<T>> handlers = new LinkedHashMap<String, GetHandler<T>>();
+		for (String attribute : attributes) {
+			handlers.put(attribute, new GetHandler<T>(session, deviceId, attribute, responseType));
+		}
+		return new BatchHandler<String, T>(handlers, timeout, unit).execute();
+	}
+	
+	/**
+	 * 客户端批量读取一个设备的多个不同类型的属性值，超时时间为websocket配置的超时时间。
+	 * @param deviceId 读取属性值的设备。
+	 * @param attributes 属性名称和返回属性值类型的映射。
+	 * @return 返回以属性名称为键的属性值和错误。
+	 */
+	public BatchResult<String, Object> getMany(String deviceId, Map<String, Class<?>> attributes) {
+		return getMany(deviceId, attributes, websocketProperties.getTimeout(), TimeUnit.SECONDS);
+	}
+	
+	/**
+	 * 客户端批量读取一个设备的多个不同类型的属性值，所有请求共用一个截止时间，截止时间到达时返回已收到的结果。
+	 * @param deviceId 读取属性值的设备。
+	 * @param attributes 属性名称和返回属性值类型的映射。
+	 * @param timeout 所有请求的总超时时间。
+	 * @param unit 超时时间的单位。
+	 * @return 返回以属性名称为键的属性值和错误。
+	 */
+	@SuppressWarnings("unchecked")
+	public BatchResult<String, Object> getMany(String deviceId, Map<String, Class<?>> attributes, long timeout, TimeUnit unit) {
+		Map<String, GetHandler<Object>> handlers = new LinkedHashMap<String, GetHandler<Object>>();
+		for (Map.Entry<String, Class<?>> attribute : attributes.entrySet()) {
+			handlers.put(attribute.getKey(), new GetHandler<Object>(session, deviceId, attribute.getKey(), (Class<Object>) attribute.getValue()));
+		}
+		return new BatchHandler<String, Object>(handlers, timeout, unit).execute();
+	}
+
+	private Response request(String deviceId, RequestPublisher publisher) {
+		acquire(deviceId);
+		try {
+			return doRequest(deviceId, publisher);
+		} finally {
+			release(deviceId);
+		}
+	}
+	
+	private Response doRequest(String deviceId, RequestPublisher publisher) {
+		if(websocketProperties.isSharedResultSubscription()) {
+			CompletableFuture<Response> future = getCorrelator().publish(deviceId, publisher);
+			try {
+				return future.get(websocketProperties.getTimeout(), TimeUnit.SECONDS);
+			} catch (InterruptedException | ExecutionException | TimeoutException e) {
+				future.cancel(false);
+				if(e instanceof TimeoutException)
+					syncExpiredCount.incrementAndGet();
+				throw new StatusException(e.getMessage());
+			}
+		}
+		
+		RequestPublishSyncHandler request = new RequestPublishSyncHandler(deviceId, publisher);
+		connect(request);
+		
+		try {
+			return request.get(websocketProperties.getTimeout(), TimeUnit.SECONDS);
+		} catch (InterruptedException | ExecutionException | TimeoutException e) {
+			if(e instanceof TimeoutException)
+				syncExpiredCount.incrementAndGet();
+			throw new StatusException(e.getMessage());
+		} finally {
+			disconnect(request);
+			request.unsubscribe();
+		}
+	}
+	
+	private void requestAsync(String deviceId, RequestPublisher publisher, ResponseSubscriber subscriber) {
+		requestAsync(deviceId, publisher, subscriber, null);
+	}
+	
+	/**
+	 * 通过共享的结果订阅异步发出请求。
+	 * @param finished 收到响应、出错或者超时后，在调用响应处理之前执行的操作，可以为null。
+	 */
+	private void requestAsync(String deviceId, RequestPublisher publisher, ResponseSubscriber subscriber, Runnable finished) {
+		subscriber.setWebsocketClientSession(this);
+		CompletableFuture<Response> future = publish(deviceId, publisher);
+		Expiry expiry = getExpiryWheel().schedule(() -> future.completeExceptionally(new TimeoutException("timeout")), 
+				websocketProperties.getTimeout(), TimeUnit.SECONDS);
+		future.whenComplete((response, e) -> {
+			expiry.cancel();
+			if(finished != null)
+				finished.run();
+			if(e != null)
+				subscriber.onError(e.getMessage());
+			else
+				subscriber.onResponse(response);
+		});
+	}
+	
+	private void requestAsync(String deviceId, RequestPublishAsyncHandler handler) {
+		requestAsync(deviceId, handler, null);
+	}
+	
+	/**
+	 * 通过单独的结果订阅异步发出请求。
+	 * @param finished 收到响应或者超时后，在调用响应处理之前执行的操作，可以为null。
+	 */
+	private void requestAsync(String deviceId, RequestPublishAsyncHandler handler, Runnable finished) {
+		CompletableFuture<Void> permit = limiter.isEnabled() ? limiter.acquire(deviceId) : CompletableFuture.completedFuture(null);
+		Expiry expiry = getExpiryWheel().schedule(handler::expire, websocketProperties.getTimeout(), TimeUnit.SECONDS);
+		handler.setCompletion(() -> {
+			expiry.cancel();
+			if(limiter.isEnabled() && !permit.cancel(false))
+				limiter.release(deviceId);
+			if(finished != null)
+				finished.run();
+		});
+		permit.thenRun(() -> {
+			if(handler.isFinished())
+				return;
+			connect(handler);
+			if(handler.isFinished())
+				disconnect(handler);
+		});
+	}
+	
+	private void acquire(String deviceId) {
+		if(!limiter.isEnabled())
+			return;
+		CompletableFuture<Void> permit = limiter.acquire(deviceId);
+		try {
+			permit.get(websocketProperties.getTimeout(), TimeUnit.SECONDS);
+		} catch (InterruptedException | ExecutionException | TimeoutException e) {
+			if(!permit.cancel(false))
+				limiter.release(deviceId);
+			throw new StatusException("wait for device [" + deviceId + "] error: " + e.getMessage());
+		}
+	}
+	
+	private void release(String deviceId) {
+		if(limiter.isEnabled())
+			limiter.release(deviceId);
+	}
+	
+	private CompletableFuture<Response> publish(String deviceId, RequestPublisher publisher) {
+		if(!limiter.isEnabled())
+			return send(deviceId, publisher);
+		
+		CompletableFuture<Response> response = new CompletableFuture<Response>();
+		CompletableFuture<Void> permit;
+		try {
+			permit = limiter.acquire(deviceId);
+		} catch(Throwable e) {
+			return failed(e);
+		}
+		permit.whenComplete((v, e) -> {
+			if(e != null) {
+				response.completeExceptionally(e);
+				return;
+			}
+			if(response.isDone()) {
+				limiter.release(deviceId);
+				return;
+			}
+			CompletableFuture<Response> future = send(deviceId, publisher);
+			future.whenComplete((r, t) -> {
+				limiter.release(deviceId);
+				if(t != null)
+					response.completeExceptionally(t);
+				else
+					response.complete(r);
+			});
+			response.whenComplete((r, t) -> future.cancel(false));
+		});
+		response.whenComplete((r, e) -> permit.cancel(false));
+		return response;
+	}
+	
+	private CompletableFuture<Response> send(String deviceId, RequestPublisher publisher) {
+		if(websocketProperties.isSharedResultSubscription())
+			return getCorrelator().publish(deviceId, publisher);
+		
+		RequestPublishFutureHandler handler = new RequestPublishFutureHandler(deviceId, publisher);
+		CompletableFuture<Response> future = handler.getFuture();
+		future.whenComplete((response, e) -> {
+			disconnect(handler);
+			handler.unsubscribe();
+		});
+		connect(handler);
+		return future;
+	}
+	
+	private <T> CompletableFuture<T> publish(String deviceId, RequestPublisher publisher, long timeout, TimeUnit unit, Function<Response, T> converter) {
+		return complete(publish(deviceId, publisher), timeout, unit, converter);
+	}
+	
+	private <T> CompletableFuture<T> complete(CompletableFuture<Response> response, long timeout, TimeUnit unit, Function<Response, T> converter) {
+		CompletableFuture<T> result = new CompletableFuture<T>();
+		Expiry expiry = getExpiryWheel().schedule(
+				() -> result.completeExceptionally(new TimeoutException("timeout")), timeout, unit);
+		
+		response.whenComplete((r, e) -> {
+			if(e != null)
+				result.completeExceptionally(e);
+			else if(!r.isSuccess())
+				result.completeExceptionally(new StatusException(r.getError()));
+			else {
+				try {
+					result.complete(converter.apply(r));
+				} catch(Throwable t) {
+					result.completeExceptionally(t);
+				}
+			}
+		});
+		result.whenComplete((r, e) -> {
+			expiry.cancel();
+			response.cancel(false);
+		});
+		return result;
+	}
+	
+	private CompletableFuture<Response> coalesce(String deviceId, String attribute) {
+		return coalescer.get(deviceId, attribute, () -> {
+			CompletableFuture<Response> future = publish(deviceId, new GetRequestPublisher(attribute));
+			Expiry expiry = getExpiryWheel().schedule(() -> future.completeExceptionally(new TimeoutException("timeout")), 
+					websocketProperties.getTimeout(), TimeUnit.SECONDS);
+			future.whenComplete((r, e) -> expiry.cancel());
+			return future;
+		});
+	}
+	
+	private static <T> CompletableFuture<T> failed(Throwable e) {
+		CompletableFuture<T> future = new CompletableFuture<T>();
+		future.completeExceptionally(e);
+		return future;
+	}
+	
+	private synchronized ExpiryWheel getExpiryWheel() {
+		if(expiryWheel == null)
+			expiryWheel = new ExpiryWheel(taskScheduler, websocketProperties.getExpiryTick());
+		return expiryWheel;
+	}
+	
+	private synchronized ResultCorrelator getCorrelator() {
+		if(correlator == null) {
+			correlator = new ResultCorrelator(websocketProperties.getResultIdleTimeout() * 1000);
+			connect(correlator);
+			handlers.add(correlator);
+		}
+		return correlator;
+	}
+
 	private class GetHandler<T> {
 		private HttpSession session;
 		private String deviceId;
@@ -244,6 +979,7 @@ public class WebsocketClientSession  extends SessionManager {
 		private String attribute;
 		private Response response;
 		private DataType responseDataType;
+		private DataConverter converter;
 		
 		private Class<T> responseTypeClass = null;
 		private ParameterizedTypeReference<T> responseType = null;
@@ -306,40 +1042,91 @@ public class WebsocketClientSession  extends SessionManager {
 			subscriber.setAttribute(attribute);
 			subscriber.setDevice(device);
 			subscriber.setResponseDataType(responseDataType);
-			GetAsyncHandler handler = new GetAsyncHandler(WebsocketClientSession.this, deviceId, request, subscriber);
-			connect(handler);
+			if(websocketProperties.isSharedResultSubscription())
+				requestAsync(deviceId, request, subscriber);
+			else {
+				GetAsyncHandler handler = new GetAsyncHandler(WebsocketClientSession.this, deviceId, request, subscriber);
+				requestAsync(deviceId, handler);
+			}
+		}
+		
+		public CompletableFuture<T> getFuture(long timeout, TimeUnit unit) {
+			try {
+				init();
+			} catch(Throwable e) {
+				return failed(e);
+			}
+			return publishFuture(timeout, unit);
+		}
+		
+		private CompletableFuture<T> publishFuture(long timeout, TimeUnit unit) {
+			if(attributeCache != null) {
+				Response cached = attributeCache.get(deviceId, attribute);
+				if(cached != null) {
+					try {
+						return CompletableFuture.completedFuture(getResponse(cached));
+					} catch(Throwable e) {
+						return failed(e);
+					}
+				}
+			}
+			
+			long version = attributeCache == null ? 0 : attributeCache.getVersion(deviceId, attribute);
+			CompletableFuture<Response> response = coalescer != null ? coalesce(deviceId, attribute) : publish(deviceId, new GetRequestPublisher(attribute));
+			return complete(response, timeout, unit, r -> {
+				cache(r, version);
+				return getResponse(r);
+			});
+		}
+		
+		private void cache(Response response, long version) {
+			if(attributeCache != null)
+				attributeCache.put(deviceId, attribute, response, attributeCache.getTtl(device.getDeviceType().getName(), attribute), version);
 		}
 		
 		private void init() {
 			device = session.getDevice(deviceId);
 			if(device == null)
 				throw new NotFoundException("device: " + deviceId);
+			Object target = responseType == null ? responseTypeClass : responseType;
 			AttributeType type = device.getDeviceType().getAttDefinition().get(attribute);
-			if(type == null)
-				throw new NotFoundException("attribute: " + attribute);
-			responseDataType = type.getDataType();
-			if(responseDataType == null)
+			if(type == null || type.getDataType() == null)
 				throw new NotFoundException("attribute: " + attribute);
+			converter = new DataConverter(type, target);
+			responseDataType = converter.getDataType();
 		}
 		
-		@SuppressWarnings("unchecked")
 		private T getResponse() {
-			if(responseType == null)
-				return (T) responseDataType.getData(response.getValue(), responseTypeClass);
-			else
-				return (T) responseDataType.getData(response.getValue(), responseType);
+			return getResponse(response);
+		}
+		
+		@SuppressWarnings("unchecked")
+		private T getResponse(Response response) {
+			return (T) converter.decode(response.getValue());
 		}
 		
 		private Response get(String deviceId, String attribute) {
-			RequestPublishSyncHandler request = new RequestPublishSyncHandler(deviceId, new GetRequestPublisher(attribute));
-	        
-	        connect(request);
+			if(attributeCache == null)
+				return load(deviceId, attribute);
+			
+			Response cached = attributeCache.get(deviceId, attribute);
+			if(cached != null)
+				return cached;
+			long version = attributeCache.getVersion(deviceId, attribute);
+			Response response = load(deviceId, attribute);
+			cache(response, version);
+			return response;
+		}
+		
+		private Response load(String deviceId, String attribute) {
+			if(coalescer == null)
+				return request(deviceId, new GetRequestPublisher(attribute));
 			
-	        try {
-	        	Response response = request.get(websocketProperties.getTimeout(), TimeUnit.SECONDS);
-	        	disconnect(request);
-				return response;
+			CompletableFuture<Response> future = coalesce(deviceId, attribute);
+			try {
+				return future.get(websocketProperties.getTimeout(), TimeUnit.SECONDS);
 			} catch (InterruptedException | ExecutionException | TimeoutException e) {
+				future.cancel(false);
 				throw new StatusException(e.getMessage());
 			}
 		}
@@ -389,18 +1176,42 @@ public class WebsocketClientSession  extends SessionManager {
 			AttributeType attType = device.getDeviceType().getAttDefinition().get(attribute);
 			if(attType == null)
 				throw new NotFoundException("attribute: " + attribute);
-			attributeValue = attType.getAttValue(value);
+			attributeValue = new DataConverter(attType, null).encode(value);
+		}
+		
+		public CompletableFuture<Void> setFuture(long timeout, TimeUnit unit) {
+			try {
+				init();
+			} catch(Throwable e) {
+				return failed(e);
+			}
+			invalidateAttribute(deviceId, attribute);
+			CompletableFuture<Void> result = publish(deviceId, new SetRequestPublisher(attribute, attributeValue), timeout, unit, r -> {
+				invalidateAttribute(deviceId, attribute);
+				return null;
+			});
+			result.whenComplete((r, e) -> {
+				if(e != null)
+					invalidateAttribute(deviceId, attribute);
+			});
+			return result;
 		}
 		
 		public void setAsync() {
 			try{
 				init();
 				SetRequestPublisher request = new SetRequestPublisher(attribute, attributeValue);
+				invalidateAttribute(deviceId, attribute);
 				subscriber.setDevice(device);
 				subscriber.setAttribute(attribute);
 				subscriber.setValue(value);
-				SetAsyncHandler handler = new SetAsyncHandler(WebsocketClientSession.this, deviceId, request, subscriber);
-				connect(handler);
+				Runnable invalidate = () -> invalidateAttribute(deviceId, attribute);
+				if(websocketProperties.isSharedResultSubscription())
+					requestAsync(deviceId, request, subscriber, invalidate);
+				else {
+					SetAsyncHandler handler = new SetAsyncHandler(WebsocketClientSession.this, deviceId, request, subscriber);
+					requestAsync(deviceId, handler, invalidate);
+				}
 			} catch(Throwable e) {
 				logger.error("set attribute [" + attribute + "] error: ", e);
 				throw new ValueException("set attribute [" + attribute + "] error: " + e.getMessage());
@@ -408,17 +1219,13 @@ public class WebsocketClientSession  extends SessionManager {
 		}
 		
 		private void set(String deviceId, String attribute, AttValueInfo value) {
-			RequestPublishSyncHandler request = new RequestPublishSyncHandler(deviceId, new SetRequestPublisher(attribute, value));
-	        
-	        connect(request);
-			
-	        try {
-	        	Response response = request.get(websocketProperties.getTimeout(), TimeUnit.SECONDS);
-	        	disconnect(request);
-	        	if(!response.isSuccess())
+			invalidateAttribute(deviceId, attribute);
+			try {
+				Response response = request(deviceId, new SetRequestPublisher(attribute, value));
+				if(!response.isSuccess())
 					throw new StatusException(response.getError());
-			} catch (InterruptedException | ExecutionException | TimeoutException e) {
-				throw new StatusException(e.getMessage());
+			} finally {
+				invalidateAttribute(deviceId, attribute);
 			}
 		}
 	}
@@ -431,7 +1238,6 @@ public class WebsocketClientSession  extends SessionManager {
 		private Object request;
 		private Response response;
 		private ActionType actionType;
-		private DataType responseDataType;
 		
 		private Class<T> responseTypeClass = null;
 		private ParameterizedTypeReference<T> responseType = null;
@@ -502,10 +1308,8 @@ public class WebsocketClientSession  extends SessionManager {
 				if(!response.isSuccess())
 					throw new StatusException(response.getError());
 				else {
-					if(actionType.getResponse() != null) {
-						responseDataType = actionType.getResponseAttributeType().getDataType();
+					if(actionType.getResponse() != null)
 						return getResponse();
-					}
 					else
 						return null;
 				}
@@ -522,26 +1326,41 @@ public class WebsocketClientSession  extends SessionManager {
 			subscriber.setDevice(device);
 			subscriber.setResponseDataType(actionType.getResponseAttributeType().getDataType());
 			subscriber.setRequest(request);
-			ActionAsyncHandler handler = new ActionAsyncHandler(WebsocketClientSession.this, deviceId, request, subscriber);
-			connect(handler);
+			if(websocketProperties.isSharedResultSubscription())
+				requestAsync(deviceId, request, subscriber);
+			else {
+				ActionAsyncHandler handler = new ActionAsyncHandler(WebsocketClientSession.this, deviceId, request, subscriber);
+				requestAsync(deviceId, handler);
+			}
+		}
+		
+		public CompletableFuture<T> actionFuture(long timeout, TimeUnit unit) {
+			AttValueInfo requestValue;
+			try {
+				requestValue = init();
+			} catch(Throwable e) {
+				return failed(e);
+			}
+			return publish(deviceId, new ActionRequestPublisher(action, requestValue), timeout, unit, r -> {
+				if(actionType.getResponse() == null)
+					return null;
+				return getResponse(r);
+			});
 		}
 		
 		private AttValueInfo init() {
 			device = session.getDevice(deviceId);
 			if(device == null)
 				throw new NotFoundException("device: " + deviceId);
-			ActionType type = device.getDeviceType().getActionTypes().get(action);
-			if(type == null)
-				throw new NotFoundException("action: " + action);
 			actionType = device.getDeviceType().getActionTypes().get(action);
 			if(actionType == null)
 				throw new NotFoundException("action: " + action);
 			AttValueInfo requestValue = null;
 			if(actionType.getRequest() != null) {
-				DataType requestType = actionType.getRequestAttributeType().getDataType();
+				DataConverter converter = new DataConverter(actionType.getRequestAttributeType().getDataType(), null);
 				
 				try{
-					requestValue = requestType.getAttValue(request);
+					requestValue = converter.encode(request);
 				} catch(Throwable e) {
 					logger.error("action [" + action + "] request error: ", e);
 					throw new ValueException("action [" + action + "] request error: " + e.getMessage());
@@ -550,27 +1369,131 @@ public class WebsocketClientSession  extends SessionManager {
 			return requestValue;
 		}
 		
-		@SuppressWarnings("unchecked")
 		protected T getResponse() {
-			if(responseTypeClass != null)
-				return  (T) responseDataType.getData(response.getValue(), responseTypeClass);
-			else if(responseType != null)
-				return  (T) responseDataType.getData(response.getValue(), responseType);
-			else
-				return null;
+			return getResponse(response);
+		}
+		
+		@SuppressWarnings("unchecked")
+		private T getResponse(Response response) {
+			return (T) getResponseConverter().decode(response.getValue());
+		}
+		
+		private DataConverter getResponseConverter() {
+			Object target = responseTypeClass != null ? responseTypeClass : responseType;
+			return new DataConverter(actionType.getResponseAttributeType().getDataType(), target);
 		}
 		
 		private Response action(String deviceId, String action, AttValueInfo value) {
-			RequestPublishSyncHandler request = new RequestPublishSyncHandler(deviceId, new ActionRequestPublisher(action, value));
-	        
-	        connect(request);
+			return request(deviceId, new ActionRequestPublisher(action, value));
+		}
+	}
+
+	private class BatchHandler<K, T> {
+		private Map<K, GetHandler<T>> handlers;
+		private long deadline;
+		private BatchResult<K, T> result = new BatchResult<K, T>();
+		private Queue<K> queue = new ConcurrentLinkedQueue<K>();
+		private Set<CompletableFuture<T>> running = ConcurrentHashMap.newKeySet();
+		private AtomicInteger permits = new AtomicInteger(websocketProperties.getBatchParallelism());
+		private AtomicInteger filling = new AtomicInteger();
+		private CountDownLatch done;
+		private boolean finished = false;
+		
+		public BatchHandler(Map<K, GetHandler<T>> handlers, long timeout, TimeUnit unit) {
+			super();
+			this.handlers = handlers;
+			this.deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+		}
+		
+		public BatchResult<K, T> execute() {
+			for (Map.Entry<K, GetHandler<T>> entry : handlers.entrySet()) {
+				try {
+					entry.getValue().init();
+					queue.add(entry.getKey());
+				} catch(Throwable e) {
+					result.addError(entry.getKey(), e);
+				}
+			}
+			done = new CountDownLatch(queue.size());
+			fill();
 			
-	        try {
-	        	Response response = request.get(websocketProperties.getTimeout(), TimeUnit.SECONDS);
-	        	disconnect(request);
-				return response;
-			} catch (InterruptedException | ExecutionException | TimeoutException e) {
-				throw new StatusException(e.getMessage());
+			try {
+				long remaining = deadline - System.currentTimeMillis();
+				if(!done.await(remaining, TimeUnit.MILLISECONDS))
+					expire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				expire();
+			}
+			// 之后完成的请求不再修改返回的结果，没有结果的请求都按超时处理
+			synchronized(this) {
+				finished = true;
+				Map<K, Throwable> errors = result.getErrors();
+				for (K key : handlers.keySet()) {
+					if(!result.isSuccess(key) && !errors.containsKey(key))
+						result.addError(key, new TimeoutException("timeout"));
+				}
+			}
+			return result;
+		}
+		
+		/**
+		 * 在循环中补充请求，请求同步完成时嵌套的调用只增加计数，由正在执行的调用继续补充，避免递归。
+		 */
+		private void fill() {
+			if(filling.getAndIncrement() != 0)
+				return;
+			do {
+				fillPermits();
+			} while (filling.decrementAndGet() != 0);
+		}
+		
+		private void fillPermits() {
+			while (permits.getAndDecrement() > 0) {
+				K key = queue.poll();
+				if(key == null)
+					break;
+				long remaining = deadline - System.currentTimeMillis();
+				if(remaining <= 0) {
+					complete(key, null, new TimeoutException("timeout"));
+					continue;
+				}
+				CompletableFuture<T> future = handlers.get(key).publishFuture(remaining, TimeUnit.MILLISECONDS);
+				running.add(future);
+				future.whenComplete((value, e) -> {
+					running.remove(future);
+					complete(key, value, e);
+					fill();
+				});
+			}
+			permits.incrementAndGet();
+		}
+		
+		private void complete(K key, T value, Throwable e) {
+			if(e instanceof CompletionException && e.getCause() != null)
+				e = e.getCause();
+			if(e instanceof CancellationException)
+				e = new TimeoutException("timeout");
+			
+			synchronized(this) {
+				if(!finished) {
+					if(e == null)
+						result.addValue(key, value);
+					else
+						result.addError(key, e);
+				}
+			}
+			permits.incrementAndGet();
+			done.countDown();
+		}
+		
+		private void expire() {
+			K key;
+			while ((key = queue.poll()) != null) {
+				complete(key, null, new TimeoutException("timeout"));
+			}
+			for (CompletableFuture<T> future : running) {
+				future.cancel(false);
 			}
 		}
 	}
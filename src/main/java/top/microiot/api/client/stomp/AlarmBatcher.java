@@ -0,0 +1,160 @@
+package top.microiot.api.client.stomp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.TaskScheduler;
+
+import top.microiot.api.BoundedBatcher;
+import top.microiot.api.OverflowPolicy;
+import top.microiot.api.stomp.Acknowledgement;
+import top.microiot.domain.Alarm;
+import top.microiot.exception.StatusException;
+
+/**
+ * 告警批量交付类，收到的告警先放入有界队列，达到批量大小或者等待时间后在调度线程中一起交给告警处理，
+ * 接收消息的线程不等待告警处理。REJECT策略与DROP_NEWEST相同，接收消息的线程不抛出异常。
+ */
+public class AlarmBatcher extends BoundedBatcher<AlarmBatcher.Entry> {
+	private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	private final AlarmSubscriber subscriber;
+
+	private final AtomicLong deliveredCount = new AtomicLong();
+	private final AtomicLong closedCount = new AtomicLong();
+	private final AtomicLong failedCount = new AtomicLong();
+
+	/**
+	 * 告警批量交付构造函数。
+	 * @param subscriber 告警处理。
+	 * @param taskScheduler 执行交付的调度。
+	 * @param batchSize 一次交付的最大告警数量。
+	 * @param lingerMillis 第一个告警放入队列后等待交付的最长时间，单位为毫秒。
+	 * @param capacity 队列容量。
+	 * @param overflowPolicy 队列已满时的处理策略。
+	 * @param blockTimeoutMillis BLOCK策略时等待队列空间的最长时间，单位为毫秒，超时后丢弃新收到的告警。
+	 */
+	public AlarmBatcher(AlarmSubscriber subscriber, TaskScheduler taskScheduler, int batchSize, long lingerMillis, int capacity, 
+			OverflowPolicy overflowPolicy, long blockTimeoutMillis) {
+		super(taskScheduler, batchSize, lingerMillis, capacity, overflowPolicy, blockTimeoutMillis);
+		this.subscriber = subscriber;
+	}
+
+	/**
+	 * 放入收到的告警。
+	 * @param alarm 告警通知。
+	 */
+	public void offer(Alarm alarm) {
+		offer(alarm, null);
+	}
+
+	/**
+	 * 放入收到的告警，告警处理成功后确认，处理失败以及因队列已满被丢弃时拒绝，最多由代理重新投递一次；
+	 * 转换失败的告警重新投递也不会成功，拒绝后不再重新入队。已经关闭时不确认也不拒绝，断开连接后由代理重新投递。
+	 * @param alarm 告警通知。
+	 * @param acknowledgement 告警消息的确认，可以为null。
+	 */
+	public void offer(Alarm alarm, Acknowledgement acknowledgement) {
+		try {
+			if (!enqueue(new Entry(alarm, acknowledgement)))
+				closedCount.incrementAndGet();
+		} catch (StatusException e) {
+			// REJECT策略，告警已经在dropped中拒绝
+		}
+	}
+
+	@Override
+	protected void dropped(Entry entry) {
+		entry.nack();
+	}
+
+	@Override
+	protected void process(List<Entry> batch, Runnable done) {
+		try {
+			List<ReceivedAlarm> alarms = new ArrayList<ReceivedAlarm>(batch.size());
+			List<Entry> decoded = new ArrayList<Entry>(batch.size());
+			for (Entry entry : batch) {
+				try {
+					alarms.add(subscriber.decode(entry.alarm));
+					decoded.add(entry);
+				} catch (Throwable e) {
+					failedCount.incrementAndGet();
+					logger.error("alarm decode error: " + e.getMessage());
+					entry.reject();
+				}
+			}
+			if (alarms.isEmpty())
+				return;
+			boolean handled = false;
+			try {
+				subscriber.onAlarms(alarms);
+				deliveredCount.addAndGet(alarms.size());
+				handled = true;
+			} catch (Throwable e) {
+				failedCount.addAndGet(alarms.size());
+				logger.error("alarm handle error: " + e.getMessage());
+			}
+			for (Entry entry : decoded) {
+				if (handled)
+					entry.ack();
+				else
+					entry.nack();
+			}
+		} finally {
+			done.run();
+		}
+	}
+
+	public AlarmSubscriber getSubscriber() {
+		return subscriber;
+	}
+
+	public long getDeliveredCount() {
+		return deliveredCount.get();
+	}
+
+	/**
+	 * 获取因队列已满或者已经关闭被丢弃的告警数量。
+	 * @return 返回告警数量。
+	 */
+	@Override
+	public long getDroppedCount() {
+		return super.getDroppedCount() + closedCount.get();
+	}
+
+	/**
+	 * 获取转换或者处理失败的告警数量。
+	 * @return 返回告警数量。
+	 */
+	public long getFailedCount() {
+		return failedCount.get();
+	}
+
+	static class Entry {
+		private final Alarm alarm;
+		private final Acknowledgement acknowledgement;
+
+		private Entry(Alarm alarm, Acknowledgement acknowledgement) {
+			this.alarm = alarm;
+			this.acknowledgement = acknowledgement;
+		}
+
+		private void ack() {
+			if (acknowledgement != null)
+				acknowledgement.ack();
+		}
+
+		private void nack() {
+			if (acknowledgement != null)
+				acknowledgement.nack();
+		}
+
+		private void reject() {
+			if (acknowledgement != null)
+				acknowledgement.reject();
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package top.microiot.api.client.stomp;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSession.Subscription;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+
+import top.microiot.api.stomp.AckBatcher;
+import top.microiot.api.stomp.SessionManager;
+import top.microiot.domain.Alarm;
+
+/**
+ * 客户端批量告警接收处理类，一个处理对象订阅多个设备的告警，所有设备共用同一个告警处理。
+ */
+public class AlarmBulkSubscribeHandler extends StompSessionHandlerAdapter {
+	private static final String TOPIC = "/topic/alarm.";
+
+	private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	private final AlarmSubscriber subscriber;
+	private final Set<String> deviceIds = ConcurrentHashMap.newKeySet();
+	private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<String, Subscription>();
+	private volatile StompSession session;
+	private volatile AckBatcher ackBatcher;
+
+	/**
+	 * 客户端批量告警接收处理构造函数。
+	 * @param deviceIds 被监控告警的设备标识符。
+	 * @param subscriber 收到告警后的处理。
+	 */
+	public AlarmBulkSubscribeHandler(Collection<String> deviceIds, AlarmSubscriber subscriber) {
+		super();
+		this.subscriber = subscriber;
+		this.deviceIds.addAll(deviceIds);
+	}
+
+	@Override
+	public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+		this.session = session;
+		subscriptions.clear();
+		subscribe(session, deviceIds);
+	}
+
+	/**
+	 * 增加被监控告警的设备，已经连接时立即订阅。
+	 * @param ids 设备标识符。
+	 */
+	public void add(Collection<String> ids) {
+		deviceIds.addAll(ids);
+		StompSession s = session;
+		if (s != null && s.isConnected())
+			subscribe(s, ids);
+	}
+
+	/**
+	 * 取消监控设备的告警。
+	 * @param ids 设备标识符。
+	 */
+	public void remove(Collection<String> ids) {
+		deviceIds.removeAll(ids);
+		StompSession s = session;
+		if (s == null)
+			return;
+		synchronized (s) {
+			for (String id : ids) {
+				Subscription subscription = subscriptions.remove(id);
+				if (subscription != null && s.isConnected())
+					subscription.unsubscribe();
+			}
+		}
+	}
+
+	/**
+	 * 取消所有设备的告警订阅。
+	 */
+	public void unsubscribe() {
+		remove(new ArrayList<String>(deviceIds));
+	}
+
+	private void subscribe(StompSession session, Collection<String> ids) {
+		SessionManager manager = subscriber.getSessionManager();
+		boolean durable = subscriber.isDurable();
+		if (durable)
+			ackBatcher = manager.isDurableClientAck() ? manager.getAckBatcher() : null;
+		synchronized (session) {
+			for (String id : ids) {
+				if (subscriptions.containsKey(id))
+					continue;
+				String topic = TOPIC + id;
+				Subscription subscription;
+				if (durable)
+					subscription = session.subscribe(manager.buildDurableHeaders(topic), this);
+				else
+					subscription = session.subscribe(topic, this);
+				subscriptions.put(id, subscription);
+			}
+		}
+	}
+
+	/**
+	 * 获取被监控告警的设备标识符。
+	 * @return 返回设备标识符集合。
+	 */
+	public Set<String> getDeviceIds() {
+		return deviceIds;
+	}
+
+	/**
+	 * 获取当前连接上的订阅数量。
+	 * @return 返回订阅数量。
+	 */
+	public int getSubscriptionCount() {
+		return subscriptions.size();
+	}
+
+	@Override
+	public Type getPayloadType(StompHeaders headers) {
+		return Alarm.class;
+	}
+
+	@Override
+	public void handleFrame(StompHeaders headers, Object payload) {
+		try {
+			AckBatcher acks = ackBatcher;
+			if (acks != null)
+				subscriber.onEvent(payload, acks.acknowledgement(session, headers));
+			else
+				subscriber.onEvent(payload);
+		} catch (Throwable e) {
+			logger.error("alarm handle error: " + e.getMessage());
+		}
+	}
+
+	@Override
+	public void handleException(StompSession session, StompCommand command, StompHeaders headers, byte[] payload,
+			Throwable exception) {
+		logger.error(exception.getMessage());
+	}
+
+	@Override
+	public void handleTransportError(StompSession session, Throwable exception) {
+		logger.error("transport error: " + exception.getMessage());
+	}
+}
@@ -1,6 +1,7 @@
 package top.microiot.api.client.stomp;
 
 import java.util.Date;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,10 +10,11 @@ import org.springframework.stereotype.Component;
 
 import top.microiot.api.client.WebsocketClientSession;
 import top.microiot.api.stomp.AbstractEventSubscriber;
+import top.microiot.api.stomp.Acknowledgement;
+import top.microiot.api.stomp.DataConverter;
 import top.microiot.api.stomp.SessionManager;
 import top.microiot.domain.Alarm;
 import top.microiot.domain.ManagedObject;
-import top.microiot.domain.attribute.DataType;
 import top.microiot.exception.NotFoundException;
 
 /**
@@ -25,6 +27,8 @@ public abstract class AlarmSubscriber extends AbstractEventSubscriber{
 	private Logger logger = LoggerFactory.getLogger(this.getClass());
 	
 	private WebsocketClientSession websocketClientSession;
+	private boolean batch = false;
+	private volatile AlarmBatcher batcher;
 	
 	/**
 	 * 客户端告警处理构造函数。
@@ -41,6 +45,30 @@ public abstract class AlarmSubscriber extends AbstractEventSubscriber{
 		this.websocketClientSession = websocketClientSession;
 	}
 
+	/**
+	 * 是否批量交付告警，开启后告警放入队列，按批量大小或者等待时间调用onAlarms。
+	 * @return 开启批量交付返回true。
+	 */
+	public boolean isBatch() {
+		return batch;
+	}
+
+	public void setBatch(boolean batch) {
+		this.batch = batch;
+	}
+
+	/**
+	 * 获取告警批量交付，没有开启批量交付时返回null。
+	 * @return 返回告警批量交付。
+	 */
+	public AlarmBatcher getBatcher() {
+		return batcher;
+	}
+
+	public void setBatcher(AlarmBatcher batcher) {
+		this.batcher = batcher;
+	}
+
 	/**
 	 * 不同客户端的具体告警处理的实现。
 	 * @param notifyObject 上报告警的对象，可以是设备，也可以是场地。
@@ -52,31 +80,64 @@ public abstract class AlarmSubscriber extends AbstractEventSubscriber{
 	public abstract void onAlarm(ManagedObject notifyObject, String alarmType, Object alarmInfo, Date reportTime, Date receiveTime);
 
 	/**
-	 * 将告警信息转变为用户的类型，调用设备的告警处理。
+	 * 批量交付时的告警处理，默认逐个调用onAlarm，需要批量写入时重载。
+	 * @param alarms 一批告警，按收到的顺序排列。
+	 */
+	public void onAlarms(List<ReceivedAlarm> alarms) {
+		for(ReceivedAlarm alarm : alarms)
+			onAlarm(alarm.getNotifyObject(), alarm.getAlarmType(), alarm.getAlarmInfo(), alarm.getReportTime(), alarm.getReceiveTime());
+	}
+
+	/**
+	 * 将告警信息转变为用户的类型，调用设备的告警处理，开启批量交付时放入队列。
 	 * @param event 告警通知。
 	 */
 	@Override
 	public void onEvent(Object event) {
 		Alarm alarm = (Alarm)event;
 		logger.debug("alarm: " + alarm.getAlarmType());
-		Object info = null;
-		if(alarm.getAlarmInfo() != null) {
-			DataType type = alarm.getNotifyObject().getAlarmTypes().get(alarm.getAlarmType()).getDataType();
-			
-			Object typeInfo = getType(alarm);
-			if(typeInfo instanceof Class<?>) {
-				Class<?> t = (Class<?>) typeInfo;
-				info = type.getData(alarm.getAlarmInfo(), t);
-			}
-			else if(typeInfo instanceof ParameterizedTypeReference<?>) {
-				ParameterizedTypeReference<?> t = (ParameterizedTypeReference<?>) typeInfo;
-				info = type.getData(alarm.getAlarmInfo(), t);
-			}
-			else
-				throw new NotFoundException(alarm.getAlarmType() + " converter");
+		AlarmBatcher b = batcher;
+		if(b != null) {
+			b.offer(alarm);
+			return;
 		}
 		
-		onAlarm(alarm.getNotifyObject(), alarm.getAlarmType(), info, alarm.getReportTime(), alarm.getReceiveTime());
+		ReceivedAlarm received = decode(alarm);
+		onAlarm(received.getNotifyObject(), received.getAlarmType(), received.getAlarmInfo(), received.getReportTime(), received.getReceiveTime());
+	}
+
+	/**
+	 * 处理告警，开启批量交付时在批量处理完成后确认告警。
+	 * @param event 告警通知。
+	 * @param acknowledgement 告警消息的确认。
+	 */
+	@Override
+	public void onEvent(Object event, Acknowledgement acknowledgement) {
+		AlarmBatcher b = batcher;
+		if(b != null) {
+			Alarm alarm = (Alarm)event;
+			logger.debug("alarm: " + alarm.getAlarmType());
+			b.offer(alarm, acknowledgement);
+			return;
+		}
+		super.onEvent(event, acknowledgement);
+	}
+
+	ReceivedAlarm decode(Alarm alarm) {
+		Object info = null;
+		if(alarm.getAlarmInfo() != null)
+			info = getConverter(alarm).decode(alarm.getAlarmInfo());
+		return new ReceivedAlarm(alarm.getNotifyObject(), alarm.getAlarmType(), info, alarm.getReportTime(), alarm.getReceiveTime());
+	}
+
+	/**
+	 * 告警类型定义随告警消息一起到达，直接绑定比在元数据缓存中查找更快，所以不使用缓存。
+	 */
+	private DataConverter getConverter(Alarm alarm) {
+		Object typeInfo = getType(alarm);
+		if(!(typeInfo instanceof Class<?>) && !(typeInfo instanceof ParameterizedTypeReference<?>))
+			throw new NotFoundException(alarm.getAlarmType() + " converter");
+		return new DataConverter(alarm.getNotifyObject().getAlarmTypes().get(alarm.getAlarmType()).getDataType(), typeInfo);
 	}
 
 	private Object getType(Alarm alarm) {
@@ -0,0 +1,45 @@
+package top.microiot.api.client.stomp;
+
+import java.util.Date;
+
+import top.microiot.domain.ManagedObject;
+
+/**
+ * 客户端收到的告警，告警具体信息已经转换为用户定义的类型。
+ */
+public final class ReceivedAlarm {
+	private final ManagedObject notifyObject;
+	private final String alarmType;
+	private final Object alarmInfo;
+	private final Date reportTime;
+	private final Date receiveTime;
+
+	public ReceivedAlarm(ManagedObject notifyObject, String alarmType, Object alarmInfo, Date reportTime, Date receiveTime) {
+		super();
+		this.notifyObject = notifyObject;
+		this.alarmType = alarmType;
+		this.alarmInfo = alarmInfo;
+		this.reportTime = reportTime;
+		this.receiveTime = receiveTime;
+	}
+
+	public ManagedObject getNotifyObject() {
+		return notifyObject;
+	}
+
+	public String getAlarmType() {
+		return alarmType;
+	}
+
+	public Object getAlarmInfo() {
+		return alarmInfo;
+	}
+
+	public Date getReportTime() {
+		return reportTime;
+	}
+
+	public Date getReceiveTime() {
+		return receiveTime;
+	}
+}
@@ -1,6 +1,9 @@
 package top.microiot.api.client.stomp;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
 
 import top.microiot.api.client.WebsocketClientSession;
 import top.microiot.domain.Response;
@@ -8,7 +11,9 @@ import top.microiot.domain.Response;
 public abstract class RequestPublishAsyncHandler extends RequestPublishHandler {
 	private ResponseSubscriber subscriber;
 	private WebsocketClientSession session;
-	
+	private Runnable completion;
+	private final AtomicBoolean finished = new AtomicBoolean(false);
+
 	public RequestPublishAsyncHandler(WebsocketClientSession session, String deviceId, RequestPublisher publisher, ResponseSubscriber subscriber) {
 		super(deviceId, publisher);
 		this.session = session;
@@ -16,9 +21,54 @@ public abstract class RequestPublishAsyncHandler extends RequestPublishHandler {
 		subscriber.setWebsocketClientSession(session);
 	}
 
+	/**
+	 * 设置请求结束后执行的操作，收到响应或者超时后，在调用响应处理之前执行。
+	 * @param completion 请求结束后执行的操作。
+	 */
+	public void setCompletion(Runnable completion) {
+		this.completion = completion;
+	}
+
+	/**
+	 * 请求是否已经结束。
+	 * @return 收到响应或者超时后返回true。
+	 */
+	public boolean isFinished() {
+		return finished.get();
+	}
+
+	@Override
+	public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+		if(isFinished())
+			return;
+		super.afterConnected(session, connectedHeaders);
+		if(isFinished())
+			unsubscribe();
+	}
+
 	@Override
 	public void handleFrame(StompHeaders headers, Object payload) {
-		session.disconnect(this);
+		if(!finish())
+			return;
 		subscriber.onResponse((Response)payload);
 	}
+
+	/**
+	 * 请求超时，取消结果订阅，释放处理，调用响应处理的错误处理。
+	 */
+	public void expire() {
+		if(!finish())
+			return;
+		subscriber.onError("timeout");
+	}
+
+	private boolean finish() {
+		if(!finished.compareAndSet(false, true))
+			return false;
+		session.disconnect(this);
+		unsubscribe();
+		if(completion != null)
+			completion.run();
+		return true;
+	}
 }
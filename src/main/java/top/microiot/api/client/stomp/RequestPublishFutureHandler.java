@@ -0,0 +1,38 @@
+package top.microiot.api.client.stomp;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+
+import top.microiot.domain.Response;
+
+/**
+ * 客户端请求发布处理类，收到响应后完成future，future完成或取消后取消结果订阅。
+ */
+public class RequestPublishFutureHandler extends RequestPublishHandler {
+	private final CompletableFuture<Response> future;
+	
+	public RequestPublishFutureHandler(String deviceId, RequestPublisher publisher) {
+		super(deviceId, publisher);
+		this.future = new CompletableFuture<Response>();
+	}
+
+	public CompletableFuture<Response> getFuture() {
+		return future;
+	}
+
+	@Override
+	public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+		if(future.isDone())
+			return;
+		super.afterConnected(session, connectedHeaders);
+		if(future.isDone())
+			unsubscribe();
+	}
+
+	@Override
+	public void handleFrame(StompHeaders headers, Object payload) {
+		future.complete((Response)payload);
+	}
+}
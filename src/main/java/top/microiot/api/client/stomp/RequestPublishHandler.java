@@ -18,6 +18,8 @@ public abstract class RequestPublishHandler extends StompSessionHandlerAdapter {
 	
 	private String deviceId;
 	private RequestPublisher publisher;
+	private volatile StompSession session;
+	private volatile StompSession.Subscription subscription;
 	
 	public RequestPublishHandler(String deviceId, RequestPublisher publisher) {
 		super();
@@ -32,7 +34,9 @@ public abstract class RequestPublishHandler extends StompSessionHandlerAdapter {
 		String resultTopic = Topic.TOPIC_RESULT + this.publisher.getTopic() + "." + deviceId + "." + requestId;
 		RequestPublisher publish = this.publisher;
 		synchronized(session) {
-			session.subscribe(resultTopic, this).addReceiptTask(new Runnable() {
+			this.session = session;
+			this.subscription = session.subscribe(resultTopic, this);
+			this.subscription.addReceiptTask(new Runnable() {
 				@Override
 				public void run() {
 					session.send(opTopic, publish.getRequest(requestId));
@@ -41,6 +45,24 @@ public abstract class RequestPublishHandler extends StompSessionHandlerAdapter {
 		}
 	}
 	
+	/**
+	 * 取消结果订阅，不再接收响应。
+	 */
+	public void unsubscribe() {
+		StompSession session = this.session;
+		StompSession.Subscription subscription = this.subscription;
+		if(session == null || subscription == null)
+			return;
+		this.subscription = null;
+		synchronized(session) {
+			try {
+				subscription.unsubscribe();
+			} catch(IllegalStateException e) {
+				logger.debug("unsubscribe error: " + e.getMessage());
+			}
+		}
+	}
+	
 	@Override
 	public Type getPayloadType(StompHeaders headers) {
 		return Response.class;
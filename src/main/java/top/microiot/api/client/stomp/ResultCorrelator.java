@@ -0,0 +1,281 @@
+package top.microiot.api.client.stomp;
+
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+
+import top.microiot.domain.Request;
+import top.microiot.domain.Response;
+import top.microiot.domain.Topic;
+import top.microiot.exception.StatusException;
+
+/**
+ * 客户端共享结果订阅处理类，每个设备的每种操作只保持一个长期的结果订阅，
+ * 按请求标识符将收到的响应匹配到等待中的请求。没有等待中的请求并且空闲超过指定时间的订阅被取消。
+ */
+public class ResultCorrelator extends StompSessionHandlerAdapter {
+	private static final String WILDCARD = ".*";
+	private static final long DEFAULT_IDLE_MILLIS = 300000;
+
+	private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	private final Map<String, ResultSubscription> subscriptions = new ConcurrentHashMap<String, ResultSubscription>();
+	private final Map<String, CompletableFuture<Response>> pendings = new ConcurrentHashMap<String, CompletableFuture<Response>>();
+	private final long idleMillis;
+	private final LongSupplier clock;
+	private final AtomicLong evictedCount = new AtomicLong();
+	private volatile StompSession session;
+	private volatile long lastSweep;
+
+	public ResultCorrelator() {
+		this(DEFAULT_IDLE_MILLIS);
+	}
+
+	/**
+	 * 共享结果订阅处理构造函数。
+	 * @param idleMillis 没有等待中的请求的订阅保留的时间，单位为毫秒，0表示不取消。
+	 */
+	public ResultCorrelator(long idleMillis) {
+		this(idleMillis, System::currentTimeMillis);
+	}
+
+	ResultCorrelator(long idleMillis, LongSupplier clock) {
+		super();
+		this.idleMillis = idleMillis;
+		this.clock = clock;
+		this.lastSweep = clock.getAsLong();
+	}
+
+	/**
+	 * 发布请求，响应通过共享的结果订阅返回。
+	 * @param deviceId 被请求的设备。
+	 * @param publisher 请求发布。
+	 * @return 返回等待响应的future，取消或完成后不再等待响应。
+	 */
+	public CompletableFuture<Response> publish(String deviceId, RequestPublisher publisher) {
+		String requestId = UUID.randomUUID().toString();
+		String opTopic = Topic.TOPIC_OPERATION + publisher.getTopic() + "." + deviceId;
+		String resultTopic = Topic.TOPIC_RESULT + publisher.getTopic() + "." + deviceId;
+
+		evictIdle();
+		ResultSubscription subscription;
+		do {
+			subscription = subscriptions.computeIfAbsent(resultTopic, topic -> new ResultSubscription(topic));
+		} while(!subscription.acquire());
+
+		CompletableFuture<Response> future = new CompletableFuture<Response>();
+		pendings.put(requestId, future);
+		ResultSubscription acquired = subscription;
+		future.whenComplete((response, e) -> {
+			pendings.remove(requestId);
+			acquired.release();
+		});
+
+		subscription.send(opTopic, publisher.getRequest(requestId), future);
+		return future;
+	}
+
+	private void evictIdle() {
+		long now = clock.getAsLong();
+		if(idleMillis <= 0 || now - lastSweep < idleMillis)
+			return;
+		lastSweep = now;
+		for(ResultSubscription subscription : subscriptions.values()) {
+			if(subscription.evictIfIdle(now)) {
+				subscriptions.remove(subscription.topic, subscription);
+				evictedCount.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * 获取等待响应的请求数量。
+	 * @return 返回等待响应的请求数量。
+	 */
+	public int getPendingCount() {
+		return pendings.size();
+	}
+
+	/**
+	 * 获取共享结果订阅数量。
+	 * @return 返回结果订阅数量。
+	 */
+	public int getSubscriptionCount() {
+		return subscriptions.size();
+	}
+
+	/**
+	 * 获取因空闲被取消的结果订阅数量。
+	 * @return 返回结果订阅数量。
+	 */
+	public long getEvictedCount() {
+		return evictedCount.get();
+	}
+
+	@Override
+	public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+		this.session = session;
+		for (ResultSubscription subscription : subscriptions.values()) {
+			subscription.subscribe(session);
+		}
+	}
+
+	private void onResponse(StompHeaders headers, Object payload) {
+		String destination = headers.getDestination();
+		if(destination == null) {
+			logger.warn("response without destination is dropped");
+			return;
+		}
+		String requestId = destination.substring(destination.lastIndexOf('.') + 1);
+		CompletableFuture<Response> future = pendings.remove(requestId);
+		if(future != null)
+			future.complete((Response)payload);
+		else
+			logger.debug("no pending request for response: " + destination);
+	}
+
+	@Override
+	public void handleException(StompSession session, StompCommand command, StompHeaders headers, byte[] payload,
+			Throwable exception) {
+		logger.error(exception.getMessage());
+	}
+
+	/**
+	 * 连接断开后之前的订阅失效，等待响应的请求的响应不会再收到，以异常完成，
+	 * 之后的请求等待重新连接并重新订阅后再发送。
+	 */
+	@Override
+	public void handleTransportError(StompSession session, Throwable exception) {
+		logger.error("transport error: " + exception.getMessage());
+		if(this.session == session)
+			this.session = null;
+		for (ResultSubscription subscription : subscriptions.values()) {
+			subscription.reset();
+		}
+		StatusException error = new StatusException("transport error: " + exception.getMessage());
+		for (CompletableFuture<Response> future : pendings.values()) {
+			future.completeExceptionally(error);
+		}
+	}
+
+	private class ResultSubscription implements StompFrameHandler {
+		private final String topic;
+		private CompletableFuture<StompSession> ready;
+		private StompSession.Subscription subscription;
+		private int inFlight = 0;
+		private long lastUsed;
+		private boolean closed = false;
+
+		public ResultSubscription(String topic) {
+			this.topic = topic;
+			this.lastUsed = clock.getAsLong();
+		}
+
+		public synchronized boolean acquire() {
+			if(closed)
+				return false;
+			inFlight++;
+			lastUsed = clock.getAsLong();
+			return true;
+		}
+
+		public synchronized void release() {
+			inFlight--;
+			lastUsed = clock.getAsLong();
+		}
+
+		public synchronized boolean evictIfIdle(long now) {
+			if(closed || inFlight > 0 || now - lastUsed < idleMillis)
+				return false;
+			closed = true;
+			StompSession s = session;
+			if(subscription != null && s != null && s.isConnected()) {
+				try {
+					synchronized(s) {
+						subscription.unsubscribe();
+					}
+				} catch(RuntimeException e) {
+					logger.debug("unsubscribe " + topic + " error: " + e.getMessage());
+				}
+			}
+			subscription = null;
+			ready = null;
+			return true;
+		}
+
+		public void send(String opTopic, Request request, CompletableFuture<Response> future) {
+			ready().whenComplete((s, e) -> {
+				if(e != null) {
+					future.completeExceptionally(e);
+					return;
+				}
+				if(future.isDone())
+					return;
+				try {
+					synchronized(s) {
+						s.send(opTopic, request);
+					}
+				} catch(RuntimeException ex) {
+					future.completeExceptionally(ex);
+				}
+			});
+		}
+
+		private synchronized CompletableFuture<StompSession> ready() {
+			if(ready == null || ready.isCompletedExceptionally() || (ready.isDone() && !ready.join().isConnected())) {
+				ready = new CompletableFuture<StompSession>();
+				StompSession s = session;
+				if(s != null && s.isConnected())
+					subscribe(s, ready);
+			}
+			return ready;
+		}
+
+		public synchronized void subscribe(StompSession s) {
+			if(closed)
+				return;
+			if(ready == null || ready.isDone())
+				ready = new CompletableFuture<StompSession>();
+			subscribe(s, ready);
+		}
+
+		/**
+		 * 连接断开，已经完成的订阅不能再使用，还没有完成的订阅在重新连接后完成。
+		 */
+		public synchronized void reset() {
+			if(ready != null && ready.isDone())
+				ready = null;
+			subscription = null;
+		}
+
+		private void subscribe(StompSession s, CompletableFuture<StompSession> subscribed) {
+			synchronized(s) {
+				subscription = s.subscribe(topic + WILDCARD, this);
+				subscription.addReceiptTask(() -> subscribed.complete(s));
+				subscription.addReceiptLostTask(() -> subscribed.completeExceptionally(new StatusException("subscribe " + topic + " receipt lost")));
+			}
+		}
+
+		@Override
+		public Type getPayloadType(StompHeaders headers) {
+			return Response.class;
+		}
+
+		@Override
+		public void handleFrame(StompHeaders headers, Object payload) {
+			onResponse(headers, payload);
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package top.microiot.api.device;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.TaskScheduler;
+
+import top.microiot.api.BoundedBatcher;
+import top.microiot.api.OverflowPolicy;
+import top.microiot.dto.SubDeviceEventInfo;
+import top.microiot.exception.StatusException;
+
+/**
+ * 事件缓冲上报类，上报的事件先放入有界队列，达到批量大小或者等待时间后一起发送，
+ * 上报时间在放入队列时确定，调用线程不等待http请求。
+ * 平台没有批量上报接口，同一批次中的每个事件仍然是一个http请求，缓冲上报不减少请求数量，
+ * 只把请求移出调用线程，并限制同时进行的请求数量。BLOCK策略一直等待队列空间，等待被中断时丢弃新上报的事件。
+ */
+public class EventReporter extends BoundedBatcher<EventReporter.Report> {
+	private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	private final HttpDeviceSession session;
+	private final int maxInFlight;
+
+	private final AtomicLong sentCount = new AtomicLong();
+	private final AtomicLong failedCount = new AtomicLong();
+
+	/**
+	 * 事件缓冲上报构造函数。
+	 * @param session 设备端http会话。
+	 * @param taskScheduler 执行发送的调度。
+	 * @param batchSize 一次发送的最大事件数量。
+	 * @param lingerMillis 第一个事件放入队列后等待发送的最长时间，单位为毫秒。
+	 * @param capacity 队列容量。
+	 * @param overflowPolicy 队列已满时的处理策略。
+	 * @param maxInFlight 同时进行的最大http请求数量。
+	 */
+	public EventReporter(HttpDeviceSession session, TaskScheduler taskScheduler, int batchSize, long lingerMillis, int capacity, OverflowPolicy overflowPolicy, int maxInFlight) {
+		super(taskScheduler, batchSize, lingerMillis, capacity, overflowPolicy, Long.MAX_VALUE);
+		this.session = session;
+		this.maxInFlight = Math.max(maxInFlight, 1);
+	}
+
+	/**
+	 * 上报设备的事件。
+	 * @param info 事件信息，上报时间已经确定。
+	 * @return 返回发送完成的future，事件被丢弃时以异常完成。
+	 * @throws StatusException 已经关闭，或者REJECT策略队列已满时抛出。
+	 */
+	public CompletableFuture<Void> report(Object info) {
+		Report report = new Report(info);
+		if (!enqueue(report))
+			throw new StatusException("event reporter closed");
+		return report.future;
+	}
+
+	@Override
+	protected void dropped(Report report) {
+		report.future.completeExceptionally(new StatusException("event queue is full"));
+	}
+
+	@Override
+	protected void process(List<Report> reports, Runnable done) {
+		sendBatch(new Batch(reports, done));
+	}
+
+	/**
+	 * 在同时进行的请求数量不超过上限时发送批次中的下一个事件，请求完成时再次调用，
+	 * 同步完成的请求不会递归调用，由正在执行的调用继续循环发送。
+	 */
+	private void sendBatch(Batch batch) {
+		if (batch.sending.getAndIncrement() != 0)
+			return;
+		do {
+			while (batch.next < batch.reports.size() && batch.inFlight.get() < maxInFlight) {
+				Report report = batch.reports.get(batch.next++);
+				batch.inFlight.incrementAndGet();
+				send(report.info).whenComplete((v, e) -> {
+					if (e != null) {
+						failedCount.incrementAndGet();
+						logger.warn("report event error: " + e.getMessage());
+						report.future.completeExceptionally(e);
+					} else {
+						sentCount.incrementAndGet();
+						report.future.complete(null);
+					}
+					batch.inFlight.decrementAndGet();
+					if (batch.completed.incrementAndGet() == batch.reports.size())
+						batch.done.run();
+					else
+						sendBatch(batch);
+				});
+			}
+		} while (batch.sending.decrementAndGet() != 0);
+	}
+
+	private CompletableFuture<Void> send(Object info) {
+		try {
+			if (info instanceof SubDeviceEventInfo)
+				return session.postSubDeviceEventAsync((SubDeviceEventInfo) info);
+			return session.postEventAsync(info);
+		} catch (Throwable e) {
+			CompletableFuture<Void> future = new CompletableFuture<Void>();
+			future.completeExceptionally(e);
+			return future;
+		}
+	}
+
+	public long getSentCount() {
+		return sentCount.get();
+	}
+
+	public long getFailedCount() {
+		return failedCount.get();
+	}
+
+	private static class Batch {
+		private final List<Report> reports;
+		private final Runnable done;
+		private final AtomicInteger sending = new AtomicInteger();
+		private final AtomicInteger inFlight = new AtomicInteger();
+		private final AtomicInteger completed = new AtomicInteger();
+		private int next = 0;
+
+		private Batch(List<Report> reports, Runnable done) {
+			this.reports = reports;
+			this.done = done;
+		}
+	}
+
+	static class Report {
+		private final Object info;
+		private final CompletableFuture<Void> future = new CompletableFuture<Void>();
+
+		private Report(Object info) {
+			this.info = info;
+		}
+	}
+}
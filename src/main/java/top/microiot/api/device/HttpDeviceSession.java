@@ -1,9 +1,12 @@
 package top.microiot.api.device;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.stereotype.Component;
@@ -22,6 +25,8 @@ import top.microiot.dto.EventInfo;
 import top.microiot.dto.SubDeviceAlarmInfo;
 import top.microiot.dto.SubDeviceEventInfo;
 import top.microiot.exception.NotFoundException;
+import top.microiot.exception.StatusException;
+import top.microiot.exception.ValueException;
 
 /**
  * 设备端与物联网平台的http会话类
@@ -35,6 +40,8 @@ public class HttpDeviceSession extends HttpSession {
 	}
 
 	private Device device;
+	private EventReporter eventReporter;
+	private SpoolForwarder spoolForwarder;
 	
 	public Device getDevice() {
 		return device;
@@ -50,6 +57,66 @@ public class HttpDeviceSession extends HttpSession {
 	public void start() {
 		super.start();
 		this.device = getDeviceInfo();
+		if(httpSessionProperties.isSpoolEnabled())
+			openSpool();
+	}
+	
+	private synchronized void openSpool() {
+		if(spoolForwarder != null)
+			return;
+		if(getTaskScheduler() == null)
+			throw new StatusException("task scheduler is not available");
+		try {
+			ReportSpool spool = new ReportSpool(new File(httpSessionProperties.getSpoolDir()), httpSessionProperties.getSpoolSegmentSize(), 
+					httpSessionProperties.getSpoolMaxSize(), httpSessionProperties.getSpoolRetention() * 1000);
+			spoolForwarder = new SpoolForwarder(this, spool, getObjectMapper(), getTaskScheduler(), httpSessionProperties.getSpoolBatchSize(), 
+					httpSessionProperties.getSpoolRetryInterval(), httpSessionProperties.getSpoolMaxAttempts(), httpSessionProperties.getSpoolSyncInterval());
+		} catch (IOException e) {
+			throw new StatusException("can't open report spool: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * 停止http会话，发送缓冲上报队列中的事件，关闭上报暂存日志。
+	 */
+	@Override
+	public void stop() {
+		EventReporter reporter;
+		SpoolForwarder forwarder;
+		synchronized(this) {
+			reporter = eventReporter;
+			eventReporter = null;
+			forwarder = spoolForwarder;
+			spoolForwarder = null;
+		}
+		if(reporter != null)
+			reporter.close();
+		if(forwarder != null)
+			forwarder.close();
+		super.stop();
+	}
+	
+	/**
+	 * 获取上报暂存转发，没有启用上报暂存时返回null。
+	 * @return 返回上报暂存转发。
+	 */
+	public SpoolForwarder getSpoolForwarder() {
+		return spoolForwarder;
+	}
+	
+	/**
+	 * 获取事件缓冲上报，第一次调用时创建。
+	 * @return 返回事件缓冲上报。
+	 */
+	public synchronized EventReporter getEventReporter() {
+		if(eventReporter == null) {
+			if(getTaskScheduler() == null)
+				throw new StatusException("task scheduler is not available");
+			eventReporter = new EventReporter(this, getTaskScheduler(), httpSessionProperties.getReportBatchSize(), 
+					httpSessionProperties.getReportLinger(), httpSessionProperties.getReportQueueCapacity(), 
+					httpSessionProperties.getReportOverflowPolicy(), httpSessionProperties.getReportMaxInFlight());
+		}
+		return eventReporter;
 	}
 	
 	/**
@@ -57,7 +124,7 @@ public class HttpDeviceSession extends HttpSession {
 	 */
 	private Device getDeviceInfo() {
 		if(device == null)
-			return getEntity(HttpClientSession.deviceUrl + "/me", null, HttpClientSession.deviceType);
+			return getEntity(getFixedUri(HttpClientSession.deviceUrl + "/me"), HttpClientSession.deviceType);
 		else
 			return device;
 	}
@@ -67,19 +134,74 @@ public class HttpDeviceSession extends HttpSession {
 	 * @param events 设备的多个属性的值。
 	 */
 	public void reportEvents(Map<String, Object> events) {
+		report(SpoolForwarder.EVENT, buildEventInfo(events));
+	}
+	public void reportEvents(Map<String, Object> events, Device device) {
+		report(SpoolForwarder.SUBDEVICE_EVENT, buildEventInfo(events, device));
+	}
+	/**
+	 * 设备端向物联网平台异步上报事件信息。可同时上报多个属性的值。异步上报不经过上报暂存。
+	 * @param events 设备的多个属性的值。
+	 * @return 返回上报的future。
+	 */
+	public CompletableFuture<Void> reportEventsAsync(Map<String, Object> events) {
+		try {
+			return postEntityAsync(HttpClientSession.eventUrl, buildEventInfo(events), Void.class);
+		} catch(Throwable e) {
+			return failed(e);
+		}
+	}
+	/**
+	 * 网关设备向物联网平台异步上报子设备的事件信息。
+	 * @param events 子设备的多个属性的值。
+	 * @param device 子设备。
+	 * @return 返回上报的future。
+	 */
+	public CompletableFuture<Void> reportEventsAsync(Map<String, Object> events, Device device) {
+		try {
+			return postEntityAsync(HttpClientSession.eventUrl+"/subdevice", buildEventInfo(events, device), Void.class);
+		} catch(Throwable e) {
+			return failed(e);
+		}
+	}
+	/**
+	 * 设备端向物联网平台缓冲上报事件信息，事件放入队列后立即返回，按批量大小或者等待时间一起发送。
+	 * 缓冲上报不经过上报暂存，发送失败时返回的future以异常完成。
+	 * @param events 设备的多个属性的值。
+	 * @return 返回发送完成的future。
+	 */
+	public CompletableFuture<Void> reportEventsBuffered(Map<String, Object> events) {
+		return getEventReporter().report(buildEventInfo(events));
+	}
+	/**
+	 * 网关设备向物联网平台缓冲上报子设备的事件信息，多个子设备的事件在同一批次中发送。
+	 * @param events 子设备的多个属性的值。
+	 * @param device 子设备。
+	 * @return 返回发送完成的future。
+	 */
+	public CompletableFuture<Void> reportEventsBuffered(Map<String, Object> events, Device device) {
+		return getEventReporter().report(buildEventInfo(events, device));
+	}
+	CompletableFuture<Void> postEventAsync(Object info) {
+		return postEntityAsync(HttpClientSession.eventUrl, info, Void.class);
+	}
+	CompletableFuture<Void> postSubDeviceEventAsync(SubDeviceEventInfo info) {
+		return postEntityAsync(HttpClientSession.eventUrl+"/subdevice", info, Void.class);
+	}
+	EventInfo buildEventInfo(Map<String, Object> events) {
 		Map<String, AttValueInfo> values = getEventInfo(events, device);
 		EventInfo info = new EventInfo();
 		info.setValues(values);
 		info.setReportTime(new Date());
-		postEntity(HttpClientSession.eventUrl, info, null);
+		return info;
 	}
-	public void reportEvents(Map<String, Object> events, Device device) {
+	SubDeviceEventInfo buildEventInfo(Map<String, Object> events, Device device) {
 		Map<String, AttValueInfo> values = getEventInfo(events, device);
 		SubDeviceEventInfo info = new SubDeviceEventInfo();
 		info.setValues(values);
 		info.setReportTime(new Date());
 		info.setDeviceId(device.getId());
-		postEntity(HttpClientSession.eventUrl+"/subdevice", info, null);
+		return info;
 	}
 	private Map<String, AttValueInfo> getEventInfo(Map<String, Object> events, Device mo) {
 		Map<String, DeviceAttributeType> types = mo.getDeviceType().getAttDefinition();
@@ -102,21 +224,85 @@ public class HttpDeviceSession extends HttpSession {
 	 * @param alarmInfo 告警详细信息。
 	 */
 	public void reportAlarm(String alarmType, Object alarmInfo) {
+		report(SpoolForwarder.ALARM, buildAlarmInfo(alarmType, alarmInfo));
+	}
+	public void reportAlarm(String alarmType, Object alarmInfo, Device device) {
+		report(SpoolForwarder.SUBDEVICE_ALARM, buildAlarmInfo(alarmType, alarmInfo, device));
+	}
+	
+	/**
+	 * 上报事件或者告警，启用上报暂存时由上报暂存转发处理。
+	 */
+	private void report(byte type, Object info) {
+		SpoolForwarder forwarder = spoolForwarder;
+		if(forwarder != null)
+			forwarder.report(type, info);
+		else
+			postReport(type, info);
+	}
+	void postReport(byte type, Object info) {
+		postEntity(getReportUrl(type), info, null);
+	}
+	void postSpooled(byte type, String json) {
+		postEntity(getReportUrl(type), json, null);
+	}
+	private String getReportUrl(byte type) {
+		switch(type) {
+		case SpoolForwarder.EVENT:
+			return HttpClientSession.eventUrl;
+		case SpoolForwarder.SUBDEVICE_EVENT:
+			return HttpClientSession.eventUrl + "/subdevice";
+		case SpoolForwarder.ALARM:
+			return HttpClientSession.alarmUrl;
+		case SpoolForwarder.SUBDEVICE_ALARM:
+			return HttpClientSession.alarmUrl + "/subdevice";
+		default:
+			throw new ValueException("unknown report type: " + type);
+		}
+	}
+	/**
+	 * 设备端向物联网平台异步上报告警信息。
+	 * @param alarmType 告警类型名称。
+	 * @param alarmInfo 告警详细信息。
+	 * @return 返回上报的future。
+	 */
+	public CompletableFuture<Void> reportAlarmAsync(String alarmType, Object alarmInfo) {
+		try {
+			return postEntityAsync(HttpClientSession.alarmUrl, buildAlarmInfo(alarmType, alarmInfo), Void.class);
+		} catch(Throwable e) {
+			return failed(e);
+		}
+	}
+	/**
+	 * 网关设备向物联网平台异步上报子设备的告警信息。
+	 * @param alarmType 告警类型名称。
+	 * @param alarmInfo 告警详细信息。
+	 * @param device 子设备。
+	 * @return 返回上报的future。
+	 */
+	public CompletableFuture<Void> reportAlarmAsync(String alarmType, Object alarmInfo, Device device) {
+		try {
+			return postEntityAsync(HttpClientSession.alarmUrl + "/subdevice", buildAlarmInfo(alarmType, alarmInfo, device), Void.class);
+		} catch(Throwable e) {
+			return failed(e);
+		}
+	}
+	AlarmInfo buildAlarmInfo(String alarmType, Object alarmInfo) {
 		AttValueInfo values = getAlarmInfo(alarmType, alarmInfo, device);
 		AlarmInfo info = new AlarmInfo();
 		info.setAlarmType(alarmType);
 		info.setAlarmInfo(values);
 		info.setReportTime(new Date());
-		postEntity(HttpClientSession.alarmUrl, info, null);
+		return info;
 	}
-	public void reportAlarm(String alarmType, Object alarmInfo, Device device) {
+	SubDeviceAlarmInfo buildAlarmInfo(String alarmType, Object alarmInfo, Device device) {
 		AttValueInfo values = getAlarmInfo(alarmType, alarmInfo, device);
 		SubDeviceAlarmInfo info = new SubDeviceAlarmInfo();
 		info.setAlarmType(alarmType);
 		info.setAlarmInfo(values);
 		info.setReportTime(new Date());
 		info.setDeviceId(device.getId());
-		postEntity(HttpClientSession.alarmUrl + "/subdevice", info, null);
+		return info;
 	}
 	private AttValueInfo getAlarmInfo(String alarmType, Object alarmInfo, Device device) {
 		Map<String, AttributeType> types = device.getDeviceType().getAlarmTypes();
@@ -136,14 +322,14 @@ public class HttpDeviceSession extends HttpSession {
 	 * @return 返回设备组列表
 	 */
 	public List<DeviceGroup> getMyDeviceGroup(){
-		return getEntity(HttpClientSession.deviceGroupUrl + "/me", null, new ParameterizedTypeReference<List<DeviceGroup>>() {});
+		return getEntity(getFixedUri(HttpClientSession.deviceGroupUrl + "/me"), new ParameterizedTypeReference<List<DeviceGroup>>() {});
 	}
 	/**
 	 * 获取网关设备的所有子设备信息
 	 * @return 返回子设备列表
 	 */
 	public List<Device> getMySubDevice(){
-		return getEntity(HttpClientSession.deviceUrl + "/subdevice", null, new ParameterizedTypeReference<List<Device>>() {});
+		return getEntity(getFixedUri(HttpClientSession.deviceUrl + "/subdevice"), new ParameterizedTypeReference<List<Device>>() {});
 	}
 	@Override
 	public User getCurrentUser() {
@@ -2,6 +2,7 @@ package top.microiot.api.device;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import top.microiot.api.client.stomp.AlarmSubscriber;
 import top.microiot.api.device.stomp.ActionRequestSubscriber;
@@ -47,12 +48,52 @@ public class IoTDevice {
 		this.deviceSession.subscribe(deviceId, alarmHandler);
 	}
 	
+	/**
+	 * 上报告警，通过websocket上报时等待发送完成，上报失败时抛出异常。
+	 * @param alarmType 告警类型名称。
+	 * @param alarmInfo 告警详细信息。
+	 */
 	public void reportAlarm(String alarmType, Object alarmInfo) {
-		deviceSession.getSession().reportAlarm(alarmType, alarmInfo);
+		if(deviceSession.isStompReport())
+			WebsocketDeviceSession.await(deviceSession.publishAlarm(alarmType, alarmInfo));
+		else
+			deviceSession.getSession().reportAlarm(alarmType, alarmInfo);
 	}
 	
+	/**
+	 * 异步上报告警。
+	 * @param alarmType 告警类型名称。
+	 * @param alarmInfo 告警详细信息。
+	 * @return 返回上报的future，上报失败时以异常完成。
+	 */
+	public CompletableFuture<Void> reportAlarmAsync(String alarmType, Object alarmInfo) {
+		if(deviceSession.isStompReport())
+			return deviceSession.publishAlarm(alarmType, alarmInfo);
+		else
+			return deviceSession.getSession().reportAlarmAsync(alarmType, alarmInfo);
+	}
+	
+	/**
+	 * 上报事件，通过websocket上报时等待发送完成，上报失败时抛出异常。
+	 * @param events 设备的多个属性的值。
+	 */
 	public void reportEvent(Map<String, Object> events) {
-		deviceSession.getSession().reportEvents(events);
+		if(deviceSession.isStompReport())
+			WebsocketDeviceSession.await(deviceSession.publishEvents(events));
+		else
+			deviceSession.getSession().reportEvents(events);
+	}
+	
+	/**
+	 * 异步上报事件。
+	 * @param events 设备的多个属性的值。
+	 * @return 返回上报的future，上报失败时以异常完成。
+	 */
+	public CompletableFuture<Void> reportEventAsync(Map<String, Object> events) {
+		if(deviceSession.isStompReport())
+			return deviceSession.publishEvents(events);
+		else
+			return deviceSession.getSession().reportEventsAsync(events);
 	}
 	
 	public Device getDevice() {
@@ -1,6 +1,7 @@
 package top.microiot.api.device;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import top.microiot.api.client.stomp.AlarmSubscriber;
 import top.microiot.api.device.stomp.ActionRequestSubscriber;
@@ -34,6 +35,15 @@ public class IoTSubDevice {
 
 	protected void initDevice(GetRequestSubscriber getHandler, SetRequestSubscriber setHandler,
 			ActionRequestSubscriber actionHandler) {
+		if(this.getDeviceSession().isGatewayDispatch()) {
+			if(getHandler != null)
+				this.getDeviceSession().dispatch(getHandler, getDevice());
+			if(setHandler != null)
+				this.getDeviceSession().dispatch(setHandler, getDevice());
+			if(actionHandler != null)
+				this.getDeviceSession().dispatch(actionHandler, getDevice());
+			return;
+		}
 		if(getHandler != null)
 			this.getDeviceSession().subscribe(getHandler, getDevice());
 		if(setHandler != null)
@@ -46,11 +56,51 @@ public class IoTSubDevice {
 		this.deviceSession.subscribe(deviceId, alarmHandler);
 	}
 	
+	/**
+	 * 上报子设备的告警，通过websocket上报时等待发送完成，上报失败时抛出异常。
+	 * @param alarmType 告警类型名称。
+	 * @param alarmInfo 告警详细信息。
+	 */
 	public void reportAlarm(String alarmType, Object alarmInfo) {
-		deviceSession.getSession().reportAlarm(alarmType, alarmInfo, device);
+		if(deviceSession.isStompReport())
+			WebsocketDeviceSession.await(deviceSession.publishAlarm(alarmType, alarmInfo, device));
+		else
+			deviceSession.getSession().reportAlarm(alarmType, alarmInfo, device);
 	}
 	
+	/**
+	 * 异步上报子设备的告警。
+	 * @param alarmType 告警类型名称。
+	 * @param alarmInfo 告警详细信息。
+	 * @return 返回上报的future，上报失败时以异常完成。
+	 */
+	public CompletableFuture<Void> reportAlarmAsync(String alarmType, Object alarmInfo) {
+		if(deviceSession.isStompReport())
+			return deviceSession.publishAlarm(alarmType, alarmInfo, device);
+		else
+			return deviceSession.getSession().reportAlarmAsync(alarmType, alarmInfo, device);
+	}
+	
+	/**
+	 * 上报子设备的事件，通过websocket上报时等待发送完成，上报失败时抛出异常。
+	 * @param events 子设备的多个属性的值。
+	 */
 	public void reportEvent(Map<String, Object> events) {
-		deviceSession.getSession().reportEvents(events, device);
+		if(deviceSession.isStompReport())
+			WebsocketDeviceSession.await(deviceSession.publishEvents(events, device));
+		else
+			deviceSession.getSession().reportEvents(events, device);
+	}
+	
+	/**
+	 * 异步上报子设备的事件。
+	 * @param events 子设备的多个属性的值。
+	 * @return 返回上报的future，上报失败时以异常完成。
+	 */
+	public CompletableFuture<Void> reportEventAsync(Map<String, Object> events) {
+		if(deviceSession.isStompReport())
+			return deviceSession.publishEvents(events, device);
+		else
+			return deviceSession.getSession().reportEventsAsync(events, device);
 	}
 }
@@ -0,0 +1,413 @@
+package top.microiot.api.device;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import top.microiot.exception.StatusException;
+import top.microiot.exception.ValueException;
+
+/**
+ * 上报暂存日志，平台不可访问时将上报内容按顺序追加到内存映射的分段文件中，恢复后按顺序读出。
+ * 每条记录包括长度、类型、写入时间、校验和以及内容，已读出的位置保存在检查点文件中，
+ * 总大小超过上限时删除最早的分段。
+ */
+public class ReportSpool implements AutoCloseable {
+	private static final String SUFFIX = ".spool";
+	private static final String CHECKPOINT = "checkpoint";
+	private static final int HEADER = 4 + 1 + 8 + 4;
+
+	private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	private final File dir;
+	private final int segmentSize;
+	private final long maxBytes;
+	private final long retentionMillis;
+	private final LongSupplier clock;
+	private final TreeMap<Long, Segment> segments = new TreeMap<Long, Segment>();
+	private final MappedByteBuffer checkpoint;
+	private final RandomAccessFile checkpointFile;
+
+	private long readSegment;
+	private int readOffset;
+	private boolean dirty = false;
+
+	private final AtomicLong appendedCount = new AtomicLong();
+	private final AtomicLong readCount = new AtomicLong();
+	private final AtomicLong droppedCount = new AtomicLong();
+	private final AtomicLong expiredCount = new AtomicLong();
+	private final AtomicLong corruptCount = new AtomicLong();
+
+	/**
+	 * 上报暂存日志构造函数，打开目录中已有的分段并恢复写入和读出位置。
+	 * @param dir 保存分段文件的目录。
+	 * @param segmentSize 每个分段文件的大小，单位为字节。
+	 * @param maxBytes 所有分段文件的最大总大小，单位为字节。
+	 * @param retentionMillis 记录的保留时间，单位为毫秒，超过保留时间的记录读出时被丢弃，0表示一直保留。
+	 * @throws IOException 打开文件失败时抛出。
+	 */
+	public ReportSpool(File dir, int segmentSize, long maxBytes, long retentionMillis) throws IOException {
+		this(dir, segmentSize, maxBytes, retentionMillis, System::currentTimeMillis);
+	}
+
+	ReportSpool(File dir, int segmentSize, long maxBytes, long retentionMillis, LongSupplier clock) throws IOException {
+		super();
+		this.clock = clock;
+		this.dir = dir;
+		this.segmentSize = segmentSize;
+		this.maxBytes = Math.max(maxBytes, segmentSize);
+		this.retentionMillis = retentionMillis;
+
+		if (!dir.isDirectory() && !dir.mkdirs())
+			throw new IOException("can't create spool directory " + dir);
+		File[] files = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+		if (files != null) {
+			for (File file : files) {
+				long id = Long.parseLong(file.getName().substring(0, file.getName().length() - SUFFIX.length()));
+				segments.put(id, new Segment(id, file));
+			}
+		}
+		if (segments.isEmpty())
+			segments.put(0L, new Segment(0, segmentFile(0)));
+		segments.lastEntry().getValue().recover();
+
+		checkpointFile = new RandomAccessFile(new File(dir, CHECKPOINT), "rw");
+		checkpoint = checkpointFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, 16);
+		readSegment = checkpoint.getLong(0);
+		readOffset = (int) checkpoint.getLong(8);
+		if (!segments.containsKey(readSegment) || readOffset < 0 || readOffset > segmentSize) {
+			readSegment = segments.firstKey();
+			readOffset = 0;
+		}
+	}
+
+	/**
+	 * 追加一条记录。
+	 * @param type 记录类型。
+	 * @param payload 记录内容。
+	 */
+	public synchronized void append(byte type, byte[] payload) {
+		int size = HEADER + payload.length;
+		if (payload.length == 0 || size > segmentSize)
+			throw new ValueException("report is empty or larger than spool segment");
+
+		Segment segment = segments.lastEntry().getValue();
+		if (segment.writeOffset + size > segmentSize) {
+			segment.buffer.force();
+			segment = roll(segment.id + 1);
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		MappedByteBuffer buffer = segment.buffer;
+		int offset = segment.writeOffset;
+		buffer.putLong(offset + 5, clock.getAsLong());
+		buffer.putInt(offset + 13, (int) crc.getValue());
+		for (int i = 0; i < payload.length; i++)
+			buffer.put(offset + HEADER + i, payload[i]);
+		buffer.put(offset + 4, type);
+		buffer.putInt(offset, payload.length);
+		segment.writeOffset = offset + size;
+		dirty = true;
+		appendedCount.incrementAndGet();
+	}
+
+	/**
+	 * 从读出位置开始读取记录，不移动读出位置。超过保留时间的记录位于读出位置时被跳过，
+	 * 否则在它之前结束本次读取；校验和错误时跳过该分段剩余的内容。
+	 * @param max 最多读取的记录数量。
+	 * @return 返回记录列表，没有记录时返回空列表。
+	 */
+	public synchronized List<Record> peek(int max) {
+		List<Record> records = new ArrayList<Record>(Math.min(max, 64));
+		long segmentId = readSegment;
+		int offset = readOffset;
+		long expireBefore = retentionMillis > 0 ? clock.getAsLong() - retentionMillis : Long.MIN_VALUE;
+		while (records.size() < max) {
+			Segment segment = segments.get(segmentId);
+			if (segment == null)
+				break;
+			boolean end = offset + HEADER > segmentSize || offset >= segment.writeOffset;
+			if (end) {
+				Map.Entry<Long, Segment> next = segments.higherEntry(segmentId);
+				if (next == null)
+					break;
+				segmentId = next.getKey();
+				offset = 0;
+				continue;
+			}
+
+			MappedByteBuffer buffer = segment.buffer;
+			int length = buffer.getInt(offset);
+			if (length <= 0 || offset + HEADER + length > segment.writeOffset) {
+				segment.writeOffset = offset;
+				continue;
+			}
+			byte type = buffer.get(offset + 4);
+			long time = buffer.getLong(offset + 5);
+			byte[] payload = new byte[length];
+			for (int i = 0; i < length; i++)
+				payload[i] = buffer.get(offset + HEADER + i);
+			CRC32 crc = new CRC32();
+			crc.update(payload);
+			if ((int) crc.getValue() != buffer.getInt(offset + 13)) {
+				logger.warn("spool segment " + segmentId + " corrupted at " + offset + ", skip rest of segment");
+				corruptCount.incrementAndGet();
+				segment.writeOffset = offset;
+				continue;
+			}
+			offset += HEADER + length;
+
+			if (time < expireBefore) {
+				if (!records.isEmpty())
+					break;
+				expiredCount.incrementAndGet();
+				readSegment = segmentId;
+				readOffset = offset;
+				saveCheckpoint();
+				continue;
+			}
+			records.add(new Record(type, time, payload, segmentId, offset));
+		}
+		return records;
+	}
+
+	/**
+	 * 将读出位置移动到指定记录之后，删除已经全部读出的分段。
+	 * @param record 已经处理的记录。
+	 */
+	public synchronized void commit(Record record) {
+		readSegment = record.segment;
+		readOffset = record.next;
+		readCount.incrementAndGet();
+		saveCheckpoint();
+
+		while (segments.firstKey() < readSegment)
+			delete(segments.firstEntry().getValue());
+	}
+
+	/**
+	 * 是否没有未读出的记录。
+	 * @return 没有未读出的记录返回true。
+	 */
+	public synchronized boolean isEmpty() {
+		Segment last = segments.lastEntry().getValue();
+		return readSegment == last.id && readOffset >= last.writeOffset;
+	}
+
+	/**
+	 * 将写入的内容同步到磁盘。
+	 */
+	public synchronized void sync() {
+		if (!dirty)
+			return;
+		segments.lastEntry().getValue().buffer.force();
+		checkpoint.force();
+		dirty = false;
+	}
+
+	@Override
+	public synchronized void close() {
+		sync();
+		for (Segment segment : segments.values())
+			segment.close();
+		try {
+			checkpointFile.close();
+		} catch (IOException e) {
+			logger.warn("close spool checkpoint error: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * 获取未读出记录占用的字节数。
+	 * @return 返回字节数。
+	 */
+	public synchronized long getBacklogBytes() {
+		long bytes = 0;
+		for (Segment segment : segments.values()) {
+			if (segment.id < readSegment)
+				continue;
+			bytes += segment.writeOffset - (segment.id == readSegment ? readOffset : 0);
+		}
+		return bytes;
+	}
+
+	/**
+	 * 获取分段文件数量。
+	 * @return 返回分段文件数量。
+	 */
+	public synchronized int getSegmentCount() {
+		return segments.size();
+	}
+
+	public long getAppendedCount() {
+		return appendedCount.get();
+	}
+
+	public long getReadCount() {
+		return readCount.get();
+	}
+
+	/**
+	 * 获取因超过总大小上限被删除的记录数量。
+	 * @return 返回记录数量。
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * 获取因超过保留时间被丢弃的记录数量。
+	 * @return 返回记录数量。
+	 */
+	public long getExpiredCount() {
+		return expiredCount.get();
+	}
+
+	/**
+	 * 获取因校验和错误被跳过的次数，每次跳过分段中剩余的全部内容。
+	 * @return 返回跳过次数。
+	 */
+	public long getCorruptCount() {
+		return corruptCount.get();
+	}
+
+	private Segment roll(long id) {
+		Segment segment;
+		try {
+			segment = new Segment(id, segmentFile(id));
+			segment.writeOffset = 0;
+		} catch (IOException e) {
+			throw new StatusException("can't create spool segment: " + e.getMessage());
+		}
+		segments.put(id, segment);
+		while ((long) segments.size() * segmentSize > maxBytes && segments.size() > 1) {
+			Segment oldest = segments.firstEntry().getValue();
+			if (oldest.id >= readSegment) {
+				droppedCount.addAndGet(oldest.count(oldest.id == readSegment ? readOffset : 0));
+				Map.Entry<Long, Segment> next = segments.higherEntry(oldest.id);
+				readSegment = next.getKey();
+				readOffset = 0;
+				saveCheckpoint();
+			}
+			delete(oldest);
+		}
+		return segment;
+	}
+
+	private void delete(Segment segment) {
+		segments.remove(segment.id);
+		segment.close();
+		if (!segment.file.delete())
+			logger.warn("can't delete spool segment " + segment.file);
+	}
+
+	private void saveCheckpoint() {
+		checkpoint.putLong(0, readSegment);
+		checkpoint.putLong(8, readOffset);
+		dirty = true;
+	}
+
+	private File segmentFile(long id) {
+		return new File(dir, String.format("%020d", id) + SUFFIX);
+	}
+
+	/**
+	 * 暂存日志中的记录。
+	 */
+	public static class Record {
+		private final byte type;
+		private final long time;
+		private final byte[] payload;
+		private final long segment;
+		private final int next;
+
+		private Record(byte type, long time, byte[] payload, long segment, int next) {
+			this.type = type;
+			this.time = time;
+			this.payload = payload;
+			this.segment = segment;
+			this.next = next;
+		}
+
+		public byte getType() {
+			return type;
+		}
+
+		public long getTime() {
+			return time;
+		}
+
+		public byte[] getPayload() {
+			return payload;
+		}
+	}
+
+	private class Segment {
+		private final long id;
+		private final File file;
+		private final RandomAccessFile raf;
+		private final MappedByteBuffer buffer;
+		private int writeOffset;
+
+		private Segment(long id, File file) throws IOException {
+			this.id = id;
+			this.file = file;
+			this.raf = new RandomAccessFile(file, "rw");
+			this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+			this.writeOffset = segmentSize;
+		}
+
+		/**
+		 * 从头检查记录的校验和，找到写入位置，忽略最后没有写完整的记录。
+		 */
+		private void recover() {
+			int offset = 0;
+			while (offset + HEADER <= segmentSize) {
+				int length = buffer.getInt(offset);
+				if (length <= 0 || offset + HEADER + length > segmentSize)
+					break;
+				CRC32 crc = new CRC32();
+				for (int i = 0; i < length; i++)
+					crc.update(buffer.get(offset + HEADER + i));
+				if ((int) crc.getValue() != buffer.getInt(offset + 13))
+					break;
+				offset += HEADER + length;
+			}
+			writeOffset = offset;
+		}
+
+		private long count(int from) {
+			long count = 0;
+			int offset = from;
+			while (offset + HEADER <= writeOffset) {
+				int length = buffer.getInt(offset);
+				if (length <= 0)
+					break;
+				offset += HEADER + length;
+				count++;
+			}
+			return count;
+		}
+
+		private void close() {
+			try {
+				raf.close();
+			} catch (IOException e) {
+				logger.warn("close spool segment error: " + e.getMessage());
+			}
+		}
+	}
+}
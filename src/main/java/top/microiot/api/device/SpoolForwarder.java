@@ -0,0 +1,192 @@
+package top.microiot.api.device;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.TaskScheduler;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import top.microiot.api.UnavailableException;
+import top.microiot.exception.ValueException;
+
+/**
+ * 上报暂存转发类，平台不可访问时将事件和告警写入暂存日志，平台恢复后按写入顺序分批重新上报。
+ * 暂存日志中还有未上报的内容时，新的上报也写入暂存日志，保证上报顺序不变。
+ * 只有HttpDeviceSession的reportEvents和reportAlarm经过暂存日志，异步上报、缓冲上报（EventReporter）
+ * 以及WebsocketDeviceSession的websocket上报不写入暂存日志，失败时由返回的future通知调用方。
+ */
+public class SpoolForwarder implements AutoCloseable {
+	public static final byte EVENT = 1;
+	public static final byte SUBDEVICE_EVENT = 2;
+	public static final byte ALARM = 3;
+	public static final byte SUBDEVICE_ALARM = 4;
+
+	private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	private final HttpDeviceSession session;
+	private final ReportSpool spool;
+	private final ObjectMapper objectMapper;
+	private final int batchSize;
+	private final int maxAttempts;
+	private final ScheduledFuture<?> replayTask;
+	private final ScheduledFuture<?> syncTask;
+	private final AtomicBoolean replaying = new AtomicBoolean();
+
+	private int attempts = 0;
+
+	private final AtomicLong directCount = new AtomicLong();
+	private final AtomicLong spooledCount = new AtomicLong();
+	private final AtomicLong replayedCount = new AtomicLong();
+	private final AtomicLong discardedCount = new AtomicLong();
+
+	/**
+	 * 上报暂存转发构造函数。
+	 * @param session 设备端http会话。
+	 * @param spool 上报暂存日志。
+	 * @param objectMapper 序列化上报内容的ObjectMapper。
+	 * @param taskScheduler 执行重新上报和同步的调度。
+	 * @param batchSize 一次从暂存日志读出的最大记录数量。
+	 * @param retryMillis 重新上报的间隔时间，单位为毫秒。
+	 * @param maxAttempts 平台返回错误时一条记录的最大上报次数，超过后丢弃该记录。
+	 * @param syncMillis 暂存日志同步到磁盘的间隔时间，单位为毫秒。
+	 */
+	public SpoolForwarder(HttpDeviceSession session, ReportSpool spool, ObjectMapper objectMapper, TaskScheduler taskScheduler,
+			int batchSize, long retryMillis, int maxAttempts, long syncMillis) {
+		super();
+		this.session = session;
+		this.spool = spool;
+		this.objectMapper = objectMapper;
+		this.batchSize = Math.max(batchSize, 1);
+		this.maxAttempts = Math.max(maxAttempts, 1);
+		this.replayTask = taskScheduler.scheduleWithFixedDelay(this::replay, Math.max(retryMillis, 1));
+		this.syncTask = taskScheduler.scheduleWithFixedDelay(spool::sync, Math.max(syncMillis, 1));
+	}
+
+	/**
+	 * 上报事件或者告警，平台不可访问或者暂存日志中还有未上报的内容时写入暂存日志。
+	 * @param type 上报类型。
+	 * @param info 上报内容。
+	 */
+	public void report(byte type, Object info) {
+		if (spool.isEmpty()) {
+			try {
+				session.postReport(type, info);
+				directCount.incrementAndGet();
+				return;
+			} catch (UnavailableException e) {
+				logger.warn("platform unavailable, spool report: " + e.getMessage());
+			}
+		}
+		append(type, info);
+	}
+
+	private void append(byte type, Object info) {
+		try {
+			spool.append(type, objectMapper.writeValueAsBytes(info));
+			spooledCount.incrementAndGet();
+		} catch (JsonProcessingException e) {
+			throw new ValueException("can't serialize report: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * 按写入顺序重新上报暂存日志中的记录，平台仍不可访问时等待下次重试。
+	 */
+	public void replay() {
+		if (!replaying.compareAndSet(false, true))
+			return;
+		try {
+			while (!spool.isEmpty()) {
+				List<ReportSpool.Record> records = spool.peek(batchSize);
+				if (records.isEmpty())
+					return;
+				for (ReportSpool.Record record : records) {
+					if (!send(record))
+						return;
+					spool.commit(record);
+				}
+			}
+		} catch (Throwable e) {
+			logger.error("replay spooled report error: " + e.getMessage());
+		} finally {
+			replaying.set(false);
+		}
+	}
+
+	private boolean send(ReportSpool.Record record) {
+		try {
+			session.postSpooled(record.getType(), new String(record.getPayload(), StandardCharsets.UTF_8));
+			attempts = 0;
+			replayedCount.incrementAndGet();
+			return true;
+		} catch (UnavailableException e) {
+			return false;
+		} catch (RuntimeException e) {
+			if (++attempts < maxAttempts) {
+				logger.warn("replay spooled report error: " + e.getMessage());
+				return false;
+			}
+			logger.error("discard spooled report after " + attempts + " attempts: " + e.getMessage());
+			attempts = 0;
+			discardedCount.incrementAndGet();
+			return true;
+		}
+	}
+
+	/**
+	 * 停止重新上报，将暂存日志同步到磁盘并关闭，未上报的记录在下次启动后继续上报。
+	 */
+	@Override
+	public void close() {
+		replayTask.cancel(false);
+		syncTask.cancel(false);
+		spool.close();
+	}
+
+	/**
+	 * 获取暂存日志。
+	 * @return 返回暂存日志。
+	 */
+	public ReportSpool getSpool() {
+		return spool;
+	}
+
+	/**
+	 * 获取直接上报成功的数量。
+	 * @return 返回上报数量。
+	 */
+	public long getDirectCount() {
+		return directCount.get();
+	}
+
+	/**
+	 * 获取写入暂存日志的数量。
+	 * @return 返回上报数量。
+	 */
+	public long getSpooledCount() {
+		return spooledCount.get();
+	}
+
+	/**
+	 * 获取从暂存日志重新上报成功的数量。
+	 * @return 返回上报数量。
+	 */
+	public long getReplayedCount() {
+		return replayedCount.get();
+	}
+
+	/**
+	 * 获取平台多次返回错误后丢弃的数量。
+	 * @return 返回上报数量。
+	 */
+	public long getDiscardedCount() {
+		return discardedCount.get();
+	}
+}
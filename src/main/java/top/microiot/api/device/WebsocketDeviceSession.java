@@ -1,15 +1,32 @@
 package top.microiot.api.device;
 
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.socket.messaging.WebSocketStompClient;
 
 import top.microiot.api.client.WebsocketClientSession;
 import top.microiot.api.device.stomp.ActionRequestSubscriber;
 import top.microiot.api.device.stomp.ActionSubscribeHandler;
+import top.microiot.api.device.stomp.GatewayDispatchHandler;
 import top.microiot.api.device.stomp.GetRequestSubscriber;
 import top.microiot.api.device.stomp.GetSubscribeHandler;
+import top.microiot.api.device.stomp.ReportPublishHandler;
+import top.microiot.api.device.stomp.RequestSubscriber;
 import top.microiot.api.device.stomp.SetRequestSubscriber;
 import top.microiot.api.device.stomp.SetSubscribeHandler;
+import top.microiot.domain.Action;
 import top.microiot.domain.Device;
+import top.microiot.domain.Get;
+import top.microiot.domain.Set;
+import top.microiot.domain.Topic;
 
 /**
  * 设备端与物联网平台的websocket会话类
@@ -17,7 +34,14 @@ import top.microiot.domain.Device;
  * @author 曹新宇
  */
 public class WebsocketDeviceSession extends WebsocketClientSession {
+	private static final String SUBDEVICE = "/subdevice";
+	
+	private Logger logger = LoggerFactory.getLogger(this.getClass());
 	private HttpDeviceSession session;
+	private ReportPublishHandler reportHandler;
+	private final Map<String, GatewayDispatchHandler> dispatchers = new ConcurrentHashMap<String, GatewayDispatchHandler>();
+	private Executor requestExecutor;
+	private ThreadPoolTaskExecutor ownedExecutor;
 	
 	public HttpDeviceSession getSession() {
 		return session;
@@ -108,4 +132,228 @@ public class WebsocketDeviceSession extends WebsocketClientSession {
 	public Device getDevice() {
 		return session.getDevice();
 	}
+	
+	/**
+	 * 获取处理设备端请求的执行器，没有设置并且请求处理线程数为0时返回null，请求在接收消息的线程中处理。
+	 * @return 返回请求处理执行器。
+	 */
+	public synchronized Executor getRequestExecutor() {
+		if(requestExecutor == null && getWebsocketProperties().getRequestThreads() > 0) {
+			ownedExecutor = new ThreadPoolTaskExecutor();
+			ownedExecutor.setCorePoolSize(getWebsocketProperties().getRequestThreads());
+			ownedExecutor.setMaxPoolSize(getWebsocketProperties().getRequestThreads());
+			ownedExecutor.setQueueCapacity(getWebsocketProperties().getRequestQueueCapacity());
+			ownedExecutor.setThreadNamePrefix("device-request-");
+			ownedExecutor.setDaemon(true);
+			ownedExecutor.initialize();
+			requestExecutor = ownedExecutor;
+		}
+		return requestExecutor;
+	}
+	
+	/**
+	 * 设置处理设备端请求的执行器。
+	 * @param requestExecutor 请求处理执行器。
+	 */
+	public synchronized void setRequestExecutor(Executor requestExecutor) {
+		this.requestExecutor = requestExecutor;
+	}
+	
+	/**
+	 * 停止websocket会话，关闭会话建立的请求处理执行器。
+	 */
+	@Override
+	public void stop() {
+		super.stop();
+		ThreadPoolTaskExecutor executor;
+		synchronized(this) {
+			executor = ownedExecutor;
+			ownedExecutor = null;
+			if(requestExecutor == executor)
+				requestExecutor = null;
+		}
+		if(executor != null)
+			executor.shutdown();
+	}
+	
+	/**
+	 * 是否使用网关模式处理子设备的请求。
+	 * @return 开启网关模式返回true。
+	 */
+	public boolean isGatewayDispatch() {
+		return getWebsocketProperties().isGatewayDispatch();
+	}
+	
+	/**
+	 * 网关模式下登记子设备收到获取请求后的处理操作，所有设备共用一个通配符订阅。
+	 * @param subscriber 收到获取请求后的处理，每个设备使用单独的处理。
+	 * @param device 子设备。
+	 * @return 返回获取请求分发处理。
+	 */
+	public GatewayDispatchHandler dispatch(GetRequestSubscriber subscriber, Device device) {
+		return dispatch(Topic.TOPIC_GET, Get.class, subscriber, device);
+	}
+	
+	/**
+	 * 网关模式下登记子设备收到设置请求后的处理操作，所有设备共用一个通配符订阅。
+	 * @param subscriber 收到设置请求后的处理，每个设备使用单独的处理。
+	 * @param device 子设备。
+	 * @return 返回设置请求分发处理。
+	 */
+	public GatewayDispatchHandler dispatch(SetRequestSubscriber subscriber, Device device) {
+		return dispatch(Topic.TOPIC_SET, Set.class, subscriber, device);
+	}
+	
+	/**
+	 * 网关模式下登记子设备收到操作请求后的处理操作，所有设备共用一个通配符订阅。
+	 * @param subscriber 收到操作请求后的处理，每个设备使用单独的处理。
+	 * @param device 子设备。
+	 * @return 返回操作请求分发处理。
+	 */
+	public GatewayDispatchHandler dispatch(ActionRequestSubscriber subscriber, Device device) {
+		return dispatch(Topic.TOPIC_ACTION, Action.class, subscriber, device);
+	}
+	
+	/**
+	 * 网关模式下取消子设备所有请求的处理。
+	 * @param device 子设备。
+	 */
+	public void undispatch(Device device) {
+		for(GatewayDispatchHandler dispatcher : dispatchers.values())
+			dispatcher.unregister(device.getId());
+	}
+	
+	private GatewayDispatchHandler dispatch(String operation, Type payloadType, RequestSubscriber subscriber, Device device) {
+		subscriber.init();
+		subscriber.setWebsocketDeviceSession(this);
+		subscriber.setDevice(device);
+		GatewayDispatchHandler dispatcher = dispatchers.computeIfAbsent(operation, key -> {
+			GatewayDispatchHandler handler = new GatewayDispatchHandler(key, payloadType);
+			connect(handler);
+			handlers.add(handler);
+			return handler;
+		});
+		dispatcher.register(device.getId(), subscriber);
+		return dispatcher;
+	}
+	
+	/**
+	 * 是否通过websocket连接上报事件和告警。
+	 * @return 开启websocket上报返回true。
+	 */
+	public boolean isStompReport() {
+		return getWebsocketProperties().isStompReport();
+	}
+	
+	/**
+	 * 设备端通过websocket连接上报事件信息，上报内容与http上报相同，websocket没有连接时通过http异步上报。
+	 * websocket上报和http异步上报都不经过上报暂存，失败时返回的future以异常完成。
+	 * @param events 设备的多个属性的值。
+	 * @return 返回上报的future。
+	 */
+	public CompletableFuture<Void> publishEvents(Map<String, Object> events) {
+		ReportPublishHandler handler = getReportHandler();
+		if(!handler.isConnected())
+			return session.reportEventsAsync(events);
+		try {
+			return publish(handler, getWebsocketProperties().getStompEventDestination(), session.buildEventInfo(events));
+		} catch(Throwable e) {
+			return failed(e);
+		}
+	}
+	
+	/**
+	 * 网关设备通过websocket连接上报子设备的事件信息。
+	 * @param events 子设备的多个属性的值。
+	 * @param device 子设备。
+	 * @return 返回上报的future。
+	 */
+	public CompletableFuture<Void> publishEvents(Map<String, Object> events, Device device) {
+		ReportPublishHandler handler = getReportHandler();
+		if(!handler.isConnected())
+			return session.reportEventsAsync(events, device);
+		try {
+			return publish(handler, getWebsocketProperties().getStompEventDestination() + SUBDEVICE, session.buildEventInfo(events, device));
+		} catch(Throwable e) {
+			return failed(e);
+		}
+	}
+	
+	/**
+	 * 设备端通过websocket连接上报告警信息，上报内容与http上报相同，websocket没有连接时通过http异步上报。
+	 * @param alarmType 告警类型名称。
+	 * @param alarmInfo 告警详细信息。
+	 * @return 返回上报的future。
+	 */
+	public CompletableFuture<Void> publishAlarm(String alarmType, Object alarmInfo) {
+		ReportPublishHandler handler = getReportHandler();
+		if(!handler.isConnected())
+			return session.reportAlarmAsync(alarmType, alarmInfo);
+		try {
+			return publish(handler, getWebsocketProperties().getStompAlarmDestination(), session.buildAlarmInfo(alarmType, alarmInfo));
+		} catch(Throwable e) {
+			return failed(e);
+		}
+	}
+	
+	/**
+	 * 网关设备通过websocket连接上报子设备的告警信息。
+	 * @param alarmType 告警类型名称。
+	 * @param alarmInfo 告警详细信息。
+	 * @param device 子设备。
+	 * @return 返回上报的future。
+	 */
+	public CompletableFuture<Void> publishAlarm(String alarmType, Object alarmInfo, Device device) {
+		ReportPublishHandler handler = getReportHandler();
+		if(!handler.isConnected())
+			return session.reportAlarmAsync(alarmType, alarmInfo, device);
+		try {
+			return publish(handler, getWebsocketProperties().getStompAlarmDestination() + SUBDEVICE, session.buildAlarmInfo(alarmType, alarmInfo, device));
+		} catch(Throwable e) {
+			return failed(e);
+		}
+	}
+	
+	private CompletableFuture<Void> publish(ReportPublishHandler handler, String destination, Object info) {
+		CompletableFuture<Void> future = handler.send(destination, info);
+		future.whenComplete((v, e) -> {
+			if(e != null)
+				logger.warn("publish report error: " + e.getMessage());
+		});
+		return future;
+	}
+	
+	/**
+	 * 获取上报发送处理，第一次调用时加入websocket连接。
+	 */
+	private synchronized ReportPublishHandler getReportHandler() {
+		if(reportHandler == null) {
+			reportHandler = new ReportPublishHandler();
+			connect(reportHandler);
+			handlers.add(reportHandler);
+		}
+		return reportHandler;
+	}
+	
+	private static CompletableFuture<Void> failed(Throwable e) {
+		CompletableFuture<Void> future = new CompletableFuture<Void>();
+		future.completeExceptionally(e);
+		return future;
+	}
+	
+	/**
+	 * 等待上报完成，上报失败时抛出上报的异常。
+	 */
+	static void await(CompletableFuture<Void> future) {
+		try {
+			future.join();
+		} catch(CompletionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof RuntimeException)
+				throw (RuntimeException)cause;
+			if(cause instanceof Error)
+				throw (Error)cause;
+			throw e;
+		}
+	}
 }
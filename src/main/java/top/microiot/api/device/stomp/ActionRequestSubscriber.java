@@ -1,17 +1,18 @@
 package top.microiot.api.device.stomp;
 
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.stereotype.Component;
 
+import top.microiot.api.stomp.DataConverter;
 import top.microiot.domain.Action;
 import top.microiot.domain.Response;
 import top.microiot.domain.ActionType;
 import top.microiot.domain.Device;
 import top.microiot.domain.User;
-import top.microiot.domain.attribute.DataType;
 import top.microiot.domain.attribute.DataValue;
+import top.microiot.exception.NotFoundException;
 import top.microiot.exception.ValueException;
 
 /**
@@ -22,7 +23,6 @@ import top.microiot.exception.ValueException;
  */
 @Component
 public abstract class ActionRequestSubscriber extends RequestSubscriber {
-	private Map<String, ActionType> actionTypes;
 	
 	/**
 	 * 设备端操作请求处理构造函数。
@@ -34,43 +34,53 @@ public abstract class ActionRequestSubscriber extends RequestSubscriber {
 	/**
 	 *  将操作请求中的请求值转变为用户的类型，调用设备的操作，
 	 *  将返回的响应值转换为协议要求的格式，返回操作响应。
+	 * @param context 请求上下文。
 	 * @return 返回响应。
 	 */
 	@Override
-	public Response getResponse() {
-		this.actionTypes = this.getDevice().getDeviceType().getActionTypes();
-		Action req = (Action) request;
+	public Response getResponse(RequestContext context) {
+		return respond(context).join();
+	}
+
+	/**
+	 *  将操作请求中的请求值转变为用户的类型，调用设备的异步操作，
+	 *  操作完成后将返回的响应值转换为协议要求的格式，返回操作响应。
+	 * @param context 请求上下文。
+	 * @return 返回响应的future。
+	 */
+	@Override
+	protected CompletableFuture<Response> respond(RequestContext context) {
+		Action req = (Action) context.getRequest();
 		try {
-			ActionType actType = this.actionTypes.get(req.getAction());
+			ActionType actType = this.getDevice().getDeviceType().getActionTypes().get(req.getAction());
+			if(actType == null)
+				throw new NotFoundException("action: " + req.getAction());
 			Object requestValue = null;
-			if(actType.getRequest() != null) {
-				DataType requestType = actType.getRequestAttributeType().getDataType();
-				Object type = getType(req);
-				if(type instanceof Class<?>) {
-					Class<?> t = (Class<?>) type;
-					requestValue = requestType.getValue(req.getValue(), t);
-				}
-				else if(type instanceof ParameterizedTypeReference<?>) {
-					ParameterizedTypeReference<?> t = (ParameterizedTypeReference<?>) type;
-					requestValue = requestType.getValue(req.getValue(), t);
+			if(actType.getRequest() != null)
+				requestValue = buildRequestConverter(actType, req.getAction()).decodeValue(req.getValue());
+			CompletableFuture<?> res = actionAsync(req.getRequester(), this.getWebsocketDeviceSession().getDevice(), req.getAction(), requestValue);
+			return res.handle((value, e) -> {
+				if(e != null)
+					return new Response(false, (e.getCause() != null ? e.getCause() : e).getMessage(), null);
+				try {
+					DataValue responseValue = null;
+					if(actType.getResponse() != null)
+						responseValue = new DataConverter(actType.getResponseAttributeType().getDataType(), null).encodeData(value);
+					return new Response(true, null, responseValue);
+				} catch(Throwable t) {
+					return new Response(false, t.getMessage(), null);
 				}
-				else
-					throw new ValueException("action: " + req.getAction() + " request can't be converted, please add its convert class");
-			}
-			Object res = action(req.getRequester(), this.getWebsocketDeviceSession().getDevice(), req.getAction(), requestValue);
-			DataValue responseValue = null;
-			if(actType.getResponse() != null) {
-				DataType resType = actType.getResponseAttributeType().getDataType();
-				responseValue = resType.getAttData(res);
-			}
-			return new Response(true, null, responseValue);
+			});
 		} catch(Throwable e) {
-			return new Response(false, e.getMessage(), null);
+			return CompletableFuture.completedFuture(new Response(false, e.getMessage(), null));
 		}
 	}
 
-	private Object getType(Action req) {
-		return types.get(req.getAction());
+	private DataConverter buildRequestConverter(ActionType actType, String action) {
+		Object type = types.get(action);
+		if(!(type instanceof Class<?>) && !(type instanceof ParameterizedTypeReference<?>))
+			throw new ValueException("action: " + action + " request can't be converted, please add its convert class");
+		return new DataConverter(actType.getRequestAttributeType().getDataType(), type);
 	}
 
 	/**
@@ -82,4 +92,16 @@ public abstract class ActionRequestSubscriber extends RequestSubscriber {
 	 * @return 返回响应值。
 	 */
 	public abstract Object action(User requester, Device device, String action, Object request);
+
+	/**
+	 * 不同设备的具体异步操作的实现，默认调用同步操作，需要较长时间完成的操作可以重载，操作完成后再返回响应。
+	 * @param requester 操作的请求者。
+	 * @param device 操作的设备。
+	 * @param action 操作的名称。
+	 * @param request 操作的请求值。
+	 * @return 返回响应值的future。
+	 */
+	public CompletableFuture<?> actionAsync(User requester, Device device, String action, Object request) {
+		return CompletableFuture.completedFuture(action(requester, device, action, request));
+	}
 }
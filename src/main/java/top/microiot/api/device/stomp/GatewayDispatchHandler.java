@@ -0,0 +1,119 @@
+package top.microiot.api.device.stomp;
+
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+
+import top.microiot.domain.Request;
+import top.microiot.domain.Response;
+import top.microiot.domain.Topic;
+
+/**
+ * 网关请求分发处理类，每种操作只用通配符订阅一次，收到请求后按目的地址中的设备标识符分发给对应子设备的请求处理。
+ */
+public class GatewayDispatchHandler extends StompSessionHandlerAdapter {
+	private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	private final String operation;
+	private final String prefix;
+	private final Type payloadType;
+	private final Map<String, RequestSubscriber> subscribers = new ConcurrentHashMap<String, RequestSubscriber>();
+	private volatile StompSession session;
+
+	/**
+	 * 网关请求分发处理构造函数。
+	 * @param operation 操作名称，例如Topic.TOPIC_GET。
+	 * @param payloadType 请求的类型。
+	 */
+	public GatewayDispatchHandler(String operation, Type payloadType) {
+		super();
+		this.operation = operation;
+		this.prefix = Topic.TOPIC_OPERATION + operation + ".";
+		this.payloadType = payloadType;
+	}
+
+	/**
+	 * 登记设备的请求处理。
+	 * @param deviceId 设备标识符。
+	 * @param subscriber 请求处理。
+	 */
+	public void register(String deviceId, RequestSubscriber subscriber) {
+		subscribers.put(deviceId, subscriber);
+	}
+
+	/**
+	 * 取消设备的请求处理。
+	 * @param deviceId 设备标识符。
+	 */
+	public void unregister(String deviceId) {
+		subscribers.remove(deviceId);
+	}
+
+	/**
+	 * 获取登记的设备数量。
+	 * @return 返回设备数量。
+	 */
+	public int size() {
+		return subscribers.size();
+	}
+
+	public String getOperation() {
+		return operation;
+	}
+
+	@Override
+	public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+		this.session = session;
+		synchronized(session) {
+			session.subscribe(prefix + "*", this);
+		}
+	}
+
+	@Override
+	public Type getPayloadType(StompHeaders headers) {
+		return payloadType;
+	}
+
+	@Override
+	public void handleFrame(StompHeaders headers, Object payload) {
+		String destination = headers.getDestination();
+		if(destination == null || !destination.startsWith(prefix)) {
+			logger.warn("unexpected destination: " + destination);
+			return;
+		}
+		String deviceId = destination.substring(prefix.length());
+		RequestSubscriber subscriber = subscribers.get(deviceId);
+		if(subscriber == null) {
+			logger.debug("no handler for device: " + deviceId);
+			return;
+		}
+
+		RequestContext context = new RequestContext((Request)payload, subscriber.getDevice(), operation, deviceId);
+		subscriber.handle(context).thenAccept(response -> reply(context, response));
+	}
+
+	private void reply(RequestContext context, Response response) {
+		StompSession s = session;
+		synchronized(s) {
+			s.send(context.getResultTopic(), response);
+		}
+	}
+
+	@Override
+	public void handleException(StompSession session, StompCommand command, StompHeaders headers, byte[] payload,
+			Throwable exception) {
+		logger.error(exception.getMessage());
+	}
+
+	@Override
+	public void handleTransportError(StompSession session, Throwable exception) {
+		logger.error("transport error: " + exception.getMessage());
+	}
+}
@@ -1,16 +1,15 @@
 package top.microiot.api.device.stomp;
 
-import java.util.Map;
-
 import org.springframework.stereotype.Component;
 
 import top.microiot.domain.Get;
 import top.microiot.domain.Response;
 import top.microiot.domain.Device;
 import top.microiot.domain.User;
+import top.microiot.api.stomp.DataConverter;
 import top.microiot.domain.attribute.AttributeType;
 import top.microiot.domain.attribute.DataValue;
-import top.microiot.domain.attribute.DeviceAttributeType;
+import top.microiot.exception.NotFoundException;
 
 /**
  * 设备端获取请求处理，设备收到获取请求后，返回属性值，将属性值转换为底层响应的格式。
@@ -19,7 +18,6 @@ import top.microiot.domain.attribute.DeviceAttributeType;
  */
 @Component
 public abstract class GetRequestSubscriber extends RequestSubscriber {
-	private Map<String, DeviceAttributeType> attDefinition;
 	
 	/**
 	 * 设备端获取请求处理构造函数。
@@ -30,16 +28,15 @@ public abstract class GetRequestSubscriber extends RequestSubscriber {
 
 	/**
 	 * 调用设备的获取方法，将返回的属性值转换为协议要求的格式，返回操作响应。
+	 * @param context 请求上下文。
 	 * @return 返回响应。
 	 */
 	@Override
-	public Response getResponse() {
-		this.attDefinition = this.getDevice().getDeviceType().getAttDefinition();
-		Get req = (Get) request;
+	public Response getResponse(RequestContext context) {
+		Get req = (Get) context.getRequest();
 		try {
 			Object res = getAttributeValue(req.getRequester(), this.getWebsocketDeviceSession().getDevice(), req.getAttribute());
-			AttributeType type = this.attDefinition.get(req.getAttribute());
-			DataValue responseValue = type.getAttData(res);
+			DataValue responseValue = buildConverter(req.getAttribute()).encodeData(res);
 			return new Response(true, null, responseValue);
 		} catch(Throwable e) {
 			return new Response(false, e.getMessage(), null);
@@ -47,6 +44,13 @@ public abstract class GetRequestSubscriber extends RequestSubscriber {
 		
 	}
 
+	private DataConverter buildConverter(String attribute) {
+		AttributeType type = this.getDevice().getDeviceType().getAttDefinition().get(attribute);
+		if(type == null)
+			throw new NotFoundException("attribute: " + attribute);
+		return new DataConverter(type, null);
+	}
+
 	/**
 	 * 不同设备的具体获取的实现。
 	 * @param requester 获取的请求者。
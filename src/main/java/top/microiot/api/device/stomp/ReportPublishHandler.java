@@ -0,0 +1,79 @@
+package top.microiot.api.device.stomp;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSession.Receiptable;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+
+import top.microiot.exception.StatusException;
+
+/**
+ * 设备端上报发送处理类，在已经建立的websocket连接上用STOMP SEND帧发送事件和告警。
+ */
+public class ReportPublishHandler extends StompSessionHandlerAdapter {
+	private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	private volatile StompSession session;
+
+	@Override
+	public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+		this.session = session;
+	}
+
+	/**
+	 * 是否已经连接。
+	 * @return 已经连接返回true。
+	 */
+	public boolean isConnected() {
+		StompSession s = session;
+		return s != null && s.isConnected();
+	}
+
+	/**
+	 * 发送上报内容。
+	 * @param destination 发送的目的地址。
+	 * @param payload 上报内容。
+	 * @return 返回发送的future，开启回执时收到回执后完成，没有收到回执时以异常完成。
+	 */
+	public CompletableFuture<Void> send(String destination, Object payload) {
+		CompletableFuture<Void> future = new CompletableFuture<Void>();
+		StompSession s = session;
+		if (s == null || !s.isConnected()) {
+			future.completeExceptionally(new StatusException("websocket not connected"));
+			return future;
+		}
+
+		Receiptable receipt;
+		try {
+			synchronized (s) {
+				receipt = s.send(destination, payload);
+			}
+		} catch (RuntimeException e) {
+			future.completeExceptionally(new StatusException("report send error: " + e.getMessage()));
+			return future;
+		}
+		if (receipt.getReceiptId() == null)
+			future.complete(null);
+		else {
+			receipt.addReceiptTask(() -> future.complete(null));
+			receipt.addReceiptLostTask(() -> future.completeExceptionally(new StatusException("report receipt lost: " + destination)));
+		}
+		return future;
+	}
+
+	@Override
+	public void handleException(StompSession session, StompCommand command, StompHeaders headers, byte[] payload,
+			Throwable exception) {
+		logger.error(exception.getMessage());
+	}
+
+	@Override
+	public void handleTransportError(StompSession session, Throwable exception) {
+		logger.error("transport error: " + exception.getMessage());
+	}
+}
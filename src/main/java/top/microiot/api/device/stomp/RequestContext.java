@@ -0,0 +1,78 @@
+package top.microiot.api.device.stomp;
+
+import top.microiot.domain.Device;
+import top.microiot.domain.Request;
+import top.microiot.domain.Topic;
+import top.microiot.domain.User;
+
+/**
+ * 设备端请求上下文，每个收到的请求单独一个，创建后不再改变，处理请求和返回响应都使用同一个上下文。
+ */
+public final class RequestContext {
+	private final Request request;
+	private final Device device;
+	private final String operation;
+	private final String deviceId;
+	private final long receivedTime;
+
+	/**
+	 * 设备端请求上下文构造函数。
+	 * @param request 收到的请求。
+	 * @param device 处理请求的设备。
+	 * @param operation 操作名称，例如Topic.TOPIC_GET。
+	 * @param deviceId 请求的设备标识符。
+	 */
+	public RequestContext(Request request, Device device, String operation, String deviceId) {
+		super();
+		this.request = request;
+		this.device = device;
+		this.operation = operation;
+		this.deviceId = deviceId;
+		this.receivedTime = System.currentTimeMillis();
+	}
+
+	public Request getRequest() {
+		return request;
+	}
+
+	public Device getDevice() {
+		return device;
+	}
+
+	public String getOperation() {
+		return operation;
+	}
+
+	public String getDeviceId() {
+		return deviceId;
+	}
+
+	/**
+	 * 获取收到请求的时间，单位为毫秒。
+	 * @return 返回收到请求的时间。
+	 */
+	public long getReceivedTime() {
+		return receivedTime;
+	}
+
+	public String getRequestId() {
+		return request.getRequestId();
+	}
+
+	public User getRequester() {
+		return request.getRequester();
+	}
+
+	/**
+	 * 获取返回响应的主题。
+	 * @return 返回响应主题。
+	 */
+	public String getResultTopic() {
+		return Topic.TOPIC_RESULT + operation + "." + deviceId + "." + request.getRequestId();
+	}
+
+	@Override
+	public String toString() {
+		return "RequestContext [operation=" + operation + ", deviceId=" + deviceId + ", request=" + request + "]";
+	}
+}
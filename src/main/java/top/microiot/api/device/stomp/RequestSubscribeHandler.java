@@ -4,6 +4,7 @@ import org.springframework.messaging.simp.stomp.StompHeaders;
 import org.springframework.messaging.simp.stomp.StompSession;
 
 import top.microiot.api.stomp.SubscribeHandler;
+import top.microiot.domain.Request;
 import top.microiot.domain.Response;
 import top.microiot.domain.Topic;
 
@@ -13,7 +14,7 @@ import top.microiot.domain.Topic;
  * @author 曹新宇
  */
 public abstract class RequestSubscribeHandler extends SubscribeHandler {
-	private StompSession session;
+	private volatile StompSession session;
 	
 	public RequestSubscribeHandler(String deviceId, RequestSubscriber subscriber) {
 		super(deviceId, subscriber);
@@ -27,11 +28,15 @@ public abstract class RequestSubscribeHandler extends SubscribeHandler {
 
 	@Override
 	public void handleFrame(StompHeaders headers, Object payload) {
-		super.handleFrame(headers, payload);
-		Response response = ((RequestSubscriber)subscriber).getResponse();
-		String topic = Topic.TOPIC_RESULT + getOperation() + "." + deviceId + "." + ((RequestSubscriber)subscriber).request.getRequestId();
-		synchronized(session) {
-			session.send(topic, response);
+		RequestSubscriber requestSubscriber = (RequestSubscriber)subscriber;
+		RequestContext context = new RequestContext((Request)payload, requestSubscriber.getDevice(), getOperation(), deviceId);
+		requestSubscriber.handle(context).thenAccept(response -> reply(context, response));
+	}
+
+	private void reply(RequestContext context, Response response) {
+		StompSession s = session;
+		synchronized(s) {
+			s.send(context.getResultTopic(), response);
 		}
 	}
 
@@ -1,5 +1,9 @@
 package top.microiot.api.device.stomp;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -7,16 +11,14 @@ import top.microiot.api.device.WebsocketDeviceSession;
 import top.microiot.api.stomp.AbstractEventSubscriber;
 import top.microiot.api.stomp.SessionManager;
 import top.microiot.domain.Device;
-import top.microiot.domain.Request;
 import top.microiot.domain.Response;
 
 public abstract class RequestSubscriber extends AbstractEventSubscriber {
 	private Logger logger = LoggerFactory.getLogger(this.getClass());
-	
-	protected Request request;
+
 	private WebsocketDeviceSession websocketDeviceSession;
 	private Device device;
-	
+
 	public RequestSubscriber() {
 		super();
 	}
@@ -32,11 +34,54 @@ public abstract class RequestSubscriber extends AbstractEventSubscriber {
 	public void setDevice(Device device) {
 		this.device = device;
 	}
-	public abstract Response getResponse();
+
+	/**
+	 * 处理请求，会话设置了请求处理执行器时在执行器中处理，否则在接收消息的线程中处理。
+	 * @param context 请求上下文。
+	 * @return 返回响应的future。
+	 */
+	public CompletableFuture<Response> handle(RequestContext context) {
+		logger.debug("request: " + context);
+		Executor executor = websocketDeviceSession == null ? null : websocketDeviceSession.getRequestExecutor();
+		if(executor == null)
+			return respond(context);
+
+		CompletableFuture<Response> future = new CompletableFuture<Response>();
+		try {
+			executor.execute(() -> respond(context).whenComplete((response, e) -> {
+				if(e != null)
+					future.complete(new Response(false, e.getMessage(), null));
+				else
+					future.complete(response);
+			}));
+		} catch(RejectedExecutionException e) {
+			future.complete(new Response(false, "device busy", null));
+		}
+		return future;
+	}
+
+	/**
+	 * 处理请求并返回响应，可以重载为异步完成。
+	 * @param context 请求上下文。
+	 * @return 返回响应的future。
+	 */
+	protected CompletableFuture<Response> respond(RequestContext context) {
+		try {
+			return CompletableFuture.completedFuture(getResponse(context));
+		} catch(Throwable e) {
+			return CompletableFuture.completedFuture(new Response(false, e.getMessage(), null));
+		}
+	}
+
+	/**
+	 * 处理请求并返回响应。
+	 * @param context 请求上下文。
+	 * @return 返回响应。
+	 */
+	public abstract Response getResponse(RequestContext context);
 	@Override
 	public void onEvent(Object event) {
-		request = (Request)event;
-		logger.debug("request: " + request);
+		logger.debug("request: " + event);
 	}
 	@Override
 	public SessionManager getSessionManager() {
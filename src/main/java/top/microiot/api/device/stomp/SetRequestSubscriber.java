@@ -1,16 +1,15 @@
 package top.microiot.api.device.stomp;
 
-import java.util.Map;
-
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.stereotype.Component;
 
+import top.microiot.api.stomp.DataConverter;
 import top.microiot.domain.Device;
 import top.microiot.domain.Response;
 import top.microiot.domain.Set;
 import top.microiot.domain.User;
-import top.microiot.domain.attribute.DataType;
 import top.microiot.domain.attribute.DeviceAttributeType;
+import top.microiot.exception.NotFoundException;
 import top.microiot.exception.ValueException;
 
 /**
@@ -20,7 +19,6 @@ import top.microiot.exception.ValueException;
  */
 @Component
 public abstract class SetRequestSubscriber extends RequestSubscriber {
-	private Map<String, DeviceAttributeType> attDefinition;
 	
 	/**
 	 * 设备端设置请求处理构造函数。
@@ -31,26 +29,14 @@ public abstract class SetRequestSubscriber extends RequestSubscriber {
 
 	/**
 	 * 将设置请求中的属性值转变为用户的类型，调用设备的设置方法，返回操作响应。
+	 * @param context 请求上下文。
 	 * @return 返回响应。
 	 */
 	@Override
-	public Response getResponse() {
-		this.attDefinition = this.getDevice().getDeviceType().getAttDefinition();
-		Set req = (Set) request;
+	public Response getResponse(RequestContext context) {
+		Set req = (Set) context.getRequest();
 		try {
-			DataType type = this.attDefinition.get(req.getAttribute()).getDataType();
-			Object attributeValue;
-			Object t = getType(req);
-			if(t instanceof Class<?>) {
-				Class<?> tclass = (Class<?>) t;
-				attributeValue = type.getValue(req.getValue(), tclass);
-			}
-			else if(t instanceof ParameterizedTypeReference<?>) {
-				ParameterizedTypeReference<?> tclass = (ParameterizedTypeReference<?>) t;
-				attributeValue = type.getValue(req.getValue(), tclass);
-			}
-			else
-				throw new ValueException("attribute: " + req.getAttribute() + " can't be converted, please add its convert class");
+			Object attributeValue = buildConverter(req.getAttribute()).decodeValue(req.getValue());
 			
 			setAttribute(req.getRequester(), this.getDevice(), req.getAttribute(), attributeValue);
 			return new Response(true, null, null);
@@ -59,8 +45,14 @@ public abstract class SetRequestSubscriber extends RequestSubscriber {
 		}
 	}
 
-	private Object getType(Set req) {
-		return types.get(req.getAttribute());
+	private DataConverter buildConverter(String attribute) {
+		DeviceAttributeType type = this.getDevice().getDeviceType().getAttDefinition().get(attribute);
+		if(type == null)
+			throw new NotFoundException("attribute: " + attribute);
+		Object t = types.get(attribute);
+		if(!(t instanceof Class<?>) && !(t instanceof ParameterizedTypeReference<?>))
+			throw new ValueException("attribute: " + attribute + " can't be converted, please add its convert class");
+		return new DataConverter(type.getDataType(), t);
 	}
 
 	/**
@@ -0,0 +1,240 @@
+package top.microiot.api.stomp;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.scheduling.TaskScheduler;
+
+/**
+ * 消息确认批量发送类，client-individual确认模式下处理成功的消息记录ACK，处理失败的消息记录NACK，
+ * 达到批量大小或者间隔时间后一起发送。RabbitMQ收到NACK后立即重新投递，所以已经重新投递过的消息再次失败时，
+ * NACK带有requeue:false头，消息转入死信队列或者丢弃，不会反复投递。
+ */
+public class AckBatcher implements AutoCloseable {
+	private static final String REDELIVERED = "redelivered";
+	private static final String REQUEUE = "requeue";
+
+	private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	private final int batchSize;
+	private final ScheduledFuture<?> flushTask;
+	private List<Pending> pending = new ArrayList<Pending>();
+	private boolean closed = false;
+
+	private final AtomicLong ackCount = new AtomicLong();
+	private final AtomicLong nackCount = new AtomicLong();
+	private final AtomicLong rejectCount = new AtomicLong();
+	private final AtomicLong staleCount = new AtomicLong();
+	private final AtomicLong flushCount = new AtomicLong();
+
+	/**
+	 * 消息确认批量发送构造函数。
+	 * @param taskScheduler 定时发送的调度。
+	 * @param batchSize 一次发送的最大确认数量，应小于订阅的prefetch-count。
+	 * @param intervalMillis 定时发送的间隔时间，单位为毫秒。
+	 */
+	public AckBatcher(TaskScheduler taskScheduler, int batchSize, long intervalMillis) {
+		super();
+		this.batchSize = Math.max(batchSize, 1);
+		this.flushTask = taskScheduler.scheduleWithFixedDelay(this::flush, Math.max(intervalMillis, 1));
+	}
+
+	/**
+	 * 获取确认消息时使用的标识，STOMP 1.2使用消息的ack头，之前的版本使用message-id。
+	 * @param headers 消息头。
+	 * @return 返回确认标识。
+	 */
+	public static String getAckId(StompHeaders headers) {
+		String ack = headers.getAck();
+		return ack != null ? ack : headers.getMessageId();
+	}
+
+	/**
+	 * 建立收到的消息的确认，消息头中redelivered为true时处理失败不再重新入队。
+	 * @param session 收到消息的连接。
+	 * @param headers 消息头。
+	 * @return 返回消息确认。
+	 */
+	public Acknowledgement acknowledgement(StompSession session, StompHeaders headers) {
+		String ackId = getAckId(headers);
+		boolean redelivered = Boolean.parseBoolean(headers.getFirst(REDELIVERED));
+		return new Acknowledgement() {
+			@Override
+			public void ack() {
+				AckBatcher.this.ack(session, ackId);
+			}
+
+			@Override
+			public void nack() {
+				if (redelivered)
+					reject();
+				else
+					AckBatcher.this.nack(session, ackId);
+			}
+
+			@Override
+			public void reject() {
+				AckBatcher.this.reject(session, ackId);
+			}
+		};
+	}
+
+	/**
+	 * 记录处理成功的消息。
+	 * @param session 收到消息的连接。
+	 * @param ackId 消息的ack头，没有ack头时为message-id。
+	 */
+	public void ack(StompSession session, String ackId) {
+		add(new Pending(session, ackId, true, true));
+	}
+
+	/**
+	 * 记录处理失败的消息，发送NACK后由代理重新投递。
+	 * @param session 收到消息的连接。
+	 * @param ackId 消息的ack头，没有ack头时为message-id。
+	 */
+	public void nack(StompSession session, String ackId) {
+		add(new Pending(session, ackId, false, true));
+	}
+
+	/**
+	 * 记录不能处理的消息，发送带有requeue:false头的NACK，消息不再重新入队，由代理转入死信队列或者丢弃。
+	 * @param session 收到消息的连接。
+	 * @param ackId 消息的ack头，没有ack头时为message-id。
+	 */
+	public void reject(StompSession session, String ackId) {
+		add(new Pending(session, ackId, false, false));
+	}
+
+	private void add(Pending p) {
+		boolean full;
+		synchronized (this) {
+			if (closed) {
+				staleCount.incrementAndGet();
+				return;
+			}
+			pending.add(p);
+			full = pending.size() >= batchSize;
+		}
+		if (full)
+			flush();
+	}
+
+	/**
+	 * 发送所有记录的确认，连接已经断开的确认被丢弃，消息由代理重新投递。
+	 */
+	public void flush() {
+		List<Pending> batch;
+		synchronized (this) {
+			if (pending.isEmpty())
+				return;
+			batch = pending;
+			pending = new ArrayList<Pending>();
+		}
+
+		Map<StompSession, List<Pending>> bySession = new LinkedHashMap<StompSession, List<Pending>>();
+		for (Pending p : batch)
+			bySession.computeIfAbsent(p.session, s -> new ArrayList<Pending>()).add(p);
+		for (Map.Entry<StompSession, List<Pending>> entry : bySession.entrySet()) {
+			StompSession session = entry.getKey();
+			List<Pending> acks = entry.getValue();
+			if (!session.isConnected()) {
+				staleCount.addAndGet(acks.size());
+				continue;
+			}
+			try {
+				synchronized (session) {
+					for (Pending p : acks) {
+						if (p.requeue) {
+							session.acknowledge(p.ackId, p.consumed);
+							if (p.consumed)
+								ackCount.incrementAndGet();
+							else
+								nackCount.incrementAndGet();
+						} else {
+							StompHeaders headers = new StompHeaders();
+							headers.setId(p.ackId);
+							headers.set(REQUEUE, Boolean.FALSE.toString());
+							session.acknowledge(headers, false);
+							rejectCount.incrementAndGet();
+						}
+					}
+				}
+			} catch (RuntimeException e) {
+				staleCount.addAndGet(acks.size());
+				logger.warn("send ack error: " + e.getMessage());
+			}
+		}
+		flushCount.incrementAndGet();
+	}
+
+	/**
+	 * 停止定时发送，发送所有记录的确认，之后记录的确认被丢弃，消息由代理重新投递。
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			closed = true;
+		}
+		flushTask.cancel(false);
+		flush();
+	}
+
+	/**
+	 * 获取等待发送的确认数量。
+	 * @return 返回确认数量。
+	 */
+	public synchronized int getPendingCount() {
+		return pending.size();
+	}
+
+	public long getAckCount() {
+		return ackCount.get();
+	}
+
+	public long getNackCount() {
+		return nackCount.get();
+	}
+
+	/**
+	 * 获取不再重新入队的NACK数量。
+	 * @return 返回确认数量。
+	 */
+	public long getRejectCount() {
+		return rejectCount.get();
+	}
+
+	/**
+	 * 获取因连接断开没有发送的确认数量。
+	 * @return 返回确认数量。
+	 */
+	public long getStaleCount() {
+		return staleCount.get();
+	}
+
+	public long getFlushCount() {
+		return flushCount.get();
+	}
+
+	private static class Pending {
+		private final StompSession session;
+		private final String ackId;
+		private final boolean consumed;
+		private final boolean requeue;
+
+		private Pending(StompSession session, String ackId, boolean consumed, boolean requeue) {
+			this.session = session;
+			this.ackId = ackId;
+			this.consumed = consumed;
+			this.requeue = requeue;
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package top.microiot.api.stomp;
+
+/**
+ * 消息确认，client-individual确认模式下消息处理成功后调用ack，处理失败后调用nack，
+ * 第一次投递的消息由代理重新投递一次，重新投递的消息再次失败时不再重新入队，由代理转入死信队列或者丢弃，避免反复投递。
+ */
+public interface Acknowledgement {
+	/**
+	 * 消息处理成功。
+	 */
+	public void ack();
+	/**
+	 * 消息处理失败，第一次投递的消息由代理重新投递，重新投递的消息不再重新入队。
+	 */
+	public void nack();
+	/**
+	 * 消息无法处理，例如格式错误，重新投递也不会成功，不再重新入队。
+	 */
+	public default void reject() {
+		nack();
+	}
+}
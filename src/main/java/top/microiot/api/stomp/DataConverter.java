@@ -0,0 +1,113 @@
+package top.microiot.api.stomp;
+
+import org.springframework.core.ParameterizedTypeReference;
+
+import top.microiot.domain.attribute.AttValueInfo;
+import top.microiot.domain.attribute.AttributeType;
+import top.microiot.domain.attribute.DataType;
+import top.microiot.domain.attribute.DataValue;
+import top.microiot.exception.ValueException;
+
+/**
+ * 数据转换类，将属性、操作或告警的数据类型与用户定义的类型绑定一次，在多次转换中重复使用。
+ */
+public class DataConverter {
+	private final AttributeType attributeType;
+	private final DataType dataType;
+	private final Class<?> typeClass;
+	private final ParameterizedTypeReference<?> typeReference;
+
+	/**
+	 * 数据转换构造函数。
+	 * @param attributeType 属性类型。
+	 * @param type 用户定义的类型，可以是Class或ParameterizedTypeReference，为null时只能编码。
+	 */
+	public DataConverter(AttributeType attributeType, Object type) {
+		this(attributeType, attributeType.getDataType(), type);
+	}
+
+	/**
+	 * 数据转换构造函数。
+	 * @param dataType 数据类型。
+	 * @param type 用户定义的类型，可以是Class或ParameterizedTypeReference，为null时只能编码。
+	 */
+	public DataConverter(DataType dataType, Object type) {
+		this(null, dataType, type);
+	}
+
+	private DataConverter(AttributeType attributeType, DataType dataType, Object type) {
+		super();
+		this.attributeType = attributeType;
+		this.dataType = dataType;
+		if(type == null) {
+			this.typeClass = null;
+			this.typeReference = null;
+		}
+		else if(type instanceof Class<?>) {
+			this.typeClass = (Class<?>) type;
+			this.typeReference = null;
+		}
+		else if(type instanceof ParameterizedTypeReference<?>) {
+			this.typeClass = null;
+			this.typeReference = (ParameterizedTypeReference<?>) type;
+		}
+		else
+			throw new ValueException(type + " can't be converted");
+	}
+
+	public DataType getDataType() {
+		return dataType;
+	}
+
+	/**
+	 * 将平台传输的数据值转换为用户定义的类型。
+	 * @param value 数据值。
+	 * @return 返回用户定义类型的值，没有用户定义的类型时返回null。
+	 */
+	public Object decode(DataValue value) {
+		if(typeReference != null)
+			return dataType.getData(value, typeReference);
+		else if(typeClass != null)
+			return dataType.getData(value, typeClass);
+		else
+			return null;
+	}
+
+	/**
+	 * 将请求中的属性值转换为用户定义的类型。
+	 * @param value 属性值。
+	 * @return 返回用户定义类型的值，没有用户定义的类型时返回null。
+	 */
+	public Object decodeValue(AttValueInfo value) {
+		if(typeReference != null)
+			return dataType.getValue(value, typeReference);
+		else if(typeClass != null)
+			return dataType.getValue(value, typeClass);
+		else
+			return null;
+	}
+
+	/**
+	 * 将用户的值转换为请求中的属性值。
+	 * @param value 用户的值。
+	 * @return 返回属性值。
+	 */
+	public AttValueInfo encode(Object value) {
+		if(attributeType != null)
+			return attributeType.getAttValue(value);
+		else
+			return dataType.getAttValue(value);
+	}
+
+	/**
+	 * 将用户的值转换为响应中的数据值。
+	 * @param value 用户的值。
+	 * @return 返回数据值。
+	 */
+	public DataValue encodeData(Object value) {
+		if(attributeType != null)
+			return attributeType.getAttData(value);
+		else
+			return dataType.getAttData(value);
+	}
+}
@@ -2,6 +2,20 @@ package top.microiot.api.stomp;
 
 public interface EventSubscriber {
 	public void onEvent(Object event);
+	/**
+	 * 处理消息，处理成功后确认消息，处理失败时拒绝消息并抛出异常，消息最多由代理重新投递一次。
+	 * @param event 消息。
+	 * @param acknowledgement 消息确认。
+	 */
+	public default void onEvent(Object event, Acknowledgement acknowledgement) {
+		try {
+			onEvent(event);
+		} catch (RuntimeException | Error e) {
+			acknowledgement.nack();
+			throw e;
+		}
+		acknowledgement.ack();
+	}
 	public void init();
 	public SessionManager getSessionManager();
 	public boolean isDurable();
@@ -4,15 +4,20 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.springframework.integration.stomp.WebSocketStompSessionManager;
+import org.springframework.messaging.simp.stomp.StompHeaders;
 import org.springframework.messaging.simp.stomp.StompSession;
 import org.springframework.messaging.simp.stomp.StompSessionHandler;
 import org.springframework.util.concurrent.ListenableFuture;
 import org.springframework.web.socket.messaging.WebSocketStompClient;
 
 import top.microiot.api.HttpSession;
+import top.microiot.api.WebsocketProperties;
 
 public class SessionManager extends WebSocketStompSessionManager {
+	private static final String CLIENT_INDIVIDUAL = "client-individual";
+	
 	private HttpSession session;
+	private volatile String queueOwner;
 	protected List<StompSessionHandler> handlers = new ArrayList<StompSessionHandler>();
 
 	public SessionManager(HttpSession session, WebSocketStompClient webSocketStompClient, String url) {
@@ -24,7 +29,7 @@ public class SessionManager extends WebSocketStompSessionManager {
 
 	@Override
 	protected ListenableFuture<StompSession> doConnect(StompSessionHandler handler) {
-		if(!isConnected())
+		if(!isConnected() && !session.isTokenValid())
 			session.refreshToken();
 		setConnectHeaders(session.getStompAuth());
 		return super.doConnect(handler);
@@ -44,5 +49,65 @@ public class SessionManager extends WebSocketStompSessionManager {
 
 	public void setSession(HttpSession session) {
 		this.session = session;
+		this.queueOwner = null;
+	}
+	
+	/**
+	 * 获取持久订阅队列名称使用的用户名，第一次调用时获取当前用户，之后重新连接不再请求。
+	 * @return 返回用户名。
+	 */
+	public String getQueueOwner() {
+		String owner = queueOwner;
+		if(owner == null) {
+			owner = session.getCurrentUser().getUsername();
+			queueOwner = owner;
+		}
+		return owner;
+	}
+	
+	/**
+	 * 建立持久订阅的消息头，包括队列名称，开启时包括prefetch-count和client-individual确认模式。
+	 * @param topic 订阅的主题。
+	 * @return 返回订阅消息头。
+	 */
+	public StompHeaders buildDurableHeaders(String topic) {
+		StompHeaders headers = new StompHeaders();
+		headers.add(StompHeaders.DESTINATION, topic);
+		headers.add("durable", "true");
+		headers.add("auto-delete", "false");
+		headers.add("x-queue-name", getQueueOwner() + topic);
+		WebsocketProperties properties = getWebsocketProperties();
+		if(properties != null) {
+			if(properties.getDurablePrefetchCount() > 0)
+				headers.add("prefetch-count", Integer.toString(properties.getDurablePrefetchCount()));
+			if(properties.isDurableClientAck())
+				headers.setAck(CLIENT_INDIVIDUAL);
+		}
+		return headers;
+	}
+	
+	/**
+	 * 持久订阅是否使用client-individual确认模式。
+	 * @return 使用client-individual确认模式返回true。
+	 */
+	public boolean isDurableClientAck() {
+		WebsocketProperties properties = getWebsocketProperties();
+		return properties != null && properties.isDurableClientAck();
+	}
+	
+	/**
+	 * 获取websocket配置属性，没有配置时返回null。
+	 * @return 返回websocket配置属性。
+	 */
+	public WebsocketProperties getWebsocketProperties() {
+		return null;
+	}
+	
+	/**
+	 * 获取消息确认批量发送，不支持时返回null。
+	 * @return 返回消息确认批量发送。
+	 */
+	public AckBatcher getAckBatcher() {
+		return null;
 	}
 }
@@ -17,6 +17,8 @@ public abstract class SubscribeHandler extends StompSessionHandlerAdapter {
 
 	protected String deviceId;
 	protected EventSubscriber subscriber;
+	private volatile StompSession session;
+	private volatile AckBatcher ackBatcher;
 	
 	public SubscribeHandler(String deviceId, EventSubscriber subscriber) {
 		super();
@@ -26,15 +28,15 @@ public abstract class SubscribeHandler extends StompSessionHandlerAdapter {
 
 	@Override
 	public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+		this.session = session;
 		String topic = getTopic() + "."+ deviceId;
 		if(subscriber.isDurable()) {
-			StompHeaders headers = new StompHeaders();
-			headers.add(StompHeaders.DESTINATION, topic);
-			headers.add("durable", "true");
-			headers.add("auto-delete", "false");
-			String queueId = subscriber.getSessionManager().getSession().getCurrentUser().getUsername() + topic;
-			headers.add("x-queue-name", queueId);
-			session.subscribe(headers, this);
+			SessionManager manager = subscriber.getSessionManager();
+			StompHeaders headers = manager.buildDurableHeaders(topic);
+			ackBatcher = headers.getAck() != null ? manager.getAckBatcher() : null;
+			synchronized(session) {
+				session.subscribe(headers, this);
+			}
 		} else {
 			synchronized(session) {
 				session.subscribe(topic, this);
@@ -46,7 +48,11 @@ public abstract class SubscribeHandler extends StompSessionHandlerAdapter {
 	@Override
 	public void handleFrame(StompHeaders headers, Object payload) {
 		Object event = payload;
-		subscriber.onEvent(event);
+		AckBatcher acks = ackBatcher;
+		if(acks != null)
+			subscriber.onEvent(event, acks.acknowledgement(session, headers));
+		else
+			subscriber.onEvent(event);
 	}
 
 	@Override
@@ -0,0 +1,62 @@
+package top.microiot.api;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.function.IntFunction;
+
+/**
+ * 简单的基准测试工具，预热后执行多轮操作，输出每次操作的平均时间和分配的字节数。
+ * 没有使用JMH，结果只用于比较同一次运行中的不同实现，单元测试不执行基准测试。
+ */
+public final class BenchmarkRunner {
+	private static final int WARMUP_ROUNDS = 5;
+	private static final int ROUNDS = 5;
+
+	private static Object last;
+	private static volatile Object sink;
+
+	private BenchmarkRunner() {
+	}
+
+	/**
+	 * 执行基准测试并输出结果。
+	 * @param name 基准测试名称。
+	 * @param operations 每轮执行的操作次数。
+	 * @param operation 操作，参数为操作序号，返回值用于防止操作被优化掉。
+	 */
+	public static void run(String name, int operations, IntFunction<?> operation) {
+		for (int round = 0; round < WARMUP_ROUNDS; round++)
+			round(operations, operation);
+
+		long bestNanos = Long.MAX_VALUE;
+		long totalNanos = 0;
+		long totalBytes = 0;
+		for (int round = 0; round < ROUNDS; round++) {
+			long bytes = allocatedBytes();
+			long nanos = round(operations, operation);
+			bytes = allocatedBytes() - bytes;
+			bestNanos = Math.min(bestNanos, nanos);
+			totalNanos += nanos;
+			totalBytes += bytes;
+		}
+		long count = (long) operations * ROUNDS;
+		System.out.println(String.format("%-48s %10.1f ns/op (best %8.1f) %10.1f B/op", name, (double) totalNanos / count,
+				(double) bestNanos / operations, allocatedBytes() < 0 ? Double.NaN : (double) totalBytes / count));
+	}
+
+	private static long round(int operations, IntFunction<?> operation) {
+		long start = System.nanoTime();
+		for (int i = 0; i < operations; i++)
+			last = operation.apply(i);
+		long nanos = System.nanoTime() - start;
+		sink = last;
+		return nanos;
+	}
+
+	private static long allocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		return -1;
+	}
+}
@@ -0,0 +1,145 @@
+package top.microiot.api;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.web.client.AsyncRestTemplate;
+import org.springframework.web.client.RestTemplate;
+
+import okhttp3.Protocol;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+/**
+ * 用MockWebServer检查每种传输的响应压缩协商、解压和字节统计。
+ */
+public class CompressionInterceptorTest {
+	private static final String BODY;
+	static {
+		StringBuilder body = new StringBuilder("[");
+		for (int i = 0; i < 200; i++)
+			body.append(i == 0 ? "" : ",").append("{\"name\":\"sensor\",\"value\":").append(i).append('}');
+		BODY = body.append(']').toString();
+	}
+
+	private final byte[] plain = BODY.getBytes(StandardCharsets.UTF_8);
+	private byte[] gzipped;
+	private MockWebServer server;
+	private List<String> acceptEncodings;
+	private AnnotationConfigApplicationContext context;
+
+	@Before
+	public void setUp() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+			gzip.write(plain);
+		}
+		gzipped = out.toByteArray();
+		acceptEncodings = new CopyOnWriteArrayList<String>();
+		server = new MockWebServer();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		if (context != null)
+			context.close();
+		server.shutdown();
+	}
+
+	private void start(Protocol protocol, String transport, boolean responseCompression) throws IOException {
+		server.setProtocols(Collections.singletonList(protocol));
+		server.setDispatcher(new Dispatcher() {
+			@Override
+			public MockResponse dispatch(RecordedRequest request) {
+				String acceptEncoding = request.getHeader("Accept-Encoding");
+				acceptEncodings.add(String.valueOf(acceptEncoding));
+				MockResponse response = new MockResponse().setHeader("Content-Type", "application/json");
+				if (acceptEncoding != null && acceptEncoding.contains("gzip"))
+					return response.setHeader("Content-Encoding", "gzip").setBody(new Buffer().write(gzipped));
+				return response.setBody(BODY);
+			}
+		});
+		server.start();
+
+		Map<String, Object> properties = new HashMap<String, Object>();
+		properties.put("microiot.httpclient.transport", transport);
+		properties.put("microiot.httpclient.http2PriorKnowledge", protocol == Protocol.H2_PRIOR_KNOWLEDGE);
+		properties.put("microiot.httpclient.responseCompression", responseCompression);
+		context = new AnnotationConfigApplicationContext();
+		context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", properties));
+		context.register(RestTemplateConfig.class);
+		context.refresh();
+	}
+
+	private String url() {
+		return "http://" + server.getHostName() + ":" + server.getPort() + "/api/v1/devices";
+	}
+
+	@SuppressWarnings("deprecation")
+	private String get(boolean async) throws Exception {
+		if (async)
+			return context.getBean(AsyncRestTemplate.class).getForEntity(url(), String.class).get().getBody();
+		return context.getBean(RestTemplate.class).getForObject(url(), String.class);
+	}
+
+	private void assertCounted(boolean async, boolean compressed) throws Exception {
+		assertEquals(BODY, get(async));
+		CompressionInterceptor interceptor = context.getBean(CompressionInterceptor.class);
+		assertEquals(plain.length, interceptor.getResponseBytes());
+		assertEquals(compressed ? gzipped.length : plain.length, interceptor.getResponseWireBytes());
+		assertEquals(Collections.singletonList(compressed ? "gzip" : "identity"), acceptEncodings);
+	}
+
+	@Test
+	public void http1SyncResponseIsDecodedAndCounted() throws Exception {
+		start(Protocol.HTTP_1_1, "http1", true);
+		assertCounted(false, true);
+	}
+
+	@Test
+	public void http1AsyncResponseIsDecodedAndCounted() throws Exception {
+		start(Protocol.HTTP_1_1, "http1", true);
+		assertCounted(true, true);
+	}
+
+	@Test
+	public void http2SyncResponseIsDecodedAndCounted() throws Exception {
+		start(Protocol.H2_PRIOR_KNOWLEDGE, "http2", true);
+		assertCounted(false, true);
+	}
+
+	@Test
+	public void http2AsyncResponseIsDecodedAndCounted() throws Exception {
+		start(Protocol.H2_PRIOR_KNOWLEDGE, "http2", true);
+		assertCounted(true, true);
+	}
+
+	@Test
+	public void http1DisabledCompressionIsNotNegotiated() throws Exception {
+		start(Protocol.HTTP_1_1, "http1", false);
+		assertCounted(false, false);
+	}
+
+	@Test
+	public void http2DisabledCompressionIsNotNegotiated() throws Exception {
+		start(Protocol.H2_PRIOR_KNOWLEDGE, "http2", false);
+		assertCounted(false, false);
+	}
+}
@@ -0,0 +1,122 @@
+package top.microiot.api;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import okhttp3.Protocol;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * http/1.1和http/2传输的对比基准测试，本地MockWebServer模拟平台，每个响应延迟固定时间，
+ * 多个线程并发调用同一主机，比较完成时间和服务端看到的连接数量。
+ * 运行方法：在测试类路径中执行main方法，可选参数为并发线程数、请求总数和响应延迟毫秒数。
+ */
+public class Http2TransportBenchmark {
+	private static final String BODY = "{\"id\":\"5d0000000000000000000001\",\"name\":\"sensor\",\"values\":[1,2,3,4,5,6,7,8]}";
+
+	private final int callers;
+	private final int requests;
+	private final long latencyMillis;
+
+	public Http2TransportBenchmark(int callers, int requests, long latencyMillis) {
+		this.callers = callers;
+		this.requests = requests;
+		this.latencyMillis = latencyMillis;
+	}
+
+	private void run(String name, RestTemplate restTemplate, MockWebServer server, AtomicInteger connections) throws Exception {
+		String url = "http://" + server.getHostName() + ":" + server.getPort() + "/api/v1/devices/1";
+		for (int i = 0; i < callers; i++)
+			restTemplate.getForObject(url, String.class);
+		connections.set(0);
+		int before = server.getRequestCount();
+
+		ExecutorService executor = Executors.newFixedThreadPool(callers);
+		AtomicInteger remaining = new AtomicInteger(requests);
+		long start = System.nanoTime();
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (int i = 0; i < callers; i++) {
+			futures.add(executor.submit(() -> {
+				while (remaining.getAndDecrement() > 0)
+					restTemplate.getForObject(url, String.class);
+			}));
+		}
+		for (Future<?> future : futures)
+			future.get();
+		long nanos = System.nanoTime() - start;
+		executor.shutdown();
+
+		int served = server.getRequestCount() - before;
+		System.out.println(String.format("%-10s %6d requests %8.1f ms %10.1f req/s %6d new connections", name, served,
+				nanos / 1e6, served * 1e9 / nanos, connections.get()));
+	}
+
+	private MockWebServer start(Protocol protocol, AtomicInteger connections) throws IOException {
+		MockWebServer server = new MockWebServer();
+		server.setProtocols(Collections.singletonList(protocol));
+		server.setDispatcher(new Dispatcher() {
+			@Override
+			public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+				if (request.getSequenceNumber() == 0)
+					connections.incrementAndGet();
+				Thread.sleep(latencyMillis);
+				return new MockResponse().setHeader("Content-Type", "application/json").setBody(BODY);
+			}
+		});
+		server.start();
+		return server;
+	}
+
+	public void http1() throws Exception {
+		HttpClientProperties properties = new HttpClientProperties();
+		PoolingHttpClientConnectionManager pool = new PoolingHttpClientConnectionManager();
+		pool.setMaxTotal(properties.getMaxTotalConnections());
+		pool.setDefaultMaxPerRoute(properties.getDefaultMaxPerRoute());
+		AtomicInteger connections = new AtomicInteger();
+		MockWebServer server = start(Protocol.HTTP_1_1, connections);
+		try (CloseableHttpClient client = HttpClients.custom().setConnectionManager(pool).build()) {
+			run("http/1.1", new RestTemplate(new HttpComponentsClientHttpRequestFactory(client)), server, connections);
+		} finally {
+			server.shutdown();
+		}
+	}
+
+	public void http2() throws Exception {
+		HttpClientProperties properties = new HttpClientProperties();
+		properties.setTransport(HttpClientProperties.Transport.HTTP2);
+		properties.setHttp2PriorKnowledge(true);
+		Http2Transport transport = new Http2Transport(properties);
+		AtomicInteger connections = new AtomicInteger();
+		MockWebServer server = start(Protocol.H2_PRIOR_KNOWLEDGE, connections);
+		try {
+			run("http/2", new RestTemplate(transport.requestFactory()), server, connections);
+		} finally {
+			transport.close();
+			server.shutdown();
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int callers = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+		int requests = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+		long latency = args.length > 2 ? Long.parseLong(args[2]) : 20;
+		Http2TransportBenchmark benchmark = new Http2TransportBenchmark(callers, requests, latency);
+		benchmark.http1();
+		benchmark.http2();
+	}
+}
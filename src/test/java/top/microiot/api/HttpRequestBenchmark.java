@@ -0,0 +1,88 @@
+package top.microiot.api;
+
+import java.net.URI;
+import java.text.SimpleDateFormat;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import top.microiot.domain.Token;
+import top.microiot.domain.User;
+import top.microiot.dto.NotificationPageInfo;
+
+/**
+ * REST请求构造的基准测试，比较每次请求替换协议、用UriComponentsBuilder解析编码、拼接认证头和新建日期格式，
+ * 与预先计算的基础uri、缓存的认证头和共享的日期格式。只测量请求构造，不包括http传输。
+ * 运行方法：在测试类路径中执行main方法。
+ */
+public class HttpRequestBenchmark {
+	private static final int OPERATIONS = 200_000;
+	private static final String URI = "iotp://iot.example.com:8082/api/v1";
+	private static final String PATH = "/devices/list";
+	private static final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern(NotificationPageInfo.FORMAT).withZone(ZoneId.systemDefault());
+
+	private final HttpSession session;
+	private final Map<String, String> queryParams = new LinkedHashMap<String, String>();
+	private final Date date = new Date();
+
+	public HttpRequestBenchmark() {
+		HttpSessionProperties properties = new HttpSessionProperties();
+		properties.setUri(URI);
+		session = new HttpSession(properties) {
+			@Override
+			public User getCurrentUser() {
+				return null;
+			}
+		};
+		session.setToken(new Token());
+		queryParams.put("domain", "default domain");
+		queryParams.put("name", "温度 传感器");
+		queryParams.put("page", "0");
+		queryParams.put("size", "100");
+	}
+
+	/**
+	 * 优化之前的方式：每次请求替换协议，用UriComponentsBuilder解析整个地址并编码。
+	 */
+	private URI builderUri(int i) {
+		String rest;
+		if (URI.startsWith("iotp://"))
+			rest = URI.replaceFirst("iotp://", "http://");
+		else
+			rest = URI.replaceFirst("iotps://", "https://");
+		UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(rest + PATH);
+		for (Map.Entry<String, String> queryParam : queryParams.entrySet())
+			builder.queryParam(queryParam.getKey(), queryParam.getValue());
+		return builder.build().encode().toUri();
+	}
+
+	private HttpHeaders concatAuth(int i) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set("Authorization", "Bearer " + session.getToken().getToken());
+		return headers;
+	}
+
+	private String simpleDateFormat(int i) {
+		return new SimpleDateFormat(NotificationPageInfo.FORMAT).format(date);
+	}
+
+	private String sharedDateFormat(int i) {
+		return dateFormatter.format(date.toInstant());
+	}
+
+	public static void main(String[] args) {
+		HttpRequestBenchmark benchmark = new HttpRequestBenchmark();
+		BenchmarkRunner.run("uri: UriComponentsBuilder per request", OPERATIONS, benchmark::builderUri);
+		BenchmarkRunner.run("uri: precomputed base + UriUtils", OPERATIONS, i -> benchmark.session.buildUri(PATH, benchmark.queryParams));
+		BenchmarkRunner.run("uri: fixed endpoint", OPERATIONS, i -> benchmark.session.getFixedUri(PATH));
+		BenchmarkRunner.run("auth: concatenate token per request", OPERATIONS, benchmark::concatAuth);
+		BenchmarkRunner.run("auth: cached authorization value", OPERATIONS, i -> benchmark.session.getHttpAuth());
+		BenchmarkRunner.run("date: new SimpleDateFormat per request", OPERATIONS, benchmark::simpleDateFormat);
+		BenchmarkRunner.run("date: shared DateTimeFormatter", OPERATIONS, benchmark::sharedDateFormat);
+	}
+}
@@ -0,0 +1,129 @@
+package top.microiot.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import top.microiot.exception.StatusException;
+
+public class JsonArrayExtractorTest {
+	private ObjectMapper mapper;
+	private List<Object> elements;
+
+	@Before
+	public void setUp() {
+		mapper = new ObjectMapper();
+		elements = new ArrayList<Object>();
+	}
+
+	private long extract(Class<?> type, String field, String json) throws IOException {
+		JsonArrayExtractor<Object> extractor = new JsonArrayExtractor<Object>(mapper, mapper.constructType(type), field, elements::add);
+		return extractor.extractData(new Response(json));
+	}
+
+	@Test
+	public void topLevelArrayIsReadElementByElement() throws IOException {
+		long count = extract(Item.class, null, "[{\"name\":\"a\"},{\"name\":\"b\"},{\"name\":\"c\"}]");
+		assertEquals(3, count);
+		assertEquals(3, elements.size());
+		assertEquals("a", ((Item) elements.get(0)).name);
+		assertEquals("c", ((Item) elements.get(2)).name);
+	}
+
+	@Test
+	public void arrayFieldOfObjectIsRead() throws IOException {
+		long count = extract(Integer.class, "content",
+				"{\"totalPages\":1,\"meta\":{\"content\":[7,8]},\"content\":[1,2,3],\"other\":[{\"content\":[9]}]}");
+		assertEquals(3, count);
+		assertEquals(Arrays.<Object>asList(1, 2, 3), elements);
+	}
+
+	@Test
+	public void emptyOrNullBodyReadsNothing() throws IOException {
+		assertEquals(0, extract(Integer.class, null, null));
+		assertEquals(0, extract(Integer.class, null, "null"));
+		assertEquals(0, extract(Integer.class, "content", "{\"content\":[]}"));
+		assertEquals(0, elements.size());
+	}
+
+	@Test
+	public void unexpectedJsonIsRejected() throws IOException {
+		try {
+			extract(Integer.class, null, "{\"content\":[1]}");
+			fail("object is not an array");
+		} catch (StatusException e) {
+		}
+		try {
+			extract(Integer.class, "content", "[1,2]");
+			fail("array is not an object");
+		} catch (StatusException e) {
+		}
+		assertEquals(0, elements.size());
+	}
+
+	@Test
+	public void truncatedArrayFailsAfterDeliveredElements() {
+		try {
+			extract(Integer.class, null, "[1,2,");
+			fail("truncated array should fail");
+		} catch (IOException | StatusException e) {
+		}
+		assertEquals(Arrays.<Object>asList(1, 2), elements);
+	}
+
+	public static class Item {
+		public String name;
+	}
+
+	private static class Response implements ClientHttpResponse {
+		private final String json;
+
+		private Response(String json) {
+			this.json = json;
+		}
+
+		@Override
+		public InputStream getBody() {
+			return json == null ? null : new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return new HttpHeaders();
+		}
+
+		@Override
+		public HttpStatus getStatusCode() {
+			return HttpStatus.OK;
+		}
+
+		@Override
+		public int getRawStatusCode() {
+			return HttpStatus.OK.value();
+		}
+
+		@Override
+		public String getStatusText() {
+			return HttpStatus.OK.getReasonPhrase();
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
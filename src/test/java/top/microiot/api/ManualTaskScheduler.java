@@ -0,0 +1,175 @@
+package top.microiot.api;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.Trigger;
+
+/**
+ * 测试用的任务调度，只记录任务，由测试调用runOnce和runPeriodic执行。
+ */
+public class ManualTaskScheduler implements TaskScheduler {
+	private final List<Task> tasks = new ArrayList<Task>();
+
+	/**
+	 * 执行所有单次任务，执行中新加入的单次任务也会执行。
+	 * @return 返回执行的任务数量。
+	 */
+	public int runOnce() {
+		int count = 0;
+		while (true) {
+			Task task = null;
+			synchronized (this) {
+				for (Task t : tasks) {
+					if (!t.periodic) {
+						task = t;
+						break;
+					}
+				}
+				if (task == null)
+					return count;
+				tasks.remove(task);
+			}
+			task.run();
+			count++;
+		}
+	}
+
+	/**
+	 * 执行一次所有周期任务。
+	 * @return 返回执行的任务数量。
+	 */
+	public int runPeriodic() {
+		List<Task> periodic = new ArrayList<Task>();
+		synchronized (this) {
+			for (Task t : tasks) {
+				if (t.periodic)
+					periodic.add(t);
+			}
+		}
+		for (Task t : periodic)
+			t.run();
+		return periodic.size();
+	}
+
+	/**
+	 * 获取没有取消的单次任务数量。
+	 * @return 返回任务数量。
+	 */
+	public synchronized int getOneShotCount() {
+		int count = 0;
+		for (Task t : tasks) {
+			if (!t.periodic)
+				count++;
+		}
+		return count;
+	}
+
+	/**
+	 * 获取没有取消的周期任务数量。
+	 * @return 返回任务数量。
+	 */
+	public synchronized int getPeriodicCount() {
+		return tasks.size() - getOneShotCount();
+	}
+
+	private synchronized ScheduledFuture<?> add(Runnable runnable, boolean periodic) {
+		Task task = new Task(runnable, periodic);
+		tasks.add(task);
+		return task;
+	}
+
+	@Override
+	public ScheduledFuture<?> schedule(Runnable task, Trigger trigger) {
+		return add(task, true);
+	}
+
+	@Override
+	public ScheduledFuture<?> schedule(Runnable task, Date startTime) {
+		return add(task, false);
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, Date startTime, long period) {
+		return add(task, true);
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long period) {
+		return add(task, true);
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, Date startTime, long delay) {
+		return add(task, true);
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, long delay) {
+		return add(task, true);
+	}
+
+	private class Task implements ScheduledFuture<Object> {
+		private final Runnable runnable;
+		private final boolean periodic;
+		private volatile boolean cancelled = false;
+		private volatile boolean done = false;
+
+		private Task(Runnable runnable, boolean periodic) {
+			this.runnable = runnable;
+			this.periodic = periodic;
+		}
+
+		private void run() {
+			if (cancelled)
+				return;
+			runnable.run();
+			if (!periodic)
+				done = true;
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			synchronized (ManualTaskScheduler.this) {
+				tasks.remove(this);
+			}
+			cancelled = true;
+			return !done;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		@Override
+		public boolean isDone() {
+			return done || cancelled;
+		}
+
+		@Override
+		public Object get() {
+			return null;
+		}
+
+		@Override
+		public Object get(long timeout, TimeUnit unit) {
+			return null;
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return 0;
+		}
+
+		@Override
+		public int compareTo(Delayed o) {
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package top.microiot.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import top.microiot.exception.StatusException;
+
+public class PageIteratorTest {
+	private static final int SIZE = 2;
+
+	private int total;
+	private List<Integer> requested;
+	private Map<Integer, CompletableFuture<Page<Integer>>> futures;
+
+	@Before
+	public void setUp() {
+		total = 6;
+		requested = new ArrayList<Integer>();
+		futures = new HashMap<Integer, CompletableFuture<Page<Integer>>>();
+	}
+
+	private Page<Integer> page(int number) {
+		List<Integer> content = new ArrayList<Integer>();
+		for (int i = number * SIZE; i < Math.min((number + 1) * SIZE, total); i++)
+			content.add(i);
+		return new PageImpl<Integer>(content, PageRequest.of(number, SIZE), total);
+	}
+
+	private CompletableFuture<Page<Integer>> load(int number) {
+		requested.add(number);
+		CompletableFuture<Page<Integer>> future = futures.get(number);
+		return future != null ? future : CompletableFuture.completedFuture(page(number));
+	}
+
+	@Test
+	public void elementsAreReturnedInPageOrder() {
+		PageIterator<Integer> iterator = new PageIterator<Integer>(0, this::load, 2, 4);
+		List<Integer> elements = iterator.stream().collect(Collectors.toList());
+		assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5), elements);
+		assertEquals(Arrays.asList(0, 1, 2), requested);
+	}
+
+	@Test
+	public void parallelismIsUsedOnceTotalIsKnown() {
+		total = 20;
+		PageIterator<Integer> iterator = new PageIterator<Integer>(0, this::load, 1, 4);
+		assertTrue(iterator.hasNext());
+		assertEquals(Arrays.asList(0, 1), requested);
+
+		iterator.next();
+		iterator.next();
+		assertTrue(iterator.hasNext());
+		assertEquals(Arrays.asList(0, 1, 2, 3, 4), requested);
+
+		int count = 2;
+		while (iterator.hasNext()) {
+			assertEquals(Integer.valueOf(count++), iterator.next());
+		}
+		assertEquals(20, count);
+		assertEquals(10, requested.size());
+	}
+
+	@Test
+	public void emptyFirstPageEndsIteration() {
+		total = 0;
+		PageIterator<Integer> iterator = new PageIterator<Integer>(0, this::load, 2, 4);
+		assertFalse(iterator.hasNext());
+	}
+
+	@Test
+	public void failedPageCancelsPendingRequests() {
+		total = 20;
+		CompletableFuture<Page<Integer>> failed = new CompletableFuture<Page<Integer>>();
+		failed.completeExceptionally(new StatusException("page failed"));
+		CompletableFuture<Page<Integer>> waiting = new CompletableFuture<Page<Integer>>();
+		futures.put(1, failed);
+		futures.put(2, waiting);
+
+		PageIterator<Integer> iterator = new PageIterator<Integer>(0, this::load, 2, 4);
+		assertEquals(Integer.valueOf(0), iterator.next());
+		assertEquals(Integer.valueOf(1), iterator.next());
+		try {
+			iterator.hasNext();
+			fail("failed page should be reported");
+		} catch (StatusException e) {
+			assertEquals("page failed", e.getMessage());
+		}
+		assertTrue(waiting.isCancelled());
+		assertFalse(iterator.hasNext());
+	}
+
+	@Test
+	public void closingStreamCancelsPrefetchedPages() {
+		total = 20;
+		CompletableFuture<Page<Integer>> waiting = new CompletableFuture<Page<Integer>>();
+		futures.put(1, waiting);
+
+		PageIterator<Integer> iterator = new PageIterator<Integer>(0, this::load, 1, 4);
+		try (Stream<Integer> stream = iterator.stream()) {
+			assertEquals(Integer.valueOf(0), stream.findFirst().get());
+		}
+		assertEquals(Arrays.asList(0, 1), requested);
+		assertTrue(waiting.isCancelled());
+		assertFalse(iterator.hasNext());
+	}
+}
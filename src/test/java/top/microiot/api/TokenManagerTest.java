@@ -0,0 +1,105 @@
+package top.microiot.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import top.microiot.domain.Token;
+
+public class TokenManagerTest {
+	private TokenManager manager;
+	private Token initial;
+
+	@Before
+	public void setUp() {
+		manager = new TokenManager(60000);
+		initial = new Token();
+		manager.setToken(initial);
+	}
+
+	@Test
+	public void syncRefreshJoinsAsyncRefreshInFlight() throws Exception {
+		AtomicInteger requests = new AtomicInteger();
+		CompletableFuture<Token> response = new CompletableFuture<Token>();
+		CompletableFuture<Token> async = manager.refreshAsync(initial, current -> {
+			requests.incrementAndGet();
+			return response;
+		});
+
+		AtomicReference<Token> syncResult = new AtomicReference<Token>();
+		CountDownLatch finished = new CountDownLatch(1);
+		Thread thread = new Thread(() -> {
+			syncResult.set(manager.refresh(initial, current -> {
+				requests.incrementAndGet();
+				return new Token();
+			}));
+			finished.countDown();
+		});
+		thread.start();
+		assertFalse(finished.await(100, TimeUnit.MILLISECONDS));
+
+		Token refreshed = new Token();
+		response.complete(refreshed);
+		assertTrue(finished.await(5, TimeUnit.SECONDS));
+		assertSame(refreshed, syncResult.get());
+		assertSame(refreshed, async.get());
+		assertSame(refreshed, manager.getToken());
+		assertEquals(1, requests.get());
+	}
+
+	@Test
+	public void listenerSeesEveryPublishedToken() {
+		AtomicReference<Token> mirrored = new AtomicReference<Token>();
+		manager.setListener(mirrored::set);
+
+		Token refreshed = manager.refresh(initial, current -> new Token());
+		assertSame(refreshed, mirrored.get());
+
+		manager.clear();
+		assertNull(mirrored.get());
+	}
+
+	@Test
+	public void staleTokenIsNotRefreshedAgain() {
+		Token refreshed = manager.refresh(initial, current -> new Token());
+		Token again = manager.refresh(initial, current -> {
+			fail("refreshed twice");
+			return null;
+		});
+
+		assertSame(refreshed, again);
+	}
+
+	@Test
+	public void failedRefreshCanBeRetried() {
+		try {
+			manager.refresh(initial, current -> {
+				throw new IllegalStateException("refresh failed");
+			});
+			fail("exception expected");
+		} catch (IllegalStateException e) {
+		}
+		assertSame(initial, manager.getToken());
+
+		Token refreshed = new Token();
+		assertSame(refreshed, manager.refresh(initial, current -> refreshed));
+	}
+
+	@Test
+	public void refreshWithoutLoginFails() {
+		manager.clear();
+		assertTrue(manager.refreshAsync(initial, current -> CompletableFuture.completedFuture(new Token())).isCompletedExceptionally());
+	}
+}
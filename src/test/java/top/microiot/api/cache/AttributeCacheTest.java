@@ -0,0 +1,54 @@
+package top.microiot.api.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import top.microiot.domain.Response;
+
+public class AttributeCacheTest {
+	private AttributeCache cache(String... keys) {
+		Map<String, Long> ttls = new HashMap<String, Long>();
+		for (int i = 0; i < keys.length; i++)
+			ttls.put(keys[i], 1000L * (i + 1));
+		return new AttributeCache(500, ttls, 100);
+	}
+
+	@Test
+	public void deviceTypeSettingIsPreferred() {
+		AttributeCache cache = cache("temperature", "sensor.temperature");
+
+		assertTrue(cache.isTtlByDeviceType());
+		assertEquals(2000, cache.getTtl("sensor", "temperature"));
+		assertEquals(1000, cache.getTtl("meter", "temperature"));
+		assertEquals(500, cache.getTtl("sensor", "humidity"));
+	}
+
+	@Test
+	public void attributeSettingsDoNotNeedDeviceType() {
+		AttributeCache cache = cache("temperature");
+
+		assertFalse(cache.isTtlByDeviceType());
+		assertEquals(1000, cache.getTtl(null, "temperature"));
+		assertEquals(500, cache.getTtl(null, "humidity"));
+	}
+
+	@Test
+	public void responseSentBeforeInvalidateIsNotCached() {
+		AttributeCache cache = cache();
+		long version = cache.getVersion("d1", "temperature");
+		cache.invalidate("d1", "temperature");
+		cache.put("d1", "temperature", new Response(), 1000, version);
+
+		assertNull(cache.get("d1", "temperature"));
+		cache.put("d1", "temperature", new Response(), 1000, cache.getVersion("d1", "temperature"));
+		assertNotNull(cache.get("d1", "temperature"));
+	}
+}
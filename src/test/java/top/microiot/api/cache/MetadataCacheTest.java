@@ -0,0 +1,57 @@
+package top.microiot.api.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import top.microiot.domain.Device;
+
+public class MetadataCacheTest {
+	private final MetadataCache shared = new MetadataCache(60000, 100);
+
+	@Test
+	public void sessionsOfDifferentUsersDoNotShareEntries() {
+		MetadataCache alice = shared.forSession("iotp://host|domain|alice");
+		MetadataCache bob = shared.forSession("iotp://host|domain|bob");
+		Device device = new Device();
+
+		assertSame(device, alice.getDevice("d1", id -> device));
+		assertNull(bob.getDevice("d1", id -> null));
+		assertSame(device, shared.forSession("iotp://host|domain|alice").getDevice("d1", id -> null));
+	}
+
+	@Test
+	public void sessionsOfDifferentPlatformsDoNotShareEntries() {
+		MetadataCache a = shared.forSession("iotp://a|domain|user");
+		MetadataCache b = shared.forSession("iotp://b|domain|user");
+		a.getDevice("d1", id -> new Device());
+
+		assertNull(b.getDevice("d1", id -> null));
+	}
+
+	@Test
+	public void loaderReceivesUnscopedId() {
+		MetadataCache cache = shared.forSession("scope");
+		StringBuilder loaded = new StringBuilder();
+		cache.getDevice("d1", id -> {
+			loaded.append(id);
+			return new Device();
+		});
+
+		assertEquals("d1", loaded.toString());
+	}
+
+	@Test
+	public void invalidateDeviceOnlyAffectsOwnScope() {
+		MetadataCache alice = shared.forSession("alice");
+		MetadataCache bob = shared.forSession("bob");
+		alice.getDevice("d1", id -> new Device());
+		bob.getDevice("d1", id -> new Device());
+
+		alice.invalidateDevice("d1");
+		assertNull(alice.getDevice("d1", id -> null));
+		assertEquals(1, shared.getDeviceCount());
+	}
+}
@@ -0,0 +1,59 @@
+package top.microiot.api.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.net.URI;
+
+import org.junit.Test;
+
+public class ValidatorCacheTest {
+	private static final URI DEVICE = URI.create("http://host/api/v1/devices/d1");
+
+	private final ValidatorCache shared = new ValidatorCache(60000, 100);
+
+	@Test
+	public void sessionsOfDifferentUsersDoNotShareEntries() {
+		ValidatorCache alice = shared.forSession("iotp://host|domain|alice");
+		ValidatorCache bob = shared.forSession("iotp://host|domain|bob");
+		Object body = new Object();
+		alice.put(DEVICE, "\"v1\"", -1, body);
+
+		assertNull(bob.get(DEVICE));
+		assertSame(body, shared.forSession("iotp://host|domain|alice").get(DEVICE).getBody());
+		assertEquals("\"v1\"", alice.get(DEVICE).getEtag());
+	}
+
+	@Test
+	public void sessionsOfDifferentPlatformsDoNotShareEntries() {
+		ValidatorCache a = shared.forSession("iotp://a|domain|user");
+		ValidatorCache b = shared.forSession("iotp://b|domain|user");
+		a.put(DEVICE, null, 1000, new Object());
+
+		assertNull(b.get(DEVICE));
+	}
+
+	@Test
+	public void invalidateOnlyAffectsOwnScope() {
+		ValidatorCache alice = shared.forSession("alice");
+		ValidatorCache bob = shared.forSession("bob");
+		alice.put(DEVICE, "\"a\"", -1, new Object());
+		bob.put(DEVICE, "\"b\"", -1, new Object());
+
+		alice.invalidate(DEVICE);
+		assertNull(alice.get(DEVICE));
+		assertEquals("\"b\"", bob.get(DEVICE).getEtag());
+		assertEquals(1, shared.size());
+	}
+
+	@Test
+	public void responseWithoutValidatorsIsNotCached() {
+		ValidatorCache alice = shared.forSession("alice");
+		alice.put(DEVICE, "\"a\"", -1, new Object());
+		alice.put(DEVICE, null, -1, new Object());
+
+		assertNull(alice.get(DEVICE));
+		assertEquals(2, shared.getModifiedCount());
+	}
+}
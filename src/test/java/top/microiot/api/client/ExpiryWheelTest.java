@@ -0,0 +1,98 @@
+package top.microiot.api.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import top.microiot.api.ManualTaskScheduler;
+import top.microiot.api.client.ExpiryWheel.Expiry;
+
+public class ExpiryWheelTest {
+	private static final long TICK = 100;
+
+	private ManualTaskScheduler scheduler;
+	private long now;
+	private ExpiryWheel wheel;
+
+	@Before
+	public void setUp() {
+		scheduler = new ManualTaskScheduler();
+		now = 1_000_000;
+		wheel = new ExpiryWheel(scheduler, TICK, () -> now);
+	}
+
+	@Test
+	public void expiresWithinOneTickOfDeadline() {
+		now += 30;
+		AtomicInteger fired = new AtomicInteger();
+		wheel.schedule(fired::incrementAndGet, 250, TimeUnit.MILLISECONDS);
+		long deadline = now + 250;
+
+		for (; now < deadline; now += 10) {
+			wheel.tick();
+			assertEquals("fired before deadline at " + now, 0, fired.get());
+		}
+		for (; now < deadline + TICK; now += 10)
+			wheel.tick();
+		assertEquals(1, fired.get());
+		assertEquals(0, wheel.getPendingCount());
+		assertEquals(1, wheel.getExpiredCount());
+	}
+
+	@Test
+	public void deadlineInsideTickIsNotDeferredByRevolution() {
+		AtomicInteger fired = new AtomicInteger();
+		now += 50;
+		wheel.schedule(fired::incrementAndGet, 120, TimeUnit.MILLISECONDS);
+
+		now += 200;
+		wheel.tick();
+		assertEquals(1, fired.get());
+	}
+
+	@Test
+	public void longTimeoutWaitsForItsRevolution() {
+		AtomicInteger fired = new AtomicInteger();
+		long timeout = TICK * 600;
+		wheel.schedule(fired::incrementAndGet, timeout, TimeUnit.MILLISECONDS);
+		long deadline = now + timeout;
+
+		for (; now < deadline; now += TICK) {
+			wheel.tick();
+			assertEquals(0, fired.get());
+		}
+		now += TICK;
+		wheel.tick();
+		assertEquals(1, fired.get());
+	}
+
+	@Test
+	public void cancelledExpiryDoesNotFire() {
+		AtomicInteger fired = new AtomicInteger();
+		Expiry expiry = wheel.schedule(fired::incrementAndGet, 100, TimeUnit.MILLISECONDS);
+		assertTrue(expiry.cancel());
+		assertFalse(expiry.cancel());
+
+		now += 500;
+		wheel.tick();
+		assertEquals(0, fired.get());
+		assertEquals(0, wheel.getExpiredCount());
+	}
+
+	@Test
+	public void tickerStopsWhenNothingPending() {
+		wheel.schedule(() -> {}, 100, TimeUnit.MILLISECONDS);
+		assertEquals(1, scheduler.getPeriodicCount());
+
+		now += 300;
+		scheduler.runPeriodic();
+		assertEquals(0, wheel.getPendingCount());
+		assertEquals(0, scheduler.getPeriodicCount());
+	}
+}
@@ -0,0 +1,103 @@
+package top.microiot.api.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+import top.microiot.domain.Response;
+
+public class ReadCoalescerTest {
+	private final List<CompletableFuture<Response>> requests = new ArrayList<CompletableFuture<Response>>();
+
+	private CompletableFuture<Response> load() {
+		CompletableFuture<Response> request = new CompletableFuture<Response>();
+		requests.add(request);
+		return request;
+	}
+
+	@Test
+	public void concurrentReadsShareOneRequest() {
+		ReadCoalescer coalescer = new ReadCoalescer(0);
+		CompletableFuture<Response> first = coalescer.get("d1", "temperature", this::load);
+		CompletableFuture<Response> second = coalescer.get("d1", "temperature", this::load);
+		coalescer.get("d1", "humidity", this::load);
+
+		assertEquals(2, requests.size());
+		Response response = new Response();
+		requests.get(0).complete(response);
+		assertSame(response, first.join());
+		assertSame(response, second.join());
+		assertEquals(1, coalescer.getCoalescedCount());
+	}
+
+	@Test
+	public void responseIsReusedWithinWindow() {
+		ReadCoalescer coalescer = new ReadCoalescer(60000);
+		coalescer.get("d1", "temperature", this::load);
+		requests.get(0).complete(new Response());
+
+		assertTrue(coalescer.get("d1", "temperature", this::load).isDone());
+		assertEquals(1, requests.size());
+	}
+
+	@Test
+	public void failedRequestIsNotShared() {
+		ReadCoalescer coalescer = new ReadCoalescer(60000);
+		CompletableFuture<Response> first = coalescer.get("d1", "temperature", this::load);
+		requests.get(0).completeExceptionally(new IllegalStateException("timeout"));
+
+		assertTrue(first.isCompletedExceptionally());
+		assertFalse(coalescer.get("d1", "temperature", this::load).isDone());
+		assertEquals(2, requests.size());
+	}
+
+	@Test
+	public void cancellingCopyDoesNotCancelSharedRequest() {
+		ReadCoalescer coalescer = new ReadCoalescer(0);
+		coalescer.get("d1", "temperature", this::load).cancel(false);
+		CompletableFuture<Response> second = coalescer.get("d1", "temperature", this::load);
+
+		assertFalse(requests.get(0).isCancelled());
+		Response response = new Response();
+		requests.get(0).complete(response);
+		assertSame(response, second.join());
+	}
+
+	@Test
+	public void invalidateDropsResponseInWindow() {
+		ReadCoalescer coalescer = new ReadCoalescer(60000);
+		coalescer.get("d1", "temperature", this::load);
+		requests.get(0).complete(new Response());
+
+		coalescer.invalidate("d1", "temperature");
+		assertFalse(coalescer.get("d1", "temperature", this::load).isDone());
+		assertEquals(2, requests.size());
+	}
+
+	@Test
+	public void readAfterInvalidateDoesNotJoinOlderRequest() {
+		ReadCoalescer coalescer = new ReadCoalescer(60000);
+		CompletableFuture<Response> before = coalescer.get("d1", "temperature", this::load);
+		coalescer.invalidate("d1", "temperature");
+		CompletableFuture<Response> after = coalescer.get("d1", "temperature", this::load);
+		assertEquals(2, requests.size());
+
+		Response old = new Response();
+		requests.get(0).complete(old);
+		assertSame(old, before.join());
+		assertFalse(after.isDone());
+
+		Response current = new Response();
+		requests.get(1).complete(current);
+		assertSame(current, after.join());
+		assertSame(current, coalescer.get("d1", "temperature", this::load).join());
+		assertEquals(2, requests.size());
+	}
+}
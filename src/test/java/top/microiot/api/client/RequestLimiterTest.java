@@ -0,0 +1,153 @@
+package top.microiot.api.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import top.microiot.api.WebsocketProperties.LimitPolicy;
+import top.microiot.exception.StatusException;
+
+public class RequestLimiterTest {
+	@Test
+	public void deviceLimitQueuesOnlyThatDevice() {
+		RequestLimiter limiter = new RequestLimiter(0, 1, 0, LimitPolicy.QUEUE);
+		assertTrue(limiter.acquire("d1").isDone());
+		CompletableFuture<Void> queued = limiter.acquire("d1");
+		assertTrue(limiter.acquire("d2").isDone());
+
+		assertFalse(queued.isDone());
+		assertEquals(1, limiter.getInFlight("d1"));
+		assertEquals(2, limiter.getInFlight());
+
+		limiter.release("d2");
+		assertFalse(queued.isDone());
+		limiter.release("d1");
+		assertTrue(queued.isDone());
+		assertEquals(1, limiter.getInFlight("d1"));
+		assertEquals(1, limiter.getQueuedCount());
+	}
+
+	@Test
+	public void sessionLimitQueuesAllDevices() {
+		RequestLimiter limiter = new RequestLimiter(2, 0, 0, LimitPolicy.QUEUE);
+		limiter.acquire("d1");
+		limiter.acquire("d2");
+		CompletableFuture<Void> queued = limiter.acquire("d3");
+
+		assertFalse(queued.isDone());
+		assertEquals(1, limiter.getQueueDepth());
+		limiter.release("d1");
+		assertTrue(queued.isDone());
+		assertEquals(0, limiter.getInFlight("d1"));
+		assertEquals(1, limiter.getInFlight("d3"));
+		assertEquals(2, limiter.getInFlight());
+	}
+
+	@Test
+	public void waiterForFullDeviceDoesNotBlockOthers() {
+		RequestLimiter limiter = new RequestLimiter(2, 1, 0, LimitPolicy.QUEUE);
+		limiter.acquire("d1");
+		limiter.acquire("d2");
+		CompletableFuture<Void> first = limiter.acquire("d1");
+		CompletableFuture<Void> second = limiter.acquire("d3");
+
+		limiter.release("d2");
+		assertFalse(first.isDone());
+		assertTrue(second.isDone());
+	}
+
+	@Test
+	public void cancelledWaiterIsSkipped() {
+		RequestLimiter limiter = new RequestLimiter(1, 0, 0, LimitPolicy.QUEUE);
+		limiter.acquire("d1");
+		CompletableFuture<Void> cancelled = limiter.acquire("d2");
+		CompletableFuture<Void> waiting = limiter.acquire("d3");
+		cancelled.cancel(false);
+
+		assertEquals(1, limiter.getQueueDepth());
+		limiter.release("d1");
+		assertTrue(waiting.isDone());
+		assertFalse(waiting.isCompletedExceptionally());
+		assertEquals(0, limiter.getInFlight("d2"));
+		assertEquals(1, limiter.getInFlight());
+		assertEquals(0, limiter.getQueueDepth());
+	}
+
+	@Test
+	public void rejectPolicyCountsRejectedRequests() {
+		RequestLimiter limiter = new RequestLimiter(0, 1, 0, LimitPolicy.REJECT);
+		limiter.acquire("d1");
+		try {
+			limiter.acquire("d1");
+			fail();
+		} catch (StatusException e) {
+		}
+
+		assertEquals(1, limiter.getRejectedCount());
+		assertEquals(0, limiter.getQueuedCount());
+		assertEquals(1, limiter.getInFlight());
+	}
+
+	@Test
+	public void fullQueueRejectsRequests() {
+		RequestLimiter limiter = new RequestLimiter(1, 0, 1, LimitPolicy.QUEUE);
+		limiter.acquire("d1");
+		limiter.acquire("d2");
+		try {
+			limiter.acquire("d3");
+			fail();
+		} catch (StatusException e) {
+		}
+
+		assertEquals(1, limiter.getRejectedCount());
+		assertEquals(1, limiter.getQueuedCount());
+		assertEquals(1, limiter.getQueueDepth());
+	}
+
+	@Test
+	public void cancelledWaitersFreeQueueSpace() {
+		RequestLimiter limiter = new RequestLimiter(1, 0, 1, LimitPolicy.QUEUE);
+		limiter.acquire("d1");
+		limiter.acquire("d2").cancel(false);
+
+		assertFalse(limiter.acquire("d3").isDone());
+		assertEquals(0, limiter.getRejectedCount());
+	}
+
+	/**
+	 * 排队的请求在被放行和完成之间取消时，complete返回false，许可必须再次释放。
+	 * 释放和取消在两个线程中同时进行，无论哪种顺序，正在等待响应的请求数量都与申请是否成功一致。
+	 */
+	@Test
+	public void permitOfWaiterCancelledWhileGrantedIsReturned() throws Exception {
+		for (int i = 0; i < 2000; i++) {
+			RequestLimiter limiter = new RequestLimiter(1, 1, 0, LimitPolicy.QUEUE);
+			limiter.acquire("d1");
+			CompletableFuture<Void> waiter = limiter.acquire("d1");
+			CountDownLatch start = new CountDownLatch(1);
+			Thread canceller = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				waiter.cancel(false);
+			});
+			canceller.start();
+			start.countDown();
+			limiter.release("d1");
+			canceller.join();
+
+			int expected = waiter.isCancelled() ? 0 : 1;
+			assertEquals(expected, limiter.getInFlight());
+			assertEquals(expected, limiter.getInFlight("d1"));
+			assertEquals(0, limiter.getQueueDepth());
+		}
+	}
+}
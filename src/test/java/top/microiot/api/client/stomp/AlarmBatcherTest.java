@@ -0,0 +1,218 @@
+package top.microiot.api.client.stomp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import top.microiot.api.ManualTaskScheduler;
+import top.microiot.api.OverflowPolicy;
+import top.microiot.api.stomp.Acknowledgement;
+import top.microiot.domain.Alarm;
+import top.microiot.domain.ManagedObject;
+
+public class AlarmBatcherTest {
+	private ManualTaskScheduler scheduler;
+	private RecordingSubscriber subscriber;
+
+	@Before
+	public void setUp() {
+		scheduler = new ManualTaskScheduler();
+		subscriber = new RecordingSubscriber();
+	}
+
+	private AlarmBatcher batcher(int batchSize, int capacity, OverflowPolicy policy) {
+		return new AlarmBatcher(subscriber, scheduler, batchSize, 1000, capacity, policy, 10);
+	}
+
+	@Test
+	public void fullBatchIsDeliveredInOrder() {
+		AlarmBatcher batcher = batcher(3, 10, OverflowPolicy.DROP_OLDEST);
+		batcher.offer(alarm("a"));
+		batcher.offer(alarm("b"));
+		batcher.offer(alarm("c"));
+		scheduler.runOnce();
+
+		assertEquals(1, subscriber.batches.size());
+		assertEquals(Arrays.asList("a", "b", "c"), subscriber.batches.get(0));
+		assertEquals(3, batcher.getDeliveredCount());
+		assertEquals(1, batcher.getBatchCount());
+	}
+
+	@Test
+	public void partialBatchIsDeliveredAfterLinger() {
+		AlarmBatcher batcher = batcher(10, 10, OverflowPolicy.DROP_OLDEST);
+		batcher.offer(alarm("a"));
+		assertTrue(subscriber.batches.isEmpty());
+
+		scheduler.runOnce();
+		assertEquals(Arrays.asList(Arrays.asList("a")), subscriber.batches);
+	}
+
+	@Test
+	public void dropOldestKeepsNewestAlarms() {
+		AlarmBatcher batcher = batcher(10, 2, OverflowPolicy.DROP_OLDEST);
+		batcher.offer(alarm("a"));
+		batcher.offer(alarm("b"));
+		batcher.offer(alarm("c"));
+		scheduler.runOnce();
+
+		assertEquals(Arrays.asList(Arrays.asList("b", "c")), subscriber.batches);
+		assertEquals(1, batcher.getDroppedCount());
+	}
+
+	@Test
+	public void dropNewestKeepsQueuedAlarms() {
+		AlarmBatcher batcher = batcher(10, 2, OverflowPolicy.DROP_NEWEST);
+		batcher.offer(alarm("a"));
+		batcher.offer(alarm("b"));
+		batcher.offer(alarm("c"));
+		scheduler.runOnce();
+
+		assertEquals(Arrays.asList(Arrays.asList("a", "b")), subscriber.batches);
+		assertEquals(1, batcher.getDroppedCount());
+	}
+
+	@Test
+	public void blockGivesUpAfterTimeout() {
+		AlarmBatcher batcher = batcher(10, 1, OverflowPolicy.BLOCK);
+		batcher.offer(alarm("a"));
+		long start = System.currentTimeMillis();
+		batcher.offer(alarm("b"));
+
+		assertTrue(System.currentTimeMillis() - start < 5000);
+		assertEquals(1, batcher.getDroppedCount());
+		scheduler.runOnce();
+		assertEquals(Arrays.asList(Arrays.asList("a")), subscriber.batches);
+	}
+
+	@Test
+	public void closeDeliversQueuedAlarmsAndRejectsNewOnes() {
+		AlarmBatcher batcher = batcher(10, 10, OverflowPolicy.DROP_OLDEST);
+		batcher.offer(alarm("a"));
+		assertFalse(batcher.close(0));
+		scheduler.runOnce();
+		assertTrue(batcher.close(0));
+
+		batcher.offer(alarm("b"));
+		assertEquals(Arrays.asList(Arrays.asList("a")), subscriber.batches);
+		assertEquals(1, batcher.getDroppedCount());
+	}
+
+	@Test
+	public void failedBatchIsCounted() {
+		subscriber.fail = true;
+		AlarmBatcher batcher = batcher(2, 10, OverflowPolicy.DROP_OLDEST);
+		batcher.offer(alarm("a"));
+		batcher.offer(alarm("b"));
+		scheduler.runOnce();
+
+		assertEquals(2, batcher.getFailedCount());
+		assertEquals(0, batcher.getDeliveredCount());
+	}
+
+	@Test
+	public void deliveredAlarmsAreAcked() {
+		List<String> acks = new ArrayList<String>();
+		AlarmBatcher batcher = batcher(2, 10, OverflowPolicy.DROP_OLDEST);
+		batcher.offer(alarm("a"), acknowledgement("a", acks));
+		batcher.offer(alarm("b"), acknowledgement("b", acks));
+		assertTrue(acks.isEmpty());
+		scheduler.runOnce();
+
+		assertEquals(Arrays.asList("ack a", "ack b"), acks);
+	}
+
+	@Test
+	public void failedBatchIsNacked() {
+		subscriber.fail = true;
+		List<String> acks = new ArrayList<String>();
+		AlarmBatcher batcher = batcher(2, 10, OverflowPolicy.DROP_OLDEST);
+		batcher.offer(alarm("a"), acknowledgement("a", acks));
+		batcher.offer(alarm("b"), acknowledgement("b", acks));
+		scheduler.runOnce();
+
+		assertEquals(Arrays.asList("nack a", "nack b"), acks);
+	}
+
+	@Test
+	public void droppedAlarmIsNacked() {
+		List<String> acks = new ArrayList<String>();
+		AlarmBatcher batcher = batcher(10, 1, OverflowPolicy.DROP_NEWEST);
+		batcher.offer(alarm("a"), acknowledgement("a", acks));
+		batcher.offer(alarm("b"), acknowledgement("b", acks));
+
+		assertEquals(Arrays.asList("nack b"), acks);
+	}
+
+	@Test
+	public void rejectedAlarmIsNackedWithoutThrowing() {
+		List<String> acks = new ArrayList<String>();
+		AlarmBatcher batcher = batcher(10, 1, OverflowPolicy.REJECT);
+		batcher.offer(alarm("a"), acknowledgement("a", acks));
+		batcher.offer(alarm("b"), acknowledgement("b", acks));
+
+		assertEquals(Arrays.asList("nack b"), acks);
+		assertEquals(1, batcher.getDroppedCount());
+		assertEquals(1, batcher.getQueueSize());
+	}
+
+	@Test
+	public void alarmOfferedAfterCloseIsLeftForRedelivery() {
+		List<String> acks = new ArrayList<String>();
+		AlarmBatcher batcher = batcher(10, 10, OverflowPolicy.DROP_OLDEST);
+		batcher.close(0);
+		batcher.offer(alarm("a"), acknowledgement("a", acks));
+
+		assertTrue(acks.isEmpty());
+	}
+
+	private static Acknowledgement acknowledgement(String id, List<String> acks) {
+		return new Acknowledgement() {
+			@Override
+			public void ack() {
+				acks.add("ack " + id);
+			}
+
+			@Override
+			public void nack() {
+				acks.add("nack " + id);
+			}
+		};
+	}
+
+	static Alarm alarm(String type) {
+		return new Alarm() {
+			@Override
+			public String getAlarmType() {
+				return type;
+			}
+		};
+	}
+
+	static class RecordingSubscriber extends AlarmSubscriber {
+		final List<List<String>> batches = new ArrayList<List<String>>();
+		volatile boolean fail = false;
+
+		@Override
+		public void onAlarm(ManagedObject notifyObject, String alarmType, Object alarmInfo, Date reportTime, Date receiveTime) {
+		}
+
+		@Override
+		public void onAlarms(List<ReceivedAlarm> alarms) {
+			if (fail)
+				throw new IllegalStateException("handler failed");
+			List<String> types = new ArrayList<String>();
+			for (ReceivedAlarm alarm : alarms)
+				types.add(alarm.getAlarmType());
+			batches.add(types);
+		}
+	}
+}
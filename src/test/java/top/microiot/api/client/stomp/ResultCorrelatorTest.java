@@ -0,0 +1,111 @@
+package top.microiot.api.client.stomp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+
+import top.microiot.api.stomp.RecordingStompSession;
+import top.microiot.domain.Response;
+
+public class ResultCorrelatorTest {
+	private static final long IDLE = 1000;
+
+	private long now;
+	private ResultCorrelator correlator;
+	private RecordingStompSession session;
+
+	@Before
+	public void setUp() {
+		now = 0;
+		correlator = new ResultCorrelator(IDLE, () -> now);
+		session = new RecordingStompSession();
+		correlator.afterConnected(session, new StompHeaders());
+	}
+
+	@Test
+	public void requestIsSentAfterSubscriptionReceipt() {
+		CompletableFuture<Response> future = correlator.publish("d1", new GetRequestPublisher("a"));
+		assertTrue(session.sent.isEmpty());
+
+		session.receipt();
+		assertEquals(1, session.sent.size());
+		assertFalse(future.isDone());
+		assertEquals(1, correlator.getSubscriptionCount());
+	}
+
+	@Test
+	public void requestAfterReconnectWaitsForNewSession() {
+		correlator.publish("d1", new GetRequestPublisher("a"));
+		session.receipt();
+
+		session.connected = false;
+		correlator.handleTransportError(session, new IllegalStateException("closed"));
+		correlator.publish("d1", new GetRequestPublisher("a"));
+		assertEquals(1, session.sent.size());
+
+		RecordingStompSession reconnected = new RecordingStompSession();
+		correlator.afterConnected(reconnected, new StompHeaders());
+		reconnected.receipt();
+		assertEquals(1, reconnected.sent.size());
+	}
+
+	@Test
+	public void transportErrorFailsPendingRequests() {
+		CompletableFuture<Response> sent = correlator.publish("d1", new GetRequestPublisher("a"));
+		session.receipt();
+		CompletableFuture<Response> waiting = correlator.publish("d2", new GetRequestPublisher("a"));
+
+		session.connected = false;
+		correlator.handleTransportError(session, new IllegalStateException("closed"));
+		assertTrue(sent.isCompletedExceptionally());
+		assertTrue(waiting.isCompletedExceptionally());
+		assertEquals(0, correlator.getPendingCount());
+
+		RecordingStompSession reconnected = new RecordingStompSession();
+		correlator.afterConnected(reconnected, new StompHeaders());
+		reconnected.receipt();
+		assertTrue(reconnected.sent.isEmpty());
+	}
+
+	@Test
+	public void sendFailureCompletesRequest() {
+		correlator.publish("d1", new GetRequestPublisher("a"));
+		session.receipt();
+		session.failSend = true;
+
+		CompletableFuture<Response> future = correlator.publish("d1", new GetRequestPublisher("a"));
+		assertTrue(future.isCompletedExceptionally());
+		assertEquals(1, correlator.getPendingCount());
+	}
+
+	@Test
+	public void idleSubscriptionsAreEvicted() {
+		CompletableFuture<Response> future = correlator.publish("d1", new GetRequestPublisher("a"));
+		session.receipt();
+		future.cancel(false);
+		assertEquals(0, correlator.getPendingCount());
+
+		now += IDLE;
+		correlator.publish("d2", new GetRequestPublisher("a"));
+		assertEquals(1, correlator.getSubscriptionCount());
+		assertEquals(1, correlator.getEvictedCount());
+		assertTrue(session.subscriptions.get(0).unsubscribed);
+	}
+
+	@Test
+	public void subscriptionWithPendingRequestIsKept() {
+		correlator.publish("d1", new GetRequestPublisher("a"));
+		session.receipt();
+
+		now += IDLE;
+		correlator.publish("d2", new GetRequestPublisher("a"));
+		assertEquals(2, correlator.getSubscriptionCount());
+		assertEquals(0, correlator.getEvictedCount());
+	}
+}
@@ -0,0 +1,99 @@
+package top.microiot.api.device;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import top.microiot.api.HttpSessionProperties;
+import top.microiot.api.ManualTaskScheduler;
+import top.microiot.api.OverflowPolicy;
+import top.microiot.exception.StatusException;
+
+public class EventReporterTest {
+	private ManualTaskScheduler scheduler;
+	private RecordingSession session;
+
+	@Before
+	public void setUp() {
+		scheduler = new ManualTaskScheduler();
+		session = new RecordingSession();
+	}
+
+	@Test
+	public void inFlightRequestsAreLimited() {
+		EventReporter reporter = new EventReporter(session, scheduler, 10, 0, 100, OverflowPolicy.REJECT, 2);
+		List<CompletableFuture<Void>> reports = new ArrayList<CompletableFuture<Void>>();
+		for (int i = 0; i < 5; i++)
+			reports.add(reporter.report("event-" + i));
+		scheduler.runOnce();
+		assertEquals(2, session.posts.size());
+
+		session.posts.get(0).complete(null);
+		assertEquals(3, session.posts.size());
+		session.posts.get(1).completeExceptionally(new StatusException("failed"));
+		assertEquals(4, session.posts.size());
+		for (int i = 2; i < 5; i++)
+			session.posts.get(i).complete(null);
+
+		assertEquals(5, session.posts.size());
+		assertEquals(4, reporter.getSentCount());
+		assertEquals(1, reporter.getFailedCount());
+		assertEquals(1, reporter.getBatchCount());
+		assertTrue(reports.get(0).isDone() && !reports.get(0).isCompletedExceptionally());
+		assertTrue(reports.get(1).isCompletedExceptionally());
+	}
+
+	@Test
+	public void synchronousCompletionDoesNotRecurse() {
+		session.completeImmediately = true;
+		EventReporter reporter = new EventReporter(session, scheduler, 100000, 0, 100000, OverflowPolicy.REJECT, 1);
+		for (int i = 0; i < 100000; i++)
+			reporter.report("event-" + i);
+		scheduler.runOnce();
+		assertEquals(100000, reporter.getSentCount());
+		assertEquals(0, reporter.getQueueSize());
+	}
+
+	@Test
+	public void reportAfterCloseIsRejected() {
+		EventReporter reporter = new EventReporter(session, scheduler, 10, 1000, 100, OverflowPolicy.REJECT, 2);
+		reporter.report("event");
+		assertFalse(reporter.close(0));
+		try {
+			reporter.report("late");
+			fail("report after close should be rejected");
+		} catch (StatusException e) {
+		}
+		scheduler.runOnce();
+		session.posts.get(0).complete(null);
+		assertEquals(1, session.posts.size());
+		assertEquals(1, reporter.getSentCount());
+		assertEquals(0, reporter.getQueueSize());
+	}
+
+	private static class RecordingSession extends HttpDeviceSession {
+		private final List<CompletableFuture<Void>> posts = new ArrayList<CompletableFuture<Void>>();
+		private boolean completeImmediately = false;
+
+		private RecordingSession() {
+			super(new HttpSessionProperties());
+		}
+
+		@Override
+		CompletableFuture<Void> postEventAsync(Object info) {
+			if (completeImmediately)
+				return CompletableFuture.completedFuture(null);
+			CompletableFuture<Void> future = new CompletableFuture<Void>();
+			posts.add(future);
+			return future;
+		}
+	}
+}
@@ -0,0 +1,163 @@
+package top.microiot.api.device;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReportSpoolTest {
+	private static final int RECORD = 4 + 1 + 8 + 4 + 10;
+	private static final int SEGMENT = RECORD * 2 + 10;
+
+	private File dir;
+	private long now;
+	private ReportSpool spool;
+
+	@Before
+	public void setUp() throws IOException {
+		dir = Files.createTempDirectory("spool").toFile();
+		now = 1_000_000;
+	}
+
+	@After
+	public void tearDown() {
+		if (spool != null)
+			spool.close();
+		File[] files = dir.listFiles();
+		if (files != null)
+			for (File file : files)
+				file.delete();
+		dir.delete();
+	}
+
+	private ReportSpool open(long maxBytes, long retentionMillis) throws IOException {
+		if (spool != null)
+			spool.close();
+		spool = new ReportSpool(dir, SEGMENT, maxBytes, retentionMillis, () -> now);
+		return spool;
+	}
+
+	private static byte[] payload(int i) {
+		return String.format("report-%03d", i).getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static List<String> payloads(List<ReportSpool.Record> records) {
+		List<String> list = new ArrayList<String>();
+		for (ReportSpool.Record record : records)
+			list.add(new String(record.getPayload(), StandardCharsets.UTF_8));
+		return list;
+	}
+
+	private static List<String> expected(int... ids) {
+		List<String> list = new ArrayList<String>();
+		for (int id : ids)
+			list.add(new String(payload(id), StandardCharsets.UTF_8));
+		return list;
+	}
+
+	@Test
+	public void peekDoesNotMoveUntilCommit() throws IOException {
+		open(SEGMENT * 10, 0);
+		for (int i = 0; i < 3; i++)
+			spool.append(SpoolForwarder.EVENT, payload(i));
+
+		List<ReportSpool.Record> records = spool.peek(10);
+		assertEquals(expected(0, 1, 2), payloads(records));
+		assertEquals(expected(0, 1, 2), payloads(spool.peek(10)));
+
+		spool.commit(records.get(1));
+		assertEquals(expected(2), payloads(spool.peek(10)));
+		spool.commit(records.get(2));
+		assertTrue(spool.isEmpty());
+		assertEquals(1, spool.getSegmentCount());
+	}
+
+	@Test
+	public void reopenResumesFromCheckpoint() throws IOException {
+		open(SEGMENT * 10, 0);
+		for (int i = 0; i < 3; i++)
+			spool.append(SpoolForwarder.ALARM, payload(i));
+		spool.commit(spool.peek(1).get(0));
+
+		open(SEGMENT * 10, 0);
+		List<ReportSpool.Record> records = spool.peek(10);
+		assertEquals(expected(1, 2), payloads(records));
+		assertEquals(SpoolForwarder.ALARM, records.get(0).getType());
+		spool.append(SpoolForwarder.ALARM, payload(3));
+		assertEquals(expected(1, 2, 3), payloads(spool.peek(10)));
+	}
+
+	@Test
+	public void corruptRecordSkipsRestOfSegment() throws IOException {
+		open(SEGMENT * 10, 0);
+		for (int i = 0; i < 4; i++)
+			spool.append(SpoolForwarder.EVENT, payload(i));
+		spool.close();
+		spool = null;
+
+		try (RandomAccessFile file = new RandomAccessFile(new File(dir, String.format("%020d", 0) + ".spool"), "rw")) {
+			file.seek(RECORD + RECORD - 1);
+			file.write('x');
+		}
+
+		open(SEGMENT * 10, 0);
+		assertEquals(expected(0, 2, 3), payloads(spool.peek(10)));
+		assertEquals(expected(0, 2, 3), payloads(spool.peek(10)));
+		assertEquals(1, spool.getCorruptCount());
+	}
+
+	@Test
+	public void expiredRecordAtHeadIsSkippedOnce() throws IOException {
+		open(SEGMENT * 10, 1000);
+		spool.append(SpoolForwarder.EVENT, payload(0));
+		now += 2000;
+
+		assertTrue(spool.peek(10).isEmpty());
+		assertTrue(spool.peek(10).isEmpty());
+		assertEquals(1, spool.getExpiredCount());
+		assertTrue(spool.isEmpty());
+	}
+
+	@Test
+	public void expiredRecordBehindHeadIsCountedWhenReached() throws IOException {
+		open(SEGMENT * 10, 1000);
+		spool.append(SpoolForwarder.EVENT, payload(0));
+		now -= 5000;
+		spool.append(SpoolForwarder.EVENT, payload(1));
+		now += 5000;
+		spool.append(SpoolForwarder.EVENT, payload(2));
+
+		List<ReportSpool.Record> records = spool.peek(10);
+		assertEquals(expected(0), payloads(records));
+		assertEquals(expected(0), payloads(spool.peek(10)));
+		assertEquals(0, spool.getExpiredCount());
+
+		spool.commit(records.get(0));
+		assertEquals(expected(2), payloads(spool.peek(10)));
+		assertEquals(expected(2), payloads(spool.peek(10)));
+		assertEquals(1, spool.getExpiredCount());
+	}
+
+	@Test
+	public void maxSizeDropsOldestSegment() throws IOException {
+		open(SEGMENT * 2, 0);
+		for (int i = 0; i < 6; i++)
+			spool.append(SpoolForwarder.EVENT, payload(i));
+
+		assertEquals(2, spool.getSegmentCount());
+		assertEquals(2, spool.getDroppedCount());
+		assertEquals(expected(2, 3, 4, 5), payloads(spool.peek(10)));
+		assertFalse(spool.isEmpty());
+	}
+}
@@ -0,0 +1,133 @@
+package top.microiot.api.stomp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+
+import top.microiot.api.ManualTaskScheduler;
+
+public class AckBatcherTest {
+	private ManualTaskScheduler scheduler;
+	private RecordingStompSession session;
+	private AckBatcher batcher;
+
+	@Before
+	public void setUp() {
+		scheduler = new ManualTaskScheduler();
+		session = new RecordingStompSession();
+		batcher = new AckBatcher(scheduler, 3, 1000);
+	}
+
+	@Test
+	public void acksAreSentWhenBatchIsFull() {
+		batcher.ack(session, "1");
+		batcher.ack(session, "2");
+		assertTrue(session.acks.isEmpty());
+		assertEquals(2, batcher.getPendingCount());
+
+		batcher.ack(session, "3");
+		assertEquals(Arrays.asList("1", "2", "3"), session.acks);
+		assertEquals(0, batcher.getPendingCount());
+		assertEquals(3, batcher.getAckCount());
+	}
+
+	@Test
+	public void acksAreSentOnInterval() {
+		batcher.ack(session, "1");
+		scheduler.runPeriodic();
+
+		assertEquals(Arrays.asList("1"), session.acks);
+	}
+
+	@Test
+	public void nacksAreSentForFailedMessages() {
+		batcher.ack(session, "1");
+		batcher.nack(session, "2");
+		batcher.flush();
+
+		assertEquals(Arrays.asList("1"), session.acks);
+		assertEquals(Arrays.asList("2"), session.nacks);
+		assertEquals(1, batcher.getNackCount());
+	}
+
+	@Test
+	public void acknowledgementUsesAckHeaderOrMessageId() {
+		StompHeaders stomp12 = new StompHeaders();
+		stomp12.setAck("ack-1");
+		stomp12.setMessageId("message-1");
+		StompHeaders stomp11 = new StompHeaders();
+		stomp11.setMessageId("message-2");
+
+		batcher.acknowledgement(session, stomp12).ack();
+		batcher.acknowledgement(session, stomp11).nack();
+		batcher.flush();
+
+		assertEquals(Arrays.asList("ack-1"), session.acks);
+		assertEquals(Arrays.asList("message-2"), session.nacks);
+	}
+
+	@Test
+	public void redeliveredMessageIsNotRequeuedAgain() {
+		StompHeaders first = new StompHeaders();
+		first.setAck("ack-1");
+		StompHeaders redelivered = new StompHeaders();
+		redelivered.setAck("ack-2");
+		redelivered.set("redelivered", "true");
+
+		batcher.acknowledgement(session, first).nack();
+		batcher.acknowledgement(session, redelivered).nack();
+		batcher.flush();
+
+		assertEquals(Arrays.asList("ack-1"), session.nacks);
+		assertEquals(Arrays.asList("ack-2"), session.rejects);
+		assertEquals(1, batcher.getNackCount());
+		assertEquals(1, batcher.getRejectCount());
+	}
+
+	@Test
+	public void rejectedMessageIsNotRequeued() {
+		StompHeaders headers = new StompHeaders();
+		headers.setAck("ack-1");
+
+		batcher.acknowledgement(session, headers).reject();
+		batcher.flush();
+
+		assertTrue(session.nacks.isEmpty());
+		assertEquals(Arrays.asList("ack-1"), session.rejects);
+	}
+
+	@Test
+	public void acksForDisconnectedSessionAreDropped() {
+		batcher.ack(session, "1");
+		session.connected = false;
+		batcher.flush();
+
+		assertTrue(session.acks.isEmpty());
+		assertEquals(1, batcher.getStaleCount());
+	}
+
+	@Test
+	public void closeSendsPendingAcksAndStopsTimer() {
+		batcher.ack(session, "1");
+		batcher.close();
+
+		assertEquals(Arrays.asList("1"), session.acks);
+		assertEquals(0, scheduler.getPeriodicCount());
+	}
+
+	@Test
+	public void acksAfterCloseAreDropped() {
+		batcher.close();
+		batcher.ack(session, "1");
+		batcher.flush();
+
+		assertTrue(session.acks.isEmpty());
+		assertEquals(0, batcher.getPendingCount());
+		assertEquals(1, batcher.getStaleCount());
+	}
+}
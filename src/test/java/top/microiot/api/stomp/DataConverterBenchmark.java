@@ -0,0 +1,68 @@
+package top.microiot.api.stomp;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.core.ParameterizedTypeReference;
+
+import top.microiot.api.BenchmarkRunner;
+import top.microiot.domain.attribute.DataType;
+
+/**
+ * 数据转换的基准测试，比较每条消息查找类型定义并分支处理和每条消息绑定数据转换。
+ * 绑定的开销与缓存查找相当，所以读写属性、操作和告警都直接绑定，不缓存数据转换。
+ * DataType的解码在iotdomain中，各种方式相同，没有包括在内。
+ * 运行方法：在测试类路径中执行main方法。
+ */
+public class DataConverterBenchmark {
+	private static final int OPERATIONS = 1_000_000;
+	private static final int OWNERS = 64;
+	private static final int ALARM_TYPES = 16;
+
+	private final String[] owners = new String[OWNERS];
+	private final String[] alarmTypes = new String[ALARM_TYPES];
+	private final Map<String, Map<String, DataType>> definitions = new HashMap<String, Map<String, DataType>>();
+	private final Map<String, Object> types = new HashMap<String, Object>();
+
+	public DataConverterBenchmark() {
+		for (int i = 0; i < ALARM_TYPES; i++) {
+			alarmTypes[i] = "alarm" + i;
+			types.put(alarmTypes[i], i % 2 == 0 ? Integer.class : new ParameterizedTypeReference<Map<String, Integer>>() {});
+		}
+		for (int i = 0; i < OWNERS; i++) {
+			owners[i] = String.format("5d%022x", i);
+			Map<String, DataType> alarms = new HashMap<String, DataType>();
+			for (String alarmType : alarmTypes)
+				alarms.put(alarmType, null);
+			definitions.put(owners[i], alarms);
+		}
+	}
+
+	/**
+	 * 优化之前的方式：每条告警都查找告警类型定义，并按用户类型是Class还是ParameterizedTypeReference分支。
+	 */
+	private Object resolve(int i) {
+		String owner = owners[i % OWNERS];
+		String alarmType = alarmTypes[i % ALARM_TYPES];
+		DataType dataType = definitions.get(owner).get(alarmType);
+		Object typeInfo = types.get(alarmType);
+		if (typeInfo instanceof Class<?> || typeInfo instanceof ParameterizedTypeReference<?>)
+			return dataType == null ? typeInfo : dataType;
+		throw new IllegalStateException(alarmType);
+	}
+
+	/**
+	 * 现在的方式：每条消息绑定一个数据转换。
+	 */
+	private Object bind(int i) {
+		String owner = owners[i % OWNERS];
+		String alarmType = alarmTypes[i % ALARM_TYPES];
+		return new DataConverter(definitions.get(owner).get(alarmType), types.get(alarmType));
+	}
+
+	public static void main(String[] args) {
+		DataConverterBenchmark benchmark = new DataConverterBenchmark();
+		BenchmarkRunner.run("resolve definition per message", OPERATIONS, benchmark::resolve);
+		BenchmarkRunner.run("bind converter per message", OPERATIONS, benchmark::bind);
+	}
+}
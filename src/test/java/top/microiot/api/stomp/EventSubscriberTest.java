@@ -0,0 +1,54 @@
+package top.microiot.api.stomp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class EventSubscriberTest {
+	private final StringBuilder acknowledged = new StringBuilder();
+	private final Acknowledgement acknowledgement = new Acknowledgement() {
+		@Override
+		public void ack() {
+			acknowledged.append("ack");
+		}
+
+		@Override
+		public void nack() {
+			acknowledged.append("nack");
+		}
+	};
+
+	@Test
+	public void successfulEventIsAcked() {
+		subscriber(false).onEvent("event", acknowledgement);
+
+		assertEquals("ack", acknowledged.toString());
+	}
+
+	@Test
+	public void failedEventIsNackedAndRethrown() {
+		try {
+			subscriber(true).onEvent("event", acknowledgement);
+			fail("exception expected");
+		} catch (IllegalStateException e) {
+		}
+
+		assertEquals("nack", acknowledged.toString());
+	}
+
+	private EventSubscriber subscriber(boolean fail) {
+		return new AbstractEventSubscriber() {
+			@Override
+			public void onEvent(Object event) {
+				if (fail)
+					throw new IllegalStateException("handler failed");
+			}
+
+			@Override
+			public SessionManager getSessionManager() {
+				return null;
+			}
+		};
+	}
+}
@@ -0,0 +1,172 @@
+package top.microiot.api.stomp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+
+/**
+ * 测试用的STOMP连接，记录发送的消息、订阅和确认，订阅的回执由测试调用receipt完成。
+ */
+public class RecordingStompSession implements StompSession {
+	public final List<String> acks = new ArrayList<String>();
+	public final List<String> nacks = new ArrayList<String>();
+	public final List<String> rejects = new ArrayList<String>();
+	public final List<String> sent = new ArrayList<String>();
+	public final List<RecordingSubscription> subscriptions = new ArrayList<RecordingSubscription>();
+	public volatile boolean connected = true;
+	public volatile boolean failSend = false;
+
+	@Override
+	public String getSessionId() {
+		return "test";
+	}
+
+	@Override
+	public boolean isConnected() {
+		return connected;
+	}
+
+	@Override
+	public void setAutoReceipt(boolean enabled) {
+	}
+
+	@Override
+	public synchronized Receiptable send(String destination, Object payload) {
+		if (!connected || failSend)
+			throw new IllegalStateException("send failed");
+		sent.add(destination);
+		return null;
+	}
+
+	@Override
+	public Receiptable send(StompHeaders headers, Object payload) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Subscription subscribe(String destination, StompFrameHandler handler) {
+		StompHeaders headers = new StompHeaders();
+		headers.setDestination(destination);
+		return subscribe(headers, handler);
+	}
+
+	@Override
+	public synchronized Subscription subscribe(StompHeaders headers, StompFrameHandler handler) {
+		RecordingSubscription subscription = new RecordingSubscription(headers, handler);
+		subscriptions.add(subscription);
+		return subscription;
+	}
+
+	/**
+	 * 完成所有订阅的回执。
+	 */
+	public void receipt() {
+		List<RecordingSubscription> pending;
+		synchronized (this) {
+			pending = new ArrayList<RecordingSubscription>(subscriptions);
+		}
+		for (RecordingSubscription subscription : pending)
+			subscription.receipt();
+	}
+
+	/**
+	 * 获取没有取消的订阅数量。
+	 * @return 返回订阅数量。
+	 */
+	public synchronized int getActiveSubscriptionCount() {
+		int count = 0;
+		for (RecordingSubscription subscription : subscriptions) {
+			if (!subscription.unsubscribed)
+				count++;
+		}
+		return count;
+	}
+
+	@Override
+	public synchronized Receiptable acknowledge(String messageId, boolean consumed) {
+		if (consumed)
+			acks.add(messageId);
+		else
+			nacks.add(messageId);
+		return null;
+	}
+
+	@Override
+	public synchronized Receiptable acknowledge(StompHeaders headers, boolean consumed) {
+		if (!consumed && "false".equals(headers.getFirst("requeue"))) {
+			rejects.add(headers.getId());
+			return null;
+		}
+		return acknowledge(headers.getId(), consumed);
+	}
+
+	@Override
+	public void disconnect() {
+		connected = false;
+	}
+
+	public static class RecordingSubscription implements Subscription {
+		public final StompHeaders headers;
+		public final StompFrameHandler handler;
+		public volatile boolean unsubscribed = false;
+		private final List<Runnable> receiptTasks = new ArrayList<Runnable>();
+		private boolean received = false;
+
+		private RecordingSubscription(StompHeaders headers, StompFrameHandler handler) {
+			this.headers = headers;
+			this.handler = handler;
+		}
+
+		public void receipt() {
+			List<Runnable> tasks;
+			synchronized (this) {
+				if (received)
+					return;
+				received = true;
+				tasks = new ArrayList<Runnable>(receiptTasks);
+			}
+			for (Runnable task : tasks)
+				task.run();
+		}
+
+		@Override
+		public String getReceiptId() {
+			return null;
+		}
+
+		@Override
+		public synchronized void addReceiptTask(Runnable task) {
+			if (received)
+				task.run();
+			else
+				receiptTasks.add(task);
+		}
+
+		@Override
+		public void addReceiptLostTask(Runnable task) {
+		}
+
+		@Override
+		public String getSubscriptionId() {
+			return null;
+		}
+
+		@Override
+		public StompHeaders getSubscriptionHeaders() {
+			return headers;
+		}
+
+		@Override
+		public void unsubscribe() {
+			unsubscribed = true;
+		}
+
+		@Override
+		public void unsubscribe(StompHeaders headers) {
+			unsubscribed = true;
+		}
+	}
+}